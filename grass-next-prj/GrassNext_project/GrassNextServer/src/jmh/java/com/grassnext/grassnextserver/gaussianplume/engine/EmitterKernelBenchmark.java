@@ -0,0 +1,122 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the row evaluation of the point emitters by {@link ScalarEmitterKernel} and by the vectorized kernel
+ * created by {@link EmitterKernel#create}. The row crosses a 4000 m matrix 100 m downwind of a 500 m road
+ * split into emitters 10 m apart, with the wind blowing across the road.
+ *
+ * The vectorized kernel is available only in the builds of the {@code vector} profile:
+ * {@code mvn -Pvector,benchmark test-compile exec:exec -Djmh.include=EmitterKernelBenchmark}.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class EmitterKernelBenchmark {
+    /**
+     * The number of the cells of the row.
+     *
+     */
+    private static final int LENGTH = 4000;
+    /**
+     * The number of the emitters of the road.
+     *
+     */
+    private static final int EMITTERS = 50;
+
+    /**
+     * The evaluated kernel, {@code scalar} or {@code vector}.
+     *
+     */
+    @Param({"scalar", "vector"})
+    public String kernelType;
+    /**
+     * The atmospheric stability class [1-6].
+     *
+     */
+    @Param({"4"})
+    public int stability;
+
+    /**
+     * The kernel evaluating the row.
+     *
+     */
+    private EmitterKernel kernel;
+    /**
+     * The x coordinates of the cells of the row.
+     *
+     */
+    private double[] x;
+    /**
+     * The x coordinates of the emitters.
+     *
+     */
+    private double[] emittersX;
+    /**
+     * The y coordinates of the emitters.
+     *
+     */
+    private double[] emittersY;
+    /**
+     * The concentrations of the cells of the row.
+     *
+     */
+    private double[] out;
+
+    /**
+     * Creates the kernel, the cells and the emitters.
+     *
+     */
+    @Setup
+    public void setup() {
+        if ("vector".equals(kernelType)) {
+            kernel = EmitterKernel.create(0.0, 1.0, 2.5, stability, 0.3, 2.0);
+            if (kernel.getLanes() < 2) {
+                throw new IllegalStateException("Vectorized kernel not available, build with -Pvector");
+            }
+        } else {
+            kernel = new ScalarEmitterKernel(0.0, 1.0, 2.5, stability, 0.3, 2.0);
+        }
+
+        x = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = i - LENGTH / 2.0;
+        }
+        emittersX = new double[EMITTERS];
+        emittersY = new double[EMITTERS];
+        for (int e = 0; e < EMITTERS; e++) {
+            emittersX[e] = e * PlumeModel.EMITTERS_DISTANCE - 250.0;
+        }
+        out = new double[LENGTH];
+    }
+
+    /**
+     * Evaluates the emitters for the whole row.
+     *
+     * @return the concentrations of the row
+     */
+    @Benchmark
+    public double[] sumRow() {
+        Arrays.fill(out, 0.0);
+        kernel.sumRow(100.0, x, LENGTH, emittersX, emittersY, 1.0, out);
+        return out;
+    }
+}
@@ -0,0 +1,158 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the whole calculation of {@link PlumeModel} on a 4000 m area with a 500 m road, comparing
+ * the evaluation of every emitter with the superposition of a single emitter kernel and measuring the effect
+ * of the plume envelope culling. The matrix cells skipped by the culling and all the calculated cells are reported
+ * as the {@code culledCells} and {@code cells} secondary results, summed over the measured calculations, so their
+ * ratio is the culled fraction; the kernel superposition culls the blocks of the kernel only, so it skips none of them.
+ *
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.include=PlumeModelBenchmark}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class PlumeModelBenchmark {
+    /**
+     * The Gaussian Plume parameters of the 4000 m area with a 500 m road running east, with the wind
+     * direction and the stability class to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":true,"count":251,"avgVelocity":36.9},{"chosen":true,"count":38,"avgVelocity":32.4}],
+             "wind":{"speed":2.5,"direction":%d,"stability":%d},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2171484,"lat":50.3436049},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":4000,"cellResolution":1.0,"divMatrixSide":8}
+            """;
+
+    /**
+     * True to build the matrix by superposition of a single emitter kernel.
+     *
+     */
+    @Param({"false", "true"})
+    public boolean kernelSuperposition;
+    /**
+     * True to skip the blocks of the matrix outside the plume envelope.
+     *
+     */
+    @Param({"false", "true"})
+    public boolean culling;
+    /**
+     * The wind direction in degrees.
+     *
+     */
+    @Param({"160"})
+    public int direction;
+    /**
+     * The atmospheric stability class [1-6].
+     *
+     */
+    @Param({"4"})
+    public int stability;
+
+    /**
+     * The Gaussian Plume parameters of the calculation.
+     *
+     */
+    private GaussianPlume gaussianPlume;
+    /**
+     * The fork-join pool of the calculation.
+     *
+     */
+    private ForkJoinPool forkJoinPool;
+
+    /**
+     * Inner class counting the matrix cells of the calculations of an iteration, reported by JMH as secondary results.
+     *
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CellCounters {
+        /**
+         * The number of the matrix cells skipped by the culling.
+         *
+         */
+        public long culledCells;
+        /**
+         * The number of all the matrix cells.
+         *
+         */
+        public long cells;
+
+        /**
+         * Resets the counters before every iteration.
+         *
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            culledCells = 0;
+            cells = 0;
+        }
+    }
+
+    /**
+     * Reads the Gaussian Plume parameters and creates the fork-join pool.
+     *
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        gaussianPlume = new ObjectMapper().readValue(PLUME.formatted(direction, stability), GaussianPlume.class);
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the fork-join pool.
+     *
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * Calculates the contours of the area and counts the culled cells.
+     *
+     * @param counters the counters of the matrix cells
+     * @return the calculated contours
+     */
+    @Benchmark
+    public Contours calculate(CellCounters counters) {
+        PlumeModel.Options options = PlumeModel.Options.builder()
+                .kernelSuperposition(kernelSuperposition)
+                .culling(culling)
+                .build();
+        PlumeModel plumeModel = new PlumeModel(gaussianPlume, forkJoinPool, options, CancellationToken.NONE);
+        Contours contours = plumeModel.calculate();
+        long cells = (long) gaussianPlume.getMatrixSize() * gaussianPlume.getMatrixSize();
+        counters.culledCells += Math.round(plumeModel.getCulledFraction() * cells);
+        counters.cells += cells;
+        return contours;
+    }
+}
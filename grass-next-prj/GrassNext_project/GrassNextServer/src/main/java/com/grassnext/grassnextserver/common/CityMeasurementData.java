@@ -0,0 +1,57 @@
+package com.grassnext.grassnextserver.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a request for the combined pollution contours of all the detectors of a town or a bounding box.
+ * The detectors are selected by the town if it is given, otherwise by the bounding box.
+ *
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CityMeasurementData {
+    /**
+     * The measurement data selecting the date, hour, vehicle groups, pollution type, weather stability
+     * and source model. The area is the margin around the roads and the detector is not used.
+     *
+     */
+    MeasurementData measurement;
+    /**
+     * The country of the town.
+     *
+     */
+    String country;
+    /**
+     * The state of the town.
+     *
+     */
+    String state;
+    /**
+     * The town whose detectors are included.
+     *
+     */
+    String town;
+    /**
+     * The southern edge of the bounding box.
+     *
+     */
+    Double minLat;
+    /**
+     * The western edge of the bounding box.
+     *
+     */
+    Double minLon;
+    /**
+     * The northern edge of the bounding box.
+     *
+     */
+    Double maxLat;
+    /**
+     * The eastern edge of the bounding box.
+     *
+     */
+    Double maxLon;
+}
@@ -0,0 +1,65 @@
+package com.grassnext.grassnextserver.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents the air pollution concentrations calculated at the receptor points along with additional metadata
+ * about the processing status.
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Concentrations {
+    /**
+     * Inner class representing the concentration at a single receptor point.
+     *
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Receptor {
+        /**
+         * Latitude of the receptor point.
+         *
+         */
+        public double lat;
+        /**
+         * Longitude of the receptor point.
+         *
+         */
+        public double lon;
+        /**
+         * The air pollution concentration at the receptor point, in the units of the contour thresholds (µg/m³).
+         *
+         */
+        public double concentration;
+    }
+
+    /**
+     * A boolean flag indicating whether an error occurred during the calculation.
+     *
+     */
+    public boolean error;
+    /**
+     * A string variable used to store descriptive messages.
+     *
+     */
+    public String msg;
+    /**
+     * Represents the duration of the calculation.
+     *
+     */
+    public double duration;
+    /**
+     * A list of the receptor points with their concentrations, in the order of the request.
+     *
+     */
+    public List<Receptor> receptors;
+}
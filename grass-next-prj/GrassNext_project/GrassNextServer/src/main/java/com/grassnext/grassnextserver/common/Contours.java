@@ -1,5 +1,6 @@
 package com.grassnext.grassnextserver.common;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -59,6 +60,24 @@ public class Contours {
          *
          */
         public List<GpsPoint> points;
+        /**
+         * The points of the contour in the encoded polyline format, set instead of the points list
+         * when the compact encoding is requested.
+         *
+         */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public String encodedPoints;
+
+        /**
+         * Constructs a contour with the points stored as a list.
+         *
+         * @param threshold the threshold for which the contour is created
+         * @param color the color of the contour
+         * @param points the list of the contour points
+         */
+        public Contour(String threshold, String color, List<GpsPoint> points) {
+            this(threshold, color, points, null);
+        }
     };
 
     /**
@@ -0,0 +1,61 @@
+package com.grassnext.grassnextserver.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents the pollution contours calculated for several hours of a single measurement date
+ * along with additional metadata about the processing status.
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DayContours {
+    /**
+     * Inner class representing the contours calculated for a single hour.
+     *
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HourContours {
+        /**
+         * The hour of the day (1-24).
+         *
+         */
+        public int hour;
+        /**
+         * The contours of the hour, or contours with the error flag and message if the calculation
+         * of the hour failed or the pollution level is below the measurable range.
+         *
+         */
+        public Contours contours;
+    }
+
+    /**
+     * A boolean flag indicating whether an error occurred during the calculation.
+     *
+     */
+    public boolean error;
+    /**
+     * A string variable used to store descriptive messages.
+     *
+     */
+    public String msg;
+    /**
+     * Represents the duration of the calculation of all the hours.
+     *
+     */
+    public double duration;
+    /**
+     * A list of the contours of the hours, in the order of the request.
+     *
+     */
+    public List<HourContours> hours;
+}
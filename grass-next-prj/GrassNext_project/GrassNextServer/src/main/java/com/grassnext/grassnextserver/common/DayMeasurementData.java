@@ -0,0 +1,29 @@
+package com.grassnext.grassnextserver.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents a request for the pollution contours of several hours of a single measurement date.
+ *
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DayMeasurementData {
+    /**
+     * The measurement data selecting the detector, date, vehicle groups, pollution type,
+     * weather stability, area and source model. The hour is not used.
+     *
+     */
+    MeasurementData measurement;
+    /**
+     * The hours of the day (1-24) for which the contours are calculated.
+     * All the hours of the day are calculated if the list is missing or empty.
+     *
+     */
+    List<Integer> hours;
+}
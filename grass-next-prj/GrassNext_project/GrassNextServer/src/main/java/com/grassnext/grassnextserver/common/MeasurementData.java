@@ -58,4 +58,10 @@ public class MeasurementData {
      * the specific location or region where the measurement was taken.
      */
     int area;
+    /**
+     * Represents the model of the road emission used for the calculation:
+     * {@code point} (default) for the point emitters or {@code line} for the analytic finite line source.
+     *
+     */
+    String sourceModel;
 }
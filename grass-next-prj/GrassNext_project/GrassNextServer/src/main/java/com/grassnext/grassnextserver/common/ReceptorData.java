@@ -0,0 +1,29 @@
+package com.grassnext.grassnextserver.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents a request for the air pollution concentration at the chosen receptor points.
+ *
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceptorData {
+    /**
+     * The measurement data selecting the detector, date, hour, vehicle groups, pollution type,
+     * weather stability and source model. The area is not used.
+     *
+     */
+    MeasurementData measurement;
+    /**
+     * The GPS coordinates of the points at which the concentration is calculated,
+     * such as schools or air quality stations near the detector.
+     *
+     */
+    List<Contours.GpsPoint> receptors;
+}
@@ -1,5 +1,6 @@
 package com.grassnext.grassnextserver.configurations;
 
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
 import com.grassnext.grassnextserver.jni.GrassNextJni;
 import lombok.Data;
 import org.springframework.beans.factory.InitializingBean;
@@ -54,17 +55,358 @@ public class GrassNextConfig implements WebMvcConfigurer, InitializingBean {
      */
     @Value("${gn.opencv_file}")
     String openCvLibFile;
+    /**
+     * Represents the name of the engine used for the Gaussian Plume calculations:
+     * "native" for the C++ library, "jvm" for the pure Java implementation
+     * or "worker" for the pool of worker processes.
+     *
+     */
+    @Value("${gn.engine:" + DispersionEngine.NATIVE + "}")
+    String gnEngine;
+    /**
+     * The maximum number of Gaussian Plume calculations executed at the same time.
+     * A value lower than 1 means the number of available processors, or the number of worker processes
+     * when the {@code worker} engine is selected.
+     *
+     */
+    @Value("${gn.calculation.max_in_flight:0}")
+    int calculationMaxInFlight;
+    /**
+     * The maximum number of Gaussian Plume calculations waiting for execution.
+     * Requests above this limit are rejected with the HTTP 429 status.
+     *
+     */
+    @Value("${gn.calculation.queue_size:16}")
+    int calculationQueueSize;
+    /**
+     * The number of seconds returned in the Retry-After header of rejected calculation requests.
+     *
+     */
+    @Value("${gn.calculation.retry_after:5}")
+    long calculationRetryAfter;
+    /**
+     * The default deadline in seconds of the calculations requested by the clients, after which a calculation
+     * is cancelled. The requests may only shorten it. A value lower than 1 disables the deadline.
+     *
+     */
+    @Value("${gn.calculation.deadline:60}")
+    long calculationDeadline;
+    /**
+     * The estimated cost, in millions of evaluations of the Gaussian function (the cells of the matrix multiplied
+     * by the emitters of the road), covered by one execution slot. A more expensive calculation takes several slots.
+     * A value lower than 1 makes every calculation take a single slot.
+     *
+     */
+    @Value("${gn.calculation.slot_cost:20}")
+    long calculationSlotCost;
+    /**
+     * The maximum number of execution slots held at the same time by the bulk calculations, the batch calculations
+     * (jobs and whole days) and the calculations taking more than one slot, so the remaining slots stay free
+     * for the small interactive requests. A value lower than 1 means half of the slots.
+     *
+     */
+    @Value("${gn.calculation.bulk_slots:0}")
+    int calculationBulkSlots;
+    /**
+     * The maximum number of batch calculations waiting for execution.
+     *
+     */
+    @Value("${gn.calculation.batch_queue_size:32}")
+    int calculationBatchQueueSize;
+    /**
+     * Determines whether the pure Java engine builds the concentration matrix by superposition
+     * of a single emitter kernel instead of evaluating the Gaussian function for every emitter.
+     *
+     */
+    @Value("${gn.jvm.kernel_superposition:false}")
+    boolean jvmKernelSuperposition;
+    /**
+     * The maximum total size in megabytes of the unit emission matrices cached by the pure Java engine.
+     * A value lower than 1 disables the cache.
+     *
+     */
+    @Value("${gn.jvm.field_cache_mb:512}")
+    long jvmFieldCacheMb;
+    /**
+     * Determines whether the pure Java engine skips the blocks of the matrix lying outside the plume envelope,
+     * in which the concentration cannot reach the lowest contour threshold.
+     *
+     */
+    @Value("${gn.jvm.culling:true}")
+    boolean jvmCulling;
+    /**
+     * Determines whether the pure Java engine extracts the isolines of all the thresholds in a single pass
+     * of the marching squares instead of tracing the contours of a binary image for every threshold.
+     *
+     */
+    @Value("${gn.jvm.marching_squares:false}")
+    boolean jvmMarchingSquares;
+    /**
+     * Determines whether the pure Java engine stores the concentration matrices as tiles of single precision values
+     * allocated only where the concentration is not zero, instead of dense double precision matrices.
+     *
+     */
+    @Value("${gn.jvm.tiled_grid:false}")
+    boolean jvmTiledGrid;
+    /**
+     * Determines whether the pure Java engine evaluates the concentration on a quadtree refined near the road
+     * and along the isolines, instead of calculating every cell of the matrix.
+     *
+     */
+    @Value("${gn.jvm.adaptive_grid:false}")
+    boolean jvmAdaptiveGrid;
+    /**
+     * Determines whether the pure Java engine evaluates the point emitters for whole rows of the matrix,
+     * vectorized with the Java Vector API when built with the {@code vector} profile and the {@code jdk.incubator.vector}
+     * module is available.
+     *
+     */
+    @Value("${gn.jvm.vector_kernel:false}")
+    boolean jvmVectorKernel;
+    /**
+     * The maximum total size in megabytes of the matrices and binary images pooled for the calculations
+     * of the pure Java engine. A calculation exceeding it waits for a matrix returned by another one.
+     * A value lower than 1 disables the pool.
+     *
+     */
+    @Value("${gn.grid_arena.max_mb:1024}")
+    long gridArenaMaxMb;
+    /**
+     * The default tolerance in meters of the contour simplification applied to the responses.
+     * A value not greater than 0 disables the simplification.
+     *
+     */
+    @Value("${gn.contour.simplify_tolerance:0}")
+    double contourSimplifyTolerance;
+    /**
+     * The maximum number of the calculated contours kept in the contour cache.
+     * A value lower than 1 disables the cache.
+     *
+     */
+    @Value("${gn.contour_cache.max_size:1000}")
+    long contourCacheMaxSize;
+    /**
+     * The time in minutes after which the calculated contours are removed from the contour cache.
+     *
+     */
+    @Value("${gn.contour_cache.ttl:1440}")
+    long contourCacheTtl;
+    /**
+     * The number of workers executing the asynchronous calculation jobs.
+     * A value lower than 1 means the maximum number of calculations executed at the same time.
+     *
+     */
+    @Value("${gn.jobs.workers:0}")
+    int jobsWorkers;
+    /**
+     * The maximum number of asynchronous calculation jobs waiting for a free worker,
+     * shared by all the server instances when the database queue is used.
+     *
+     */
+    @Value("${gn.jobs.queue_size:64}")
+    int jobsQueueSize;
+    /**
+     * The time in minutes the results of the finished asynchronous calculation jobs are kept.
+     *
+     */
+    @Value("${gn.jobs.result_ttl:10}")
+    long jobsResultTtl;
+    /**
+     * Represents the queue of the asynchronous calculation jobs: "memory" for the jobs kept by each server instance
+     * or "database" for the queue table shared by all the server instances.
+     *
+     */
+    @Value("${gn.jobs.queue:memory}")
+    String jobsQueue;
+    /**
+     * The time in seconds the lease of a job claimed from the database queue lasts unless the server instance renews it.
+     *
+     */
+    @Value("${gn.jobs.lease_ttl:60}")
+    long jobsLeaseTtl;
+    /**
+     * The maximum number of times a job of the database queue is claimed before it fails,
+     * counting the claims whose lease expired.
+     *
+     */
+    @Value("${gn.jobs.max_attempts:3}")
+    int jobsMaxAttempts;
+    /**
+     * The interval in milliseconds in which each server instance polls the database queue for the jobs to claim.
+     *
+     */
+    @Value("${gn.jobs.poll_interval:500}")
+    long jobsPollInterval;
+    /**
+     * The deadline in seconds of an asynchronous calculation job, counted from the start of its calculation,
+     * after which the job is cancelled. A value lower than 1 disables the deadline.
+     *
+     */
+    @Value("${gn.jobs.deadline:0}")
+    long jobsDeadline;
+    /**
+     * The maximum number of receptor points of a single concentration request.
+     *
+     */
+    @Value("${gn.receptors.max_points:1000}")
+    int receptorsMaxPoints;
+    /**
+     * The size (in meters) of a cell of the matrix shared by the detectors of the city-wide calculation.
+     *
+     */
+    @Value("${gn.city.cell_resolution:5}")
+    int cityCellResolution;
+    /**
+     * The maximum number of rows and columns of the matrix of the city-wide calculation.
+     *
+     */
+    @Value("${gn.city.max_matrix_size:4000}")
+    int cityMaxMatrixSize;
+    /**
+     * The maximum size (in megabytes) of the rendered raster tiles kept in the tile cache.
+     *
+     */
+    @Value("${gn.raster.tile_cache_mb:64}")
+    long rasterTileCacheMb;
+    /**
+     * The maximum number of the raster layers whose tiles can be rendered.
+     *
+     */
+    @Value("${gn.raster.max_layers:100}")
+    long rasterMaxLayers;
+    /**
+     * The time (in minutes) after the last access for which the raster layers and tiles are kept.
+     *
+     */
+    @Value("${gn.raster.ttl:60}")
+    long rasterTtl;
+    /**
+     * The size (in meters) of a cell of the coarse grid of the preview contours sent first by the streaming endpoint.
+     *
+     */
+    @Value("${gn.stream.coarse_resolution:10}")
+    double streamCoarseResolution;
+    /**
+     * The interval in seconds in which the streaming endpoint checks that the client is still connected
+     * while the contours at the full resolution are calculated.
+     *
+     */
+    @Value("${gn.stream.heartbeat:1}")
+    long streamHeartbeat;
+    /**
+     * The maximum number of contour streams served at the same time.
+     * Requests above this limit are rejected with the HTTP 429 status.
+     *
+     */
+    @Value("${gn.stream.max_streams:32}")
+    int streamMaxStreams;
+    /**
+     * The number of worker processes performing the calculations when the {@code worker} engine is selected.
+     * A value lower than 1 means the number of available processors.
+     *
+     */
+    @Value("${gn.worker.count:0}")
+    int workerCount;
+    /**
+     * Represents the name of the engine used by the worker processes:
+     * "native" for the C++ library or "jvm" for the pure Java implementation.
+     *
+     */
+    @Value("${gn.worker.engine:" + DispersionEngine.NATIVE + "}")
+    String workerEngine;
+    /**
+     * The directory in which the Unix domain sockets of the worker processes are created.
+     * An empty value means the temporary directory of the system.
+     *
+     */
+    @Value("${gn.worker.socket_dir:}")
+    String workerSocketDir;
+    /**
+     * The maximum size in megabytes of the Java heap of a worker process.
+     *
+     */
+    @Value("${gn.worker.heap_mb:512}")
+    int workerHeapMb;
+    /**
+     * The maximum resident memory in megabytes of a worker process, including the memory allocated
+     * by the native library. A worker exceeding it is restarted after its calculation. It is used only where
+     * the address space of the workers cannot be limited. A value lower than 1 disables the limit.
+     *
+     */
+    @Value("${gn.worker.max_rss_mb:2048}")
+    int workerMaxRssMb;
+    /**
+     * The maximum address space in megabytes of a worker process on Linux, set with {@code prlimit} when the worker
+     * is started, so an allocation above it fails inside the worker instead of exhausting the memory of the host.
+     * The resident memory limit is used instead where the address space cannot be limited.
+     * A value lower than 1 disables the limit.
+     *
+     */
+    @Value("${gn.worker.max_address_space_mb:4096}")
+    int workerMaxAddressSpaceMb;
+    /**
+     * The interval in seconds in which the idle worker processes are checked and the crashed ones restarted.
+     *
+     */
+    @Value("${gn.worker.health_interval:5}")
+    long workerHealthInterval;
+    /**
+     * The maximum time in seconds a worker process may take to start and accept the connection.
+     *
+     */
+    @Value("${gn.worker.start_timeout:30}")
+    long workerStartTimeout;
+    /**
+     * Flag indicating whether the contours of the imported topo data are calculated in the background
+     * after the import, so the first requests of the day are answered from the cache. If it is not set,
+     * the precomputation is enabled only with an engine able to cancel a running calculation.
+     *
+     */
+    @Value("${gn.precompute.enabled:#{null}}")
+    Boolean precomputeEnabled;
+    /**
+     * The weather stability class of the precomputed contours.
+     *
+     */
+    @Value("${gn.precompute.weather_stability:4}")
+    int precomputeWeatherStability;
+    /**
+     * The area in meters of the precomputed contours.
+     *
+     */
+    @Value("${gn.precompute.area:2000}")
+    int precomputeArea;
+    /**
+     * The vehicle groups of the precomputed contours.
+     *
+     */
+    @Value("${gn.precompute.vehicles:1,2,3,4,5}")
+    int[] precomputeVehicles;
+    /**
+     * The system CPU load, between 0 and 1, above which the background precomputation waits.
+     *
+     */
+    @Value("${gn.precompute.max_cpu:0.5}")
+    double precomputeMaxCpu;
+    /**
+     * The interval in milliseconds in which the waiting background precomputation checks whether the server is idle.
+     *
+     */
+    @Value("${gn.precompute.idle_check:200}")
+    long precomputeIdleCheck;
 
     /**
      * This method is invoked after all the properties of the containing class have been set.
      * It is responsible for loading the native libraries required by the application using the
-     * gnLoadLibrary method.
+     * gnLoadLibrary method. The libraries are not loaded when the pure Java engine is selected.
      *
      * @throws Exception if an error occurs while loading the native libraries.
      */
     @Override
     public void afterPropertiesSet() throws Exception {
-        GrassNextJni.gnLoadLibrary(this);
+        if (DispersionEngine.NATIVE.equals(gnEngine)) {
+            GrassNextJni.gnLoadLibrary(this);
+        }
     }
     /**
      * Configures CORS (Cross-Origin Resource Sharing) for incoming HTTP requests.
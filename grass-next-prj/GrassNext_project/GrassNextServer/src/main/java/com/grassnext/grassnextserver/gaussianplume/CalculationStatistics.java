@@ -0,0 +1,64 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.gaussianplume.engine.GridArena;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Describes the current state of the Gaussian Plume calculations exposed by the REST API.
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalculationStatistics {
+    /**
+     * The number of calculations currently executed or waiting for an execution slot.
+     *
+     */
+    public int admittedCalculations;
+    /**
+     * The number of execution slots of the node.
+     *
+     */
+    public int maxInFlight;
+    /**
+     * The maximum number of execution slots held by the batch calculations and the calculations taking more than
+     * one slot at the same time.
+     *
+     */
+    public int bulkSlots;
+    /**
+     * The maximum number of interactive calculations waiting for their execution slots.
+     *
+     */
+    public int queueSize;
+    /**
+     * The maximum number of batch calculations waiting for their execution slots.
+     *
+     */
+    public int batchQueueSize;
+    /**
+     * The number of interactive calculations currently waiting for their execution slots.
+     *
+     */
+    public int queuedInteractive;
+    /**
+     * The number of batch calculations currently waiting for their execution slots.
+     *
+     */
+    public int queuedBatch;
+    /**
+     * The number of requests which received the result of a calculation performed for another request.
+     *
+     */
+    public long coalescedRequests;
+    /**
+     * The usage of the pool of the matrices and binary images used by the pure Java engine.
+     *
+     */
+    public GridArena.Statistics gridArena;
+}
@@ -0,0 +1,164 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.CityMeasurementData;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.CityPlumeModel;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetector;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetectorRepository;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Service class responsible for calculating the combined pollution contours of all the detectors of a town
+ * or a bounding box. The roads of the detectors are superposed on one shared matrix, so the contours
+ * are extracted once for the combined field instead of calculating a full matrix for every detector.
+ * The calculation does not depend on the selected dispersion engine.
+ *
+ */
+@Service
+public class CityPlumeService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the CityPlumeService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CityPlumeService.class);
+
+    /**
+     * Service instance for managing and providing Gaussian parameter data for plume dispersion calculations.
+     *
+     */
+    GaussianParametersService gaussianParametersService;
+    /**
+     * Dependency-injected repository used to find the detectors of the town or the bounding box.
+     *
+     */
+    TopoDetectorRepository topoDetectorRepository;
+    /**
+     * Executor limiting the number of concurrent calculations and rejecting the requests above the limit.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * The size (in meters) of a cell of the shared matrix.
+     *
+     */
+    int cellResolution;
+    /**
+     * The maximum number of rows and columns of the shared matrix.
+     *
+     */
+    int maxMatrixSize;
+    /**
+     * The pool executing the parallel parts of the calculation.
+     *
+     */
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Constructs a CityPlumeService instance and initializes the required services.
+     *
+     * @param gaussianParametersService the service responsible for managing and providing
+     *                                  Gaussian parameter data for plume dispersion calculations
+     * @param topoDetectorRepository the repository for accessing topology detector data
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param grassNextConfig the configuration providing the resolution and the size limit of the shared matrix
+     */
+    @Autowired
+    public CityPlumeService(
+            GaussianParametersService gaussianParametersService,
+            TopoDetectorRepository topoDetectorRepository,
+            CalculationExecutor calculationExecutor,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianParametersService = gaussianParametersService;
+        this.topoDetectorRepository = topoDetectorRepository;
+        this.calculationExecutor = calculationExecutor;
+        this.cellResolution = Math.max(1, grassNextConfig.getCityCellResolution());
+        this.maxMatrixSize = grassNextConfig.getCityMaxMatrixSize();
+    }
+
+    /**
+     * Calculates the combined pollution contours of the roads of all the detectors of the town or the bounding box.
+     * The line source model is used unless the measurement data selects another one.
+     *
+     * @param cityMeasurementData the measurement data and the town or the bounding box of the detectors
+     * @param cancellation the cancellation token of the request
+     * @return the contours of the combined field, or contours with the error flag and message if the request is invalid,
+     *         no detector has the data of the chosen date, the area is too large or the pollution level is below
+     *         the measurable range
+     * @throws RejectedExecutionException if the calculation queue is full or the calculation is not expected
+     *                                    to complete before the deadline
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    public Contours calculateContours(CityMeasurementData cityMeasurementData, CancellationToken cancellation) {
+        MeasurementData measurementData = cityMeasurementData.getMeasurement();
+        if (measurementData == null) {
+            return new Contours(true, "Measurement data missing!", -1, null);
+        }
+
+        SourceModelEnum sourceModel = measurementData.getSourceModel() == null
+                ? SourceModelEnum.LINE
+                : SourceModelEnum.getByValue(measurementData.getSourceModel());
+        if (sourceModel == null) {
+            return new Contours(true, "Unknown source model!", -1, null);
+        }
+
+        List<TopoDetector> topoDetectors;
+        if (cityMeasurementData.getTown() != null) {
+            topoDetectors = topoDetectorRepository.findTopoDetectorsByLocation(cityMeasurementData.getCountry(), cityMeasurementData.getState(), cityMeasurementData.getTown());
+        } else if (cityMeasurementData.getMinLat() != null && cityMeasurementData.getMaxLat() != null
+                && cityMeasurementData.getMinLon() != null && cityMeasurementData.getMaxLon() != null) {
+            topoDetectors = topoDetectorRepository.findTopoDetectorsInArea(cityMeasurementData.getMinLat(), cityMeasurementData.getMaxLat(),
+                    cityMeasurementData.getMinLon(), cityMeasurementData.getMaxLon());
+        } else {
+            return new Contours(true, "Town or bounding box missing!", -1, null);
+        }
+        if (topoDetectors.isEmpty()) {
+            return new Contours(true, "Detector not found!", -1, null);
+        }
+
+        List<GaussianPlume> gaussianPlumes = gaussianParametersService.getGaussianPlumes(topoDetectors, measurementData, sourceModel);
+        if (gaussianPlumes.isEmpty()) {
+            return new Contours(true, "No data found for chosen date!", -1, null);
+        }
+
+        CityPlumeModel cityPlumeModel = new CityPlumeModel(gaussianPlumes, measurementData.getArea() / 2.0, cellResolution, forkJoinPool, cancellation);
+        if (cityPlumeModel.getMatrixSize() > maxMatrixSize) {
+            return new Contours(true, "Area too large! The limit is " + (long) maxMatrixSize * cellResolution + " m.", -1, null);
+        }
+
+        long cost = CalculationExecutor.estimateCost(cityPlumeModel.getMatrixSize(), gaussianPlumes);
+        Contours contours = calculationExecutor.execute(cityPlumeModel::calculate, cost, CalculationLaneEnum.INTERACTIVE, cancellation);
+        LOGGER.info("[LOGGER] City plume of " + gaussianPlumes.size() + " of " + topoDetectors.size() + " detectors calculated in "
+                + contours.getDuration() + " s, matrix " + cityPlumeModel.getMatrixSize() + " x " + cityPlumeModel.getMatrixSize());
+
+        if (contours.getContours().isEmpty()) {
+            return new Contours(true, "Pollution level below the measured range!", -1, null);
+        }
+        return contours;
+    }
+
+    /**
+     * Shuts down the pool of the calculations when the application is stopped.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        forkJoinPool.shutdown();
+    }
+}
@@ -0,0 +1,242 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ContourCache class stores the contours calculated for the measurement data.
+ *
+ * All the inputs of the calculation are read from the database for the given detector, date and hour,
+ * so the result does not change until new topo data is imported for that detector and date.
+ * The cache is bounded by the number of entries and the time since the entry was stored.
+ *
+ */
+@Service
+public class ContourCache {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the ContourCache class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContourCache.class);
+
+    /**
+     * Inner class describing the cache statistics exposed by the REST API.
+     *
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Statistics {
+        /**
+         * The number of requests served from the cache.
+         *
+         */
+        public long hits;
+        /**
+         * The number of requests not found in the cache.
+         *
+         */
+        public long misses;
+        /**
+         * The ratio of the hits to all the requests.
+         *
+         */
+        public double hitRate;
+        /**
+         * The number of entries evicted because of the size or time limits.
+         *
+         */
+        public long evictions;
+        /**
+         * The number of entries removed after importing new topo data.
+         *
+         */
+        public long invalidations;
+        /**
+         * The current number of entries.
+         *
+         */
+        public long size;
+    }
+
+    /**
+     * The cache of the calculated contours keyed by the canonical measurement data.
+     * It is null if the cache is disabled.
+     *
+     */
+    private final Cache<MeasurementData, Contours> cache;
+    /**
+     * The number of invalidations performed so far. Calculations started before an invalidation are not stored.
+     *
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * The number of entries removed by the invalidations.
+     *
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Constructs a ContourCache using the limits defined in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the cache limits
+     */
+    @Autowired
+    public ContourCache(GrassNextConfig grassNextConfig) {
+        long maxSize = grassNextConfig.getContourCacheMaxSize();
+        this.cache = maxSize <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(grassNextConfig.getContourCacheTtl(), TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+
+        LOGGER.info("[LOGGER] Contour cache: " + (cache == null ? "disabled" : maxSize + " entries, " + grassNextConfig.getContourCacheTtl() + " min"));
+    }
+
+    /**
+     * Creates the canonical form of the measurement data, in which the chosen vehicle groups are sorted
+     * and do not repeat and a known source model is always written out in lower case, so equal requests
+     * produce equal cache keys.
+     *
+     * @param measurementData the measurement data sent by the client
+     * @return a copy of the measurement data in the canonical form
+     */
+    public static MeasurementData canonicalize(MeasurementData measurementData) {
+        SourceModelEnum sourceModel = SourceModelEnum.getByValue(measurementData.getSourceModel());
+
+        return new MeasurementData(
+                measurementData.getVehicles() == null ? new ArrayList<>() : new ArrayList<>(measurementData.getVehicles().stream().distinct().sorted().toList()),
+                measurementData.getWeatherStability(),
+                measurementData.getPollutionType(),
+                measurementData.getDetectorId(),
+                measurementData.getDate(),
+                measurementData.getTime(),
+                measurementData.getArea(),
+                sourceModel != null ? sourceModel.get() : measurementData.getSourceModel()
+        );
+    }
+
+    /**
+     * Determines whether the contours are cached.
+     *
+     * @return false if the cache is disabled by its maximum size
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Returns the current generation of the cache, which has to be passed to {@link #put} after the calculation.
+     *
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the contours cached for the measurement data.
+     *
+     * @param key the canonical measurement data
+     * @return the cached contours, or null if they are not cached
+     */
+    public Contours get(MeasurementData key) {
+        return cache == null ? null : cache.getIfPresent(key);
+    }
+
+    /**
+     * Stores the contours calculated for the measurement data, unless the cache was invalidated
+     * since the calculation started.
+     *
+     * @param key the canonical measurement data
+     * @param contours the calculated contours
+     * @param startGeneration the generation of the cache read before the calculation started
+     */
+    public synchronized void put(MeasurementData key, Contours contours, long startGeneration) {
+        if (cache != null && generation.get() == startGeneration) {
+            cache.put(key, contours);
+        }
+    }
+
+    /**
+     * Removes the contours of the detector calculated for the dates within the given range.
+     * If a transaction is active, the entries are removed again after its commit, so the calculations
+     * reading the data before the commit are not kept.
+     *
+     * @param detectorId the identifier of the detector
+     * @param startDate the first date of the imported data
+     * @param endDate the last date of the imported data
+     */
+    public void invalidate(long detectorId, LocalDate startDate, LocalDate endDate) {
+        invalidateNow(detectorId, startDate, endDate);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(detectorId, startDate, endDate);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the contours of the detector calculated for the dates within the given range.
+     *
+     * @param detectorId the identifier of the detector
+     * @param startDate the first date of the imported data
+     * @param endDate the last date of the imported data
+     */
+    private synchronized void invalidateNow(long detectorId, LocalDate startDate, LocalDate endDate) {
+        generation.incrementAndGet();
+        if (cache == null) {
+            return;
+        }
+
+        List<MeasurementData> keys = cache.asMap().keySet().stream()
+                .filter(key -> key.getDetectorId() == detectorId
+                        && key.getDate() != null
+                        && !key.getDate().isBefore(startDate)
+                        && !key.getDate().isAfter(endDate))
+                .toList();
+        cache.invalidateAll(keys);
+        invalidations.addAndGet(keys.size());
+
+        LOGGER.info("[LOGGER] Contour cache: " + keys.size() + " entries of detector " + detectorId + " invalidated");
+    }
+
+    /**
+     * Returns the statistics of the cache.
+     *
+     * @return the number of hits, misses, evictions, invalidations and entries
+     */
+    public Statistics getStatistics() {
+        if (cache == null) {
+            return new Statistics(0, 0, 0.0, 0, invalidations.get(), 0);
+        }
+
+        CacheStats stats = cache.stats();
+        return new Statistics(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(), invalidations.get(), cache.size());
+    }
+}
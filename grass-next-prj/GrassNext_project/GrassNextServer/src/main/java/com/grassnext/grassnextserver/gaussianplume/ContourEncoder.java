@@ -0,0 +1,205 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.util.enums.ContourEncodingEnum;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Service class preparing the calculated contours for the response. The contour points are simplified
+ * with the Douglas-Peucker algorithm and optionally encoded in the compact encoded polyline format.
+ *
+ * The calculated contours are shared with the contour cache, so they are never modified; a simplified
+ * or encoded copy is created instead.
+ *
+ */
+@Service
+public class ContourEncoder {
+    /**
+     * A constant representing Earth's radius in meters, the same as used by the dispersion engines.
+     *
+     */
+    static final double EARTH_RADIUS = 6378000.0;
+    /**
+     * The number of units per degree in the encoded polyline format (5 decimal places).
+     *
+     */
+    static final double POLYLINE_PRECISION = 1.0E5;
+
+    /**
+     * The simplification tolerance in meters used when the request does not specify it.
+     *
+     */
+    @Getter
+    private final double defaultTolerance;
+
+    /**
+     * Constructs a ContourEncoder using the simplification tolerance defined in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the simplification tolerance
+     */
+    @Autowired
+    public ContourEncoder(GrassNextConfig grassNextConfig) {
+        this.defaultTolerance = grassNextConfig.getContourSimplifyTolerance();
+    }
+
+    /**
+     * Simplifies and encodes the contours for the response.
+     *
+     * @param contours the calculated contours
+     * @param tolerance the simplification tolerance in meters, or null to use the default tolerance;
+     *                  a value not greater than 0 disables the simplification
+     * @param encoding the format of the contour points
+     * @return the contours prepared for the response, or the given contours if they do not need any change
+     */
+    public Contours encode(Contours contours, Double tolerance, ContourEncodingEnum encoding) {
+        double maxDistance = tolerance != null ? tolerance : defaultTolerance;
+        if (contours == null || contours.getContours() == null || (maxDistance <= 0 && encoding == ContourEncodingEnum.JSON)) {
+            return contours;
+        }
+
+        List<Contours.Contour> contourList = new ArrayList<>();
+        for (Contours.Contour contour : contours.getContours()) {
+            List<Contours.GpsPoint> points = maxDistance > 0 ? simplify(contour.getPoints(), maxDistance) : contour.getPoints();
+
+            contourList.add(encoding == ContourEncodingEnum.POLYLINE
+                    ? new Contours.Contour(contour.getThreshold(), contour.getColor(), null, encodePolyline(points))
+                    : new Contours.Contour(contour.getThreshold(), contour.getColor(), points));
+        }
+
+        return new Contours(contours.isError(), contours.getMsg(), contours.getDuration(), contourList);
+    }
+
+    /**
+     * Simplifies the contour with the Douglas-Peucker algorithm. The points are projected onto a plane tangent
+     * at the first point, so the tolerance is expressed in meters.
+     *
+     * @param points the points of the contour
+     * @param tolerance the maximal distance in meters between the removed points and the simplified contour
+     * @return the points of the simplified contour
+     */
+    static List<Contours.GpsPoint> simplify(List<Contours.GpsPoint> points, double tolerance) {
+        if (points == null || points.size() < 3) {
+            return points;
+        }
+
+        int count = points.size();
+        double metersPerDegree = EARTH_RADIUS * Math.PI / 180;
+        double lonScale = metersPerDegree * Math.cos(Math.toRadians(points.get(0).getLat()));
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = (points.get(i).getLon() - points.get(0).getLon()) * lonScale;
+            y[i] = (points.get(i).getLat() - points.get(0).getLat()) * metersPerDegree;
+        }
+
+        boolean[] kept = new boolean[count];
+        kept[0] = true;
+        kept[count - 1] = true;
+
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, count - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int first = range[0];
+            int last = range[1];
+
+            int farthest = -1;
+            double farthestDistance = tolerance;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = distance;
+                }
+            }
+
+            if (farthest >= 0) {
+                kept[farthest] = true;
+                ranges.push(new int[]{first, farthest});
+                ranges.push(new int[]{farthest, last});
+            }
+        }
+
+        List<Contours.GpsPoint> simplified = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (kept[i]) {
+                simplified.add(points.get(i));
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Calculates the distance between the point and the segment.
+     *
+     * @param px the x coordinate of the point
+     * @param py the y coordinate of the point
+     * @param ax the x coordinate of the segment start
+     * @param ay the y coordinate of the segment start
+     * @param bx the x coordinate of the segment end
+     * @param by the y coordinate of the segment end
+     * @return the distance between the point and the closest point of the segment
+     */
+    static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double length2 = dx * dx + dy * dy;
+
+        double t = length2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / length2 : 0;
+        t = Math.max(0, Math.min(1, t));
+
+        return Math.hypot(px - ax - t * dx, py - ay - t * dy);
+    }
+
+    /**
+     * Encodes the points in the encoded polyline format: the latitude and longitude differences between
+     * consecutive points, rounded to 5 decimal places, are written as variable-length base64-like characters.
+     *
+     * @param points the points to be encoded
+     * @return the encoded polyline, empty if there are no points
+     */
+    static String encodePolyline(List<Contours.GpsPoint> points) {
+        StringBuilder encoded = new StringBuilder();
+        if (points == null) {
+            return encoded.toString();
+        }
+
+        long previousLat = 0;
+        long previousLon = 0;
+        for (Contours.GpsPoint point : points) {
+            long lat = Math.round(point.getLat() * POLYLINE_PRECISION);
+            long lon = Math.round(point.getLon() * POLYLINE_PRECISION);
+
+            encodeValue(lat - previousLat, encoded);
+            encodeValue(lon - previousLon, encoded);
+
+            previousLat = lat;
+            previousLon = lon;
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Appends a single signed value in the encoded polyline format.
+     *
+     * @param value the value to be encoded
+     * @param encoded the builder to which the characters are appended
+     */
+    static void encodeValue(long value, StringBuilder encoded) {
+        long shifted = value < 0 ? ~(value << 1) : value << 1;
+
+        while (shifted >= 0x20) {
+            encoded.append((char) ((0x20 | (shifted & 0x1f)) + 63));
+            shifted >>= 5;
+        }
+        encoded.append((char) (shifted + 63));
+    }
+}
@@ -0,0 +1,363 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.gaussianplume.engine.PlumeModel;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.ContourEncodingEnum;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.grassnext.grassnextserver.gaussianplume.GaussianParametersService.jsonMapper;
+
+/**
+ * Service class streaming the pollution contours of the measurement data progressively as Server-Sent Events.
+ *
+ * The preview contours calculated by the pure Java engine on a grid of {@code gn.stream.coarse_resolution} meter cells
+ * are sent first as the {@code coarse} event, which takes a small fraction of the full calculation. The preview
+ * is admitted by the calculation executor and runs on the pool of the {@code jvm} engine, or on a pool of its own
+ * when the configured engine calculates outside the JVM. The contours
+ * at the full cell resolution, calculated by the configured dispersion engine through the contour cache, follow
+ * as the {@code contours} event, or the {@code error} event describes why they could not be calculated.
+ * The preview is skipped when the full contours are already cached.
+ *
+ * While the full contours are calculated, a comment is written to the client every {@code gn.stream.heartbeat} seconds.
+ * A write failing because the client has disconnected cancels the calculation, so a client satisfied with the preview
+ * frees the calculation slot by closing the connection.
+ *
+ */
+@Service
+public class ContourStreamService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the ContourStreamService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContourStreamService.class);
+    /**
+     * The name of the event carrying the preview contours calculated on the coarse grid.
+     *
+     */
+    static final String COARSE_EVENT = "coarse";
+    /**
+     * The name of the event carrying the contours calculated at the full cell resolution.
+     *
+     */
+    static final String CONTOURS_EVENT = "contours";
+    /**
+     * The name of the event carrying the contours with the error flag and message.
+     *
+     */
+    static final String ERROR_EVENT = "error";
+    /**
+     * The time in milliseconds the stream is kept open after the calculation deadline, so the error event
+     * of the expired calculation can still be sent.
+     *
+     */
+    static final long TIMEOUT_MARGIN = 5000;
+
+    /**
+     * Service calculating the pollution contours for the measurement data at the full cell resolution.
+     *
+     */
+    GaussianPlumeService gaussianPlumeService;
+    /**
+     * Service reading the Gaussian Plume parameters of the preview calculation.
+     *
+     */
+    GaussianParametersService gaussianParametersService;
+    /**
+     * Executor limiting the cost of the concurrent calculations and creating the cancellation tokens of the streams.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * Cache of the contours calculated for the measurement data.
+     *
+     */
+    ContourCache contourCache;
+    /**
+     * Encoder simplifying the contours and converting them into the requested format.
+     *
+     */
+    ContourEncoder contourEncoder;
+
+    /**
+     * The size (in meters) of a cell of the coarse grid of the preview contours.
+     *
+     */
+    private final double coarseResolution;
+    /**
+     * The interval in seconds in which the connection of the client is checked during the full calculation.
+     *
+     */
+    private final long heartbeat;
+    /**
+     * The calculation modes of the preview calculation.
+     *
+     */
+    private final PlumeModel.Options coarseOptions;
+    /**
+     * The pool executing the parallel parts of the preview calculations, the pool of the dispersion engine
+     * if it calculates in the JVM.
+     *
+     */
+    private final ForkJoinPool forkJoinPool;
+    /**
+     * Whether the pool of the preview calculations has been created by this service and is shut down with it.
+     *
+     */
+    private final boolean ownPool;
+    /**
+     * The pool of threads serving the streams, one thread per stream.
+     *
+     */
+    private final ThreadPoolExecutor streamExecutor;
+    /**
+     * The executor writing the heartbeat comments to the clients.
+     *
+     */
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Constructs a ContourStreamService using the stream limits defined in the application properties.
+     *
+     * @param gaussianPlumeService the service calculating the pollution contours for the measurement data
+     * @param gaussianParametersService the service reading the Gaussian Plume parameters
+     * @param calculationExecutor the executor limiting the cost of the concurrent calculations
+     * @param contourCache the cache of the contours calculated for the measurement data
+     * @param contourEncoder the encoder simplifying the contours and converting them into the requested format
+     * @param dispersionEngine the configured dispersion engine providing the pool of the preview calculations
+     * @param grassNextConfig the configuration providing the stream limits
+     */
+    @Autowired
+    public ContourStreamService(
+            GaussianPlumeService gaussianPlumeService,
+            GaussianParametersService gaussianParametersService,
+            CalculationExecutor calculationExecutor,
+            ContourCache contourCache,
+            ContourEncoder contourEncoder,
+            DispersionEngine dispersionEngine,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianPlumeService = gaussianPlumeService;
+        this.gaussianParametersService = gaussianParametersService;
+        this.calculationExecutor = calculationExecutor;
+        this.contourCache = contourCache;
+        this.contourEncoder = contourEncoder;
+        this.coarseResolution = Math.max(Consts.CELL_RESOLUTION, grassNextConfig.getStreamCoarseResolution());
+        this.heartbeat = Math.max(1, grassNextConfig.getStreamHeartbeat());
+        this.coarseOptions = PlumeModel.Options.builder()
+                .culling(grassNextConfig.isJvmCulling())
+                .vectorKernel(grassNextConfig.isJvmVectorKernel())
+                .build();
+        this.ownPool = dispersionEngine.getForkJoinPool() == null;
+        this.forkJoinPool = ownPool ? new ForkJoinPool(Runtime.getRuntime().availableProcessors()) : dispersionEngine.getForkJoinPool();
+
+        int maxStreams = Math.max(1, grassNextConfig.getStreamMaxStreams());
+        this.streamExecutor = new ThreadPoolExecutor(
+                maxStreams,
+                maxStreams,
+                60L,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.streamExecutor.allowCoreThreadTimeOut(true);
+
+        LOGGER.info("[LOGGER] Contour streams: " + maxStreams + " streams, coarse grid " + coarseResolution + " m");
+    }
+
+    /**
+     * Starts streaming the contours of the measurement data.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @param tolerance the contour simplification tolerance in meters, or null to use the default tolerance
+     * @param encoding the format of the contour points
+     * @param timeout the calculation deadline in seconds requested by the client, or null to use the default deadline
+     * @return the emitter sending the events to the client
+     * @throws RejectedExecutionException if the maximum number of streams is being served
+     */
+    public SseEmitter stream(MeasurementData measurementData, Double tolerance, ContourEncodingEnum encoding, Long timeout) {
+        CancellationToken cancellation = calculationExecutor.createCancellation(timeout);
+        long remaining = cancellation.getRemaining(TimeUnit.MILLISECONDS);
+        SseEmitter emitter = new SseEmitter(remaining == Long.MAX_VALUE ? 0L : remaining + TIMEOUT_MARGIN);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(error -> cancellation.cancel());
+
+        streamExecutor.execute(() -> run(emitter, measurementData, tolerance, encoding, cancellation));
+        return emitter;
+    }
+
+    /**
+     * Calculates the preview and the full contours and sends them to the client.
+     *
+     * @param emitter the emitter sending the events to the client
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @param tolerance the contour simplification tolerance in meters, or null to use the default tolerance
+     * @param encoding the format of the contour points
+     * @param cancellation the cancellation token of the stream
+     */
+    void run(SseEmitter emitter, MeasurementData measurementData, Double tolerance, ContourEncodingEnum encoding,
+             CancellationToken cancellation) {
+        long start = System.nanoTime();
+        ScheduledFuture<?> heartbeatTask = null;
+        try {
+            MeasurementData cacheKey = ContourCache.canonicalize(measurementData);
+            if (contourCache.get(cacheKey) == null) {
+                Contours coarse = calculateCoarseContours(cacheKey, cancellation);
+                if (coarse != null && !coarse.isError()) {
+                    send(emitter, COARSE_EVENT, contourEncoder.encode(coarse, tolerance, encoding));
+                    LOGGER.info("[LOGGER] Coarse contours sent after " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                }
+            }
+
+            heartbeatTask = heartbeatExecutor.scheduleWithFixedDelay(() -> heartbeat(emitter, cancellation),
+                    heartbeat, heartbeat, TimeUnit.SECONDS);
+            Contours contours = gaussianPlumeService.calculateContours(measurementData, cancellation);
+            heartbeatTask.cancel(false);
+
+            if (contours.isError()) {
+                send(emitter, ERROR_EVENT, contours);
+            } else {
+                send(emitter, CONTOURS_EVENT, contourEncoder.encode(contours, tolerance, encoding));
+            }
+            emitter.complete();
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            sendError(emitter, new Contours(true, "Measurement error!", -1, null));
+        } catch (IOException e) {
+            cancellation.cancel();
+            LOGGER.info("[LOGGER] Contour stream closed by the client after " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (CancellationException e) {
+            sendError(emitter, GaussianPlumeService.cancelledContours(cancellation));
+        } catch (RejectedExecutionException e) {
+            sendError(emitter, new Contours(true, "Too many calculations in progress! Try again later.", -1, null));
+        } catch (RuntimeException e) {
+            LOGGER.error("[LOGGER] Contour stream failed! " + e.getMessage());
+            sendError(emitter, new Contours(true, "Measurement error!", -1, null));
+        } finally {
+            if (heartbeatTask != null) {
+                heartbeatTask.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Calculates the preview contours on the coarse grid with the pure Java engine. The matrix covers the same area
+     * as the full calculation, rounded up to the whole fragments of the matrix. The calculation waits for its slots
+     * in the interactive lane of the calculation executor and runs on the pool of the preview calculations.
+     *
+     * @param cacheKey the canonical measurement data
+     * @param cancellation the cancellation token of the stream
+     * @return the preview contours, contours with the error flag and message if the measurement data is invalid
+     *         or the pollution level is below the measurable range, or null if the full calculation is not finer
+     *         than the coarse grid or the source model is unknown
+     * @throws JsonProcessingException if the Gaussian Plume parameters cannot be read
+     * @throws RejectedExecutionException if the calculation queue is full
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    Contours calculateCoarseContours(MeasurementData cacheKey, CancellationToken cancellation) throws JsonProcessingException {
+        if (SourceModelEnum.getByValue(cacheKey.getSourceModel()) == null) {
+            return null;
+        }
+
+        String jsonData = gaussianParametersService.getGaussianPlume(cacheKey);
+        if (jsonData.contains(Consts.INCORRECT_DATA_HEADER)) {
+            return new Contours(true, jsonData.substring(Consts.INCORRECT_DATA_HEADER.length()), -1, null);
+        }
+
+        GaussianPlume gaussianPlume = jsonMapper.readValue(jsonData, GaussianPlume.class);
+        if (gaussianPlume.getCellResolution() >= coarseResolution) {
+            return null;
+        }
+
+        int divMatrixSide = gaussianPlume.getDivMatrixSide();
+        double area = gaussianPlume.getMatrixSize() * gaussianPlume.getCellResolution();
+        gaussianPlume.setMatrixSize((int) Math.ceil(area / coarseResolution / divMatrixSide) * divMatrixSide);
+        gaussianPlume.setCellResolution(coarseResolution);
+
+        Contours contours = calculationExecutor.execute(
+                () -> new PlumeModel(gaussianPlume, forkJoinPool, coarseOptions, cancellation).calculate(),
+                CalculationExecutor.estimateCost(gaussianPlume), CalculationLaneEnum.INTERACTIVE, cancellation);
+        return gaussianPlumeService.checkMeasuredRange(contours);
+    }
+
+    /**
+     * Writes a comment to the client, cancelling the calculation if the client has disconnected.
+     *
+     * @param emitter the emitter sending the events to the client
+     * @param cancellation the cancellation token of the stream
+     */
+    void heartbeat(SseEmitter emitter, CancellationToken cancellation) {
+        try {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        } catch (IOException | IllegalStateException e) {
+            cancellation.cancel();
+        }
+    }
+
+    /**
+     * Sends the contours to the client as an event.
+     *
+     * @param emitter the emitter sending the events to the client
+     * @param name the name of the event
+     * @param contours the contours sent as the data of the event
+     * @throws IOException if the client has disconnected
+     */
+    void send(SseEmitter emitter, String name, Contours contours) throws IOException {
+        emitter.send(SseEmitter.event().name(name).data(contours, MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Sends the contours describing the error to the client and closes the stream.
+     *
+     * @param emitter the emitter sending the events to the client
+     * @param contours the contours with the error flag and message
+     */
+    void sendError(SseEmitter emitter, Contours contours) {
+        try {
+            send(emitter, ERROR_EVENT, contours);
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.info("[LOGGER] Contour stream closed by the client before the error was sent");
+        }
+    }
+
+    /**
+     * Stops the stream threads, the heartbeat executor and the own pool of the preview calculations
+     * when the application context is closed.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+        streamExecutor.shutdownNow();
+        if (ownPool) {
+            forkJoinPool.shutdown();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedD
 import com.grassnext.grassnextserver.topodata.topodetector.TopoDetector;
 import com.grassnext.grassnextserver.topodata.topodetector.TopoDetectorRepository;
 import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
 import com.grassnext.grassnextserver.weather.Weather;
 import com.grassnext.grassnextserver.weather.WeatherRepository;
 import lombok.Data;
@@ -17,7 +18,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service class responsible for managing Gaussian plume parameters and generating
@@ -77,7 +81,7 @@ public class GaussianParametersService {
      *
      * @param measurementData the data object containing measurement-related information including
      *                        detector ID, date, time, selected vehicles, pollution type,
-     *                        weather stability, and area specifications
+     *                        weather stability, area specifications and the source model
      * @return a JSON string representing the constructed Gaussian Plume model including details
      *         about wind parameters, road geometry, vehicle information, and pollution thresholds
      * @throws JsonProcessingException if the Gaussian Plume object cannot be serialized into JSON
@@ -89,6 +93,11 @@ public class GaussianParametersService {
         }
         LocationData locationData = topoDetector.getLocationData();
 
+        SourceModelEnum sourceModel = SourceModelEnum.getByValue(measurementData.getSourceModel());
+        if(sourceModel == null) {
+            return Consts.INCORRECT_DATA_HEADER + "Unknown source model!";
+        }
+
         Weather weather = weatherRepository.findWeatherByMeasurementDateAndMeasurementHourAndLongitudeAndLatitude(
                 measurementData.getDate(),
                 measurementData.getTime(),
@@ -108,6 +117,130 @@ public class GaussianParametersService {
             return Consts.INCORRECT_DATA_HEADER + "No vehicle data found for chosen date!";
         }
 
+        return jsonMapper.writeValueAsString(createGaussianPlume(measurementData, locationData, weather, topoData, sourceModel));
+    }
+
+    /**
+     * Generates the Gaussian Plume models of the chosen hours of the measurement date. The detector, its location
+     * and road geometry are read once, and the weather and the aggregated vehicle data of the whole day are read
+     * with a single query each, instead of once per hour.
+     *
+     * @param measurementData the data object containing measurement-related information including
+     *                        detector ID, date, selected vehicles, pollution type, weather stability,
+     *                        area specifications and the source model; the hour is not used
+     * @param hours the hours of the day (1-24) for which the models are generated
+     * @return a map of the hours to the JSON strings representing the constructed Gaussian Plume models,
+     *         or to the error messages prefixed with {@link Consts#INCORRECT_DATA_HEADER} if the data of the hour is missing
+     * @throws JsonProcessingException if a Gaussian Plume object cannot be serialized into JSON
+     */
+    public Map<Integer, String> getGaussianPlumeDay(MeasurementData measurementData, List<Integer> hours) throws JsonProcessingException {
+        Map<Integer, String> gaussianPlumes = new LinkedHashMap<>();
+
+        TopoDetector topoDetector = topoDetectorRepository.findTopoDetectorById(measurementData.getDetectorId());
+        if(topoDetector == null) {
+            hours.forEach(hour -> gaussianPlumes.put(hour, Consts.INCORRECT_DATA_HEADER + "Detector not found!"));
+            return gaussianPlumes;
+        }
+        LocationData locationData = topoDetector.getLocationData();
+
+        SourceModelEnum sourceModel = SourceModelEnum.getByValue(measurementData.getSourceModel());
+        if(sourceModel == null) {
+            hours.forEach(hour -> gaussianPlumes.put(hour, Consts.INCORRECT_DATA_HEADER + "Unknown source model!"));
+            return gaussianPlumes;
+        }
+
+        Map<Integer, Weather> weatherDay = new HashMap<>();
+        for(Weather weather : weatherRepository.findWeatherByMeasurementDateAndLongitudeAndLatitude(
+                measurementData.getDate(),
+                topoDetector.getTopoLocation().getLongitude(),
+                topoDetector.getTopoLocation().getLatitude()
+        )) {
+            weatherDay.putIfAbsent(weather.getMeasurementHour(), weather);
+        }
+
+        Map<Integer, List<TopoAggregatedData>> topoDataDay = new HashMap<>();
+        for(TopoAggregatedData topoVehicle : topoAggregatedDataRepository.findTopoAggregatedDataDay(topoDetector, measurementData.getDate())) {
+            topoDataDay.computeIfAbsent(topoVehicle.getMeasurementHour(), hour -> new ArrayList<>()).add(topoVehicle);
+        }
+
+        for(int hour : hours) {
+            Weather weather = weatherDay.get(hour);
+            List<TopoAggregatedData> topoData = topoDataDay.get(hour);
+            if(weather == null) {
+                gaussianPlumes.put(hour, Consts.INCORRECT_DATA_HEADER + "No weather data found for chosen date!");
+            } else if(topoData == null) {
+                gaussianPlumes.put(hour, Consts.INCORRECT_DATA_HEADER + "No vehicle data found for chosen date!");
+            } else {
+                gaussianPlumes.put(hour, jsonMapper.writeValueAsString(createGaussianPlume(measurementData, locationData, weather, topoData, sourceModel)));
+            }
+        }
+
+        return gaussianPlumes;
+    }
+
+    /**
+     * Generates the Gaussian Plume models of the roads of several detectors for the same date and hour.
+     * The weather and the aggregated vehicle data of all the detectors are read with a single query each.
+     * The detectors without the weather or vehicle data of the hour, or without the chosen vehicle groups, are skipped.
+     *
+     * @param topoDetectors the detectors whose roads are modelled
+     * @param measurementData the data object containing the date, time, selected vehicles, pollution type
+     *                        and weather stability; the detector, area and source model are not used
+     * @param sourceModel the source model of the calculation
+     * @return the Gaussian Plume models of the detectors having all the required data
+     */
+    public List<GaussianPlume> getGaussianPlumes(List<TopoDetector> topoDetectors, MeasurementData measurementData, SourceModelEnum sourceModel) {
+        List<GaussianPlume> gaussianPlumes = new ArrayList<>();
+        if(topoDetectors.isEmpty()) {
+            return gaussianPlumes;
+        }
+
+        List<Weather> weatherHour = weatherRepository.findWeatherByMeasurementDateAndMeasurementHour(
+                measurementData.getDate(),
+                measurementData.getTime()
+        );
+
+        Map<Long, List<TopoAggregatedData>> topoDataDetectors = new HashMap<>();
+        for(TopoAggregatedData topoVehicle : topoAggregatedDataRepository.findTopoAggregatedDataDetectors(topoDetectors, measurementData.getDate(), measurementData.getTime())) {
+            topoDataDetectors.computeIfAbsent(topoVehicle.getDetectorId().getId(), id -> new ArrayList<>()).add(topoVehicle);
+        }
+
+        int maxVehicleIdx = measurementData.getVehicles().stream().mapToInt(Integer::intValue).max().orElse(0);
+        for(TopoDetector topoDetector : topoDetectors) {
+            Weather weather = weatherHour.stream()
+                    .filter(w -> w.getLongitude() == topoDetector.getTopoLocation().getLongitude() && w.getLatitude() == topoDetector.getTopoLocation().getLatitude())
+                    .findFirst()
+                    .orElse(null);
+            List<TopoAggregatedData> topoData = topoDataDetectors.get(topoDetector.getId());
+            if(weather == null || topoData == null || topoData.size() < maxVehicleIdx) {
+                continue;
+            }
+
+            gaussianPlumes.add(createGaussianPlume(measurementData, topoDetector.getLocationData(), weather, topoData, sourceModel));
+        }
+
+        return gaussianPlumes;
+    }
+
+    /**
+     * Creates the Gaussian Plume model of a single hour from the already read location, weather and vehicle data.
+     *
+     * @param measurementData the data object containing the selected vehicles, pollution type,
+     *                        weather stability and area specifications
+     * @param locationData the location data providing the road geometry
+     * @param weather the weather of the hour providing the wind parameters
+     * @param topoData the aggregated vehicle data of the hour ordered by the vehicle group
+     * @param sourceModel the source model of the calculation
+     * @return the Gaussian Plume model including details about wind parameters, road geometry,
+     *         vehicle information, and pollution thresholds
+     */
+    GaussianPlume createGaussianPlume(
+            MeasurementData measurementData,
+            LocationData locationData,
+            Weather weather,
+            List<TopoAggregatedData> topoData,
+            SourceModelEnum sourceModel
+    ) {
         List<GaussianPlume.Vehicle> vehicleList = new ArrayList<>();
         for(int v = 0; v < topoData.size(); v++) {
             TopoAggregatedData topoVehicle = topoData.get(v);
@@ -120,7 +253,7 @@ public class GaussianParametersService {
 
         // Latitude:  53° 24' 59.99" N
         // Longitude: 14° 34' 59.99" E
-        GaussianPlume gaussianPlume = GaussianPlume.GaussianPlumeBuilder()
+        return GaussianPlume.GaussianPlumeBuilder()
                 .vehicles(vehicleList)
                 .wind(new GaussianPlume.Wind(weather.getWindSpeed(), weather.getWindDirection(), measurementData.getWeatherStability()))
                 .roadStart(new GaussianPlume.GpsPoint(locationData.getStartNode().getLongitude(), locationData.getStartNode().getLatitude()))
@@ -132,8 +265,7 @@ public class GaussianParametersService {
                 .matrixSize(measurementData.getArea())
                 .cellResolution(Consts.CELL_RESOLUTION)
                 .divMatrixSide(Consts.DIVISOR_MATRIX_SIDE)
+                .sourceModel(sourceModel.get())
                 .build();
-
-        return jsonMapper.writeValueAsString(gaussianPlume);
     }
 }
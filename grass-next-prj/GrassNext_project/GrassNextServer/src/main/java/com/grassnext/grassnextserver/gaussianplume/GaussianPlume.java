@@ -3,6 +3,7 @@ package com.grassnext.grassnextserver.gaussianplume;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
@@ -12,12 +13,15 @@ import java.util.List;
  */
 @Data
 @Builder(builderMethodName = "GaussianPlumeBuilder")
+@NoArgsConstructor
+@AllArgsConstructor
 public class GaussianPlume {
     /**
      * Inner class representing singular point on the map.
      *
      */
     @Data
+    @NoArgsConstructor
     @AllArgsConstructor
     public static class GpsPoint {
         /**
@@ -36,6 +40,7 @@ public class GaussianPlume {
      *
      */
     @Data
+    @NoArgsConstructor
     @AllArgsConstructor
     public static class Wind {
         /**
@@ -65,6 +70,7 @@ public class GaussianPlume {
      *
      */
     @Data
+    @NoArgsConstructor
     @AllArgsConstructor
     public static class Vehicle {
         /**
@@ -145,4 +151,11 @@ public class GaussianPlume {
      *
      */
     public int divMatrixSide; //8
+
+    /**
+     * Represents the model of the road emission: point emitters or the analytic finite line source.
+     * The native library always uses the point emitters.
+     *
+     */
+    public String sourceModel; //point, line
 }
\ No newline at end of file
@@ -1,16 +1,29 @@
 package com.grassnext.grassnextserver.gaussianplume;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.grassnext.grassnextserver.common.CityMeasurementData;
+import com.grassnext.grassnextserver.common.Concentrations;
 import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.DayContours;
+import com.grassnext.grassnextserver.common.DayMeasurementData;
 import com.grassnext.grassnextserver.common.MeasurementData;
-import com.grassnext.grassnextserver.jni.GrassNextJni;
+import com.grassnext.grassnextserver.common.ReceptorData;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.GridArena;
 import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.ContourEncodingEnum;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import static com.grassnext.grassnextserver.gaussianplume.GaussianParametersService.jsonMapper;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller for handling requests related to Gaussian Plume calculations.
@@ -22,58 +35,358 @@ import static com.grassnext.grassnextserver.gaussianplume.GaussianParametersServ
 public class GaussianPlumeController {
 
     /**
-     * Service instance for managing and providing Gaussian parameter data for plume dispersion calculations.
+     * Service calculating the pollution contours for the measurement data.
      *
      */
-    GaussianParametersService gaussianParametersService;
+    GaussianPlumeService gaussianPlumeService;
+    /**
+     * Executor limiting the number of concurrent calculations and rejecting the requests above the limit.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * Cache of the contours calculated for the measurement data.
+     *
+     */
+    ContourCache contourCache;
+    /**
+     * Encoder simplifying the contours and converting them into the requested format.
+     *
+     */
+    ContourEncoder contourEncoder;
+    /**
+     * Pool of the matrices and binary images used by the pure Java engine.
+     *
+     */
+    GridArena gridArena;
+    /**
+     * Service calculating the concentration at the receptor points.
+     *
+     */
+    ReceptorService receptorService;
+    /**
+     * Service calculating the combined contours of all the detectors of a town or a bounding box.
+     *
+     */
+    CityPlumeService cityPlumeService;
+    /**
+     * Service streaming the pollution contours progressively as Server-Sent Events.
+     *
+     */
+    ContourStreamService contourStreamService;
 
     /**
-     * Constructs a GaussianPlumeController and initializes the GaussianParametersService.
+     * Constructs a GaussianPlumeController and initializes the GaussianPlumeService.
      *
-     * @param gaussianParametersService the service responsible for managing and providing
-     *                                  Gaussian parameter data for plume dispersion calculations
+     * @param gaussianPlumeService the service calculating the pollution contours for the measurement data
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param contourCache the cache of the contours calculated for the measurement data
+     * @param contourEncoder the encoder simplifying the contours and converting them into the requested format
+     * @param gridArena the pool of the matrices and binary images used by the pure Java engine
+     * @param receptorService the service calculating the concentration at the receptor points
+     * @param cityPlumeService the service calculating the combined contours of the detectors of a town
+     * @param contourStreamService the service streaming the contours progressively as Server-Sent Events
      */
     @Autowired
     GaussianPlumeController(
-            GaussianParametersService gaussianParametersService
+            GaussianPlumeService gaussianPlumeService,
+            CalculationExecutor calculationExecutor,
+            ContourCache contourCache,
+            ContourEncoder contourEncoder,
+            GridArena gridArena,
+            ReceptorService receptorService,
+            CityPlumeService cityPlumeService,
+            ContourStreamService contourStreamService
     ) {
-        this.gaussianParametersService = gaussianParametersService;
+        this.gaussianPlumeService = gaussianPlumeService;
+        this.calculationExecutor = calculationExecutor;
+        this.contourCache = contourCache;
+        this.contourEncoder = contourEncoder;
+        this.gridArena = gridArena;
+        this.receptorService = receptorService;
+        this.cityPlumeService = cityPlumeService;
+        this.contourStreamService = contourStreamService;
     }
 
     /**
      * Handles the calculation of pollution contours based on the provided measurement data.
+     * The contours already calculated for the same measurement data are returned from the contour cache,
+     * and identical requests arriving during the calculation wait for its result.
+     * The calculation stops when the calculation deadline expires.
      *
      * @param measurementData the measurement data containing the necessary parameters
      *                        for pollution calculation, such as emissions and environmental data.
+     * @param tolerance the optional contour simplification tolerance in meters, overriding the configured one
+     * @param encoding the format of the contour points: {@code json} (default) or {@code polyline}
+     * @param timeout the optional calculation deadline in seconds, shorter than the configured one
      * @return a response entity containing the computed pollution contours if the calculation
      *         is successful. Returns a bad request response with an error message if the
-     *         measurement data is invalid, leads to an error during computation, or if the pollution
-     *         level is below the measurable range.
-     * @throws JsonProcessingException if there is an error during JSON parsing.
+     *         measurement data is invalid, leads to an error during computation, if the pollution
+     *         level is below the measurable range or if the encoding is unknown. Returns a too many
+     *         requests response with the Retry-After header if the calculation queue is full
+     *         or the calculation is not expected to complete before the deadline,
+     *         and a service unavailable response if the calculation deadline expires.
      *
      */
     @PostMapping(value = "measurement")
     @ResponseBody
-    public ResponseEntity<Contours> calculatePollution(@RequestBody MeasurementData measurementData) throws JsonProcessingException {
-        String jsonData = gaussianParametersService.getGaussianPlume(measurementData);
+    public ResponseEntity<Contours> calculatePollution(
+            @RequestBody MeasurementData measurementData,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(defaultValue = "json") String encoding,
+            @RequestParam(required = false) Long timeout
+    ) {
+        ContourEncodingEnum contourEncoding = ContourEncodingEnum.getByValue(encoding);
+        if (contourEncoding == null) {
+            return ResponseEntity.badRequest().body(new Contours(true, "Unknown contour encoding!", -1, null));
+        }
+
+        CancellationToken cancellation = calculationExecutor.createCancellation(timeout);
+        Contours contours;
+        try {
+            contours = gaussianPlumeService.calculateContours(measurementData, cancellation);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (CancellationException e) {
+            return deadlineExceeded(cancellation);
+        }
+
+        if (contours.isError()) {
+            return ResponseEntity.badRequest().body(contours);
+        }
+
+        return ResponseEntity.ok(contourEncoder.encode(contours, tolerance, contourEncoding));
+    }
+
+    /**
+     * Handles the progressive calculation of pollution contours based on the provided measurement data,
+     * streamed as Server-Sent Events. The {@code coarse} event carries the preview contours calculated
+     * on a coarse grid, the {@code contours} event the contours at the full cell resolution, and the
+     * {@code error} event the contours with the error flag and message. The calculation is cancelled
+     * when the client disconnects. The emitter is declared as the body type of the response entity,
+     * otherwise it would be serialized as JSON, so the refused streams are answered without a body.
+     *
+     * @param measurementData the measurement data containing the necessary parameters
+     *                        for pollution calculation, such as emissions and environmental data.
+     * @param tolerance the optional contour simplification tolerance in meters, overriding the configured one
+     * @param encoding the format of the contour points: {@code json} (default) or {@code polyline}
+     * @param timeout the optional calculation deadline in seconds, shorter than the configured one
+     * @return a response entity containing the event stream. Returns a bad request response if the encoding
+     *         is unknown, and a too many requests response with the Retry-After header if the maximum number
+     *         of streams is being served.
+     *
+     */
+    @PostMapping(value = "measurement/stream")
+    @ResponseBody
+    public ResponseEntity<SseEmitter> streamPollution(
+            @RequestBody MeasurementData measurementData,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(defaultValue = "json") String encoding,
+            @RequestParam(required = false) Long timeout
+    ) {
+        ContourEncodingEnum contourEncoding = ContourEncodingEnum.getByValue(encoding);
+        if (contourEncoding == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        if(jsonData.contains(Consts.INCORRECT_DATA_HEADER)) {
-            return ResponseEntity.badRequest().body(new Contours(true, jsonData.substring(Consts.INCORRECT_DATA_HEADER.length()), -1, null));
+        try {
+            return ResponseEntity.ok(contourStreamService.stream(measurementData, tolerance, contourEncoding, timeout));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(calculationExecutor.getRetryAfter()))
+                    .build();
         }
+    }
 
-        String jsonContours = GrassNextJni.gnExecuteCount(jsonData);
+    /**
+     * Handles the calculation of the pollution contours of several hours of a single measurement date.
+     * The hours are calculated in parallel as one batch; each hour is reported with its own contours
+     * or error, including the hours rejected because the calculation queue is full and the hours
+     * not calculated before the calculation deadline expired.
+     *
+     * @param dayMeasurementData the measurement data and the hours of the day (all the hours if missing)
+     * @param tolerance the optional contour simplification tolerance in meters, overriding the configured one
+     * @param encoding the format of the contour points: {@code json} (default) or {@code polyline}
+     * @param timeout the optional calculation deadline in seconds, shorter than the configured one granted
+     *                to each round of the hours calculated at once
+     * @return a response entity containing the contours of each hour. Returns a bad request response
+     *         with an error message if the measurement data is missing, the hours are invalid
+     *         or the encoding is unknown.
+     *
+     */
+    @PostMapping(value = "day")
+    @ResponseBody
+    public ResponseEntity<DayContours> calculateDayPollution(
+            @RequestBody DayMeasurementData dayMeasurementData,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(defaultValue = "json") String encoding,
+            @RequestParam(required = false) Long timeout
+    ) {
+        ContourEncodingEnum contourEncoding = ContourEncodingEnum.getByValue(encoding);
+        if (contourEncoding == null) {
+            return ResponseEntity.badRequest().body(new DayContours(true, "Unknown contour encoding!", -1, null));
+        }
+        if (dayMeasurementData.getMeasurement() == null) {
+            return ResponseEntity.badRequest().body(new DayContours(true, "Measurement data missing!", -1, null));
+        }
 
-        if (jsonContours == null) {
-            return ResponseEntity.badRequest().body(new Contours(true, "Measurement error!", -1, null));
-        } else {
-            Contours c = jsonMapper.readValue(jsonContours, Contours.class);
-            for(Contours.Contour contour : c.getContours() ) {
-                if (contour.getPoints().isEmpty()) {
-                    return ResponseEntity.badRequest().body(new Contours(true, "Pollution level below the measured range!", -1, null));
-                }
-            }
+        List<Integer> hours = dayMeasurementData.getHours();
+        int calculations = hours == null || hours.isEmpty() ? Consts.TOPO_HOURS : (int) hours.stream().distinct().count();
+        CancellationToken cancellation = calculationExecutor.createCancellation(timeout, calculations);
+        DayContours dayContours = gaussianPlumeService.calculateDayContours(
+                dayMeasurementData.getMeasurement(), dayMeasurementData.getHours(), cancellation);
+        if (dayContours.isError()) {
+            return ResponseEntity.badRequest().body(dayContours);
+        }
 
-            return ResponseEntity.ok(jsonMapper.readValue(jsonContours, Contours.class));
+        for (DayContours.HourContours hourContours : dayContours.getHours()) {
+            hourContours.setContours(contourEncoder.encode(hourContours.getContours(), tolerance, contourEncoding));
         }
+
+        return ResponseEntity.ok(dayContours);
+    }
+
+    /**
+     * Handles the calculation of the combined pollution contours of all the detectors of a town or a bounding box.
+     * The roads of the detectors are superposed on one matrix and the contours of the combined field are returned,
+     * possibly several separate contours for each threshold. The calculation stops when the calculation deadline expires.
+     *
+     * @param cityMeasurementData the measurement data and the town or the bounding box of the detectors
+     * @param tolerance the optional contour simplification tolerance in meters, overriding the configured one
+     * @param encoding the format of the contour points: {@code json} (default) or {@code polyline}
+     * @param timeout the optional calculation deadline in seconds, shorter than the configured one
+     * @return a response entity containing the computed pollution contours if the calculation
+     *         is successful. Returns a bad request response with an error message if the request is invalid,
+     *         no detector has the data of the chosen date, the area is too large, the pollution level
+     *         is below the measurable range or the encoding is unknown. Returns a too many requests response
+     *         with the Retry-After header if the calculation queue is full or the calculation is not expected
+     *         to complete before the deadline, and a service unavailable response
+     *         if the calculation deadline expires.
+     *
+     */
+    @PostMapping(value = "city")
+    @ResponseBody
+    public ResponseEntity<Contours> calculateCityPollution(
+            @RequestBody CityMeasurementData cityMeasurementData,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(defaultValue = "json") String encoding,
+            @RequestParam(required = false) Long timeout
+    ) {
+        ContourEncodingEnum contourEncoding = ContourEncodingEnum.getByValue(encoding);
+        if (contourEncoding == null) {
+            return ResponseEntity.badRequest().body(new Contours(true, "Unknown contour encoding!", -1, null));
+        }
+
+        CancellationToken cancellation = calculationExecutor.createCancellation(timeout);
+        Contours contours;
+        try {
+            contours = cityPlumeService.calculateContours(cityMeasurementData, cancellation);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (CancellationException e) {
+            return deadlineExceeded(cancellation);
+        }
+
+        if (contours.isError()) {
+            return ResponseEntity.badRequest().body(contours);
+        }
+
+        return ResponseEntity.ok(contourEncoder.encode(contours, tolerance, contourEncoding));
+    }
+
+    /**
+     * Handles the calculation of the air pollution concentration at the receptor points, such as schools
+     * or air quality stations near the detector, without calculating the whole matrix.
+     *
+     * The calculation stops when the calculation deadline expires.
+     *
+     * @param receptorData the measurement data and the GPS coordinates of the receptor points
+     * @param timeout the optional calculation deadline in seconds, shorter than the configured one
+     * @return a response entity containing the concentrations at the receptor points if the calculation
+     *         is successful. Returns a bad request response with an error message if the request
+     *         or the measurement data is invalid or leads to an error during computation. Returns a too many
+     *         requests response with the Retry-After header if the calculation queue is full or the calculation
+     *         is not expected to complete before the deadline, and a service unavailable response
+     *         if the calculation deadline expires.
+     *
+     */
+    @PostMapping(value = "receptors")
+    @ResponseBody
+    public ResponseEntity<Concentrations> calculateReceptors(
+            @RequestBody ReceptorData receptorData,
+            @RequestParam(required = false) Long timeout
+    ) {
+        CancellationToken cancellation = calculationExecutor.createCancellation(timeout);
+        Concentrations concentrations;
+        try {
+            concentrations = receptorService.calculateConcentrations(receptorData, cancellation);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(calculationExecutor.getRetryAfter()))
+                    .body(new Concentrations(true, "Too many calculations in progress! Try again later.", -1, null));
+        } catch (CancellationException e) {
+            String msg = GaussianPlumeService.cancelledContours(cancellation).getMsg();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new Concentrations(true, msg, -1, null));
+        }
+        if (concentrations.isError()) {
+            return ResponseEntity.badRequest().body(concentrations);
+        }
+
+        return ResponseEntity.ok(concentrations);
+    }
+
+    /**
+     * Returns the statistics of the contour cache.
+     *
+     * @return a response entity containing the number of cache hits, misses, evictions, invalidations and entries
+     */
+    @GetMapping(value = "cache-statistics")
+    @ResponseBody
+    public ResponseEntity<ContourCache.Statistics> getCacheStatistics() {
+        return ResponseEntity.ok(contourCache.getStatistics());
+    }
+
+    /**
+     * Returns the statistics of the calculations.
+     *
+     * @return a response entity containing the number of admitted and queued calculations, the slot and queue limits,
+     *         the number of coalesced requests and the usage of the grid arena
+     */
+    @GetMapping(value = "calculation-statistics")
+    @ResponseBody
+    public ResponseEntity<CalculationStatistics> getCalculationStatistics() {
+        return ResponseEntity.ok(CalculationStatistics.builder()
+                .admittedCalculations(calculationExecutor.getAdmitted())
+                .maxInFlight(calculationExecutor.getMaxInFlight())
+                .bulkSlots(calculationExecutor.getBulkSlots())
+                .queueSize(calculationExecutor.getQueueSize())
+                .batchQueueSize(calculationExecutor.getBatchQueueSize())
+                .queuedInteractive(calculationExecutor.getQueued(CalculationLaneEnum.INTERACTIVE))
+                .queuedBatch(calculationExecutor.getQueued(CalculationLaneEnum.BATCH))
+                .coalescedRequests(gaussianPlumeService.getCoalescedRequests())
+                .gridArena(gridArena.getStatistics())
+                .build());
+    }
+
+    /**
+     * Creates the response returned when the calculation queue is full or the calculation is not expected
+     * to complete before the deadline.
+     *
+     * @return a too many requests response with the Retry-After header
+     */
+    ResponseEntity<Contours> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(calculationExecutor.getRetryAfter()))
+                .body(new Contours(true, "Too many calculations in progress! Try again later.", -1, null));
+    }
+
+    /**
+     * Creates the response returned when the calculation has been stopped by its cancellation token.
+     *
+     * @param cancellation the cancellation token of the calculation
+     * @return a service unavailable response describing why the calculation stopped
+     */
+    ResponseEntity<Contours> deadlineExceeded(CancellationToken cancellation) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(GaussianPlumeService.cancelledContours(cancellation));
     }
 }
@@ -0,0 +1,398 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.DayContours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.concurrent.SingleFlight;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+import static com.grassnext.grassnextserver.gaussianplume.GaussianParametersService.jsonMapper;
+
+/**
+ * Service class responsible for calculating the pollution contours for the measurement data.
+ * It reads the Gaussian Plume parameters, runs the dispersion engine within the cost budget of the calculation
+ * executor, in the interactive lane for the client requests and in the batch lane for the jobs and whole days, caches the results and coalesces the concurrent calculations of the same measurement data.
+ * The calculations stop when their cancellation token is cancelled or its deadline expires, unless another
+ * request coalesced into the same calculation still waits for it.
+ *
+ */
+@Service
+public class GaussianPlumeService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the GaussianPlumeService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(GaussianPlumeService.class);
+
+    /**
+     * Service instance for managing and providing Gaussian parameter data for plume dispersion calculations.
+     *
+     */
+    GaussianParametersService gaussianParametersService;
+    /**
+     * Engine performing the Gaussian Plume dispersion calculations, selected through the {@code gn.engine} property.
+     *
+     */
+    DispersionEngine dispersionEngine;
+    /**
+     * Executor limiting the number of concurrent calculations and rejecting the requests above the limit.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * Cache of the contours calculated for the measurement data.
+     *
+     */
+    ContourCache contourCache;
+    /**
+     * Coalesces the concurrent calculations of the same canonical measurement data.
+     *
+     */
+    final SingleFlight<MeasurementData, Contours> singleFlight = new SingleFlight<>();
+    /**
+     * Executor running the hours of the day calculations in parallel. It has as many threads as the calculations
+     * admitted at the same time, since the calculations themselves are limited by the calculation executor.
+     *
+     */
+    private final ExecutorService dayExecutor;
+
+    /**
+     * Constructs a GaussianPlumeService instance and initializes the required services.
+     *
+     * @param gaussianParametersService the service responsible for managing and providing
+     *                                  Gaussian parameter data for plume dispersion calculations
+     * @param dispersionEngine the engine performing the plume dispersion calculations
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param contourCache the cache of the contours calculated for the measurement data
+     */
+    @Autowired
+    public GaussianPlumeService(
+            GaussianParametersService gaussianParametersService,
+            DispersionEngine dispersionEngine,
+            CalculationExecutor calculationExecutor,
+            ContourCache contourCache
+    ) {
+        this.gaussianParametersService = gaussianParametersService;
+        this.dispersionEngine = dispersionEngine;
+        this.calculationExecutor = calculationExecutor;
+        this.contourCache = contourCache;
+        this.dayExecutor = Executors.newFixedThreadPool(calculationExecutor.getMaxInFlight());
+    }
+
+    /**
+     * Calculates the pollution contours for the measurement data. The contours already calculated for
+     * the same measurement data are returned from the contour cache, and the concurrent requests for
+     * the same measurement data share a single calculation.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @return the calculated contours, or contours with the error flag and message if the measurement data
+     *         is invalid, the calculation failed or the pollution level is below the measurable range
+     * @throws RejectedExecutionException if the calculation queue is full
+     */
+    public Contours calculateContours(MeasurementData measurementData) {
+        return calculateContours(measurementData, CancellationToken.NONE);
+    }
+
+    /**
+     * Calculates the pollution contours for the measurement data, stopping when the cancellation token
+     * is cancelled or its deadline expires. The calculation shared with other requests goes on
+     * as long as any of them is not cancelled.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @param cancellation the cancellation token of the request
+     * @return the calculated contours, or contours with the error flag and message if the measurement data
+     *         is invalid, the calculation failed or the pollution level is below the measurable range
+     * @throws RejectedExecutionException if the calculation queue is full
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    public Contours calculateContours(MeasurementData measurementData, CancellationToken cancellation) {
+        return calculateContours(measurementData, CalculationLaneEnum.INTERACTIVE, cancellation);
+    }
+
+    /**
+     * Calculates the pollution contours for the measurement data in the given lane of the calculation executor,
+     * stopping when the cancellation token is cancelled or its deadline expires. The calculation shared with
+     * other requests waits in the lane of the request which started it.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @param lane the lane in which the calculation waits for execution
+     * @param cancellation the cancellation token of the request
+     * @return the calculated contours, or contours with the error flag and message if the measurement data
+     *         is invalid, the calculation failed or the pollution level is below the measurable range
+     * @throws RejectedExecutionException if the calculation queue is full or the calculation is not expected
+     *                                    to complete before the deadline
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    public Contours calculateContours(MeasurementData measurementData, CalculationLaneEnum lane, CancellationToken cancellation) {
+        MeasurementData cacheKey = ContourCache.canonicalize(measurementData);
+
+        Contours contours = contourCache.get(cacheKey);
+        if (contours == null) {
+            contours = singleFlight.execute(cacheKey, cancellation, flightCancellation -> {
+                Contours cached = contourCache.get(cacheKey);
+                return cached != null ? cached : calculate(cacheKey, lane, flightCancellation);
+            });
+        }
+
+        return checkMeasuredRange(contours);
+    }
+
+    /**
+     * Calculates the pollution contours of the chosen hours of the measurement date as a single batch.
+     * The contours of the hours found in the contour cache are returned from it. The Gaussian Plume parameters
+     * of the remaining hours are read together, sharing the detector and road geometry and reading the weather
+     * and the vehicle data of the whole day at once, and the hours are then calculated in parallel within
+     * the concurrency limits of the calculation executor.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation;
+     *                        the hour is not used
+     * @param hours the hours of the day (1-24), or null or empty for all the hours of the day
+     * @param cancellation the cancellation token of the request
+     * @return the contours of each hour in the order of the request, in which the hours that could not be calculated
+     *         have the error flag and message, or day contours with the error flag and message if the hours are invalid
+     */
+    public DayContours calculateDayContours(MeasurementData measurementData, List<Integer> hours, CancellationToken cancellation) {
+        List<Integer> dayHours = hours == null || hours.isEmpty()
+                ? IntStream.rangeClosed(1, Consts.TOPO_HOURS).boxed().toList()
+                : hours.stream().distinct().toList();
+        for (Integer hour : dayHours) {
+            if (hour == null || hour < 1 || hour > Consts.TOPO_HOURS) {
+                return new DayContours(true, "Incorrect hour!", -1, null);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<Integer, MeasurementData> cacheKeys = new LinkedHashMap<>();
+        Map<Integer, Contours> hourContours = new HashMap<>();
+        for (int hour : dayHours) {
+            MeasurementData cacheKey = ContourCache.canonicalize(measurementData);
+            cacheKey.setTime(hour);
+            cacheKeys.put(hour, cacheKey);
+
+            Contours cached = contourCache.get(cacheKey);
+            if (cached != null) {
+                hourContours.put(hour, cached);
+            }
+        }
+
+        List<Integer> missingHours = dayHours.stream().filter(hour -> !hourContours.containsKey(hour)).toList();
+        if (!missingHours.isEmpty()) {
+            hourContours.putAll(calculateHours(cacheKeys, missingHours, cancellation));
+        }
+
+        List<DayContours.HourContours> dayContours = new ArrayList<>();
+        for (int hour : dayHours) {
+            dayContours.add(new DayContours.HourContours(hour, checkMeasuredRange(hourContours.get(hour))));
+        }
+        double duration = (System.nanoTime() - start) / 1.0E9;
+
+        return new DayContours(false, "success", duration, dayContours);
+    }
+
+    /**
+     * Reads the Gaussian Plume parameters of the hours missing from the contour cache in a single batch
+     * and calculates them in parallel in the batch lane. The concurrent requests for the same hour share a single calculation.
+     *
+     * @param cacheKeys the canonical measurement data of each hour
+     * @param hours the hours to calculate
+     * @param cancellation the cancellation token of the request
+     * @return the calculated contours of each hour, or contours with the error flag and message
+     *         if the calculation of the hour failed, was rejected by the calculation executor or was cancelled
+     */
+    Map<Integer, Contours> calculateHours(Map<Integer, MeasurementData> cacheKeys, List<Integer> hours, CancellationToken cancellation) {
+        Map<Integer, Contours> hourContours = new HashMap<>();
+        MeasurementData measurementData = cacheKeys.get(hours.get(0));
+        long cacheGeneration = contourCache.getGeneration();
+
+        SourceModelEnum sourceModel = SourceModelEnum.getByValue(measurementData.getSourceModel());
+        if (sourceModel != null && !dispersionEngine.supports(sourceModel)) {
+            hours.forEach(hour -> hourContours.put(hour, new Contours(true, "Source model not supported by the dispersion engine!", -1, null)));
+            return hourContours;
+        }
+
+        Map<Integer, String> jsonDataDay;
+        try {
+            jsonDataDay = gaussianParametersService.getGaussianPlumeDay(measurementData, hours);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            hours.forEach(hour -> hourContours.put(hour, new Contours(true, "Measurement error!", -1, null)));
+            return hourContours;
+        }
+
+        Map<Integer, Future<Contours>> futures = new LinkedHashMap<>();
+        for (int hour : hours) {
+            MeasurementData cacheKey = cacheKeys.get(hour);
+            futures.put(hour, dayExecutor.submit(() -> singleFlight.execute(cacheKey, cancellation, flightCancellation -> {
+                Contours cached = contourCache.get(cacheKey);
+                return cached != null ? cached : calculate(cacheKey, jsonDataDay.get(hour), cacheGeneration,
+                        CalculationLaneEnum.BATCH, flightCancellation);
+            })));
+        }
+
+        for (Map.Entry<Integer, Future<Contours>> future : futures.entrySet()) {
+            Contours contours;
+            try {
+                contours = future.getValue().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    contours = new Contours(true, "Too many calculations in progress! Try again later.", -1, null);
+                } else if (e.getCause() instanceof CancellationException) {
+                    contours = cancelledContours(cancellation);
+                } else {
+                    LOGGER.error("[LOGGER] Calculation of hour " + future.getKey() + " failed! " + e.getCause().getMessage());
+                    contours = new Contours(true, "Measurement error!", -1, null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(other -> other.cancel(true));
+                contours = new Contours(true, "Measurement error!", -1, null);
+            }
+            hourContours.put(future.getKey(), contours);
+        }
+
+        return hourContours;
+    }
+
+    /**
+     * Reads the Gaussian Plume parameters, runs the dispersion engine and stores the result in the contour cache.
+     *
+     * @param measurementData the canonical measurement data
+     * @param lane the lane in which the calculation waits for execution
+     * @param cancellation the cancellation token of the calculation
+     * @return the calculated contours, or contours with the error flag and message if the calculation failed
+     *         or the source model is not supported by the dispersion engine
+     * @throws RejectedExecutionException if the calculation queue is full or the calculation is not expected
+     *                                    to complete before the deadline
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    Contours calculate(MeasurementData measurementData, CalculationLaneEnum lane, CancellationToken cancellation) {
+        long cacheGeneration = contourCache.getGeneration();
+
+        SourceModelEnum sourceModel = SourceModelEnum.getByValue(measurementData.getSourceModel());
+        if (sourceModel != null && !dispersionEngine.supports(sourceModel)) {
+            return new Contours(true, "Source model not supported by the dispersion engine!", -1, null);
+        }
+
+        try {
+            return calculate(measurementData, gaussianParametersService.getGaussianPlume(measurementData), cacheGeneration, lane, cancellation);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            return new Contours(true, "Measurement error!", -1, null);
+        }
+    }
+
+    /**
+     * Runs the dispersion engine for the already read Gaussian Plume parameters and stores the result
+     * in the contour cache. The cost of the calculation passed to the calculation executor is estimated
+     * from the size of the matrix and the length of the road.
+     *
+     * @param measurementData the canonical measurement data
+     * @param jsonData the JSON string of the Gaussian Plume parameters, or the error message
+     *                 prefixed with {@link Consts#INCORRECT_DATA_HEADER}
+     * @param cacheGeneration the generation of the contour cache read before the parameters
+     * @param lane the lane in which the calculation waits for execution
+     * @param cancellation the cancellation token of the calculation
+     * @return the calculated contours, or contours with the error flag and message if the calculation failed
+     * @throws RejectedExecutionException if the calculation queue is full or the calculation is not expected
+     *                                    to complete before the deadline
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    Contours calculate(MeasurementData measurementData, String jsonData, long cacheGeneration,
+                       CalculationLaneEnum lane, CancellationToken cancellation) {
+        if(jsonData.contains(Consts.INCORRECT_DATA_HEADER)) {
+            return new Contours(true, jsonData.substring(Consts.INCORRECT_DATA_HEADER.length()), -1, null);
+        }
+
+        try {
+            long cost = CalculationExecutor.estimateCost(jsonMapper.readValue(jsonData, GaussianPlume.class));
+            String jsonContours = calculationExecutor.execute(() -> dispersionEngine.calculate(jsonData, cancellation), cost, lane, cancellation);
+            if (jsonContours == null) {
+                return new Contours(true, "Measurement error!", -1, null);
+            }
+
+            Contours contours = jsonMapper.readValue(jsonContours, Contours.class);
+            contourCache.put(measurementData, contours, cacheGeneration);
+
+            return contours;
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            return new Contours(true, "Measurement error!", -1, null);
+        }
+    }
+
+    /**
+     * Replaces the contours in which the pollution level does not reach the lowest threshold with an error.
+     *
+     * @param contours the calculated contours
+     * @return the contours, or contours with the error flag and message if the pollution level
+     *         is below the measurable range
+     */
+    Contours checkMeasuredRange(Contours contours) {
+        if (contours.isError()) {
+            return contours;
+        }
+
+        for(Contours.Contour contour : contours.getContours() ) {
+            if (contour.getPoints().isEmpty()) {
+                return new Contours(true, "Pollution level below the measured range!", -1, null);
+            }
+        }
+
+        return contours;
+    }
+
+    /**
+     * Creates the contours describing a calculation stopped by the cancellation token.
+     *
+     * @param cancellation the cancellation token of the calculation
+     * @return contours with the error flag and the message telling whether the deadline has expired
+     */
+    public static Contours cancelledContours(CancellationToken cancellation) {
+        return cancellation.isDeadlineExceeded()
+                ? new Contours(true, "Calculation deadline exceeded!", -1, null)
+                : new Contours(true, "Calculation cancelled!", -1, null);
+    }
+
+    /**
+     * Returns the number of requests which received the result of a calculation performed for another request.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        return singleFlight.getCoalesced();
+    }
+
+    /**
+     * Stops the executor of the day calculations when the application is shut down.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        dayExecutor.shutdownNow();
+    }
+}
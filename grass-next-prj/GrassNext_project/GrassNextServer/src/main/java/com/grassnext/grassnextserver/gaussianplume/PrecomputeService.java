@@ -0,0 +1,366 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.common.pollutiontype.PollutionType;
+import com.grassnext.grassnextserver.common.pollutiontype.PollutionTypeService;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class calculating in the background the contours most likely requested for newly imported topo data,
+ * so the first users opening an hour of the day are answered from the contour cache.
+ *
+ * After an import is committed, the contours of every hour of each imported date are calculated for every
+ * pollution type with the weather stability, area and vehicle groups given by the {@code gn.precompute.*} properties.
+ * The calculations run one at a time on a single low-priority thread in the batch lane of the calculation executor.
+ *
+ * Before each calculation the service waits until no interactive calculation is admitted and the system CPU load
+ * is below {@code gn.precompute.max_cpu}. An interactive calculation arriving meanwhile cancels the background
+ * calculation at once, unless a request is waiting for the same contours, and the cancelled calculation is
+ * repeated once the server is idle again. Unless {@code gn.precompute.enabled} is set, the precomputation is enabled
+ * only with an engine able to cancel a running calculation, since the calculations of the other engines would delay
+ * the interactive ones until they finish.
+ *
+ */
+@Service
+public class PrecomputeService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the PrecomputeService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrecomputeService.class);
+    /**
+     * The number of hours of a day, numbered from 1 in the topo aggregated data.
+     *
+     */
+    static final int HOURS = 24;
+
+    /**
+     * Service calculating and caching the contours.
+     *
+     */
+    private final GaussianPlumeService gaussianPlumeService;
+    /**
+     * Cache of the calculated contours, checked so the contours already cached are not calculated again.
+     *
+     */
+    private final ContourCache contourCache;
+    /**
+     * Executor whose admitted interactive calculations pre-empt the background calculations.
+     *
+     */
+    private final CalculationExecutor calculationExecutor;
+    /**
+     * Service providing the pollution types of the precomputed contours.
+     *
+     */
+    private final PollutionTypeService pollutionTypeService;
+    /**
+     * Flag indicating whether the background precomputation is enabled.
+     *
+     */
+    private final boolean enabled;
+    /**
+     * The weather stability class of the precomputed contours.
+     *
+     */
+    private final int weatherStability;
+    /**
+     * The area in meters of the precomputed contours.
+     *
+     */
+    private final int area;
+    /**
+     * The vehicle groups of the precomputed contours.
+     *
+     */
+    private final List<Integer> vehicles;
+    /**
+     * The system CPU load above which the background calculations wait.
+     *
+     */
+    private final double maxCpu;
+    /**
+     * The interval in milliseconds in which the waiting background calculations check whether the server is idle.
+     *
+     */
+    private final long idleCheck;
+    /**
+     * The single low-priority thread performing the precomputation of the imports one after another.
+     *
+     */
+    private final ExecutorService precomputeExecutor;
+    /**
+     * The cancellation token of the background calculation in progress, or null if none is running.
+     *
+     */
+    private volatile CancellationToken current;
+
+    /**
+     * Constructs a PrecomputeService using the precomputed combinations defined in the application properties.
+     *
+     * @param gaussianPlumeService the service calculating and caching the contours
+     * @param contourCache the cache of the calculated contours
+     * @param calculationExecutor the executor admitting the calculations
+     * @param pollutionTypeService the service providing the pollution types
+     * @param dispersionEngine the engine performing the calculations
+     * @param grassNextConfig the configuration providing the precomputed combinations and the idle limits
+     */
+    @Autowired
+    public PrecomputeService(
+            GaussianPlumeService gaussianPlumeService,
+            ContourCache contourCache,
+            CalculationExecutor calculationExecutor,
+            PollutionTypeService pollutionTypeService,
+            DispersionEngine dispersionEngine,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianPlumeService = gaussianPlumeService;
+        this.contourCache = contourCache;
+        this.calculationExecutor = calculationExecutor;
+        this.pollutionTypeService = pollutionTypeService;
+        Boolean precomputeEnabled = grassNextConfig.getPrecomputeEnabled();
+        this.enabled = (precomputeEnabled != null ? precomputeEnabled : dispersionEngine.isCancellable()) && contourCache.isEnabled();
+        this.weatherStability = grassNextConfig.getPrecomputeWeatherStability();
+        this.area = grassNextConfig.getPrecomputeArea();
+        this.vehicles = Arrays.stream(grassNextConfig.getPrecomputeVehicles()).boxed().toList();
+        this.maxCpu = grassNextConfig.getPrecomputeMaxCpu();
+        this.idleCheck = Math.max(1, grassNextConfig.getPrecomputeIdleCheck());
+        this.precomputeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "precompute");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        calculationExecutor.addInteractiveListener(this::preempt);
+
+        LOGGER.info("[LOGGER] Contour precomputation: " + (enabled ? "stability " + weatherStability + ", area " + area + " m, max CPU " + maxCpu : "disabled"));
+    }
+
+    /**
+     * Determines whether the background precomputation is enabled.
+     *
+     * @return true if the contours of the imported topo data are precomputed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedules the precomputation of the contours of the detector for the dates within the given range.
+     * If a transaction is active, the precomputation starts after its commit, so it reads the imported data.
+     *
+     * @param detectorId the identifier of the detector
+     * @param startDate the first date of the imported data
+     * @param endDate the last date of the imported data
+     */
+    public void schedule(long detectorId, LocalDate startDate, LocalDate endDate) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(detectorId, startDate, endDate);
+                }
+            });
+        } else {
+            submit(detectorId, startDate, endDate);
+        }
+    }
+
+    /**
+     * Queues the precomputation of the contours of the detector for the dates within the given range.
+     *
+     * @param detectorId the identifier of the detector
+     * @param startDate the first date of the imported data
+     * @param endDate the last date of the imported data
+     */
+    void submit(long detectorId, LocalDate startDate, LocalDate endDate) {
+        try {
+            precomputeExecutor.execute(() -> precompute(detectorId, startDate, endDate));
+        } catch (RejectedExecutionException e) {
+            LOGGER.info("[LOGGER] Contour precomputation of detector " + detectorId + " skipped, the server is shutting down");
+        }
+    }
+
+    /**
+     * Calculates the contours of the detector for the dates within the given range, waiting for the idle server
+     * before each calculation.
+     *
+     * @param detectorId the identifier of the detector
+     * @param startDate the first date of the imported data
+     * @param endDate the last date of the imported data
+     */
+    void precompute(long detectorId, LocalDate startDate, LocalDate endDate) {
+        List<MeasurementData> combinations = createCombinations(detectorId, startDate, endDate);
+        int calculated = 0;
+        int preempted = 0;
+        long start = System.currentTimeMillis();
+
+        for (MeasurementData measurementData : combinations) {
+            while (true) {
+                if (!awaitIdle()) {
+                    LOGGER.info("[LOGGER] Contour precomputation of detector " + detectorId + " interrupted");
+                    return;
+                }
+                if (contourCache.get(ContourCache.canonicalize(measurementData)) != null) {
+                    break;
+                }
+
+                CancellationToken cancellation = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+                current = cancellation;
+                try {
+                    // An interactive calculation admitted before the token was published did not cancel it
+                    if (calculationExecutor.getAdmitted(CalculationLaneEnum.INTERACTIVE) > 0) {
+                        continue;
+                    }
+                    Contours contours = gaussianPlumeService.calculateContours(measurementData, CalculationLaneEnum.BATCH, cancellation);
+                    if (!contours.isError()) {
+                        calculated++;
+                    }
+                    break;
+                } catch (CancellationException e) {
+                    preempted++;
+                } catch (RejectedExecutionException e) {
+                    // The batch queue is full, the calculation is repeated after the next idle check
+                    if (!sleep()) {
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.error("[LOGGER] Contour precomputation of " + measurementData + " failed", e);
+                    break;
+                } finally {
+                    current = null;
+                }
+            }
+        }
+
+        LOGGER.info("[LOGGER] Precomputed " + calculated + " of " + combinations.size() + " contours of detector " + detectorId
+                + " for " + startDate + " - " + endDate + " in " + (System.currentTimeMillis() - start) + " ms, pre-empted " + preempted + " times");
+    }
+
+    /**
+     * Creates the measurement data of the precomputed contours: every hour of each date within the given range
+     * for every pollution type.
+     *
+     * @param detectorId the identifier of the detector
+     * @param startDate the first date of the imported data
+     * @param endDate the last date of the imported data
+     * @return the measurement data of the precomputed contours, ordered by date and hour
+     */
+    List<MeasurementData> createCombinations(long detectorId, LocalDate startDate, LocalDate endDate) {
+        List<PollutionType> pollutionTypes = pollutionTypeService.getAllPollutionTypes();
+        List<MeasurementData> combinations = new ArrayList<>();
+
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            for (int hour = 1; hour <= HOURS; hour++) {
+                for (PollutionType pollutionType : pollutionTypes) {
+                    combinations.add(new MeasurementData(
+                            new ArrayList<>(vehicles),
+                            weatherStability,
+                            pollutionType.getId().intValue(),
+                            (int) detectorId,
+                            date,
+                            hour,
+                            area,
+                            null
+                    ));
+                }
+            }
+        }
+
+        return combinations;
+    }
+
+    /**
+     * Cancels the background calculation in progress because an interactive calculation is being admitted.
+     *
+     */
+    void preempt() {
+        CancellationToken cancellation = current;
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+    }
+
+    /**
+     * Waits until no interactive calculation is admitted and the system CPU load is below the limit.
+     *
+     * @return true if the server is idle, false if the thread was interrupted
+     */
+    boolean awaitIdle() {
+        while (calculationExecutor.getAdmitted(CalculationLaneEnum.INTERACTIVE) > 0 || getCpuLoad() > maxCpu) {
+            if (!sleep()) {
+                return false;
+            }
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Returns the recent CPU load of the whole system. The load of the last background calculation is included
+     * in the first value read after it, so the next calculation starts after at least one idle check.
+     *
+     * @return the CPU load between 0 and 1, or 0 if it is not available on this platform
+     */
+    static double getCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = os instanceof com.sun.management.OperatingSystemMXBean sunOs
+                ? sunOs.getCpuLoad()
+                : os.getSystemLoadAverage() / os.getAvailableProcessors();
+        return load < 0 ? 0 : load;
+    }
+
+    /**
+     * Waits for the idle check interval.
+     *
+     * @return true if the interval passed, false if the thread was interrupted
+     */
+    private boolean sleep() {
+        try {
+            Thread.sleep(idleCheck);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops the background calculation in progress and discards the queued precomputation.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        precomputeExecutor.shutdownNow();
+        preempt();
+    }
+}
@@ -0,0 +1,133 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.grassnext.grassnextserver.common.Concentrations;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.ReceptorData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.PlumeModel;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.grassnext.grassnextserver.gaussianplume.GaussianParametersService.jsonMapper;
+
+/**
+ * Service class responsible for calculating the air pollution concentration at the chosen receptor points.
+ * The Gaussian Plume parameters are assembled as for the contours, but only the contributions of the emitters
+ * to the receptor points are evaluated, so the cost grows with the number of emitters times the number of points
+ * instead of the size of the matrix. The calculation does not depend on the selected dispersion engine;
+ * it waits for its execution slots in the interactive lane of the calculation executor, as the contours do.
+ *
+ */
+@Service
+public class ReceptorService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the ReceptorService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReceptorService.class);
+    /**
+     * The factor converting the calculated concentration into the units of the contour thresholds (µg/m³).
+     *
+     */
+    static final double CONCENTRATION_UNIT_FACTOR = 1000.0;
+
+    /**
+     * Service instance for managing and providing Gaussian parameter data for plume dispersion calculations.
+     *
+     */
+    GaussianParametersService gaussianParametersService;
+    /**
+     * The executor limiting the number of concurrent calculations.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * The maximum number of receptor points of a single request.
+     *
+     */
+    int maxPoints;
+
+    /**
+     * Constructs a ReceptorService instance and initializes the required services.
+     *
+     * @param gaussianParametersService the service responsible for managing and providing
+     *                                  Gaussian parameter data for plume dispersion calculations
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param grassNextConfig the configuration providing the maximum number of receptor points
+     */
+    @Autowired
+    public ReceptorService(
+            GaussianParametersService gaussianParametersService,
+            CalculationExecutor calculationExecutor,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianParametersService = gaussianParametersService;
+        this.calculationExecutor = calculationExecutor;
+        this.maxPoints = grassNextConfig.getReceptorsMaxPoints();
+    }
+
+    /**
+     * Calculates the air pollution concentration at the receptor points of the request. The calculation
+     * waits for its execution slots in the interactive lane of the calculation executor, its cost being
+     * the emitters multiplied by the receptor points, and stops when the cancellation token is cancelled.
+     *
+     * @param receptorData the measurement data and the GPS coordinates of the receptor points
+     * @param cancellation the cancellation token of the calculation
+     * @return the concentrations at the receptor points, or concentrations with the error flag and message
+     *         if the request or the measurement data is invalid or the calculation failed
+     * @throws RejectedExecutionException if the calculation queue is full or the calculation is not expected
+     *                                    to complete before the deadline
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    public Concentrations calculateConcentrations(ReceptorData receptorData, CancellationToken cancellation) {
+        if (receptorData.getMeasurement() == null) {
+            return new Concentrations(true, "Measurement data missing!", -1, null);
+        }
+        List<Contours.GpsPoint> receptors = receptorData.getReceptors();
+        if (receptors == null || receptors.isEmpty()) {
+            return new Concentrations(true, "No receptor points!", -1, null);
+        }
+        if (receptors.size() > maxPoints) {
+            return new Concentrations(true, "Too many receptor points! The limit is " + maxPoints + ".", -1, null);
+        }
+
+        long start = System.nanoTime();
+        try {
+            String jsonData = gaussianParametersService.getGaussianPlume(receptorData.getMeasurement());
+            if (jsonData.contains(Consts.INCORRECT_DATA_HEADER)) {
+                return new Concentrations(true, jsonData.substring(Consts.INCORRECT_DATA_HEADER.length()), -1, null);
+            }
+
+            GaussianPlume gaussianPlume = jsonMapper.readValue(jsonData, GaussianPlume.class);
+            long cost = CalculationExecutor.estimateCost(1, List.of(gaussianPlume)) * receptors.size();
+            double[] values = calculationExecutor.execute(
+                    () -> new PlumeModel(gaussianPlume, null, new PlumeModel.Options(), cancellation).calculateReceptors(receptors),
+                    cost, CalculationLaneEnum.INTERACTIVE, cancellation);
+
+            List<Concentrations.Receptor> receptorList = new ArrayList<>();
+            for (int r = 0; r < receptors.size(); r++) {
+                Contours.GpsPoint receptor = receptors.get(r);
+                receptorList.add(new Concentrations.Receptor(receptor.getLat(), receptor.getLon(), values[r] * CONCENTRATION_UNIT_FACTOR));
+            }
+            double duration = (System.nanoTime() - start) / 1.0E9;
+
+            return new Concentrations(false, "success", duration, receptorList);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            return new Concentrations(true, "Measurement error!", -1, null);
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * The AdaptiveGrid class evaluates the concentration on a quadtree of square leaves instead of every matrix cell,
+ * and extracts the isolines of several concentration levels directly from the leaves.
+ *
+ * The nodes of the grid lie at the positions of the matrix cells, surrounded by a frame of zeros, so the values
+ * of the nodes are exactly the values of the dense matrix. The area is covered by root leaves of
+ * {@link #MAX_LEAF_SIZE} cells, and a leaf is split into four leaves if it is larger than a part of the horizontal
+ * dispersion coefficient at its distance from the road, or if the values sampled at its corners, edge midpoints
+ * and center cross one of the levels, down to a smaller part of the coefficient, but not below a single cell.
+ * The fine leaves therefore follow the road and the isolines, while the far field is covered by the coarse leaves.
+ *
+ * The isolines are extracted by walking the boundary of each leaf through all the nodes lying on it,
+ * including the corners of the smaller neighbouring leaves. Both leaves sharing an edge see the same nodes
+ * on it, so the crossings of the levels match and the isolines are closed polylines, as the ones
+ * of the {@link MarchingSquares} class.
+ *
+ */
+public class AdaptiveGrid {
+    /**
+     * The size (in cells) of one side of the root leaves, a power of two.
+     *
+     */
+    static final int MAX_LEAF_SIZE = 64;
+    /**
+     * The largest size of a leaf relative to the horizontal dispersion coefficient at the distance of the leaf
+     * from the road. The coefficient is taken at half of the distance, covering the emitters seen at an angle.
+     *
+     */
+    static final double SIGMA_FRACTION = 0.5;
+    /**
+     * The largest size of a leaf crossed by an isoline relative to the horizontal dispersion coefficient.
+     * The linear interpolation within such a leaf moves the isoline by a small part of a cell.
+     *
+     */
+    static final double CONTOUR_SIGMA_FRACTION = 1.0 / 32;
+
+    /**
+     * The segments of every level found in a part of the leaves.
+     * Each segment is stored as a pair of consecutive edge keys together with the positions of both points.
+     *
+     */
+    public static class Segments {
+        /**
+         * The edge keys of the segments of each level.
+         *
+         */
+        final long[][] keys;
+        /**
+         * The column and row coordinates of the points of each level, two for every edge key.
+         *
+         */
+        private final double[][] points;
+        /**
+         * The number of edge keys stored for each level.
+         *
+         */
+        final int[] counts;
+
+        /**
+         * Constructs an empty set of segments.
+         *
+         * @param levelCount the number of levels
+         */
+        Segments(int levelCount) {
+            this.keys = new long[levelCount][];
+            this.points = new double[levelCount][];
+            this.counts = new int[levelCount];
+        }
+
+        /**
+         * Adds a segment of the level.
+         *
+         * @param level the index of the level
+         * @param from the key of the edge the segment starts at
+         * @param fromPoint the column and row of the starting point
+         * @param to the key of the edge the segment ends at
+         * @param toPoint the column and row of the ending point
+         */
+        void add(int level, long from, double[] fromPoint, long to, double[] toPoint) {
+            long[] levelKeys = keys[level];
+            double[] levelPoints = points[level];
+            if (levelKeys == null) {
+                levelKeys = new long[64];
+                levelPoints = new double[128];
+            } else if (counts[level] + 2 > levelKeys.length) {
+                levelKeys = Arrays.copyOf(levelKeys, levelKeys.length * 2);
+                levelPoints = Arrays.copyOf(levelPoints, levelPoints.length * 2);
+            }
+            keys[level] = levelKeys;
+            points[level] = levelPoints;
+
+            int count = counts[level];
+            levelKeys[count] = from;
+            levelPoints[2 * count] = fromPoint[0];
+            levelPoints[2 * count + 1] = fromPoint[1];
+            levelKeys[count + 1] = to;
+            levelPoints[2 * count + 2] = toPoint[0];
+            levelPoints[2 * count + 3] = toPoint[1];
+            counts[level] = count + 2;
+        }
+    }
+
+    /**
+     * The size of one side of the square matrix covered by the grid.
+     *
+     */
+    private final int size;
+    /**
+     * The number of root leaves along one side of the grid.
+     *
+     */
+    private final int rootCount;
+    /**
+     * The number of nodes along one side of the grid.
+     *
+     */
+    private final int nodesPerSide;
+    /**
+     * The coordinate (in meters) of the first matrix cell relative to the road starting point.
+     *
+     */
+    private final double matrixStart;
+    /**
+     * The size of a single matrix cell in meters.
+     *
+     */
+    private final double resolution;
+    /**
+     * The levels of the isolines in ascending order.
+     *
+     */
+    private final double[] levels;
+    /**
+     * The function calculating the concentration at the given coordinates (in meters).
+     *
+     */
+    private final DoubleBinaryOperator concentration;
+    /**
+     * The envelope of the plume, or null if no leaf is known to stay below the lowest level.
+     *
+     */
+    private final PlumeEnvelope envelope;
+    /**
+     * The x component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    private final double windX;
+    /**
+     * The y component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    private final double windY;
+    /**
+     * The atmospheric stability class [1-6].
+     *
+     */
+    private final int stability;
+    /**
+     * The x coordinate (in meters) of the road end, the road starting at the origin.
+     *
+     */
+    private final double roadEndX;
+    /**
+     * The y coordinate (in meters) of the road end, the road starting at the origin.
+     *
+     */
+    private final double roadEndY;
+    /**
+     * The values of the evaluated nodes, indexed by the node key.
+     *
+     */
+    private final Map<Long, Double> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new instance of the AdaptiveGrid class.
+     *
+     * @param size the size of one side of the square matrix covered by the grid
+     * @param matrixStart the coordinate (in meters) of the first matrix cell relative to the road starting point
+     * @param resolution the size of a single matrix cell in meters
+     * @param levels the levels of the isolines in ascending order, all of them greater than 0
+     * @param concentration the function calculating the concentration at the given coordinates (in meters)
+     * @param envelope the envelope of the plume, or null if no leaf is known to stay below the lowest level
+     * @param windX the x component of the unit vector pointing in the direction the wind blows to
+     * @param windY the y component of the unit vector pointing in the direction the wind blows to
+     * @param stability the atmospheric stability class [1-6]
+     * @param roadEndX the x coordinate (in meters) of the road end
+     * @param roadEndY the y coordinate (in meters) of the road end
+     */
+    public AdaptiveGrid(int size, double matrixStart, double resolution, double[] levels, DoubleBinaryOperator concentration,
+                        PlumeEnvelope envelope, double windX, double windY, int stability, double roadEndX, double roadEndY) {
+        this.size = size;
+        this.rootCount = (size + MAX_LEAF_SIZE) / MAX_LEAF_SIZE;
+        this.nodesPerSide = rootCount * MAX_LEAF_SIZE + 1;
+        this.matrixStart = matrixStart;
+        this.resolution = resolution;
+        this.levels = levels;
+        this.concentration = concentration;
+        this.envelope = envelope;
+        this.windX = windX;
+        this.windY = windY;
+        this.stability = stability;
+        this.roadEndX = roadEndX;
+        this.roadEndY = roadEndY;
+    }
+
+    /**
+     * Returns the number of the rows of the root leaves.
+     *
+     * @return the number of the root rows
+     */
+    public int getRootRows() {
+        return rootCount;
+    }
+
+    /**
+     * Returns the number of the nodes evaluated so far.
+     *
+     * @return the number of the evaluated nodes
+     */
+    public int getEvaluatedCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the values of the evaluated nodes.
+     *
+     * @return the values of the nodes, including the zeros of the frame
+     */
+    public Iterable<Double> getValues() {
+        return nodes.values();
+    }
+
+    /**
+     * Splits the root leaves of the given row and evaluates the nodes of the resulting leaves.
+     *
+     * @param rootRow the row of the root leaves
+     * @return the leaves, stored as consecutive column, row and size of the first node of each leaf
+     */
+    public int[] refine(int rootRow) {
+        int[] leaves = new int[3 * 64];
+        int[] count = new int[1];
+        for (int rootCol = 0; rootCol < rootCount; rootCol++) {
+            leaves = refine(rootCol * MAX_LEAF_SIZE, rootRow * MAX_LEAF_SIZE, MAX_LEAF_SIZE, leaves, count);
+        }
+        return Arrays.copyOf(leaves, count[0]);
+    }
+
+    /**
+     * Evaluates the corners of the leaf and splits it further if required.
+     *
+     * @param col the column of the first node of the leaf
+     * @param row the row of the first node of the leaf
+     * @param leafSize the size of the leaf in cells
+     * @param leaves the array of the leaves found so far
+     * @param count the number of values stored in the array of the leaves
+     * @return the array of the leaves, possibly enlarged
+     */
+    int[] refine(int col, int row, int leafSize, int[] leaves, int[] count) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 4; corner++) {
+            double v = value(col + (corner & 1) * leafSize, row + (corner >> 1) * leafSize);
+            min = Math.min(v, min);
+            max = Math.max(v, max);
+        }
+
+        boolean split = false;
+        if (leafSize > 1 && !isNegligible(col, row, leafSize)) {
+            int half = leafSize / 2;
+            double scale = plumeScale(col, row, leafSize);
+            split = leafSize > SIGMA_FRACTION * scale;
+            if (!split && leafSize > CONTOUR_SIGMA_FRACTION * scale) {
+                for (int sample = 1; sample < 9; sample += 2) {
+                    double v = value(col + (sample % 3) * half, row + (sample / 3) * half);
+                    min = Math.min(v, min);
+                    max = Math.max(v, max);
+                }
+                double center = value(col + half, row + half);
+                split = crossesLevel(Math.min(center, min), Math.max(center, max));
+            }
+        }
+
+        if (split) {
+            int half = leafSize / 2;
+            leaves = refine(col, row, half, leaves, count);
+            leaves = refine(col + half, row, half, leaves, count);
+            leaves = refine(col, row + half, half, leaves, count);
+            return refine(col + half, row + half, half, leaves, count);
+        }
+
+        if (count[0] + 3 > leaves.length) {
+            leaves = Arrays.copyOf(leaves, leaves.length * 2);
+        }
+        leaves[count[0]++] = col;
+        leaves[count[0]++] = row;
+        leaves[count[0]++] = leafSize;
+        return leaves;
+    }
+
+    /**
+     * Determines whether the values between the given minimum and maximum cross any of the levels.
+     *
+     * @param min the lowest value
+     * @param max the highest value
+     * @return true if a level lies above the lowest value and not above the highest value
+     */
+    boolean crossesLevel(double min, double max) {
+        int level = Arrays.binarySearch(levels, min);
+        level = level >= 0 ? level + 1 : -level - 1;
+        return level < levels.length && levels[level] <= max;
+    }
+
+    /**
+     * Calculates the scale on which the plume changes at the distance of the leaf from the road, which is
+     * the horizontal dispersion coefficient at half of that distance. The leaves located entirely upwind
+     * of the road receive no pollution, so their scale is infinite.
+     *
+     * @param col the column of the first node of the leaf
+     * @param row the row of the first node of the leaf
+     * @param leafSize the size of the leaf in cells
+     * @return the scale of the plume in cells
+     */
+    double plumeScale(int col, int row, int leafSize) {
+        double x0 = matrixStart + (col - 1) * resolution;
+        double y0 = matrixStart + (row - 1) * resolution;
+        double side = leafSize * resolution;
+
+        double roadUpwind = Math.min(0.0, windX * roadEndX + windY * roadEndY);
+        double leafDownwind = Math.max(windX * x0, windX * (x0 + side)) + Math.max(windY * y0, windY * (y0 + side));
+        if (leafDownwind <= roadUpwind) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double distance = Math.max(0.0, roadDistance(x0 + side / 2, y0 + side / 2) - side * Math.sqrt(0.5));
+        return PlumeModel.calculateSigmas(distance / 2, stability)[0] / resolution;
+    }
+
+    /**
+     * Calculates the distance of the point from the road.
+     *
+     * @param x the x coordinate of the point (in meters)
+     * @param y the y coordinate of the point (in meters)
+     * @return the distance from the nearest point of the road (in meters)
+     */
+    double roadDistance(double x, double y) {
+        double length2 = roadEndX * roadEndX + roadEndY * roadEndY;
+        double t = length2 > 0 ? (x * roadEndX + y * roadEndY) / length2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(x - t * roadEndX, y - t * roadEndY);
+    }
+
+    /**
+     * Determines whether the concentration in every cell of the leaf stays below the lowest level
+     * according to the plume envelope.
+     *
+     * @param col the column of the first node of the leaf
+     * @param row the row of the first node of the leaf
+     * @param leafSize the size of the leaf in cells
+     * @return true if the leaf does not have to be split
+     */
+    boolean isNegligible(int col, int row, int leafSize) {
+        int xStart = Math.max(col - 1, 0);
+        int yStart = Math.max(row - 1, 0);
+        int xEnd = Math.min(col + leafSize, size);
+        int yEnd = Math.min(row + leafSize, size);
+        if (xStart >= xEnd || yStart >= yEnd) {
+            return true;
+        }
+        return envelope != null && envelope.isNegligible(xStart, yStart, xEnd, yEnd);
+    }
+
+    /**
+     * Returns the value of the node, evaluating it if it has not been evaluated yet.
+     *
+     * @param col the column of the node
+     * @param row the row of the node
+     * @return the value of the node, 0 for the nodes of the frame surrounding the matrix
+     */
+    double value(int col, int row) {
+        return nodes.computeIfAbsent(nodeKey(col, row), key -> {
+            if (col < 1 || col > size || row < 1 || row > size) {
+                return 0.0;
+            }
+            return concentration.applyAsDouble(matrixStart + (col - 1) * resolution, matrixStart + (row - 1) * resolution);
+        });
+    }
+
+    /**
+     * Creates the key identifying the node.
+     *
+     * @param col the column of the node
+     * @param row the row of the node
+     * @return the key of the node
+     */
+    long nodeKey(int col, int row) {
+        return (long) row * nodesPerSide + col;
+    }
+
+    /**
+     * Finds the segments of all the levels in the given leaves. The boundary of each leaf is walked through
+     * all the evaluated nodes lying on it, and the crossings of each level are joined in pairs, separating
+     * the parts of the boundary below the level if the average of the boundary values reaches the level,
+     * and the parts above the level otherwise, as the marching squares do for the saddle configurations.
+     *
+     * @param leaves the leaves, as returned by {@link #refine(int)}
+     * @return the segments found in the leaves
+     */
+    public Segments scan(int[] leaves) {
+        Segments segments = new Segments(levels.length);
+        int[] boundaryCols = new int[4 * MAX_LEAF_SIZE];
+        int[] boundaryRows = new int[4 * MAX_LEAF_SIZE];
+        double[] boundaryValues = new double[4 * MAX_LEAF_SIZE];
+        long[] crossingKeys = new long[4 * MAX_LEAF_SIZE];
+        double[][] crossingPoints = new double[4 * MAX_LEAF_SIZE][];
+        boolean[] crossingUp = new boolean[4 * MAX_LEAF_SIZE];
+
+        for (int l = 0; l < leaves.length; l += 3) {
+            int n = boundary(leaves[l], leaves[l + 1], leaves[l + 2], boundaryCols, boundaryRows, boundaryValues);
+
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0.0;
+            for (int b = 0; b < n; b++) {
+                min = Math.min(boundaryValues[b], min);
+                max = Math.max(boundaryValues[b], max);
+                sum += boundaryValues[b];
+            }
+            if (max < levels[0]) {
+                continue;
+            }
+
+            int level = Arrays.binarySearch(levels, min);
+            for (level = level >= 0 ? level + 1 : -level - 1; level < levels.length && levels[level] <= max; level++) {
+                double threshold = levels[level];
+                int crossings = 0;
+                for (int b = 0; b < n; b++) {
+                    int next = (b + 1) % n;
+                    boolean above = boundaryValues[b] >= threshold;
+                    if (above != boundaryValues[next] >= threshold) {
+                        crossingKeys[crossings] = edgeKey(boundaryCols[b], boundaryRows[b], boundaryCols[next], boundaryRows[next]);
+                        crossingPoints[crossings] = crossingPoint(boundaryCols[b], boundaryRows[b], boundaryValues[b],
+                                boundaryCols[next], boundaryRows[next], boundaryValues[next], threshold);
+                        crossingUp[crossings] = !above;
+                        crossings++;
+                    }
+                }
+
+                boolean centerAbove = sum / n >= threshold;
+                int first = 0;
+                while (crossingUp[first] == centerAbove) {
+                    first++;
+                }
+                for (int c = 0; c < crossings; c += 2) {
+                    int from = (first + c) % crossings;
+                    int to = (first + c + 1) % crossings;
+                    segments.add(level, crossingKeys[from], crossingPoints[from], crossingKeys[to], crossingPoints[to]);
+                }
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Collects the evaluated nodes lying on the boundary of the leaf, walking it clockwise from the first node.
+     *
+     * @param col the column of the first node of the leaf
+     * @param row the row of the first node of the leaf
+     * @param leafSize the size of the leaf in cells
+     * @param boundaryCols the array receiving the columns of the boundary nodes
+     * @param boundaryRows the array receiving the rows of the boundary nodes
+     * @param boundaryValues the array receiving the values of the boundary nodes
+     * @return the number of the boundary nodes
+     */
+    int boundary(int col, int row, int leafSize, int[] boundaryCols, int[] boundaryRows, double[] boundaryValues) {
+        int n = 0;
+        for (int side = 0; side < 4; side++) {
+            for (int step = 0; step < leafSize; step++) {
+                int c = switch (side) {
+                    case 0 -> col + step;
+                    case 1 -> col + leafSize;
+                    case 2 -> col + leafSize - step;
+                    default -> col;
+                };
+                int r = switch (side) {
+                    case 0 -> row;
+                    case 1 -> row + step;
+                    case 2 -> row + leafSize;
+                    default -> row + leafSize - step;
+                };
+
+                Double v = nodes.get(nodeKey(c, r));
+                if (v != null) {
+                    boundaryCols[n] = c;
+                    boundaryRows[n] = r;
+                    boundaryValues[n] = v;
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Creates the key identifying the edge between two consecutive boundary nodes, shared by both leaves
+     * adjacent to the edge.
+     *
+     * @param col1 the column of the first node
+     * @param row1 the row of the first node
+     * @param col2 the column of the second node
+     * @param row2 the row of the second node
+     * @return the key of the edge
+     */
+    long edgeKey(int col1, int row1, int col2, int row2) {
+        return nodeKey(Math.min(col1, col2), Math.min(row1, row2)) * 2 + (col1 == col2 ? 1 : 0);
+    }
+
+    /**
+     * Calculates the point at which the level crosses the edge, interpolated linearly from the node
+     * with the lower key, so both leaves adjacent to the edge obtain the same point.
+     *
+     * @param col1 the column of the first node
+     * @param row1 the row of the first node
+     * @param value1 the value of the first node
+     * @param col2 the column of the second node
+     * @param row2 the row of the second node
+     * @param value2 the value of the second node
+     * @param level the level
+     * @return the matrix column and row of the point
+     */
+    static double[] crossingPoint(int col1, int row1, double value1, int col2, int row2, double value2, double level) {
+        if (col2 < col1 || row2 < row1) {
+            return crossingPoint(col2, row2, value2, col1, row1, value1, level);
+        }
+        double shift = (level - value1) / (value2 - value1);
+        return new double[]{col1 - 1 + shift * (col2 - col1), row1 - 1 + shift * (row2 - row1)};
+    }
+
+    /**
+     * Joins the segments of the level found in all the parts of the leaves into closed polylines.
+     *
+     * @param level the index of the level
+     * @param segmentsList the segments of all the leaves
+     * @return a list of polylines, each one stored as an array of consecutive column and row coordinates
+     */
+    public List<double[]> trace(int level, List<Segments> segmentsList) {
+        Map<Long, Integer> edges = new HashMap<>();
+        List<double[]> edgePoints = new ArrayList<>();
+        int[] neighbours = new int[64];
+        Arrays.fill(neighbours, -1);
+
+        for (Segments segments : segmentsList) {
+            long[] levelKeys = segments.keys[level];
+            double[] levelPoints = segments.points[level];
+            for (int s = 0; s < segments.counts[level]; s += 2) {
+                int from = edge(levelKeys[s], levelPoints, s, edges, edgePoints);
+                int to = edge(levelKeys[s + 1], levelPoints, s + 1, edges, edgePoints);
+                if (2 * edgePoints.size() > neighbours.length) {
+                    int oldLength = neighbours.length;
+                    neighbours = Arrays.copyOf(neighbours, Math.max(oldLength * 2, 2 * edgePoints.size()));
+                    Arrays.fill(neighbours, oldLength, neighbours.length, -1);
+                }
+                link(neighbours, from, to);
+                link(neighbours, to, from);
+            }
+        }
+
+        List<double[]> polylines = new ArrayList<>();
+        boolean[] visited = new boolean[edgePoints.size()];
+        for (int start = 0; start < edgePoints.size(); start++) {
+            if (visited[start]) {
+                continue;
+            }
+
+            double[] points = new double[16];
+            int count = 0;
+            int previous = -1;
+            int current = start;
+            while (current >= 0 && !visited[current]) {
+                visited[current] = true;
+                if (count + 2 > points.length) {
+                    points = Arrays.copyOf(points, points.length * 2);
+                }
+                double[] point = edgePoints.get(current);
+                points[count++] = point[0];
+                points[count++] = point[1];
+
+                int next = neighbours[2 * current] != previous ? neighbours[2 * current] : neighbours[2 * current + 1];
+                previous = current;
+                current = next;
+            }
+            polylines.add(Arrays.copyOf(points, count));
+        }
+
+        return polylines;
+    }
+
+    /**
+     * Returns the index of the edge, adding it together with its crossing point if it has not been seen yet.
+     *
+     * @param key the key of the edge
+     * @param levelPoints the coordinates of the points of the level
+     * @param index the index of the edge key among the keys of the level
+     * @param edges the indexes of the edges
+     * @param edgePoints the crossing points of the edges
+     * @return the index of the edge
+     */
+    private static int edge(long key, double[] levelPoints, int index, Map<Long, Integer> edges, List<double[]> edgePoints) {
+        Integer edge = edges.get(key);
+        if (edge == null) {
+            edge = edgePoints.size();
+            edges.put(key, edge);
+            edgePoints.add(new double[]{levelPoints[2 * index], levelPoints[2 * index + 1]});
+        }
+        return edge;
+    }
+
+    /**
+     * Stores the neighbour of the edge in the first free slot. Each edge crossed by the isoline is shared by
+     * exactly two leaves, so every edge has two neighbours.
+     *
+     * @param neighbours the two neighbour slots of each edge
+     * @param edge the edge
+     * @param neighbour the neighbour to be stored
+     */
+    private static void link(int[] neighbours, int edge, int neighbour) {
+        if (neighbours[2 * edge] < 0) {
+            neighbours[2 * edge] = neighbour;
+        } else {
+            neighbours[2 * edge + 1] = neighbour;
+        }
+    }
+}
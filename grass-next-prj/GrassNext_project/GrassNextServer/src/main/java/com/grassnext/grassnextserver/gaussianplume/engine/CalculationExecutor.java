@@ -0,0 +1,602 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The CalculationExecutor class limits the Gaussian Plume calculations running at the same time by their estimated cost.
+ *
+ * The node has {@code gn.calculation.max_in_flight} execution slots. The cost of a calculation is estimated
+ * as the number of evaluations of the Gaussian function, the cells of the matrix multiplied by the emitters of the road,
+ * and a calculation takes one slot for every {@code gn.calculation.slot_cost} millions of evaluations.
+ * The calculations are executed in the calling thread, so no additional thread hop is needed.
+ *
+ * The bulk calculations, which are the batch calculations (jobs and whole days) and the calculations taking more than
+ * one slot, may hold at most {@code gn.calculation.bulk_slots} slots together, and no calculation takes more, so the remaining
+ * slots stay free for the small interactive requests and their latency is not bound to the large calculations.
+ * The waiting calculations are served in two lanes, the interactive lane before the batch lane, each in order
+ * of arrival, except that a small calculation may start before a bulk calculation waiting for the bulk slots.
+ * A calculation which cannot start at once is rejected immediately with a {@link RejectedExecutionException}
+ * when the queue of its lane is full, or when the estimated time of its completion, based on the measured duration
+ * of the previous calculations per unit of cost, exceeds its deadline. A waiting calculation whose cancellation token
+ * is cancelled, or whose deadline expires, leaves the queue without being executed.
+ *
+ */
+@Service
+public class CalculationExecutor {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the CalculationExecutor class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CalculationExecutor.class);
+    /**
+     * The interval in milliseconds in which the waiting calculations check their cancellation tokens.
+     *
+     */
+    static final long CANCELLATION_CHECK_INTERVAL = 100;
+    /**
+     * The number of evaluations of the Gaussian function in one unit of the configured slot cost.
+     *
+     */
+    static final long COST_UNIT = 1_000_000;
+    /**
+     * The weight of the last calculation in the moving average of the duration per unit of cost.
+     *
+     */
+    static final double DURATION_WEIGHT = 0.2;
+
+    /**
+     * The exception rejecting a calculation which is not expected to complete before its deadline.
+     * Unlike a calculation rejected because the queue is full, retrying it with the same deadline is pointless.
+     *
+     */
+    public static class DeadlineRejectedException extends RejectedExecutionException {
+        /**
+         * Constructs a new instance of the DeadlineRejectedException class.
+         *
+         */
+        public DeadlineRejectedException() {
+            super("Calculation not expected to complete before its deadline");
+        }
+    }
+
+    /**
+     * Inner class describing a calculation waiting for or holding its execution slots.
+     *
+     */
+    static class Ticket {
+        /**
+         * The lane in which the calculation waits.
+         *
+         */
+        final CalculationLaneEnum lane;
+        /**
+         * The estimated cost of the calculation.
+         *
+         */
+        final long cost;
+        /**
+         * The number of execution slots taken by the calculation.
+         *
+         */
+        final int slots;
+        /**
+         * The condition signalled when the calculation receives its execution slots.
+         *
+         */
+        final Condition granted;
+        /**
+         * Determines whether the calculation holds its execution slots.
+         *
+         */
+        boolean running;
+
+        /**
+         * Constructs a new instance of the Ticket class.
+         *
+         * @param lane the lane in which the calculation waits
+         * @param cost the estimated cost of the calculation
+         * @param slots the number of execution slots taken by the calculation
+         * @param granted the condition signalled when the calculation receives its execution slots
+         */
+        Ticket(CalculationLaneEnum lane, long cost, int slots, Condition granted) {
+            this.lane = lane;
+            this.cost = cost;
+            this.slots = slots;
+            this.granted = granted;
+        }
+    }
+
+    /**
+     * The number of execution slots of the node.
+     *
+     */
+    @Getter
+    private final int maxInFlight;
+    /**
+     * The maximum number of interactive calculations waiting for their execution slots.
+     *
+     */
+    @Getter
+    private final int queueSize;
+    /**
+     * The maximum number of execution slots held by the bulk calculations at the same time,
+     * and the maximum number of slots taken by a single calculation.
+     *
+     */
+    @Getter
+    private final int bulkSlots;
+    /**
+     * The maximum number of batch calculations waiting for their execution slots.
+     *
+     */
+    @Getter
+    private final int batchQueueSize;
+    /**
+     * The estimated cost covered by one execution slot, or 0 if every calculation takes a single slot.
+     *
+     */
+    private final long slotCost;
+    /**
+     * The number of seconds after which a rejected client should retry the request.
+     *
+     */
+    @Getter
+    private final long retryAfter;
+    /**
+     * The default deadline in seconds of a calculation requested by a client, or 0 if there is none.
+     *
+     */
+    @Getter
+    private final long deadline;
+    /**
+     * The deadline in seconds of an asynchronous calculation job, or 0 if there is none.
+     *
+     */
+    @Getter
+    private final long jobDeadline;
+    /**
+     * The lock guarding the execution slots, the queues and the duration estimate.
+     *
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The calculations waiting for their execution slots, in order of arrival, for each lane.
+     *
+     */
+    private final Map<CalculationLaneEnum, Deque<Ticket>> waiting = new EnumMap<>(CalculationLaneEnum.class);
+    /**
+     * The number of execution slots not held by any calculation.
+     *
+     */
+    private int freeSlots;
+    /**
+     * The number of execution slots held by the bulk calculations.
+     *
+     */
+    private int bulkSlotsUsed;
+    /**
+     * The total estimated cost of the calculations holding execution slots.
+     *
+     */
+    private long runningCost;
+    /**
+     * The number of calculations currently executed or waiting for their execution slots.
+     *
+     */
+    private int admitted;
+    /**
+     * The number of admitted calculations of each lane.
+     *
+     */
+    private final Map<CalculationLaneEnum, Integer> admittedByLane = new EnumMap<>(CalculationLaneEnum.class);
+    /**
+     * The listeners notified before an interactive calculation is admitted, so that background work
+     * can give up its execution slots at once.
+     *
+     */
+    private final List<Runnable> interactiveListeners = new CopyOnWriteArrayList<>();
+    /**
+     * The moving average of the duration in nanoseconds of a unit of cost calculated in a single slot,
+     * or 0 if no calculation has completed yet.
+     *
+     */
+    private double slotNanosPerCost;
+
+    /**
+     * Constructs a CalculationExecutor using the limits defined in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the concurrency limits
+     */
+    @Autowired
+    public CalculationExecutor(GrassNextConfig grassNextConfig) {
+        this.maxInFlight = grassNextConfig.getCalculationMaxInFlight() > 0
+                ? grassNextConfig.getCalculationMaxInFlight()
+                : DispersionEngine.WORKER.equals(grassNextConfig.getGnEngine())
+                ? WorkerDispersionEngine.workerCount(grassNextConfig)
+                : Runtime.getRuntime().availableProcessors();
+        this.queueSize = Math.max(0, grassNextConfig.getCalculationQueueSize());
+        this.bulkSlots = grassNextConfig.getCalculationBulkSlots() > 0
+                ? Math.min(grassNextConfig.getCalculationBulkSlots(), maxInFlight)
+                : Math.max(1, maxInFlight / 2);
+        this.batchQueueSize = Math.max(0, grassNextConfig.getCalculationBatchQueueSize());
+        this.slotCost = Math.max(0, grassNextConfig.getCalculationSlotCost()) * COST_UNIT;
+        this.retryAfter = Math.max(1, grassNextConfig.getCalculationRetryAfter());
+        this.deadline = Math.max(0, grassNextConfig.getCalculationDeadline());
+        this.jobDeadline = Math.max(0, grassNextConfig.getJobsDeadline());
+        this.freeSlots = maxInFlight;
+        for (CalculationLaneEnum lane : CalculationLaneEnum.values()) {
+            waiting.put(lane, new ArrayDeque<>());
+        }
+
+        LOGGER.info("[LOGGER] Calculation executor: " + maxInFlight + " slots (" + bulkSlots + " for bulk), "
+                + queueSize + " + " + batchQueueSize + " queued, slot cost " + slotCost / COST_UNIT + " M, deadline " + deadline + " s, job deadline " + jobDeadline + " s");
+    }
+
+    /**
+     * Estimates the cost of the calculation of a single road as the number of evaluations of the Gaussian function.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters of the calculation
+     * @return the estimated cost of the calculation
+     */
+    public static long estimateCost(GaussianPlume gaussianPlume) {
+        return estimateCost(gaussianPlume.getMatrixSize(), List.of(gaussianPlume));
+    }
+
+    /**
+     * Estimates the cost of the calculation of several roads sharing one matrix as the number of evaluations
+     * of the Gaussian function, the cells of the matrix multiplied by the emitters placed along the roads.
+     *
+     * @param matrixSize the number of the rows and columns of the matrix
+     * @param gaussianPlumes the Gaussian Plume parameters of the roads
+     * @return the estimated cost of the calculation
+     */
+    public static long estimateCost(int matrixSize, List<GaussianPlume> gaussianPlumes) {
+        long emitters = 0;
+        for (GaussianPlume gaussianPlume : gaussianPlumes) {
+            GaussianPlume.GpsPoint roadStart = gaussianPlume.getRoadStart();
+            GaussianPlume.GpsPoint roadEnd = gaussianPlume.getRoadEnd();
+            double distance = PlumeModel.haversineDistance(roadStart.getLat(), roadStart.getLon(), roadEnd.getLat(), roadEnd.getLon());
+            emitters += Math.max(1, (long) (distance / PlumeModel.EMITTERS_DISTANCE));
+        }
+        return (long) matrixSize * matrixSize * emitters;
+    }
+
+    /**
+     * Executes the calculation in the calling thread as soon as its execution slots are available,
+     * unless the cancellation token is cancelled while the calculation waits for them.
+     *
+     * @param calculation the calculation to be executed
+     * @param cost the estimated cost of the calculation, see {@link #estimateCost(int, List)}
+     * @param lane the lane in which the calculation waits
+     * @param cancellation the cancellation token of the calculation
+     * @param <T> the type of the calculation result
+     * @return the result of the calculation
+     * @throws RejectedExecutionException if the calculation cannot start at once and the queue of its lane is full,
+     *                                    or a {@link DeadlineRejectedException} if it is not expected to complete
+     *                                    before its deadline
+     * @throws CancellationException if the token is cancelled or its deadline expires before the execution starts
+     * @throws RuntimeException if the thread is interrupted while waiting for the execution slots
+     */
+    public <T> T execute(Supplier<T> calculation, long cost, CalculationLaneEnum lane, CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+
+        Ticket ticket = admit(lane, Math.max(1, cost), cancellation);
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            cancellation.throwIfCancelled();
+            T result = calculation.get();
+            completed = true;
+            return result;
+        } finally {
+            release(ticket, completed ? System.nanoTime() - start : -1);
+        }
+    }
+
+    /**
+     * Places the calculation in the queue of its lane and waits until it receives its execution slots.
+     *
+     * @param lane the lane in which the calculation waits
+     * @param cost the estimated cost of the calculation
+     * @param cancellation the cancellation token of the calculation
+     * @return the ticket of the calculation holding its execution slots
+     * @throws RejectedExecutionException if the calculation cannot start at once and the queue of its lane is full
+     *                                    or it is not expected to complete before its deadline
+     * @throws CancellationException if the token is cancelled or its deadline expires before the execution starts
+     * @throws RuntimeException if the thread is interrupted while waiting for the execution slots
+     */
+    Ticket admit(CalculationLaneEnum lane, long cost, CancellationToken cancellation) {
+        if (lane == CalculationLaneEnum.INTERACTIVE) {
+            interactiveListeners.forEach(Runnable::run);
+        }
+        lock.lock();
+        try {
+            Ticket ticket = new Ticket(lane, cost, slotsFor(cost), lock.newCondition());
+            Deque<Ticket> queue = waiting.get(lane);
+            queue.addLast(ticket);
+            admitted++;
+            admittedByLane.merge(lane, 1, Integer::sum);
+            dispatch();
+            if (ticket.running) {
+                return ticket;
+            }
+
+            if (queue.size() > (lane == CalculationLaneEnum.INTERACTIVE ? queueSize : batchQueueSize)) {
+                withdraw(ticket);
+                throw new RejectedExecutionException("Calculation queue is full");
+            }
+            if (estimateCompletion(ticket) > cancellation.getRemaining(TimeUnit.NANOSECONDS)) {
+                withdraw(ticket);
+                throw new DeadlineRejectedException();
+            }
+
+            try {
+                while (!ticket.running) {
+                    cancellation.throwIfCancelled();
+                    ticket.granted.await(CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                withdraw(ticket);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (CancellationException e) {
+                withdraw(ticket);
+                throw e;
+            }
+
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the execution slots of the calculation and passes them to the waiting calculations.
+     *
+     * @param ticket the ticket of the calculation holding its execution slots
+     * @param duration the duration of the calculation in nanoseconds, or a negative value if it did not complete
+     */
+    void release(Ticket ticket, long duration) {
+        lock.lock();
+        try {
+            if (duration >= 0) {
+                double sample = (double) duration * ticket.slots / ticket.cost;
+                slotNanosPerCost = slotNanosPerCost == 0 ? sample : slotNanosPerCost + DURATION_WEIGHT * (sample - slotNanosPerCost);
+            }
+            withdraw(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the calculation from its queue, or returns its execution slots if it holds them,
+     * and passes the free slots to the waiting calculations. The lock must be held by the caller.
+     *
+     * @param ticket the ticket of the calculation
+     */
+    private void withdraw(Ticket ticket) {
+        if (ticket.running) {
+            ticket.running = false;
+            freeSlots += ticket.slots;
+            if (isBulk(ticket)) {
+                bulkSlotsUsed -= ticket.slots;
+            }
+            runningCost -= ticket.cost;
+        } else {
+            waiting.get(ticket.lane).remove(ticket);
+        }
+        admitted--;
+        admittedByLane.merge(ticket.lane, -1, Integer::sum);
+        dispatch();
+    }
+
+    /**
+     * Passes the free execution slots to the waiting calculations, the interactive lane first, each lane in order
+     * of arrival. A calculation waiting for free slots holds them back from the calculations behind it, and a bulk
+     * calculation waiting for the bulk slots holds back the bulk calculations behind it, so the large calculations
+     * are not overtaken indefinitely, while the small calculations behind them may still start.
+     * The lock must be held by the caller.
+     *
+     */
+    private void dispatch() {
+        int reserved = 0;
+        boolean bulkBlocked = false;
+
+        for (CalculationLaneEnum lane : CalculationLaneEnum.values()) {
+            Iterator<Ticket> tickets = waiting.get(lane).iterator();
+            while (tickets.hasNext() && reserved < freeSlots) {
+                Ticket ticket = tickets.next();
+                boolean bulk = isBulk(ticket);
+                if (bulk && (bulkBlocked || bulkSlotsUsed + ticket.slots > bulkSlots)) {
+                    bulkBlocked = true;
+                } else if (freeSlots - reserved >= ticket.slots) {
+                    tickets.remove();
+                    start(ticket);
+                } else {
+                    reserved += ticket.slots;
+                    bulkBlocked |= bulk;
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the execution slots to the calculation and wakes it up. The lock must be held by the caller.
+     *
+     * @param ticket the ticket of the calculation removed from its queue
+     */
+    private void start(Ticket ticket) {
+        freeSlots -= ticket.slots;
+        if (isBulk(ticket)) {
+            bulkSlotsUsed += ticket.slots;
+        }
+        runningCost += ticket.cost;
+        ticket.running = true;
+        ticket.granted.signal();
+    }
+
+    /**
+     * Determines whether the calculation is a bulk calculation, a batch calculation or one taking more than one slot.
+     *
+     * @param ticket the ticket of the calculation
+     * @return true if the calculation counts against the bulk slots
+     */
+    private static boolean isBulk(Ticket ticket) {
+        return ticket.lane == CalculationLaneEnum.BATCH || ticket.slots > 1;
+    }
+
+    /**
+     * Determines the number of execution slots taken by a calculation of the given cost.
+     *
+     * @param cost the estimated cost of the calculation
+     * @return the number of execution slots, at least 1 and at most the bulk slots
+     */
+    int slotsFor(long cost) {
+        if (slotCost == 0) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(bulkSlots, (cost + slotCost - 1) / slotCost));
+    }
+
+    /**
+     * Estimates the time in nanoseconds after which the waiting calculation completes: the half of the cost
+     * of the running calculations and the cost of the calculations waiting before it, spread over the slots
+     * available to it, followed by its own cost spread over its slots. The lock must be held by the caller.
+     *
+     * @param ticket the ticket of the waiting calculation
+     * @return the estimated time, or 0 if no calculation has completed yet
+     */
+    private long estimateCompletion(Ticket ticket) {
+        double costAhead = runningCost / 2.0;
+        for (CalculationLaneEnum lane : CalculationLaneEnum.values()) {
+            for (Ticket waitingTicket : waiting.get(lane)) {
+                if (waitingTicket == ticket) {
+                    break;
+                }
+                costAhead += waitingTicket.cost;
+            }
+            if (lane == ticket.lane) {
+                break;
+            }
+        }
+
+        int availableSlots = isBulk(ticket) ? bulkSlots : maxInFlight;
+        return (long) (slotNanosPerCost * (costAhead / availableSlots + (double) ticket.cost / ticket.slots));
+    }
+
+    /**
+     * Creates the cancellation token of a calculation requested by a client. The deadline of the token is
+     * the configured default deadline, or the shorter timeout given by the client.
+     *
+     * @param timeout the timeout in seconds requested by the client, or null to use the default deadline
+     * @return the cancellation token
+     */
+    public CancellationToken createCancellation(Long timeout) {
+        return createCancellation(timeout, 1);
+    }
+
+    /**
+     * Creates the cancellation token of a batch of calculations requested by a client. The batch is calculated
+     * in rounds of at most the bulk slots, so the configured default deadline is granted to each round, unless
+     * the client gives a shorter timeout.
+     *
+     * @param timeout the timeout in seconds requested by the client, or null to use the default deadline
+     * @param calculations the number of the calculations of the batch
+     * @return the cancellation token
+     */
+    public CancellationToken createCancellation(Long timeout, int calculations) {
+        long seconds = deadline * ((Math.max(1, calculations) + bulkSlots - 1) / bulkSlots);
+        if (timeout != null && timeout > 0 && (seconds == 0 || timeout < seconds)) {
+            seconds = timeout;
+        }
+        return CancellationToken.withTimeout(seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates the cancellation token of an asynchronous calculation job, whose deadline is the configured
+     * job deadline counted from now, independent of the deadline of the calculations requested by the clients.
+     *
+     * @return the cancellation token
+     */
+    public CancellationToken createJobCancellation() {
+        return CancellationToken.withTimeout(jobDeadline, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the number of calculations currently executed or waiting for their execution slots.
+     *
+     * @return the number of admitted calculations
+     */
+    public int getAdmitted() {
+        lock.lock();
+        try {
+            return admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calculations of the lane currently executed or waiting for their execution slots.
+     *
+     * @param lane the lane of the calculations
+     * @return the number of admitted calculations of the lane
+     */
+    public int getAdmitted(CalculationLaneEnum lane) {
+        lock.lock();
+        try {
+            return admittedByLane.getOrDefault(lane, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a listener called on the thread of every interactive calculation before it is admitted.
+     * The listener must return quickly and must not wait for the calculations.
+     *
+     * @param listener the listener to call
+     */
+    public void addInteractiveListener(Runnable listener) {
+        interactiveListeners.add(listener);
+    }
+
+    /**
+     * Returns the number of calculations waiting for their execution slots in the lane.
+     *
+     * @param lane the lane of the calculations
+     * @return the number of waiting calculations
+     */
+    public int getQueued(CalculationLaneEnum lane) {
+        lock.lock();
+        try {
+            return waiting.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Calculates the air pollution dispersion of the roads of several detectors on one shared matrix.
+ * The matrix covers all the roads with a margin, and each cell holds the sum of the concentrations produced
+ * by every road, evaluated with the point emitters or the finite line source of that road in its own
+ * coordinates. The matrix is divided into tiles of {@link TiledGrid#TILE_SIZE} cells; each tile is summed up
+ * by a single task in its own accumulator and stored once, so the tasks never write to the same cells.
+ * The contributions of the roads whose plume envelope cannot reach the tile are skipped, and the contours
+ * of the combined field are extracted once with the marching squares.
+ *
+ */
+public class CityPlumeModel {
+    /**
+     * The size of one side of the tiles summed up by a single task.
+     *
+     */
+    static final int TILE_SIZE = TiledGrid.TILE_SIZE;
+
+    /**
+     * Inner class describing a single road placed on the shared matrix.
+     *
+     */
+    static class Road {
+        /**
+         * The model of the road providing its emitters or line source.
+         *
+         */
+        final PlumeModel plumeModel;
+        /**
+         * The x coordinate (in meters) of the matrix center relative to the road starting point.
+         *
+         */
+        final double offsetX;
+        /**
+         * The y coordinate (in meters) of the matrix center relative to the road starting point.
+         *
+         */
+        final double offsetY;
+        /**
+         * The ratio of the east-west distances in the coordinates of the road to the ones of the matrix,
+         * as the degrees of longitude are converted into meters at the latitude of the road starting point.
+         *
+         */
+        final double scaleX;
+        /**
+         * The envelope of the road in the coordinates of the shared matrix, or null if no tile is skipped.
+         *
+         */
+        PlumeEnvelope envelope;
+
+        /**
+         * Constructs a new instance of the Road class.
+         *
+         * @param plumeModel the model of the road with the prepared emitters
+         * @param offsetX the x coordinate of the matrix center relative to the road starting point
+         * @param offsetY the y coordinate of the matrix center relative to the road starting point
+         * @param scaleX the ratio of the east-west distances in the coordinates of the road to the ones of the matrix
+         */
+        Road(PlumeModel plumeModel, double offsetX, double offsetY, double scaleX) {
+            this.plumeModel = plumeModel;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.scaleX = scaleX;
+        }
+    }
+
+    /**
+     * The Gaussian Plume parameters of each road.
+     *
+     */
+    final List<GaussianPlume> gaussianPlumes;
+    /**
+     * The pool executing the tiles and contour extraction in parallel.
+     *
+     */
+    final ForkJoinPool forkJoinPool;
+    /**
+     * The cancellation token checked between the tiles of the matrix and the tasks of the calculation.
+     *
+     */
+    final CancellationToken cancellation;
+    /**
+     * The size of a matrix cell in meters.
+     *
+     */
+    final int resolution;
+    /**
+     * The GPS point placed in the middle of the matrix.
+     *
+     */
+    final GaussianPlume.GpsPoint center;
+    /**
+     * The size of one side of the matrix.
+     *
+     */
+    final int matrixSize;
+    /**
+     * The index (in cells) of the first matrix cell relative to the matrix center.
+     *
+     */
+    final int matrixSizeStart;
+    /**
+     * The pollution type shared by all the roads.
+     *
+     */
+    final int pollutionType;
+    /**
+     * The roads emitting any pollution.
+     *
+     */
+    List<Road> roads = new ArrayList<>();
+    /**
+     * The output matrix of the air pollution concentration, indexed by row and column.
+     *
+     */
+    ConcentrationGrid c1;
+
+    /**
+     * Constructs a new instance of the CityPlumeModel class. The matrix is centered at the middle of the box
+     * bounding all the road ends and extends the longer side of the box by the margin on each side.
+     *
+     * @param gaussianPlumes the Gaussian Plume parameters of each road, sharing the pollution type
+     * @param margin the distance (in meters) by which the matrix extends beyond the roads
+     * @param resolution the size of a matrix cell in meters
+     * @param forkJoinPool the pool executing the parallel parts of the calculation
+     * @param cancellation the cancellation token stopping the calculation
+     */
+    public CityPlumeModel(List<GaussianPlume> gaussianPlumes, double margin, int resolution, ForkJoinPool forkJoinPool,
+                          CancellationToken cancellation) {
+        this.gaussianPlumes = gaussianPlumes;
+        this.forkJoinPool = forkJoinPool;
+        this.cancellation = cancellation;
+        this.resolution = resolution;
+        this.pollutionType = gaussianPlumes.get(0).getPollutionType();
+
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (GaussianPlume gaussianPlume : gaussianPlumes) {
+            for (GaussianPlume.GpsPoint point : List.of(gaussianPlume.getRoadStart(), gaussianPlume.getRoadEnd())) {
+                minLat = Math.min(point.getLat(), minLat);
+                maxLat = Math.max(point.getLat(), maxLat);
+                minLon = Math.min(point.getLon(), minLon);
+                maxLon = Math.max(point.getLon(), maxLon);
+            }
+        }
+        this.center = new GaussianPlume.GpsPoint((minLon + maxLon) / 2, (minLat + maxLat) / 2);
+
+        double[] corner = PlumeModel.toLocalPosition(center, new Contours.GpsPoint(maxLat, maxLon));
+        double side = 2 * (Math.max(Math.abs(corner[0]), Math.abs(corner[1])) + margin);
+        this.matrixSize = (int) Math.ceil(side / resolution) + 1;
+        this.matrixSizeStart = -(matrixSize / 2);
+    }
+
+    /**
+     * Returns the size of one side of the matrix covering all the roads.
+     *
+     * @return the number of the matrix rows and columns
+     */
+    public int getMatrixSize() {
+        return matrixSize;
+    }
+
+    /**
+     * Calculates the combined air pollution dispersion of all the roads and creates the contours for all the thresholds.
+     *
+     * @return the calculated contours together with the duration of the calculation
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    public Contours calculate() {
+        long start = System.nanoTime();
+        prepareRoads();
+        calculateMatrix();
+        List<Contours.Contour> contourList = findAllIsolines();
+        double duration = (System.nanoTime() - start) / 1.0E9;
+
+        return new Contours(false, "success", duration, contourList);
+    }
+
+    /**
+     * Places the emitters of each road and builds its envelope in the coordinates of the shared matrix.
+     * A tile is skipped for a road only if the road cannot contribute the lowest threshold divided by the number
+     * of the roads, so the skipped contributions of all the roads together stay below the lowest threshold.
+     *
+     */
+    void prepareRoads() {
+        double threshold = Consts.THRESHOLD_MIN * PlumeModel.CULLING_SAFETY / gaussianPlumes.size();
+
+        for (GaussianPlume gaussianPlume : gaussianPlumes) {
+            PlumeModel plumeModel = new PlumeModel(gaussianPlume, forkJoinPool);
+            plumeModel.prepareEmitters();
+            if (plumeModel.emittersX.length == 0) {
+                continue;
+            }
+
+            if (plumeModel.lineSource) {
+                plumeModel.prepareLineSource(0.0);
+            }
+            double[][] envelopePoints = plumeModel.envelopePoints();
+            double[] envelopeX = envelopePoints[0];
+            double[] envelopeY = envelopePoints[1];
+
+            double[] offset = PlumeModel.toLocalPosition(gaussianPlume.getRoadStart(), new Contours.GpsPoint(center.getLat(), center.getLon()));
+            double scaleX = Math.cos(gaussianPlume.getRoadStart().getLat() * Math.PI / 180) / Math.cos(center.getLat() * Math.PI / 180);
+            Road road = new Road(plumeModel, offset[0], offset[1], scaleX);
+
+            GaussianPlume.Wind wind = gaussianPlume.getWind();
+            if (PlumeEnvelope.isApplicable(wind.getSpeed(), wind.getStability())) {
+                double[] shiftedX = new double[envelopeX.length];
+                double[] shiftedY = new double[envelopeY.length];
+                for (int e = 0; e < envelopeX.length; e++) {
+                    shiftedX[e] = (envelopeX[e] - offset[0]) / scaleX;
+                    shiftedY[e] = envelopeY[e] - offset[1];
+                }
+                road.envelope = new PlumeEnvelope(plumeModel.windX, plumeModel.windY, wind.getSpeed(), wind.getStability(),
+                        plumeModel.emissionPerEmitter, shiftedX, shiftedY, (double) matrixSizeStart * resolution, resolution, threshold);
+            }
+            roads.add(road);
+        }
+    }
+
+    /**
+     * Calculates the matrix in parallel, one task for each row of tiles.
+     *
+     */
+    void calculateMatrix() {
+        c1 = new TiledGrid(matrixSize);
+        int tilesPerSide = (matrixSize + TILE_SIZE - 1) / TILE_SIZE;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int tileRow = 0; tileRow < tilesPerSide; tileRow++) {
+            int yStart = tileRow * TILE_SIZE;
+            tasks.add(() -> {
+                double[] tile = new double[TILE_SIZE * TILE_SIZE];
+                for (int xStart = 0; xStart < matrixSize; xStart += TILE_SIZE) {
+                    cancellation.throwIfCancelled();
+                    calculateTile(tile, xStart, yStart, Math.min(xStart + TILE_SIZE, matrixSize), Math.min(yStart + TILE_SIZE, matrixSize));
+                }
+                return null;
+            });
+        }
+        PlumeModel.invokeAll(forkJoinPool, tasks, cancellation);
+    }
+
+    /**
+     * Sums up the contributions of all the roads reaching the tile in the accumulator of the task
+     * and stores the non-zero cells in the matrix.
+     *
+     * @param tile the accumulator of the task
+     * @param xStart the first column of the tile
+     * @param yStart the first row of the tile
+     * @param xEnd the column following the last column of the tile
+     * @param yEnd the row following the last row of the tile
+     */
+    void calculateTile(double[] tile, int xStart, int yStart, int xEnd, int yEnd) {
+        Arrays.fill(tile, 0.0);
+        boolean reached = false;
+
+        for (Road road : roads) {
+            if (road.envelope != null && road.envelope.isNegligible(xStart, yStart, xEnd, yEnd)) {
+                continue;
+            }
+            reached = true;
+
+            for (int row = yStart; row < yEnd; row++) {
+                double y = (double) (matrixSizeStart + row) * resolution + road.offsetY;
+                int offset = (row - yStart) * TILE_SIZE - xStart;
+                for (int col = xStart; col < xEnd; col++) {
+                    double x = (double) (matrixSizeStart + col) * resolution * road.scaleX + road.offsetX;
+                    tile[offset + col] += road.plumeModel.concentration(x, y);
+                }
+            }
+        }
+        if (!reached) {
+            return;
+        }
+
+        for (int row = yStart; row < yEnd; row++) {
+            int offset = (row - yStart) * TILE_SIZE - xStart;
+            for (int col = xStart; col < xEnd; col++) {
+                if (tile[offset + col] != 0) {
+                    c1.set(row, col, tile[offset + col]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the isolines of all the thresholds of the combined field with the marching squares.
+     * The plumes of distant roads form separate isolines, so every closed isoline is returned
+     * as a separate contour, the longest ones of each threshold first.
+     *
+     * @return the list of contours in ascending order of the thresholds
+     */
+    List<Contours.Contour> findAllIsolines() {
+        double[] thresholds = PlumeModel.contourThresholds();
+        MarchingSquares extractor = new MarchingSquares(c1, thresholds);
+        int squareRows = extractor.getSquareRows();
+        int stripSize = Math.max(1, squareRows / (forkJoinPool.getParallelism() * 4));
+
+        MarchingSquares.Strip[] stripArray = new MarchingSquares.Strip[(squareRows + stripSize - 1) / stripSize];
+        List<Callable<Void>> scanTasks = new ArrayList<>();
+        for (int s = 0; s < stripArray.length; s++) {
+            int index = s;
+            scanTasks.add(() -> {
+                stripArray[index] = extractor.scan(index * stripSize, Math.min((index + 1) * stripSize, squareRows));
+                return null;
+            });
+        }
+        PlumeModel.invokeAll(forkJoinPool, scanTasks, cancellation);
+        List<MarchingSquares.Strip> strips = Arrays.asList(stripArray);
+
+        String color = PlumeModel.contourColor(pollutionType);
+        List<List<Contours.Contour>> levelContours = new ArrayList<>();
+        List<Callable<Void>> traceTasks = new ArrayList<>();
+        for (int t = 0; t < thresholds.length; t++) {
+            int level = t;
+            List<Contours.Contour> contours = new ArrayList<>();
+            levelContours.add(contours);
+            traceTasks.add(() -> {
+                List<double[]> polylines = new ArrayList<>(extractor.trace(level, strips));
+                polylines.sort(Comparator.comparingInt((double[] polyline) -> polyline.length).reversed());
+                for (double[] polyline : polylines) {
+                    List<Contours.GpsPoint> points = new ArrayList<>();
+                    for (int p = 0; p < polyline.length; p += 2) {
+                        points.add(PlumeModel.toGpsPoint(center, polyline[p] * resolution, polyline[p + 1] * resolution, matrixSizeStart * resolution));
+                    }
+                    contours.add(new Contours.Contour(PlumeModel.contourLabel(thresholds[level]), color, points));
+                }
+                return null;
+            });
+        }
+        PlumeModel.invokeAll(forkJoinPool, traceTasks, cancellation);
+
+        List<Contours.Contour> contourList = new ArrayList<>();
+        levelContours.forEach(contourList::addAll);
+        return contourList;
+    }
+}
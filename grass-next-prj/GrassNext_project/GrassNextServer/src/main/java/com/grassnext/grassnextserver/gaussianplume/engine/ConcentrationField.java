@@ -0,0 +1,230 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Represents the air pollution concentration field of a single calculation, evaluated at any GPS point
+ * and rendered into the colored raster tiles of the Web Mercator tile pyramid ({@code /{z}/{x}/{y}}).
+ * The emitters, or the line source, are placed once, and each pixel of a tile is evaluated directly,
+ * so the tiles of every zoom level show the field at their own resolution without calculating the matrix.
+ * The pixels outside the plume envelope are skipped as the blocks of the matrix are.
+ * The field covers the same square area as the matrix of the calculation.
+ *
+ */
+public class ConcentrationField {
+    /**
+     * The opacity of the pixels reaching only the lowest threshold.
+     *
+     */
+    static final int MIN_ALPHA = 64;
+    /**
+     * The opacity of the pixels reaching the highest threshold.
+     *
+     */
+    static final int MAX_ALPHA = 208;
+    /**
+     * The number of pixels of one side of the blocks checked against the plume envelope.
+     *
+     */
+    static final int PIXEL_BLOCK = 32;
+
+    /**
+     * The model of the calculation providing the emitters or the line source.
+     *
+     */
+    final PlumeModel plumeModel;
+    /**
+     * The road starting point placed in the middle of the field.
+     *
+     */
+    final GaussianPlume.GpsPoint roadStart;
+    /**
+     * The concentration thresholds of the contours in ascending order.
+     *
+     */
+    final double[] thresholds;
+    /**
+     * The RGB color of the pollution type.
+     *
+     */
+    final int rgb;
+    /**
+     * The coordinate (in meters) of the first cell of the field relative to the road starting point.
+     *
+     */
+    final double fieldStart;
+    /**
+     * The coordinate (in meters) of the last cell of the field relative to the road starting point.
+     *
+     */
+    final double fieldEnd;
+    /**
+     * The envelope of the plume in meters relative to the road starting point, or null if no block is skipped.
+     *
+     */
+    final PlumeEnvelope envelope;
+
+    /**
+     * Constructs a new instance of the ConcentrationField class and places the emitters of the road.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters of the calculation
+     */
+    public ConcentrationField(GaussianPlume gaussianPlume) {
+        this.plumeModel = new PlumeModel(gaussianPlume, ForkJoinPool.commonPool());
+        this.roadStart = gaussianPlume.getRoadStart();
+        this.thresholds = PlumeModel.contourThresholds();
+        this.rgb = Integer.parseInt(PlumeModel.contourColor(gaussianPlume.getPollutionType()).substring(1), 16);
+        this.fieldStart = plumeModel.matrixSizeStart;
+        this.fieldEnd = plumeModel.matrixSizeStart + plumeModel.matrixSize - 1;
+
+        plumeModel.prepareEmitters();
+        if (plumeModel.lineSource && plumeModel.emittersX.length > 0) {
+            plumeModel.prepareLineSource(0.0);
+        }
+
+        GaussianPlume.Wind wind = gaussianPlume.getWind();
+        if (PlumeEnvelope.isApplicable(wind.getSpeed(), wind.getStability())) {
+            double[][] envelopePoints = plumeModel.envelopePoints();
+            this.envelope = new PlumeEnvelope(plumeModel.windX, plumeModel.windY, wind.getSpeed(), wind.getStability(),
+                    plumeModel.emissionPerEmitter, envelopePoints[0], envelopePoints[1], 0.0, 1.0,
+                    Consts.THRESHOLD_MIN * PlumeModel.CULLING_SAFETY);
+        } else {
+            this.envelope = null;
+        }
+    }
+
+    /**
+     * Returns the GPS bounds of the field.
+     *
+     * @return an array containing the south, west, north and east bounds of the field
+     */
+    public double[] getBounds() {
+        Contours.GpsPoint southWest = PlumeModel.toGpsPoint(roadStart, 0, 0, (int) fieldStart);
+        Contours.GpsPoint northEast = PlumeModel.toGpsPoint(roadStart, fieldEnd - fieldStart, fieldEnd - fieldStart, (int) fieldStart);
+
+        return new double[]{southWest.getLat(), southWest.getLon(), northEast.getLat(), northEast.getLon()};
+    }
+
+    /**
+     * Estimates the cost of rendering a tile as the number of evaluations of the Gaussian function,
+     * the pixels of the tile multiplied by the emitters placed along the road.
+     *
+     * @param tileSize the number of pixels of one side of the tile
+     * @return the estimated cost of rendering a tile
+     */
+    public long estimateTileCost(int tileSize) {
+        return CalculationExecutor.estimateCost(tileSize, List.of(plumeModel.gaussianPlume));
+    }
+
+    /**
+     * Renders a tile of the Web Mercator tile pyramid. Each pixel is evaluated at its center and colored
+     * with the color of the pollution type, more opaque for the higher thresholds; the pixels below
+     * the lowest threshold or outside the field are transparent. The tile is evaluated in blocks of
+     * {@link #PIXEL_BLOCK} pixels, and the blocks outside the plume envelope are skipped.
+     * The cancellation token is checked before each row of the blocks.
+     *
+     * @param zoom the zoom level of the tile
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @param tileSize the number of pixels of one side of the tile
+     * @param cancellation the cancellation token of the rendering
+     * @return the ARGB pixels of the tile row by row, or null if the tile does not reach the lowest threshold
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    public int[] render(int zoom, int tileX, int tileY, int tileSize, CancellationToken cancellation) {
+        double tiles = Math.pow(2, zoom);
+        double latitudeScale = Math.cos(roadStart.getLat() * Math.PI / 180);
+
+        double[] x = new double[tileSize];
+        double[] y = new double[tileSize];
+        for (int p = 0; p < tileSize; p++) {
+            double longitude = (tileX + (p + 0.5) / tileSize) / tiles * 360.0 - 180.0;
+            x[p] = (longitude - roadStart.getLon()) * (Math.PI / 180) * latitudeScale * PlumeModel.EARTH_RADIUS * 1000.0;
+
+            double mercator = Math.PI * (1 - 2 * (tileY + (p + 0.5) / tileSize) / tiles);
+            double latitude = Math.toDegrees(Math.atan(Math.sinh(mercator)));
+            y[p] = (latitude - roadStart.getLat()) * (Math.PI / 180) * PlumeModel.EARTH_RADIUS * 1000.0;
+        }
+        // The x coordinates grow with the pixel column and the y coordinates fall with the pixel row
+        if (x[tileSize - 1] < fieldStart || x[0] > fieldEnd || y[0] < fieldStart || y[tileSize - 1] > fieldEnd) {
+            return null;
+        }
+
+        int[] pixels = null;
+        for (int blockY = 0; blockY < tileSize; blockY += PIXEL_BLOCK) {
+            cancellation.throwIfCancelled();
+            int blockYEnd = Math.min(blockY + PIXEL_BLOCK, tileSize);
+
+            for (int blockX = 0; blockX < tileSize; blockX += PIXEL_BLOCK) {
+                int blockXEnd = Math.min(blockX + PIXEL_BLOCK, tileSize);
+                if (envelope != null && envelope.isNegligible((int) Math.floor(x[blockX]), (int) Math.floor(y[blockYEnd - 1]),
+                        (int) Math.ceil(x[blockXEnd - 1]) + 1, (int) Math.ceil(y[blockY]) + 1)) {
+                    continue;
+                }
+
+                for (int py = blockY; py < blockYEnd; py++) {
+                    if (y[py] < fieldStart || y[py] > fieldEnd) {
+                        continue;
+                    }
+                    for (int px = blockX; px < blockXEnd; px++) {
+                        if (x[px] < fieldStart || x[px] > fieldEnd) {
+                            continue;
+                        }
+
+                        int color = color(plumeModel.concentration(x[px], y[py]));
+                        if (color != 0) {
+                            if (pixels == null) {
+                                pixels = new int[tileSize * tileSize];
+                            }
+                            pixels[py * tileSize + px] = color;
+                        }
+                    }
+                }
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Determines whether the tile lies within the Web Mercator tile pyramid.
+     *
+     * @param zoom the zoom level of the tile
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @param maxZoom the highest supported zoom level
+     * @return true if the zoom level and the tile coordinates are valid
+     */
+    public static boolean isValidTile(int zoom, int tileX, int tileY, int maxZoom) {
+        if (zoom < 0 || zoom > maxZoom) {
+            return false;
+        }
+        long tiles = 1L << zoom;
+        return tileX >= 0 && tileX < tiles && tileY >= 0 && tileY < tiles;
+    }
+
+    /**
+     * Maps the concentration to the ARGB color of the highest threshold it reaches.
+     *
+     * @param concentration the air pollution concentration
+     * @return the ARGB color, or 0 (transparent) if the concentration is below the lowest threshold
+     */
+    int color(double concentration) {
+        int level = Arrays.binarySearch(thresholds, concentration);
+        level = level >= 0 ? level : -level - 2;
+        if (level < 0) {
+            return 0;
+        }
+
+        int alpha = MIN_ALPHA + (MAX_ALPHA - MIN_ALPHA) * level / Math.max(1, thresholds.length - 1);
+        return alpha << 24 | rgb;
+    }
+}
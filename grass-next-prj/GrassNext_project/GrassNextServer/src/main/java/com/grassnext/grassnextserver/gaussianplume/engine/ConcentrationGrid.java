@@ -0,0 +1,52 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+/**
+ * The ConcentrationGrid interface describes a square matrix of the air pollution concentration,
+ * indexed by row and column. The cells which have never been set are equal to 0.
+ *
+ */
+public interface ConcentrationGrid {
+    /**
+     * Returns the size of one side of the grid.
+     *
+     * @return the number of rows and columns
+     */
+    int getSize();
+
+    /**
+     * Returns the value of the cell.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the value of the cell
+     */
+    double get(int row, int col);
+
+    /**
+     * Sets the value of the cell. The cells of different rows and columns can be set concurrently.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param value the new value of the cell
+     * @return the value actually stored, which may be rounded to the precision of the grid
+     */
+    double set(int row, int col, double value);
+
+    /**
+     * Determines whether all the cells of the block are known to be 0 without reading them.
+     *
+     * @param rowStart the first row of the block
+     * @param colStart the first column of the block
+     * @param rowEnd the row following the last row of the block
+     * @param colEnd the column following the last column of the block
+     * @return true if the block contains only zeros, false if it may contain other values
+     */
+    boolean isEmpty(int rowStart, int colStart, int rowEnd, int colEnd);
+
+    /**
+     * Returns the memory occupied by the values of the grid.
+     *
+     * @return the size of the grid in bytes
+     */
+    long getBytes();
+}
@@ -0,0 +1,184 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The ContourTracer class extracts the external contours of a binary image using the Suzuki-Abe
+ * border following algorithm.
+ *
+ * It is a port of the {@code cv::findContours} function of the OpenCV 4.8 library called with the
+ * {@code RETR_EXTERNAL} mode and the {@code CHAIN_APPROX_SIMPLE} method, as used by the native C++ library.
+ * The order in which the contours are returned and the points of each contour match the OpenCV output.
+ *
+ */
+public class ContourTracer {
+    /**
+     * The value used for marking the already visited border pixels.
+     *
+     */
+    private static final byte NBD = 2;
+    /**
+     * The value used for marking the visited border pixels on the right side of an object.
+     *
+     */
+    private static final byte NBD_RIGHT = (byte) (NBD | -128);
+    /**
+     * The x-axis shifts for each of the 8 chain code directions.
+     *
+     */
+    private static final int[] CODE_DELTA_X = {1, 1, 0, -1, -1, -1, 0, 1};
+    /**
+     * The y-axis shifts for each of the 8 chain code directions.
+     *
+     */
+    private static final int[] CODE_DELTA_Y = {0, -1, -1, -1, 0, 1, 1, 1};
+
+    /**
+     * Creates a binary image padded with a one pixel wide frame of zeros, as required by {@link #findExternalContours}.
+     *
+     * @param size the size of one side of the unpadded square image
+     * @return the zero-filled image of {@code (size + 2) * (size + 2)} pixels
+     */
+    public static byte[] createPaddedImage(int size) {
+        return new byte[(size + 2) * (size + 2)];
+    }
+
+    /**
+     * Finds the external contours of the binary image.
+     *
+     * @param image the binary image containing only 0 and 1 values, stored row by row and surrounded by a frame of zeros;
+     *              the image is modified during the contour tracing
+     * @param width the width of the image including the frame
+     * @param height the height of the image including the frame
+     * @return a list of contours in the OpenCV output order, each one stored as an array of consecutive
+     *         x and y coordinates of the unpadded image
+     */
+    public static List<int[]> findExternalContours(byte[] image, int width, int height) {
+        Deque<int[]> contours = new ArrayDeque<>();
+
+        int lnbdX = 0;
+        int lnbdY = 1;
+        int prev = 0;
+        int x = 1;
+        for (int y = 1; y < height - 1; y++) {
+            int row = y * width;
+            for (; x < width - 1; x++) {
+                int p = 0;
+                for (; x < width - 1 && (p = image[row + x]) == prev; x++) ;
+                if (x >= width - 1) {
+                    break;
+                }
+
+                boolean isHole = false;
+                boolean resume = false;
+                if (!(prev == 0 && p == 1)) {
+                    if (p != 0 || prev < 1) {
+                        resume = true;
+                    } else {
+                        if ((prev & -2) != 0) {
+                            lnbdX = x - 1;
+                        }
+                        isHole = true;
+                    }
+                }
+
+                if (!resume && !isHole && image[lnbdY * width + lnbdX] <= 0) {
+                    contours.addFirst(fetchContour(image, width, row + x, x - 1, y - 1));
+                    lnbdX = x;
+                    prev = image[row + x];
+                    continue;
+                }
+
+                prev = p;
+                if ((prev & -2) != 0) {
+                    lnbdX = x;
+                }
+            }
+
+            lnbdX = 0;
+            lnbdY = y + 1;
+            x = 1;
+            prev = 0;
+        }
+
+        return new ArrayList<>(contours);
+    }
+
+    /**
+     * Follows a single outer border starting at the given pixel, marks the visited border pixels
+     * and collects the points where the direction of the border changes.
+     *
+     * @param image the binary image being traced
+     * @param step the width of the image including the frame
+     * @param start the index of the starting pixel of the border
+     * @param x the x coordinate of the starting pixel in the unpadded image
+     * @param y the y coordinate of the starting pixel in the unpadded image
+     * @return an array of consecutive x and y coordinates of the contour points
+     */
+    private static int[] fetchContour(byte[] image, int step, int start, int x, int y) {
+        int[] deltas = {
+                1, -step + 1, -step, -step - 1, -1, step - 1, step, step + 1,
+                1, -step + 1, -step, -step - 1, -1, step - 1, step, step + 1
+        };
+        int[] points = new int[16];
+        int count = 0;
+
+        int s = 4;
+        int sEnd = 4;
+        int i1;
+        do {
+            s = (s - 1) & 7;
+            i1 = start + deltas[s];
+        } while (image[i1] == 0 && s != sEnd);
+
+        if (s == sEnd) {
+            image[start] = NBD_RIGHT;
+            return new int[]{x, y};
+        }
+
+        int i3 = start;
+        int i4 = start;
+        int prevS = s ^ 4;
+        for (;;) {
+            sEnd = s;
+            while (s < deltas.length - 1) {
+                i4 = i3 + deltas[++s];
+                if (image[i4] != 0) {
+                    break;
+                }
+            }
+            s &= 7;
+
+            if (Integer.compareUnsigned(s - 1, sEnd) < 0) {
+                image[i3] = NBD_RIGHT;
+            } else if (image[i3] == 1) {
+                image[i3] = NBD;
+            }
+
+            if (s != prevS) {
+                if (count + 2 > points.length) {
+                    points = Arrays.copyOf(points, points.length * 2);
+                }
+                points[count++] = x;
+                points[count++] = y;
+                prevS = s;
+            }
+
+            x += CODE_DELTA_X[s];
+            y += CODE_DELTA_Y[s];
+
+            if (i4 == start && i3 == i1) {
+                break;
+            }
+
+            i3 = i4;
+            s = (s + 4) & 7;
+        }
+
+        return Arrays.copyOf(points, count);
+    }
+}
@@ -0,0 +1,83 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+/**
+ * The DenseGrid class stores every cell of the concentration grid with the double precision,
+ * in the same layout as the matrix of the native library.
+ *
+ */
+public class DenseGrid implements ConcentrationGrid {
+    /**
+     * The values of the grid indexed by row and column.
+     *
+     */
+    final double[][] values;
+    /**
+     * The size of one side of the grid, which may be smaller than the backing matrix borrowed from the grid arena.
+     *
+     */
+    private final int size;
+
+    /**
+     * Constructs a zero-filled grid.
+     *
+     * @param size the size of one side of the grid
+     */
+    public DenseGrid(int size) {
+        this(new double[size][size]);
+    }
+
+    /**
+     * Constructs a grid backed by the given matrix.
+     *
+     * @param values the square matrix indexed by row and column
+     */
+    public DenseGrid(double[][] values) {
+        this(values, values.length);
+    }
+
+    /**
+     * Constructs a grid backed by the upper-left part of the given matrix.
+     *
+     * @param values the matrix indexed by row and column, with at least the given number of rows and columns
+     * @param size the size of one side of the grid
+     */
+    public DenseGrid(double[][] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns the matrix backing the grid.
+     *
+     * @return the matrix indexed by row and column
+     */
+    public double[][] getValues() {
+        return values;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return values[row][col];
+    }
+
+    @Override
+    public double set(int row, int col, double value) {
+        values[row][col] = value;
+        return value;
+    }
+
+    @Override
+    public boolean isEmpty(int rowStart, int colStart, int rowEnd, int colEnd) {
+        return false;
+    }
+
+    @Override
+    public long getBytes() {
+        return (long) values.length * (values.length > 0 ? values[0].length : 0) * Double.BYTES;
+    }
+}
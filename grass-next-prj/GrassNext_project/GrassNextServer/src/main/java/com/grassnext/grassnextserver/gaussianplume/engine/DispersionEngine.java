@@ -0,0 +1,91 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The DispersionEngine interface describes a component able to calculate air pollution dispersion
+ * contours using the Gaussian Plume formula.
+ *
+ * The implementation used by the application is selected through the {@code gn.engine} property.
+ *
+ */
+public interface DispersionEngine {
+    /**
+     * Value of the {@code gn.engine} property selecting the native C++ library ({@link NativeDispersionEngine}).
+     *
+     */
+    String NATIVE = "native";
+    /**
+     * Value of the {@code gn.engine} property selecting the pure Java implementation ({@link JvmDispersionEngine}).
+     *
+     */
+    String JVM = "jvm";
+    /**
+     * Value of the {@code gn.engine} property selecting the pool of worker processes ({@link WorkerDispersionEngine}).
+     *
+     */
+    String WORKER = "worker";
+
+    /**
+     * Calculates the pollution contours for the given Gaussian Plume parameters.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized
+     *               {@link com.grassnext.grassnextserver.gaussianplume.GaussianPlume} object
+     * @return a JSON-formatted string containing the serialized {@link com.grassnext.grassnextserver.common.Contours}
+     *         object, or null if the calculation could not be performed
+     */
+    String calculate(String jsonIn);
+
+    /**
+     * Calculates the pollution contours for the given Gaussian Plume parameters, stopping as soon as possible
+     * once the cancellation token is cancelled or its deadline expires. By default the token is checked only
+     * before the calculation starts, as the calculation cannot be interrupted.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized
+     *               {@link com.grassnext.grassnextserver.gaussianplume.GaussianPlume} object
+     * @param cancellation the cancellation token of the calculation
+     * @return a JSON-formatted string containing the serialized {@link com.grassnext.grassnextserver.common.Contours}
+     *         object, or null if the calculation could not be performed
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    default String calculate(String jsonIn, CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+        return calculate(jsonIn);
+    }
+
+    /**
+     * Determines whether the engine is able to calculate the dispersion with the given model of the road emission.
+     * By default only the point emitters are supported.
+     *
+     * @param sourceModel the model of the road emission
+     * @return true if the model is supported
+     */
+    default boolean supports(SourceModelEnum sourceModel) {
+        return sourceModel == SourceModelEnum.POINT;
+    }
+
+    /**
+     * Determines whether the engine stops a running calculation once its cancellation token is cancelled.
+     * By default the token is checked only before the calculation starts.
+     *
+     * @return true if a running calculation can be cancelled
+     */
+    default boolean isCancellable() {
+        return false;
+    }
+
+    /**
+     * Returns the pool executing the parallel parts of the calculations of the engine in the JVM, so the other
+     * calculations of the pure Java model can share it. By default the engine calculates outside the JVM
+     * and has no pool.
+     *
+     * @return the fork-join pool of the engine, or null if the engine does not calculate in the JVM
+     */
+    default ForkJoinPool getForkJoinPool() {
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * The EmitterKernel interface describes the evaluation of the Gaussian function of the point emitters
+ * for a whole row of the matrix at once. The row is processed by the vectorized kernel using the Java Vector API
+ * when it has been built and the {@code jdk.incubator.vector} module is available at runtime, and by the scalar
+ * kernel otherwise.
+ *
+ * The vectorized kernel is compiled only with the {@code vector} Maven profile ({@code mvn -Pvector package}),
+ * so the default build does not depend on the incubator module and javac does not warn about it.
+ *
+ */
+public interface EmitterKernel {
+    /**
+     * The name of the module providing the Java Vector API.
+     *
+     */
+    String VECTOR_MODULE = "jdk.incubator.vector";
+    /**
+     * The name of the vectorized kernel class, present only in the builds of the {@code vector} profile.
+     *
+     */
+    String VECTOR_KERNEL_CLASS = "com.grassnext.grassnextserver.gaussianplume.engine.VectorEmitterKernel";
+
+    /**
+     * Adds the concentrations produced by the emitters to the cells of a row.
+     *
+     * @param y the y coordinate of the row (in meters)
+     * @param x the x coordinates of the cells of the row (in meters)
+     * @param length the number of the cells of the row
+     * @param emittersX the x coordinates of the emitters (in meters)
+     * @param emittersY the y coordinates of the emitters (in meters)
+     * @param emission the emission per emitter
+     * @param out the concentrations of the cells of the row, to which the concentrations of the emitters are added
+     */
+    void sumRow(double y, double[] x, int length, double[] emittersX, double[] emittersY, double emission, double[] out);
+
+    /**
+     * Returns the number of the cells evaluated together by the kernel.
+     *
+     * @return the number of the vector lanes, or 1 for the scalar kernel
+     */
+    int getLanes();
+
+    /**
+     * Creates the kernel for the wind and the heights of the calculation, vectorized if the Java Vector API is available.
+     *
+     * @param windX the x component of the unit vector pointing in the direction the wind blows to
+     * @param windY the y component of the unit vector pointing in the direction the wind blows to
+     * @param windSpeed the wind speed
+     * @param stability the atmospheric stability class [1-6]
+     * @param emittersHeight the height of the emitters
+     * @param concentrationHeight the height at which the concentration is calculated
+     * @return the kernel, or null if the stability class is not supported
+     */
+    static EmitterKernel create(double windX, double windY, double windSpeed, int stability,
+                                double emittersHeight, double concentrationHeight) {
+        if (ScalarEmitterKernel.sigmaCoefficients(stability) == null) {
+            return null;
+        }
+        if (VectorSupport.LANES > 1) {
+            try {
+                return VectorSupport.CONSTRUCTOR.newInstance(windX, windY, windSpeed, stability, emittersHeight, concentrationHeight);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create the vectorized kernel", e);
+            }
+        }
+        return new ScalarEmitterKernel(windX, windY, windSpeed, stability, emittersHeight, concentrationHeight);
+    }
+
+    /**
+     * Returns the number of the double precision lanes of the preferred vector species of the platform.
+     *
+     * @return the number of the lanes, or 0 if the Java Vector API is not available
+     */
+    static int vectorLanes() {
+        return VectorSupport.LANES;
+    }
+
+    /**
+     * Holder of the result of the detection of the Java Vector API, performed once when it is first needed.
+     * The vectorized kernel is loaded only if it has been built and the module has been added to the boot layer
+     * ({@code --add-modules jdk.incubator.vector}), as its classes cannot be linked without it.
+     *
+     */
+    final class VectorSupport {
+        /**
+         * The constructor of the vectorized kernel, or null if the kernel has not been built or the API is not available.
+         *
+         */
+        static final Constructor<? extends EmitterKernel> CONSTRUCTOR = findConstructor();
+        /**
+         * The number of the double precision lanes of the preferred vector species, or 0 if the API is not available.
+         *
+         */
+        static final int LANES = detect();
+
+        /**
+         * The VectorSupport class is not instantiated.
+         *
+         */
+        private VectorSupport() {
+        }
+
+        /**
+         * Detects the Java Vector API and the width of its preferred species.
+         *
+         * @return the number of the double precision lanes, or 0 if the API is not available
+         */
+        static int detect() {
+            if (CONSTRUCTOR == null) {
+                return 0;
+            }
+            try {
+                return (int) CONSTRUCTOR.getDeclaringClass().getDeclaredMethod("preferredLanes").invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Finds the constructor of the vectorized kernel.
+         *
+         * @return the constructor, or null if the kernel has not been built or the API is not available
+         */
+        static Constructor<? extends EmitterKernel> findConstructor() {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+                return null;
+            }
+            try {
+                return Class.forName(VECTOR_KERNEL_CLASS).asSubclass(EmitterKernel.class).getDeclaredConstructor(
+                        double.class, double.class, double.class, int.class, double.class, double.class);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+}
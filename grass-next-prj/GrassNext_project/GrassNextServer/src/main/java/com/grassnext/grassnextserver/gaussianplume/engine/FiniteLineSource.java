@@ -0,0 +1,392 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+/**
+ * The FiniteLineSource class calculates the concentration produced by the whole road segment treated as
+ * a continuous line source of a constant emission per meter, instead of summing up the point emitters.
+ *
+ * Along the road both the downwind distance {@code d} and the crosswind distance {@code c} of the receptor change
+ * linearly. The integral of the Gaussian function along the road is calculated with the substitution
+ * {@code t = c / sigmaY(d)}: the integrand becomes the normal density of {@code t}, multiplied by
+ * {@code q * d * V / (sqrt(2 * PI) * u * sigmaZ * |J|)}, where {@code V} is the vertical term with the ground reflection
+ * and {@code J} is the jacobian of the substitution, which is constant for the horizontal coefficient growing
+ * linearly with the distance. Both remaining factors are taken at the road point whose plume centerline passes
+ * through the receptor, so each piece of the road reduces to a difference of the error functions.
+ * The road is split into pieces only where the downwind distance changes considerably along it, which happens
+ * for the wind blowing nearly along the road. The pieces for which the substitution is not monotonic are
+ * integrated with the Simpson's rule.
+ *
+ */
+public class FiniteLineSource {
+    /**
+     * The largest ratio of the downwind distances of the ends of a single piece of the road.
+     *
+     */
+    static final double PIECE_RATIO = 1.25;
+    /**
+     * The largest number of pieces the road is split into for a single receptor.
+     *
+     */
+    static final int MAX_PIECES = 160;
+    /**
+     * The largest change of the logarithm of the vertical factor within a single piece of the road. Near the road
+     * and in the stable classes the vertical factor changes much faster with the downwind distance than the
+     * horizontal one, so the pieces are shortened below {@link #PIECE_RATIO} to keep it nearly constant.
+     *
+     */
+    static final double MAX_VERTICAL_CHANGE = 0.1;
+    /**
+     * The exponent of the vertical factor above which the piece is not shortened, since its contribution
+     * is negligible at any length.
+     *
+     */
+    static final double MAX_VERTICAL_EXPONENT = 10.0;
+    /**
+     * The normalized crosswind distance of the piece start above which the piece is not shortened, since
+     * the piece lies outside the plume reaching the receptor.
+     *
+     */
+    static final double MAX_NORMALIZED_CROSSWIND = 8.0;
+    /**
+     * The downwind distance (in meters) below which the road is not split further.
+     *
+     */
+    static final double MIN_PIECE_DOWNWIND = 1.0;
+    /**
+     * The smallest downwind distance (in meters) for which the dispersion coefficients are evaluated.
+     *
+     */
+    static final double MIN_DOWNWIND = 1.0E-9;
+    /**
+     * The extent of the normalized crosswind distance of a piece below which the piece is treated as a single
+     * point, because the difference of the error functions would lose its precision.
+     *
+     */
+    static final double MIN_NORMALIZED_EXTENT = 1.0E-6;
+    /**
+     * The lowest ratio of the jacobian of the substitution to the sum of the magnitudes of its terms,
+     * below which the piece is integrated numerically.
+     *
+     */
+    static final double MIN_JACOBIAN_RATIO = 0.3;
+    /**
+     * The ratio of the downwind distances used for the local growth rate of the horizontal dispersion coefficient.
+     *
+     */
+    static final double SIGMA_GROWTH_STEP = 1.01;
+
+    /**
+     * The x component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windX;
+    /**
+     * The y component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windY;
+    /**
+     * The wind speed.
+     *
+     */
+    final double windSpeed;
+    /**
+     * The atmospheric stability class [1-6].
+     *
+     */
+    final int stability;
+    /**
+     * The emission per meter of the road.
+     *
+     */
+    final double emissionPerMeter;
+    /**
+     * The height of the emitters.
+     *
+     */
+    final double emittersHeight;
+    /**
+     * The height at which the concentration is calculated.
+     *
+     */
+    final double concentrationHeight;
+    /**
+     * The x coordinate (in meters) of the road starting point.
+     *
+     */
+    final double startX;
+    /**
+     * The y coordinate (in meters) of the road starting point.
+     *
+     */
+    final double startY;
+    /**
+     * The length of the road in meters.
+     *
+     */
+    final double length;
+    /**
+     * The downwind component of the unit vector pointing along the road.
+     *
+     */
+    final double roadDownwind;
+    /**
+     * The crosswind component of the unit vector pointing along the road.
+     *
+     */
+    final double roadCrosswind;
+
+    /**
+     * Constructs a new instance of the FiniteLineSource class.
+     *
+     * @param windX the x component of the wind unit vector
+     * @param windY the y component of the wind unit vector
+     * @param windSpeed the wind speed
+     * @param stability the atmospheric stability class [1-6]
+     * @param emissionPerMeter the emission per meter of the road
+     * @param emittersHeight the height of the emitters
+     * @param concentrationHeight the height at which the concentration is calculated
+     * @param startX the x coordinate of the road starting point
+     * @param startY the y coordinate of the road starting point
+     * @param endX the x coordinate of the road ending point
+     * @param endY the y coordinate of the road ending point
+     */
+    FiniteLineSource(double windX, double windY, double windSpeed, int stability, double emissionPerMeter,
+                     double emittersHeight, double concentrationHeight, double startX, double startY, double endX, double endY) {
+        this.windX = windX;
+        this.windY = windY;
+        this.windSpeed = windSpeed;
+        this.stability = stability;
+        this.emissionPerMeter = emissionPerMeter;
+        this.emittersHeight = emittersHeight;
+        this.concentrationHeight = concentrationHeight;
+        this.startX = startX;
+        this.startY = startY;
+        this.length = Math.hypot(endX - startX, endY - startY);
+
+        double roadX = length > 0 ? (endX - startX) / length : 0.0;
+        double roadY = length > 0 ? (endY - startY) / length : 0.0;
+        this.roadDownwind = windX * roadX + windY * roadY;
+        this.roadCrosswind = windX * roadY - windY * roadX;
+    }
+
+    /**
+     * Calculates the concentration produced by the road at the given matrix cell.
+     *
+     * @param x the x coordinate of the cell (in meters)
+     * @param y the y coordinate of the cell (in meters)
+     * @return the air pollution concentration, or 0 if the cell is not downwind of any part of the road
+     */
+    double concentration(double x, double y) {
+        double dx = x - startX;
+        double dy = y - startY;
+        double downwind = windX * dx + windY * dy;
+        double crosswind = windX * dy - windY * dx;
+
+        // Only the part of the road upwind of the cell contributes
+        double from = 0.0;
+        double to = length;
+        if (roadDownwind > 0) {
+            to = Math.min(downwind / roadDownwind, to);
+        } else if (roadDownwind < 0) {
+            from = Math.max(downwind / roadDownwind, from);
+        } else if (downwind <= 0) {
+            return 0.0;
+        }
+        if (!(from < to)) {
+            return 0.0;
+        }
+
+        double downwindFrom = downwind - from * roadDownwind;
+        double downwindTo = downwind - to * roadDownwind;
+        double nearest = Math.max(Math.min(downwindFrom, downwindTo), MIN_PIECE_DOWNWIND);
+        double farthest = Math.max(downwindFrom, downwindTo);
+
+        if (roadDownwind == 0 || farthest <= nearest * pieceRatio(nearest)) {
+            return pieceConcentration(downwind, crosswind, from, to);
+        }
+
+        // The pieces are split at the downwind distances growing geometrically from the nearest to the farthest one,
+        // with shorter pieces where the plume of the piece reaches the receptor and the vertical factor changes fast
+        double c = 0.0;
+        double pieceNear = Math.min(downwindFrom, downwindTo);
+        for (int p = 1; pieceNear < farthest; p++) {
+            double pieceStart = Math.max(pieceNear, nearest);
+            double ratio = PIECE_RATIO;
+            if (p < MAX_PIECES) {
+                double startCrosswind = crosswind - (downwind - pieceStart) / roadDownwind * roadCrosswind;
+                if (Math.abs(normalizedCrosswind(startCrosswind, pieceStart)) < MAX_NORMALIZED_CROSSWIND) {
+                    ratio = pieceRatio(pieceStart);
+                }
+            }
+            double pieceFar = p == MAX_PIECES ? farthest : Math.min(pieceStart * ratio, farthest);
+            double pieceFrom = (downwind - (downwindFrom < downwindTo ? pieceNear : pieceFar)) / roadDownwind;
+            double pieceTo = (downwind - (downwindFrom < downwindTo ? pieceFar : pieceNear)) / roadDownwind;
+            c += pieceConcentration(downwind, crosswind, Math.max(pieceFrom, from), Math.min(pieceTo, to));
+            pieceNear = pieceFar;
+        }
+        return c;
+    }
+
+    /**
+     * Calculates the largest ratio of the downwind distances of the ends of a piece starting at the given distance,
+     * for which the logarithm of the vertical factor changes by at most {@link #MAX_VERTICAL_CHANGE}. The change
+     * is estimated from the exponents of the direct and the reflected term, taking the vertical dispersion
+     * coefficient as growing about linearly with the distance.
+     *
+     * @param downwind the downwind distance of the piece start in meters
+     * @return the ratio of the piece ends, at most {@link #PIECE_RATIO}
+     */
+    double pieceRatio(double downwind) {
+        double sigmaZ = PlumeModel.calculateSigmas(downwind, stability)[1];
+        double near = Math.pow(concentrationHeight - emittersHeight, 2) / (2 * sigmaZ * sigmaZ);
+        if (near > MAX_VERTICAL_EXPONENT) {
+            return PIECE_RATIO;
+        }
+        double reflected = Math.pow(concentrationHeight + emittersHeight, 2) / (2 * sigmaZ * sigmaZ);
+        double weight = Math.exp(near - reflected);
+        double slope = 2 * (near + reflected * weight) / (1 + weight);
+        return Math.min(PIECE_RATIO, Math.exp(MAX_VERTICAL_CHANGE / Math.max(slope, 1e-9)));
+    }
+
+    /**
+     * Calculates the concentration produced by a piece of the road. The integral is taken over the crosswind
+     * distance divided by the horizontal dispersion coefficient, {@code t = c / sigmaY(d)}, which changes
+     * monotonically along the road. For the coefficients growing linearly with the downwind distance the Jacobian
+     * of this substitution is exact, so only the slowly changing vertical factor is taken at a single distance:
+     * the one of the road point whose plume centerline passes through the cell, limited to the piece.
+     *
+     * @param downwind the downwind distance of the cell from the road starting point
+     * @param crosswind the crosswind distance of the cell from the road starting point
+     * @param from the distance along the road (in meters) of the piece start
+     * @param to the distance along the road (in meters) of the piece end
+     * @return the air pollution concentration
+     */
+    double pieceConcentration(double downwind, double crosswind, double from, double to) {
+        if (!(from < to)) {
+            return 0.0;
+        }
+
+        double center = roadCrosswind != 0 ? crosswind / roadCrosswind : (from + to) / 2;
+        center = Math.max(from, Math.min(to, center));
+        double centerDownwind = downwind - center * roadDownwind;
+        if (centerDownwind <= MIN_DOWNWIND) {
+            return 0.0;
+        }
+        double centerCrosswind = crosswind - center * roadCrosswind;
+
+        double[] sigmas = PlumeModel.calculateSigmas(centerDownwind, stability);
+        double sigmaY = sigmas[0];
+        double sigmaZ = sigmas[1];
+        double vertical = Math.exp(-Math.pow(concentrationHeight - emittersHeight, 2) / (2 * sigmaZ * sigmaZ))
+                + Math.exp(-Math.pow(concentrationHeight + emittersHeight, 2) / (2 * sigmaZ * sigmaZ));
+
+        double crosswindFrom = crosswind - from * roadCrosswind;
+        double crosswindTo = crosswind - to * roadCrosswind;
+        double downwindFrom = downwind - from * roadDownwind;
+        double downwindTo = downwind - to * roadDownwind;
+        double tFrom = normalizedCrosswind(crosswindFrom, downwindFrom);
+        double tTo = normalizedCrosswind(crosswindTo, downwindTo);
+
+        // The derivative of t along the road equals jacobian / (sigmaY * d), where the jacobian depends on the local
+        // growth rate of sigmaY; t is monotonic within the piece only if the jacobian keeps its sign
+        double growth = Math.log(PlumeModel.calculateSigmas(centerDownwind * SIGMA_GROWTH_STEP, stability)[0] / sigmaY) / Math.log(SIGMA_GROWTH_STEP);
+        double jacobian = growth * centerCrosswind * roadDownwind - roadCrosswind * centerDownwind;
+
+        if (Math.abs(tTo - tFrom) < MIN_NORMALIZED_EXTENT
+                || !isMonotonic(growth * crosswindFrom * roadDownwind, roadCrosswind * downwindFrom)
+                || !isMonotonic(growth * crosswindTo * roadDownwind, roadCrosswind * downwindTo)
+                || (growth * crosswindFrom * roadDownwind - roadCrosswind * downwindFrom) * jacobian <= 0) {
+            // Simpson's rule, used only where the substitution is not valid
+            double middle = (from + to) / 2;
+            return (to - from) / 6 * (pointConcentration(downwindFrom, crosswindFrom)
+                    + 4 * pointConcentration(downwind - middle * roadDownwind, crosswind - middle * roadCrosswind)
+                    + pointConcentration(downwindTo, crosswindTo));
+        }
+
+        double erfDifference = erfDifference(Math.min(tFrom, tTo) / Math.sqrt(2), Math.max(tFrom, tTo) / Math.sqrt(2));
+
+        return emissionPerMeter * centerDownwind / (Math.sqrt(2 * Math.PI) * windSpeed * sigmaZ * Math.abs(jacobian)) * (erfDifference / 2) * vertical;
+    }
+
+    /**
+     * Determines whether the jacobian, the difference of the given terms, is safely away from zero.
+     * Close to zero the normalized crosswind distance hardly changes and may turn back,
+     * and a small error of the growth rate would change the jacobian considerably.
+     *
+     * @param crosswindTerm the term of the jacobian depending on the crosswind distance
+     * @param downwindTerm the term of the jacobian depending on the downwind distance
+     * @return true if the substitution can be used
+     */
+    static boolean isMonotonic(double crosswindTerm, double downwindTerm) {
+        return Math.abs(crosswindTerm - downwindTerm) >= MIN_JACOBIAN_RATIO * (Math.abs(crosswindTerm) + Math.abs(downwindTerm));
+    }
+
+    /**
+     * Calculates the concentration produced by a single meter of the road at the given distances,
+     * with the Gaussian function used for the point emitters.
+     *
+     * @param downwind the downwind distance
+     * @param crosswind the crosswind distance
+     * @return the air pollution concentration, or 0 if the distance is not downwind
+     */
+    double pointConcentration(double downwind, double crosswind) {
+        if (downwind <= MIN_DOWNWIND) {
+            return 0.0;
+        }
+
+        double[] sigmas = PlumeModel.calculateSigmas(downwind, stability);
+        double sigmaY = sigmas[0];
+        double sigmaZ = sigmas[1];
+        return emissionPerMeter / (2 * Math.PI * windSpeed * sigmaY * sigmaZ)
+                * Math.exp(-(crosswind * crosswind) / (2 * sigmaY * sigmaY))
+                * (Math.exp(-Math.pow(concentrationHeight - emittersHeight, 2) / (2 * sigmaZ * sigmaZ))
+                + Math.exp(-Math.pow(concentrationHeight + emittersHeight, 2) / (2 * sigmaZ * sigmaZ)));
+    }
+
+    /**
+     * Divides the crosswind distance by the horizontal dispersion coefficient at the given downwind distance.
+     *
+     * @param crosswind the crosswind distance
+     * @param downwind the downwind distance
+     * @return the normalized crosswind distance, infinite at the distances too small to evaluate the coefficient
+     */
+    double normalizedCrosswind(double crosswind, double downwind) {
+        if (downwind <= MIN_DOWNWIND) {
+            return crosswind >= 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        return crosswind / PlumeModel.calculateSigmas(downwind, stability)[0];
+    }
+
+    /**
+     * Calculates {@code erf(b) - erf(a)} using the complementary error function, so the difference
+     * keeps its relative precision in the tails.
+     *
+     * @param a the lower argument
+     * @param b the upper argument, not lower than a
+     * @return the difference of the error functions
+     */
+    static double erfDifference(double a, double b) {
+        if (a >= 0) {
+            return erfc(a) - erfc(b);
+        } else if (b <= 0) {
+            return erfc(-b) - erfc(-a);
+        }
+        return 2.0 - erfc(-a) - erfc(b);
+    }
+
+    /**
+     * Calculates the complementary error function with the Chebyshev approximation,
+     * whose relative error is lower than 1.2e-7 for all the arguments.
+     *
+     * @param x the argument
+     * @return the value of {@code 1 - erf(x)}
+     */
+    static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / (1.0 + 0.5 * z);
+        double value = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? value : 2.0 - value;
+    }
+}
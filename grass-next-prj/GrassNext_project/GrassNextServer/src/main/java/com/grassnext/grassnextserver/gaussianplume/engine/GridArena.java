@@ -0,0 +1,403 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class managing a pool of the concentration matrices and binary images used by the calculations.
+ *
+ * The buffers are grouped into size classes and reused by the following calculations of a similar size
+ * instead of being allocated and collected for every request. The sides of the matrices are rounded up
+ * to multiples of {@link #SIZE_CLASS_STEP}, so a borrowed buffer may be larger than requested and only
+ * its requested part is prepared for use. The total size of the borrowed and idle buffers is limited
+ * by {@code gn.grid_arena.max_mb}: a calculation that would exceed the limit waits until another one returns
+ * its matrix or its cancellation token stops it, and the idle buffers of other size classes are released first.
+ * The kernel matrices and the binary images are borrowed while the output matrix is held, so they never wait,
+ * to avoid a deadlock between the calculations.
+ *
+ */
+@Service
+public class GridArena {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the GridArena class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(GridArena.class);
+    /**
+     * The number of cells to which the rows and columns of the matrices are rounded up. The lengths
+     * of the binary images are rounded up to the multiples of its square.
+     *
+     */
+    static final int SIZE_CLASS_STEP = 64;
+    /**
+     * The maximum time in milliseconds a waiting calculation sleeps before checking its cancellation token again.
+     *
+     */
+    static final long CANCELLATION_CHECK_MILLIS = 50;
+
+    /**
+     * Inner class identifying a size class of the buffers, with the rounded up sizes of its buffers.
+     *
+     */
+    @Data
+    @AllArgsConstructor
+    static class SizeClass {
+        /**
+         * The number of rows of a matrix, or 1 for a binary image.
+         *
+         */
+        int rows;
+        /**
+         * The number of columns of a matrix, or the length of a binary image.
+         *
+         */
+        int cols;
+        /**
+         * True for a binary image, false for a concentration matrix.
+         *
+         */
+        boolean image;
+
+        /**
+         * Calculates the size of a single buffer of this class.
+         *
+         * @return the size of the buffer in bytes
+         */
+        long getBytes() {
+            return (long) rows * cols * (image ? Byte.BYTES : Double.BYTES);
+        }
+    }
+
+    /**
+     * Inner class describing the current and peak usage of the pool.
+     *
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Statistics {
+        /**
+         * The number of buffers currently borrowed by the calculations.
+         *
+         */
+        public long buffersInUse;
+        /**
+         * The total size in bytes of the buffers currently borrowed by the calculations.
+         *
+         */
+        public long bytesInUse;
+        /**
+         * The total size in bytes of the borrowed and idle buffers.
+         *
+         */
+        public long bytesAllocated;
+        /**
+         * The highest total size in bytes of the borrowed and idle buffers.
+         *
+         */
+        public long peakBytes;
+        /**
+         * The number of times a calculation waited for a matrix because of the memory limit.
+         *
+         */
+        public long waits;
+    }
+
+    /**
+     * The maximum total size in bytes of the borrowed and idle buffers.
+     *
+     */
+    @Getter
+    private final long maxBytes;
+    /**
+     * The idle buffers of each size class.
+     *
+     */
+    private final Map<SizeClass, Deque<Object>> idleBuffers = new HashMap<>();
+    /**
+     * The number of buffers currently borrowed by the calculations.
+     *
+     */
+    private long buffersInUse = 0;
+    /**
+     * The total size in bytes of the buffers currently borrowed by the calculations.
+     *
+     */
+    private long bytesInUse = 0;
+    /**
+     * The total size in bytes of the idle buffers.
+     *
+     */
+    private long bytesIdle = 0;
+    /**
+     * The highest total size in bytes of the borrowed and idle buffers.
+     *
+     */
+    private long peakBytes = 0;
+    /**
+     * The number of times a calculation waited for a matrix because of the memory limit.
+     *
+     */
+    private long waits = 0;
+
+    /**
+     * Constructs a GridArena using the memory limit defined in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the memory limit
+     */
+    @Autowired
+    public GridArena(GrassNextConfig grassNextConfig) {
+        this.maxBytes = grassNextConfig.getGridArenaMaxMb() * 1024 * 1024;
+
+        LOGGER.info("[LOGGER] Grid arena: " + (isEnabled() ? grassNextConfig.getGridArenaMaxMb() + " MB" : "disabled"));
+    }
+
+    /**
+     * Determines whether the pool is enabled.
+     *
+     * @return true if the memory limit is positive
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Borrows a matrix, waiting while the memory limit would be exceeded. The matrix may be larger than requested;
+     * only its requested rows and columns are zero-filled.
+     *
+     * @param rows the number of rows of the matrix
+     * @param cols the number of columns of the matrix
+     * @param cancellation the cancellation token of the calculation, checked while waiting
+     * @return the matrix indexed by row and column
+     * @throws CancellationException if the token is cancelled or its deadline expires while waiting
+     * @throws IllegalStateException if the thread was interrupted while waiting
+     */
+    public double[][] borrowMatrix(int rows, int cols, CancellationToken cancellation) {
+        return clear((double[][]) borrow(matrixClass(rows, cols), true, cancellation), rows, cols);
+    }
+
+    /**
+     * Borrows a matrix without waiting, for a calculation already holding its output matrix. The matrix may be
+     * larger than requested; only its requested rows and columns are zero-filled.
+     *
+     * @param rows the number of rows of the matrix
+     * @param cols the number of columns of the matrix
+     * @return the matrix indexed by row and column
+     */
+    public double[][] borrowAdditionalMatrix(int rows, int cols) {
+        return clear((double[][]) borrow(matrixClass(rows, cols), false, CancellationToken.NONE), rows, cols);
+    }
+
+    /**
+     * Borrows a binary image without waiting. The image may be longer than requested, and only the frame
+     * of the given width and height is guaranteed to be zero-filled, so the whole interior has to be written before use.
+     *
+     * @param width the width of the image including the frame
+     * @param height the height of the image including the frame
+     * @return the image
+     */
+    public byte[] borrowImage(int width, int height) {
+        int step = SIZE_CLASS_STEP * SIZE_CLASS_STEP;
+        byte[] image = (byte[]) borrow(new SizeClass(1, (width * height + step - 1) / step * step, true), false, CancellationToken.NONE);
+
+        Arrays.fill(image, 0, width, (byte) 0);
+        Arrays.fill(image, (height - 1) * width, height * width, (byte) 0);
+        for (int y = 1; y < height - 1; y++) {
+            image[y * width] = 0;
+            image[y * width + width - 1] = 0;
+        }
+        return image;
+    }
+
+    /**
+     * Returns the matrix to the pool.
+     *
+     * @param matrix the matrix borrowed with {@link #borrowMatrix} or {@link #borrowAdditionalMatrix}
+     */
+    public void releaseMatrix(double[][] matrix) {
+        release(new SizeClass(matrix.length, matrix.length > 0 ? matrix[0].length : 0, false), matrix);
+    }
+
+    /**
+     * Removes the borrowed matrix from the pool without returning it, passing its ownership to the caller.
+     * Used for the matrices kept by the unit emission field cache, which limits their total size itself
+     * and may drop them while other calculations still read them.
+     *
+     * @param matrix the matrix borrowed with {@link #borrowMatrix}
+     */
+    public synchronized void detachMatrix(double[][] matrix) {
+        buffersInUse--;
+        bytesInUse -= new SizeClass(matrix.length, matrix.length > 0 ? matrix[0].length : 0, false).getBytes();
+        notifyAll();
+    }
+
+    /**
+     * Returns the binary image to the pool.
+     *
+     * @param image the image borrowed with {@link #borrowImage}
+     */
+    public void releaseImage(byte[] image) {
+        release(new SizeClass(1, image.length, true), image);
+    }
+
+    /**
+     * Returns the size class of the matrices with at least the given number of rows and columns.
+     *
+     * @param rows the number of rows of the matrix
+     * @param cols the number of columns of the matrix
+     * @return the size class
+     */
+    static SizeClass matrixClass(int rows, int cols) {
+        return new SizeClass((rows + SIZE_CLASS_STEP - 1) / SIZE_CLASS_STEP * SIZE_CLASS_STEP,
+                (cols + SIZE_CLASS_STEP - 1) / SIZE_CLASS_STEP * SIZE_CLASS_STEP, false);
+    }
+
+    /**
+     * Zero-fills the requested part of the borrowed matrix.
+     *
+     * @param matrix the borrowed matrix
+     * @param rows the number of the requested rows
+     * @param cols the number of the requested columns
+     * @return the matrix
+     */
+    private static double[][] clear(double[][] matrix, int rows, int cols) {
+        for (int row = 0; row < rows; row++) {
+            Arrays.fill(matrix[row], 0, cols, 0.0);
+        }
+        return matrix;
+    }
+
+    /**
+     * Borrows an idle buffer of the size class or allocates a new one.
+     *
+     * @param sizeClass the size class of the buffer
+     * @param wait true to wait while the memory limit would be exceeded, false to exceed the limit instead
+     * @param cancellation the cancellation token of the calculation, checked while waiting
+     * @return the buffer
+     * @throws CancellationException if the token is cancelled or its deadline expires while waiting
+     * @throws IllegalStateException if the thread was interrupted while waiting
+     */
+    Object borrow(SizeClass sizeClass, boolean wait, CancellationToken cancellation) {
+        long bytes = sizeClass.getBytes();
+
+        synchronized (this) {
+            boolean waited = false;
+            for (;;) {
+                Deque<Object> idle = idleBuffers.get(sizeClass);
+                if (idle != null && !idle.isEmpty()) {
+                    bytesIdle -= bytes;
+                    markBorrowed(bytes);
+                    return idle.pop();
+                }
+
+                releaseIdleBuffers(bytes);
+                // Nothing is borrowed, so nobody would wake up the waiting thread
+                if (bytesInUse + bytesIdle + bytes <= maxBytes || !wait || buffersInUse == 0) {
+                    markBorrowed(bytes);
+                    break;
+                }
+
+                cancellation.throwIfCancelled();
+                if (!waited) {
+                    waits++;
+                    waited = true;
+                }
+                try {
+                    // The cancellation does not notify the pool, so the token is checked again after a short time
+                    wait(Math.max(1, Math.min(cancellation.getRemaining(TimeUnit.MILLISECONDS), CANCELLATION_CHECK_MILLIS)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the grid memory!", e);
+                }
+            }
+        }
+
+        try {
+            return sizeClass.isImage() ? new byte[sizeClass.getCols()] : new double[sizeClass.getRows()][sizeClass.getCols()];
+        } catch (OutOfMemoryError e) {
+            synchronized (this) {
+                buffersInUse--;
+                bytesInUse -= bytes;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the buffer to the idle buffers of its size class and wakes up the waiting calculations.
+     *
+     * @param sizeClass the size class of the buffer
+     * @param buffer the buffer
+     */
+    synchronized void release(SizeClass sizeClass, Object buffer) {
+        long bytes = sizeClass.getBytes();
+
+        buffersInUse--;
+        bytesInUse -= bytes;
+        if (bytesInUse + bytesIdle + bytes <= maxBytes) {
+            idleBuffers.computeIfAbsent(sizeClass, key -> new ArrayDeque<>()).push(buffer);
+            bytesIdle += bytes;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Updates the counters after a buffer is borrowed.
+     *
+     * @param bytes the size of the buffer in bytes
+     */
+    private void markBorrowed(long bytes) {
+        buffersInUse++;
+        bytesInUse += bytes;
+        peakBytes = Math.max(bytesInUse + bytesIdle, peakBytes);
+    }
+
+    /**
+     * Drops the idle buffers until the buffer of the given size fits within the memory limit
+     * or there are no idle buffers left.
+     *
+     * @param bytes the size of the buffer to be allocated in bytes
+     */
+    private void releaseIdleBuffers(long bytes) {
+        Iterator<Map.Entry<SizeClass, Deque<Object>>> iterator = idleBuffers.entrySet().iterator();
+        while (bytesInUse + bytesIdle + bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<SizeClass, Deque<Object>> entry = iterator.next();
+            Deque<Object> idle = entry.getValue();
+            while (!idle.isEmpty() && bytesInUse + bytesIdle + bytes > maxBytes) {
+                idle.pop();
+                bytesIdle -= entry.getKey().getBytes();
+            }
+            if (idle.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the current and peak usage of the pool.
+     *
+     * @return the statistics of the pool
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(buffersInUse, bytesInUse, bytesInUse + bytesIdle, peakBytes, waits);
+    }
+}
@@ -0,0 +1,181 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Dispersion engine performing the calculations directly in the JVM using the {@link PlumeModel} class.
+ * It does not depend on the native library and can be used on every platform.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "gn.engine", havingValue = DispersionEngine.JVM)
+public class JvmDispersionEngine implements DispersionEngine {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the JvmDispersionEngine class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JvmDispersionEngine.class);
+    /**
+     * An instance of the Jackson {@code ObjectMapper} used for reading the input parameters
+     * and writing the calculated contours.
+     *
+     */
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    /**
+     * The fork-join pool, sized to the number of available processors, executing the parallel parts of the calculations.
+     *
+     */
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * The calculation modes and the shared caches passed to every {@link PlumeModel}.
+     *
+     */
+    private final PlumeModel.Options options;
+
+    /**
+     * Constructs a JvmDispersionEngine using the calculation mode defined in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the calculation mode
+     * @param unitFieldCache the cache of the unit emission matrices
+     * @param gridArena the pool of the matrices and binary images
+     */
+    @Autowired
+    public JvmDispersionEngine(GrassNextConfig grassNextConfig, UnitFieldCache unitFieldCache, GridArena gridArena) {
+        this.options = PlumeModel.Options.builder()
+                .kernelSuperposition(grassNextConfig.isJvmKernelSuperposition())
+                .unitFieldCache(unitFieldCache.isEnabled() ? unitFieldCache : null)
+                .culling(grassNextConfig.isJvmCulling())
+                .marchingSquares(grassNextConfig.isJvmMarchingSquares())
+                .gridArena(gridArena.isEnabled() ? gridArena : null)
+                .tiledGrid(grassNextConfig.isJvmTiledGrid())
+                .adaptiveGrid(grassNextConfig.isJvmAdaptiveGrid())
+                .vectorKernel(grassNextConfig.isJvmVectorKernel())
+                .build();
+
+        if (options.isVectorKernel()) {
+            int lanes = EmitterKernel.vectorLanes();
+            LOGGER.info("[LOGGER] Emitter row kernel: " + (lanes > 1
+                    ? "vectorized, " + lanes + " lanes"
+                    : "scalar, Java Vector API not available (build with -Pvector, run with --add-modules " + EmitterKernel.VECTOR_MODULE + ")"));
+        }
+    }
+
+    /**
+     * Calculates the pollution contours for the Gaussian Plume parameters given in the JSON format.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized {@link GaussianPlume} object
+     * @return a JSON-formatted string containing the serialized {@link Contours} object,
+     *         or null if the input could not be read
+     */
+    @Override
+    public String calculate(String jsonIn) {
+        return calculate(jsonIn, CancellationToken.NONE);
+    }
+
+    /**
+     * Calculates the pollution contours for the Gaussian Plume parameters given in the JSON format.
+     * The model checks the cancellation token between the blocks of the matrix and the parts of the contour extraction.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized {@link GaussianPlume} object
+     * @param cancellation the cancellation token of the calculation
+     * @return a JSON-formatted string containing the serialized {@link Contours} object,
+     *         or null if the input could not be read
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    @Override
+    public String calculate(String jsonIn, CancellationToken cancellation) {
+        try {
+            GaussianPlume gaussianPlume = jsonMapper.readValue(jsonIn, GaussianPlume.class);
+            return jsonMapper.writeValueAsString(calculate(gaussianPlume, cancellation));
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Calculates the pollution contours for the given Gaussian Plume parameters.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters
+     * @return the calculated contours
+     */
+    public Contours calculate(GaussianPlume gaussianPlume) {
+        return calculate(gaussianPlume, CancellationToken.NONE);
+    }
+
+    /**
+     * Calculates the pollution contours for the given Gaussian Plume parameters.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters
+     * @param cancellation the cancellation token of the calculation
+     * @return the calculated contours
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    public Contours calculate(GaussianPlume gaussianPlume, CancellationToken cancellation) {
+        PlumeModel plumeModel = new PlumeModel(gaussianPlume, forkJoinPool, options, cancellation);
+        Contours contours = plumeModel.calculate();
+
+        LOGGER.debug("[LOGGER] Gaussian plume calculated in " + contours.getDuration() + " s, "
+                + String.format(Locale.ROOT, "%.1f", plumeModel.getCulledFraction() * 100) + "% of cells skipped");
+        return contours;
+    }
+
+    /**
+     * Determines whether the engine is able to calculate the dispersion with the given model of the road emission.
+     * Both the point emitters and the finite line source are supported.
+     *
+     * @param sourceModel the model of the road emission
+     * @return true for every model
+     */
+    @Override
+    public boolean supports(SourceModelEnum sourceModel) {
+        return sourceModel != null;
+    }
+
+    /**
+     * Returns true, as the calculation checks its cancellation token between the blocks of the matrix.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    /**
+     * Returns the pool executing the parallel parts of the calculations, shared with the preview calculations.
+     *
+     * @return the fork-join pool of the engine
+     */
+    @Override
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Shuts down the fork-join pool when the application context is closed.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        forkJoinPool.shutdown();
+    }
+}
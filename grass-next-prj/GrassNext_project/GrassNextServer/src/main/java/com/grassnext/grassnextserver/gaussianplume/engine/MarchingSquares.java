@@ -0,0 +1,390 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The MarchingSquares class extracts the isolines of several concentration levels from the matrix at once.
+ *
+ * The matrix is treated as surrounded by a frame of zeros, so every isoline is a closed polyline. Each square
+ * formed by four neighbouring cells is visited once, and a segment is emitted for every level crossing it.
+ * The squares are scanned in independent row strips, and the segments of each level are then joined into polylines.
+ * The points of the polylines lie on the edges between the cells, at the position interpolated linearly
+ * between the values of both cells.
+ *
+ */
+public class MarchingSquares {
+    /**
+     * The top edge of a square, between its top-left and top-right cells.
+     *
+     */
+    private static final int TOP = 0;
+    /**
+     * The right edge of a square, between its top-right and bottom-right cells.
+     *
+     */
+    private static final int RIGHT = 1;
+    /**
+     * The bottom edge of a square, between its bottom-left and bottom-right cells.
+     *
+     */
+    private static final int BOTTOM = 2;
+    /**
+     * The left edge of a square, between its top-left and bottom-left cells.
+     *
+     */
+    private static final int LEFT = 3;
+    /**
+     * The pairs of edges joined by the segments for each of the 16 configurations of the square corners
+     * (bit 0 - top-left, bit 1 - top-right, bit 2 - bottom-right, bit 3 - bottom-left corner at or above the level).
+     * The saddle configurations 5 and 10 are listed for the case of the square center below the level.
+     *
+     */
+    private static final int[][] SEGMENT_EDGES = {
+            {},
+            {TOP, LEFT},
+            {TOP, RIGHT},
+            {LEFT, RIGHT},
+            {RIGHT, BOTTOM},
+            {TOP, LEFT, RIGHT, BOTTOM},
+            {TOP, BOTTOM},
+            {LEFT, BOTTOM},
+            {LEFT, BOTTOM},
+            {TOP, BOTTOM},
+            {TOP, RIGHT, LEFT, BOTTOM},
+            {RIGHT, BOTTOM},
+            {LEFT, RIGHT},
+            {TOP, RIGHT},
+            {TOP, LEFT},
+            {}
+    };
+    /**
+     * The pairs of edges joined by the segments of the saddle configurations 5 and 10 for the square center
+     * at or above the level.
+     *
+     */
+    private static final int[][] SADDLE_CONNECTED_EDGES = {
+            {TOP, RIGHT, LEFT, BOTTOM},
+            {TOP, LEFT, RIGHT, BOTTOM}
+    };
+
+    /**
+     * The segments of every level found in a strip of the matrix rows.
+     * Each segment is stored as a pair of consecutive edge keys.
+     *
+     */
+    public static class Strip {
+        /**
+         * The edge keys of the segments of each level.
+         *
+         */
+        private final long[][] segments;
+        /**
+         * The number of edge keys stored for each level.
+         *
+         */
+        private final int[] counts;
+
+        /**
+         * Constructs an empty strip.
+         *
+         * @param levelCount the number of levels
+         */
+        Strip(int levelCount) {
+            this.segments = new long[levelCount][];
+            this.counts = new int[levelCount];
+        }
+
+        /**
+         * Adds a segment of the level.
+         *
+         * @param level the index of the level
+         * @param from the key of the edge the segment starts at
+         * @param to the key of the edge the segment ends at
+         */
+        void add(int level, long from, long to) {
+            long[] levelSegments = segments[level];
+            if (levelSegments == null) {
+                levelSegments = new long[64];
+            } else if (counts[level] + 2 > levelSegments.length) {
+                levelSegments = Arrays.copyOf(levelSegments, levelSegments.length * 2);
+            }
+            segments[level] = levelSegments;
+
+            levelSegments[counts[level]++] = from;
+            levelSegments[counts[level]++] = to;
+        }
+    }
+
+    /**
+     * The number of squares in a row checked together against the empty blocks of the grid.
+     *
+     */
+    private static final int SQUARE_BLOCK = 32;
+
+    /**
+     * The grid of values indexed by row and column.
+     *
+     */
+    private final ConcentrationGrid matrix;
+    /**
+     * The size of one side of the square matrix.
+     *
+     */
+    private final int size;
+    /**
+     * The levels of the isolines in ascending order.
+     *
+     */
+    private final double[] levels;
+
+    /**
+     * Constructs a new instance of the MarchingSquares class.
+     *
+     * @param matrix the grid of values indexed by row and column
+     * @param levels the levels of the isolines in ascending order, all of them greater than 0
+     */
+    public MarchingSquares(ConcentrationGrid matrix, double[] levels) {
+        this.matrix = matrix;
+        this.size = matrix.getSize();
+        this.levels = levels;
+    }
+
+    /**
+     * Returns the number of the square rows to be scanned, including the squares overlapping the frame of zeros.
+     *
+     * @return the number of the square rows
+     */
+    public int getSquareRows() {
+        return size + 1;
+    }
+
+    /**
+     * Finds the segments of all the levels in the given strip of square rows. The squares are checked in blocks,
+     * and the blocks whose cells are all known to be zero are skipped.
+     *
+     * @param squareRowStart the first square row of the strip
+     * @param squareRowEnd the square row following the last square row of the strip
+     * @return the segments found in the strip
+     */
+    public Strip scan(int squareRowStart, int squareRowEnd) {
+        Strip strip = new Strip(levels.length);
+        double lowest = levels[0];
+
+        for (int r = squareRowStart - 1; r < squareRowEnd - 1; r++) {
+            for (int c = -1; c < size; c++) {
+                if ((c + 1) % SQUARE_BLOCK == 0) {
+                    int blockEnd = Math.min(c + SQUARE_BLOCK, size);
+                    if (matrix.isEmpty(Math.max(r, 0), Math.max(c, 0), Math.min(r + 2, size), Math.min(blockEnd + 1, size))) {
+                        c = blockEnd - 1;
+                        continue;
+                    }
+                }
+
+                double topLeft = value(r, c);
+                double topRight = value(r, c + 1);
+                double bottomRight = value(r + 1, c + 1);
+                double bottomLeft = value(r + 1, c);
+
+                double max = Math.max(Math.max(topLeft, topRight), Math.max(bottomRight, bottomLeft));
+                if (max < lowest) {
+                    continue;
+                }
+                double min = Math.min(Math.min(topLeft, topRight), Math.min(bottomRight, bottomLeft));
+
+                for (int level = firstLevelAbove(min); level < levels.length && levels[level] <= max; level++) {
+                    double threshold = levels[level];
+                    int configuration = (topLeft >= threshold ? 1 : 0) | (topRight >= threshold ? 2 : 0)
+                            | (bottomRight >= threshold ? 4 : 0) | (bottomLeft >= threshold ? 8 : 0);
+
+                    int[] edges = SEGMENT_EDGES[configuration];
+                    if (edges.length == 4 && (topLeft + topRight + bottomRight + bottomLeft) / 4 >= threshold) {
+                        edges = SADDLE_CONNECTED_EDGES[configuration == 5 ? 0 : 1];
+                    }
+                    for (int e = 0; e < edges.length; e += 2) {
+                        strip.add(level, edgeKey(r, c, edges[e]), edgeKey(r, c, edges[e + 1]));
+                    }
+                }
+            }
+        }
+
+        return strip;
+    }
+
+    /**
+     * Joins the segments of the level found in all the strips into closed polylines.
+     *
+     * @param level the index of the level
+     * @param strips the strips covering all the square rows
+     * @return a list of polylines, each one stored as an array of consecutive column and row coordinates
+     */
+    public List<double[]> trace(int level, List<Strip> strips) {
+        Map<Long, Integer> nodes = new HashMap<>();
+        List<Long> keys = new ArrayList<>();
+        int[] neighbours = new int[64];
+        Arrays.fill(neighbours, -1);
+
+        for (Strip strip : strips) {
+            long[] levelSegments = strip.segments[level];
+            for (int s = 0; s < strip.counts[level]; s += 2) {
+                int from = node(levelSegments[s], nodes, keys);
+                int to = node(levelSegments[s + 1], nodes, keys);
+                if (2 * keys.size() > neighbours.length) {
+                    int oldLength = neighbours.length;
+                    neighbours = Arrays.copyOf(neighbours, Math.max(oldLength * 2, 2 * keys.size()));
+                    Arrays.fill(neighbours, oldLength, neighbours.length, -1);
+                }
+                link(neighbours, from, to);
+                link(neighbours, to, from);
+            }
+        }
+
+        List<double[]> polylines = new ArrayList<>();
+        boolean[] visited = new boolean[keys.size()];
+        for (int start = 0; start < keys.size(); start++) {
+            if (visited[start]) {
+                continue;
+            }
+
+            double[] points = new double[16];
+            int count = 0;
+            int previous = -1;
+            int current = start;
+            while (current >= 0 && !visited[current]) {
+                visited[current] = true;
+                if (count + 2 > points.length) {
+                    points = Arrays.copyOf(points, points.length * 2);
+                }
+                count = addPoint(keys.get(current), level, points, count);
+
+                int next = neighbours[2 * current] != previous ? neighbours[2 * current] : neighbours[2 * current + 1];
+                previous = current;
+                current = next;
+            }
+            polylines.add(Arrays.copyOf(points, count));
+        }
+
+        return polylines;
+    }
+
+    /**
+     * Returns the index of the first level greater than the given value.
+     *
+     * @param value the value
+     * @return the index of the first level greater than the value, or the number of levels if there is none
+     */
+    int firstLevelAbove(double value) {
+        int low = 0;
+        int high = levels.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (levels[middle] > value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the value of the matrix cell, or 0 for the cells of the frame surrounding the matrix.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the value of the cell
+     */
+    double value(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size ? matrix.get(row, col) : 0.0;
+    }
+
+    /**
+     * Creates the key identifying an edge of the square, shared by both squares adjacent to the edge.
+     *
+     * @param r the row of the top-left cell of the square
+     * @param c the column of the top-left cell of the square
+     * @param edge the edge of the square
+     * @return the key of the edge
+     */
+    long edgeKey(int r, int c, int edge) {
+        return switch (edge) {
+            case TOP -> cellIndex(r, c) * 2;
+            case RIGHT -> cellIndex(r, c + 1) * 2 + 1;
+            case BOTTOM -> cellIndex(r + 1, c) * 2;
+            default -> cellIndex(r, c) * 2 + 1;
+        };
+    }
+
+    /**
+     * Returns the index of the cell in the matrix surrounded by the frame.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the index of the cell
+     */
+    long cellIndex(int row, int col) {
+        return (long) (row + 1) * (size + 2) + (col + 1);
+    }
+
+    /**
+     * Stores the point at which the level crosses the edge. The key of a horizontal edge identifies its left cell,
+     * the key of a vertical edge identifies its top cell.
+     *
+     * @param key the key of the edge
+     * @param level the index of the level
+     * @param points the array of the polyline coordinates
+     * @param count the number of coordinates already stored
+     * @return the number of coordinates stored including the new point
+     */
+    int addPoint(long key, int level, double[] points, int count) {
+        long index = key >> 1;
+        int row = (int) (index / (size + 2)) - 1;
+        int col = (int) (index % (size + 2)) - 1;
+        boolean vertical = (key & 1) == 1;
+
+        double from = value(row, col);
+        double to = vertical ? value(row + 1, col) : value(row, col + 1);
+        double shift = (levels[level] - from) / (to - from);
+
+        points[count++] = vertical ? col : col + shift;
+        points[count++] = vertical ? row + shift : row;
+        return count;
+    }
+
+    /**
+     * Returns the node index of the edge, adding a new node if the edge has not been seen yet.
+     *
+     * @param key the key of the edge
+     * @param nodes the node indexes of the edges
+     * @param keys the edge keys of the nodes
+     * @return the node index
+     */
+    private static int node(long key, Map<Long, Integer> nodes, List<Long> keys) {
+        Integer node = nodes.get(key);
+        if (node == null) {
+            node = keys.size();
+            nodes.put(key, node);
+            keys.add(key);
+        }
+        return node;
+    }
+
+    /**
+     * Stores the neighbour of the node in the first free slot. Each edge crossed by the isoline is shared by
+     * exactly two squares, so every node has two neighbours.
+     *
+     * @param neighbours the two neighbour slots of each node
+     * @param node the node
+     * @param neighbour the neighbour to be stored
+     */
+    private static void link(int[] neighbours, int node, int neighbour) {
+        if (neighbours[2 * node] < 0) {
+            neighbours[2 * node] = neighbour;
+        } else {
+            neighbours[2 * node + 1] = neighbour;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.jni.GrassNextJni;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Dispersion engine delegating the calculations to the native C++ library through {@link GrassNextJni}.
+ * The native calculation cannot be interrupted, so a cancelled calculation is only prevented from starting.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "gn.engine", havingValue = DispersionEngine.NATIVE, matchIfMissing = true)
+public class NativeDispersionEngine implements DispersionEngine {
+    /**
+     * Calculates the pollution contours by invoking the native Count method.
+     *
+     * @param jsonIn a JSON-formatted string containing the input data to be processed by the native library
+     * @return a JSON-formatted string containing the result of the processing performed by the native library
+     */
+    @Override
+    public String calculate(String jsonIn) {
+        return GrassNextJni.gnExecuteCount(jsonIn);
+    }
+}
@@ -0,0 +1,217 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+/**
+ * The PlumeEnvelope class determines the rectangular blocks of the matrix in which the concentration
+ * cannot reach the given threshold, so their calculation can be skipped.
+ *
+ * For every emitter the block is projected onto the wind direction and the crosswind direction.
+ * The concentration of a single emitter is bounded by {@code Q / (PI * u * sigmaY * sigmaZ) * exp(-c^2 / (2 * sigmaY^2))},
+ * where both dispersion coefficients grow with the downwind distance. The downwind range of the block is split
+ * into a few parts, and within each part the smallest coefficients are taken for the first factor and
+ * the largest horizontal coefficient for the exponent. Blocks located entirely upwind of all the emitters
+ * receive no pollution at all.
+ *
+ */
+public class PlumeEnvelope {
+    /**
+     * The number of parts the downwind range of a block is divided into.
+     *
+     */
+    static final int DOWNWIND_STEPS = 8;
+    /**
+     * The downwind distance (in meters) below which the emitter is treated as upwind of the block,
+     * covering the rounding differences between the projection and the Gaussian function.
+     *
+     */
+    static final double UPWIND_MARGIN = 1.0E-6;
+    /**
+     * The smallest downwind distance (in meters) for which the dispersion coefficients are evaluated.
+     *
+     */
+    static final double MIN_DOWNWIND = 1.0E-9;
+
+    /**
+     * The x component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windX;
+    /**
+     * The y component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windY;
+    /**
+     * The atmospheric stability class [1-6].
+     *
+     */
+    final int stability;
+    /**
+     * The factor {@code Q / (PI * u)} common to all the emitters.
+     *
+     */
+    final double emissionFactor;
+    /**
+     * The x coordinates (in meters) of the emitters.
+     *
+     */
+    final double[] emittersX;
+    /**
+     * The y coordinates (in meters) of the emitters.
+     *
+     */
+    final double[] emittersY;
+    /**
+     * The coordinate (in meters) of the first matrix cell.
+     *
+     */
+    final double matrixStart;
+    /**
+     * The size of a single matrix cell in meters.
+     *
+     */
+    final double resolution;
+    /**
+     * The concentration below which a block is skipped, or 0 to skip only the blocks receiving no pollution.
+     *
+     */
+    final double threshold;
+
+    /**
+     * Constructs a new instance of the PlumeEnvelope class.
+     *
+     * @param windX the x component of the wind unit vector
+     * @param windY the y component of the wind unit vector
+     * @param windSpeed the wind speed
+     * @param stability the atmospheric stability class [1-6]
+     * @param emission the emission value per emitter
+     * @param emittersX the x coordinates of the emitters
+     * @param emittersY the y coordinates of the emitters
+     * @param matrixStart the coordinate of the first matrix cell
+     * @param resolution the size of a single matrix cell
+     * @param threshold the concentration below which a block is skipped, or 0 to skip only the blocks
+     *                  receiving no pollution
+     */
+    PlumeEnvelope(double windX, double windY, double windSpeed, int stability, double emission,
+                  double[] emittersX, double[] emittersY, double matrixStart, double resolution, double threshold) {
+        this.windX = windX;
+        this.windY = windY;
+        this.stability = stability;
+        this.emissionFactor = Math.abs(emission) / (Math.PI * windSpeed);
+        this.emittersX = emittersX;
+        this.emittersY = emittersY;
+        this.matrixStart = matrixStart;
+        this.resolution = resolution;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Determines whether the envelope can be used for the given parameters. For unknown stability classes
+     * or non-positive wind speeds the Gaussian function is not bounded, so nothing is skipped.
+     *
+     * @param windSpeed the wind speed
+     * @param stability the atmospheric stability class
+     * @return true if the envelope can be used
+     */
+    static boolean isApplicable(double windSpeed, int stability) {
+        return windSpeed > 0 && stability >= 1 && stability <= 6;
+    }
+
+    /**
+     * Determines whether the concentration in every cell of the block stays below the threshold.
+     *
+     * @param xStart the first column of the block
+     * @param yStart the first row of the block
+     * @param xEnd the column following the last column of the block
+     * @param yEnd the row following the last row of the block
+     * @return true if the calculation of the block can be skipped
+     */
+    boolean isNegligible(int xStart, int yStart, int xEnd, int yEnd) {
+        double x0 = matrixStart + xStart * resolution;
+        double x1 = matrixStart + (xEnd - 1) * resolution;
+        double y0 = matrixStart + yStart * resolution;
+        double y1 = matrixStart + (yEnd - 1) * resolution;
+
+        double sum = 0.0;
+        for (int e = 0; e < emittersX.length; e++) {
+            double dMin = Double.POSITIVE_INFINITY;
+            double dMax = Double.NEGATIVE_INFINITY;
+            double cMin = Double.POSITIVE_INFINITY;
+            double cMax = Double.NEGATIVE_INFINITY;
+            for (int corner = 0; corner < 4; corner++) {
+                double dx = ((corner & 1) == 0 ? x0 : x1) - emittersX[e];
+                double dy = ((corner & 2) == 0 ? y0 : y1) - emittersY[e];
+                double downwind = windX * dx + windY * dy;
+                double crosswind = windX * dy - windY * dx;
+                dMin = Math.min(downwind, dMin);
+                dMax = Math.max(downwind, dMax);
+                cMin = Math.min(crosswind, cMin);
+                cMax = Math.max(crosswind, cMax);
+            }
+
+            if (dMax < -UPWIND_MARGIN) {
+                continue;
+            }
+            if (threshold <= 0) {
+                return false;
+            }
+
+            double crosswind = cMin <= 0 && cMax >= 0 ? 0.0 : Math.min(Math.abs(cMin), Math.abs(cMax));
+            sum += emissionFactor * bound(Math.max(dMin, 0.0), dMax + UPWIND_MARGIN, crosswind);
+            if (!(sum < threshold)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Calculates the upper bound of {@code exp(-c^2 / (2 * sigmaY^2)) / (sigmaY * sigmaZ)} for the downwind
+     * distances within the given range and the crosswind distances not lower than the given one.
+     *
+     * @param dFrom the lowest downwind distance
+     * @param dTo the highest downwind distance
+     * @param crosswind the lowest crosswind distance
+     * @return the upper bound, possibly infinite
+     */
+    double bound(double dFrom, double dTo, double crosswind) {
+        double result = 0.0;
+        double step = (dTo - dFrom) / DOWNWIND_STEPS;
+
+        for (int i = 0; i < DOWNWIND_STEPS; i++) {
+            double from = dFrom + i * step;
+            double to = i == DOWNWIND_STEPS - 1 ? dTo : from + step;
+            double[] sigmasTo = PlumeModel.calculateSigmas(to, stability);
+
+            double part;
+            if (from > MIN_DOWNWIND) {
+                double[] sigmasFrom = PlumeModel.calculateSigmas(from, stability);
+                part = Math.exp(-(crosswind * crosswind) / (2 * sigmasTo[0] * sigmasTo[0])) / (sigmasFrom[0] * sigmasFrom[1]);
+            } else if (crosswind > 0) {
+                // sigmaZ >= ratio * sigmaY and max over s of exp(-c^2 / (2 * s^2)) / s^2 equals 2 / (e * c^2)
+                part = 2.0 / (Math.E * minSigmaRatio(to) * crosswind * crosswind);
+            } else {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            result = Math.max(part, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculates the lowest ratio of the vertical to the horizontal dispersion coefficient for the downwind
+     * distances up to the given one. The ratio is monotonic for every stability class, so it is enough
+     * to check both ends of the range.
+     *
+     * @param dTo the highest downwind distance
+     * @return the lowest ratio of sigma z to sigma y
+     */
+    double minSigmaRatio(double dTo) {
+        double[] near = PlumeModel.calculateSigmas(MIN_DOWNWIND, stability);
+        double[] far = PlumeModel.calculateSigmas(Math.max(dTo, MIN_DOWNWIND), stability);
+
+        return Math.min(near[1] / near[0], far[1] / far[0]);
+    }
+}
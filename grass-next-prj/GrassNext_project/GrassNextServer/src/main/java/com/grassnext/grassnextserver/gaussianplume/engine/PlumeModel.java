@@ -0,0 +1,1726 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The PlumeModel class is a Java port of the GaussianPlume class from the native C++ library.
+ * It calculates the air pollution dispersion matrix for a single road segment and extracts
+ * the pollution contours from it. The road is represented either by the point emitters,
+ * as in the native library, or by the analytic finite line source, as selected by the source model.
+ *
+ */
+public class PlumeModel {
+    /**
+     * A constant representing Earth's radius in kilometers.
+     *
+     */
+    static final double EARTH_RADIUS = 6378.0;
+    /**
+     * The distance in meters between two consecutive emitters placed along the road.
+     *
+     */
+    static final double EMITTERS_DISTANCE = 10.0;
+    /**
+     * The distance in meters from the road within which the kernel superposition evaluates the concentration
+     * directly, because the rounding of the emitter positions is not negligible close to the emitters.
+     *
+     */
+    static final double NEAR_FIELD_DISTANCE = 50.0;
+    /**
+     * The horizontal dispersion coefficient (in cells) below which the kernel superposition evaluates
+     * the concentration directly, because the interpolated kernel is not accurate on a plume only a few cells wide.
+     * It extends the near field beyond {@link #NEAR_FIELD_DISTANCE} for the stable classes.
+     *
+     */
+    static final double NEAR_FIELD_SIGMA = 10.0;
+    /**
+     * The largest difference (in cells) of an emitter shift from whole cells for which the kernel superposition
+     * adds the kernel shifted by whole cells instead of interpolating it.
+     *
+     */
+    static final double SHIFT_TOLERANCE = 1e-3;
+    /**
+     * The number of steps per meter to which the positions of the receptor points are rounded, a micrometre.
+     * The conversion of a matrix position to GPS coordinates and back moves it by about a nanometre,
+     * so a receptor point placed on a cell is evaluated at exactly the position of the cell.
+     *
+     */
+    static final double RECEPTOR_STEPS = 1e6;
+    /**
+     * The size (in cells) of one side of the square blocks checked against the plume envelope.
+     *
+     */
+    static final int CULLING_BLOCK = 32;
+    /**
+     * The part of the lowest contour threshold below which the concentration of a whole block is considered negligible.
+     * The margin keeps the skipped cells clearly below the lowest threshold despite the rounding errors.
+     *
+     */
+    static final double CULLING_SAFETY = 0.5;
+    /**
+     * Emission factors of each pollution type (CO, NOx, CH) and vehicle group, stored as the coefficients
+     * of a cubic polynomial of the average vehicle velocity, starting from the highest power.
+     *
+     */
+    static final double[][][] EMISSION_FACTORS = {
+            {
+                    {-5.24e-5, 1.01e-2, -5.67e-1, 1.54e+1},
+                    {7.2308e-7, 3.0186e-5, -1.3833e-2, 8.4204e-1},
+                    {-5.0796e-7, 2.0073e-4, -2.2681e-2, 1.0605},
+                    {-6.7894e-6, 1.6767e-3, -1.2667e-1, 4.0416},
+                    {-2.15e-5, 3.17e-3, -1.61e-1, 3.32e+0}
+            },
+            {
+                    {4.96e-6, -6.22e-4, 2.66e-2, -2.98e-1},
+                    {-1.056e-6, 2.856e-4, -2.378e-2, 8.708e-1},
+                    {4.2504e-7, 2.5959e-5, -1.0673e-2, 1.2729},
+                    {-6.1422e-5, 1.0505e-2, -6.2867e-1, 1.6783e1},
+                    {-1.32e-4, 1.85e-2, -9.07e-1, 1.91e+1}
+            },
+            {
+                    {-6.98e-6, 1.39e-3, -9.12e-2, 3.62e+0},
+                    {-1.4513e-7, 3.8118e-5, -3.2385e-3, 1.1068e-1},
+                    {-8.2530e-7, 1.2798e-4, -7.1490e-3, 1.9300e-1},
+                    {-3.8695e-6, 6.1712e-4, -3.4409e-2, 8.2150e-1},
+                    {-2.90e-6, 3.80e-4, -1.74e-2, 3.58e-1}
+            }
+    };
+    /**
+     * Contour colors of each pollution type (CO, NOx, CH).
+     *
+     */
+    static final String[] POLLUTION_COLORS = {"#FF964F", "#4758b8", "#B32134"};
+    /**
+     * The contour color used for unknown pollution types.
+     *
+     */
+    static final String DEFAULT_COLOR = "#4758b8";
+
+    /**
+     * Inner class describing the minimal, maximal and summed up values of a matrix fragment.
+     *
+     */
+    static class MinMax {
+        /**
+         * Minimal non-zero value of the matrix fragment.
+         *
+         */
+        double min = 1000000.0;
+        /**
+         * Maximal value of the matrix fragment.
+         *
+         */
+        double max = 0.0;
+        /**
+         * Sum of all the matrix fragment values.
+         *
+         */
+        double sum = 0.0;
+        /**
+         * Number of the matrix fragment cells skipped by the plume envelope culling or not evaluated by the adaptive grid.
+         *
+         */
+        long culled = 0;
+    }
+
+    /**
+     * Inner class describing the optional calculation modes and the shared resources used by the model.
+     *
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Options {
+        /**
+         * True to build the matrix by superposition of a single emitter kernel,
+         * false to evaluate the Gaussian function for every emitter as the native library does.
+         *
+         */
+        boolean kernelSuperposition;
+        /**
+         * The cache of the unit emission matrices, or null to always calculate the matrix.
+         *
+         */
+        UnitFieldCache unitFieldCache;
+        /**
+         * True to skip the blocks of the matrix in which the concentration cannot reach the lowest threshold.
+         *
+         */
+        boolean culling;
+        /**
+         * True to extract the isolines of all the thresholds in a single pass, false to trace the contours
+         * of the binary images as the native library does.
+         *
+         */
+        boolean marchingSquares;
+        /**
+         * The pool providing the matrix and the binary images, or null to allocate them for every calculation.
+         *
+         */
+        GridArena gridArena;
+        /**
+         * True to store the matrices as tiles of single precision values allocated only where the concentration
+         * is not zero, false to store every cell with the double precision.
+         *
+         */
+        boolean tiledGrid;
+        /**
+         * True to evaluate the concentration on a quadtree refined near the road and along the isolines
+         * and to extract the isolines from its leaves, false to calculate every cell of the matrix.
+         *
+         */
+        boolean adaptiveGrid;
+        /**
+         * True to evaluate the point emitters for whole rows of the matrix with the emitter kernel,
+         * vectorized if the Java Vector API is available, false to evaluate the Gaussian function cell by cell.
+         *
+         */
+        boolean vectorKernel;
+    }
+
+    /**
+     * Interface of a calculation performed for a single fragment of the matrix.
+     *
+     */
+    @FunctionalInterface
+    interface FragmentCalculation {
+        /**
+         * Calculates a fragment of the matrix.
+         *
+         * @param fragmentMinMax the statistics of the calculated fragment
+         * @param xStart the first column of the fragment
+         * @param yStart the first row of the fragment
+         * @param xEnd the column following the last column of the fragment
+         * @param yEnd the row following the last row of the fragment
+         */
+        void calculate(MinMax fragmentMinMax, int xStart, int yStart, int xEnd, int yEnd);
+    }
+
+    /**
+     * The Gaussian Plume parameters used for the calculation.
+     *
+     */
+    final GaussianPlume gaussianPlume;
+    /**
+     * The pool executing the matrix fragments and contour extraction in parallel.
+     *
+     */
+    final ForkJoinPool forkJoinPool;
+
+    /**
+     * Determines whether the matrix is calculated by superposition of a single emitter kernel
+     * instead of evaluating the Gaussian function for every emitter separately.
+     *
+     */
+    final boolean kernelSuperposition;
+    /**
+     * The cache of the matrices calculated for the unit emission, or null if the matrix is always calculated.
+     *
+     */
+    final UnitFieldCache unitFieldCache;
+    /**
+     * Determines whether the blocks of the matrix outside the plume envelope are skipped.
+     *
+     */
+    final boolean culling;
+    /**
+     * Determines whether the isolines of all the thresholds are extracted in a single pass of the marching squares
+     * instead of tracing the contours of a separate binary image for every threshold.
+     *
+     */
+    final boolean marchingSquares;
+    /**
+     * The pool providing the matrix and the binary images, or null if they are allocated for every calculation.
+     *
+     */
+    final GridArena gridArena;
+    /**
+     * Determines whether the matrices are stored as tiles of single precision values allocated only where needed.
+     *
+     */
+    final boolean tiledGrid;
+    /**
+     * Determines whether the road is treated as the analytic finite line source instead of the point emitters.
+     *
+     */
+    final boolean lineSource;
+    /**
+     * Determines whether the concentration is evaluated on the adaptive grid instead of every cell of the matrix.
+     *
+     */
+    final boolean adaptiveGrid;
+    /**
+     * The kernel evaluating the point emitters for whole rows of the matrix, or null if the cells are evaluated one by one.
+     *
+     */
+    final EmitterKernel emitterKernel;
+    /**
+     * The cancellation token checked between the blocks of the matrix and the tasks of the calculation.
+     *
+     */
+    final CancellationToken cancellation;
+
+    /**
+     * The size of one side of the calculated matrix.
+     *
+     */
+    final int matrixSize;
+    /**
+     * The coordinate (in meters) of the first matrix cell relative to the road starting point.
+     *
+     */
+    final int matrixSizeStart;
+    /**
+     * The height at which the concentration of air pollution is calculated. The native library stores
+     * this value as an integer, so the fractional part is dropped here as well.
+     *
+     */
+    final int concentrationHeight;
+    /**
+     * The x component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windX;
+    /**
+     * The y component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windY;
+    /**
+     * The x coordinates (in meters) of the emitters relative to the road starting point.
+     *
+     */
+    double[] emittersX = new double[0];
+    /**
+     * The y coordinates (in meters) of the emitters relative to the road starting point.
+     *
+     */
+    double[] emittersY = new double[0];
+    /**
+     * The emission value per emitter.
+     *
+     */
+    double emissionPerEmitter;
+    /**
+     * The column shifts (in cells) of the first of the four kernel columns interpolated for each emitter,
+     * used by the kernel superposition.
+     *
+     */
+    int[] emittersCol = new int[0];
+    /**
+     * The row shifts (in cells) of the first of the four kernel rows interpolated for each emitter,
+     * used by the kernel superposition.
+     *
+     */
+    int[] emittersRow = new int[0];
+    /**
+     * The weights of the four kernel columns interpolated for each emitter, used by the kernel superposition.
+     *
+     */
+    double[][] emittersColWeights = new double[0][];
+    /**
+     * The weights of the four kernel rows interpolated for each emitter, used by the kernel superposition.
+     *
+     */
+    double[][] emittersRowWeights = new double[0][];
+    /**
+     * The concentration produced by the first emitter, calculated on a matrix enlarged by the range
+     * of the emitter shifts. Used only by the kernel superposition.
+     *
+     */
+    double[][] kernel;
+    /**
+     * The column of the calculated matrix corresponding to the first kernel column.
+     *
+     */
+    int kernelColStart;
+    /**
+     * The row of the calculated matrix corresponding to the first kernel row.
+     *
+     */
+    int kernelRowStart;
+    /**
+     * The distance in meters from the road within which the kernel superposition evaluates the concentration directly.
+     *
+     */
+    double nearFieldDistance;
+    /**
+     * Determines whether the kernel has been borrowed from the grid arena and has to be returned.
+     *
+     */
+    boolean kernelBorrowed;
+    /**
+     * The finite line source of the currently calculated matrix, or null if the point emitters are summed up.
+     *
+     */
+    FiniteLineSource finiteLineSource;
+    /**
+     * The envelope used for skipping the blocks of the currently calculated matrix, or null if nothing is skipped.
+     *
+     */
+    PlumeEnvelope envelope;
+    /**
+     * The output matrix of the air pollution concentration, indexed by row and column.
+     *
+     */
+    ConcentrationGrid c1;
+    /**
+     * Determines whether the output matrix has been borrowed from the grid arena and has to be returned.
+     *
+     */
+    boolean matrixBorrowed;
+    /**
+     * The statistics of each matrix fragment.
+     *
+     */
+    MinMax[][] minMax;
+    /**
+     * The statistics of the whole matrix.
+     *
+     */
+    MinMax minMaxMatrix = new MinMax();
+
+    /**
+     * Constructs a new instance of the PlumeModel class.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters used for the calculation
+     * @param forkJoinPool the pool executing the parallel parts of the calculation
+     */
+    public PlumeModel(GaussianPlume gaussianPlume, ForkJoinPool forkJoinPool) {
+        this(gaussianPlume, forkJoinPool, new Options());
+    }
+
+    /**
+     * Constructs a new instance of the PlumeModel class.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters used for the calculation
+     * @param forkJoinPool the pool executing the parallel parts of the calculation
+     * @param options the optional calculation modes and the shared resources
+     */
+    public PlumeModel(GaussianPlume gaussianPlume, ForkJoinPool forkJoinPool, Options options) {
+        this(gaussianPlume, forkJoinPool, options, CancellationToken.NONE);
+    }
+
+    /**
+     * Constructs a new instance of the PlumeModel class.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters used for the calculation
+     * @param forkJoinPool the pool executing the parallel parts of the calculation
+     * @param options the optional calculation modes and the shared resources
+     * @param cancellation the cancellation token stopping the calculation
+     */
+    public PlumeModel(GaussianPlume gaussianPlume, ForkJoinPool forkJoinPool, Options options, CancellationToken cancellation) {
+        this.gaussianPlume = gaussianPlume;
+        this.cancellation = cancellation;
+        this.forkJoinPool = forkJoinPool;
+        this.kernelSuperposition = options.isKernelSuperposition();
+        this.unitFieldCache = options.getUnitFieldCache();
+        this.culling = options.isCulling();
+        this.marchingSquares = options.isMarchingSquares();
+        this.gridArena = options.getGridArena();
+        this.tiledGrid = options.isTiledGrid();
+        this.lineSource = isLineSource(gaussianPlume);
+        this.adaptiveGrid = options.isAdaptiveGrid();
+        this.matrixSize = gaussianPlume.getMatrixSize();
+        this.matrixSizeStart = (int) -(matrixSize * gaussianPlume.getCellResolution() / 2);
+        this.concentrationHeight = (int) gaussianPlume.getConcentrationHeight();
+        this.windX = Math.sin((gaussianPlume.getWind().getDirection() - 180) * Math.PI / 180);
+        this.windY = Math.cos((gaussianPlume.getWind().getDirection() - 180) * Math.PI / 180);
+        this.emitterKernel = options.isVectorKernel()
+                ? EmitterKernel.create(windX, windY, gaussianPlume.getWind().getSpeed(), gaussianPlume.getWind().getStability(),
+                        gaussianPlume.getEmittersHeight(), concentrationHeight)
+                : null;
+    }
+
+    /**
+     * Calculates the air pollution dispersion and creates the contours for all the thresholds.
+     *
+     * @return the calculated contours together with the duration of the calculation
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    public Contours calculate() {
+        long start = System.nanoTime();
+        List<Contours.Contour> contourList;
+        try {
+            contourList = createContours();
+        } finally {
+            releaseMatrix();
+        }
+        double duration = (System.nanoTime() - start) / 1.0E9;
+
+        return new Contours(false, "success", duration, contourList);
+    }
+
+    /**
+     * Calculates the air pollution concentration at the given receptor points only. The emitters, or the line source,
+     * are evaluated for each point, so no matrix is allocated and the contours are not extracted. The points are
+     * evaluated in the calling thread, so the model does not need a pool, and the cancellation token is checked
+     * before each point. The positions are rounded to a micrometre, see {@link #RECEPTOR_STEPS},
+     * so a point placed on a cell gives the concentration of the cell.
+     *
+     * @param receptors the GPS coordinates of the receptor points
+     * @return the concentrations at the receptor points, in the order of the points
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    public double[] calculateReceptors(List<Contours.GpsPoint> receptors) {
+        prepareEmitters();
+        if (lineSource && emittersX.length > 0) {
+            prepareLineSource(0.0);
+            envelope = null;
+        }
+
+        GaussianPlume.GpsPoint roadStart = gaussianPlume.getRoadStart();
+        double[] concentrations = new double[receptors.size()];
+        try {
+            for (int r = 0; r < receptors.size(); r++) {
+                cancellation.throwIfCancelled();
+                double[] position = toLocalPosition(roadStart, receptors.get(r));
+                double x = Math.rint(position[0] * RECEPTOR_STEPS) / RECEPTOR_STEPS;
+                double y = Math.rint(position[1] * RECEPTOR_STEPS) / RECEPTOR_STEPS;
+                concentrations[r] = concentration(x, y);
+            }
+        } finally {
+            finiteLineSource = null;
+        }
+        return concentrations;
+    }
+
+    /**
+     * Allocates the zero-filled output matrix. The dense matrix is borrowed from the grid arena if available,
+     * while the tiled matrix allocates only the tiles in which the concentration is set.
+     *
+     */
+    void allocateMatrix() {
+        if (tiledGrid) {
+            c1 = new TiledGrid(matrixSize);
+        } else if (gridArena != null) {
+            c1 = new DenseGrid(gridArena.borrowMatrix(matrixSize, matrixSize, cancellation), matrixSize);
+            matrixBorrowed = true;
+        } else {
+            c1 = new DenseGrid(matrixSize);
+        }
+    }
+
+    /**
+     * Returns the output matrix to the grid arena if it has been borrowed.
+     *
+     */
+    void releaseMatrix() {
+        if (matrixBorrowed) {
+            gridArena.releaseMatrix(((DenseGrid) c1).getValues());
+            matrixBorrowed = false;
+        }
+        c1 = null;
+    }
+
+    /**
+     * Returns the kernel to the grid arena if it has been borrowed.
+     *
+     */
+    void releaseKernel() {
+        if (kernelBorrowed) {
+            gridArena.releaseMatrix(kernel);
+            kernelBorrowed = false;
+        }
+        kernel = null;
+    }
+
+    /**
+     * Determines whether the Gaussian Plume parameters select the analytic finite line source.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters
+     * @return true for the line source model, false for the point emitters
+     */
+    static boolean isLineSource(GaussianPlume gaussianPlume) {
+        return SourceModelEnum.getByValue(gaussianPlume.getSourceModel()) == SourceModelEnum.LINE;
+    }
+
+    /**
+     * Returns the fraction of the matrix cells skipped by the plume envelope culling or not evaluated by the adaptive grid.
+     *
+     * @return the fraction of the skipped cells [0-1]
+     */
+    public double getCulledFraction() {
+        return matrixSize > 0 ? (double) minMaxMatrix.culled / ((long) matrixSize * matrixSize) : 0.0;
+    }
+
+    /**
+     * Calculates the emission per emitter and places the emitters along the road segment.
+     *
+     */
+    void prepareEmitters() {
+        List<GaussianPlume.Vehicle> vehicles = gaussianPlume.getVehicles();
+        int pollutionType = gaussianPlume.getPollutionType();
+
+        double[] bV = new double[vehicles.size()];
+        if (pollutionType >= 1 && pollutionType <= EMISSION_FACTORS.length) {
+            double[][] factors = EMISSION_FACTORS[pollutionType - 1];
+            for (int i = 0; i < Math.min(vehicles.size(), factors.length); i++) {
+                double v = vehicles.get(i).getAvgVelocity();
+                bV[i] = (factors[i][0] * Math.pow(v, 3)) + (factors[i][1] * Math.pow(v, 2)) + (factors[i][2] * v) + factors[i][3];
+            }
+        }
+
+        int vehicleCountSum = 0;
+        for (GaussianPlume.Vehicle vehicle : vehicles) {
+            vehicleCountSum += vehicle.getCount();
+        }
+
+        double chosenVehicleEmissionSum = 0;
+        for (int i = 0; i < vehicles.size(); i++) {
+            GaussianPlume.Vehicle vehicle = vehicles.get(i);
+            double emission = vehicleCountSum != 0 ? vehicle.getCount() * ((double) vehicle.getCount() / (double) vehicleCountSum) * bV[i] : 0;
+            if (vehicle.isChosen()) {
+                chosenVehicleEmissionSum += emission;
+            }
+        }
+
+        GaussianPlume.GpsPoint roadStart = gaussianPlume.getRoadStart();
+        GaussianPlume.GpsPoint roadEnd = gaussianPlume.getRoadEnd();
+        double distance = haversineDistance(roadStart.getLat(), roadStart.getLon(), roadEnd.getLat(), roadEnd.getLon());
+        double azimuth = azimuth(roadStart.getLat(), roadStart.getLon(), roadEnd.getLat(), roadEnd.getLon());
+
+        emissionPerEmitter = ((chosenVehicleEmissionSum * distance / 1000.0) * (1000.0 / 3600.0)) * (EMITTERS_DISTANCE / distance);
+
+        int emittersCnt = (int) ((int) distance / EMITTERS_DISTANCE);
+        emittersX = new double[emittersCnt];
+        emittersY = new double[emittersCnt];
+
+        double xym = EMITTERS_DISTANCE / 2;
+        for (int i = 0; i < emittersCnt; i++) {
+            if (azimuth > 0 && azimuth < 90) {
+                double alpha = toRadians(90 - azimuth);
+                emittersX[i] = Math.cos(alpha) * xym;
+                emittersY[i] = Math.sin(alpha) * xym;
+            } else if (azimuth > 90 && azimuth < 180) {
+                double alpha = toRadians(azimuth - 90);
+                emittersX[i] = Math.cos(alpha) * xym;
+                emittersY[i] = Math.sin(alpha) * xym * -1;
+            } else if (azimuth > 180 && azimuth < 270) {
+                double alpha = toRadians(270 - azimuth);
+                emittersX[i] = Math.cos(alpha) * xym * -1;
+                emittersY[i] = Math.sin(alpha) * xym * -1;
+            } else if (azimuth > 270 && azimuth < 360) {
+                double alpha = toRadians(360 - azimuth);
+                emittersX[i] = Math.sin(alpha) * xym * -1;
+                emittersY[i] = Math.cos(alpha) * xym;
+            } else if (azimuth == 0 || azimuth == 360) {
+                emittersX[i] = 0.0;
+                emittersY[i] = xym;
+            } else if (azimuth == 90) {
+                emittersX[i] = xym;
+                emittersY[i] = 0.0;
+            } else if (azimuth == 180) {
+                emittersX[i] = 0.0;
+                emittersY[i] = xym * -1;
+            } else if (azimuth == 270) {
+                emittersX[i] = xym * -1;
+                emittersY[i] = 0.0;
+            }
+
+            xym = xym + EMITTERS_DISTANCE;
+        }
+    }
+
+    /**
+     * Calculates the air pollution concentration matrix. If the unit emission field cache is available,
+     * the matrix calculated for the unit emission is taken from the cache and rescaled to the actual emission.
+     * The unit emission matrix can be rescaled to any emission, so only the blocks receiving no pollution are skipped there.
+     *
+     */
+    void gaussianPlumeModel() {
+        prepareEmitters();
+
+        if (unitFieldCache == null) {
+            allocateMatrix();
+            calculateMatrix(Consts.THRESHOLD_MIN * CULLING_SAFETY);
+        } else {
+            ConcentrationGrid unitField = getUnitField();
+            double emission = emissionPerEmitter;
+
+            allocateMatrix();
+            calculateFragments((fragmentMinMax, xStart, yStart, xEnd, yEnd) ->
+                    scaleFragment(unitField, emission, fragmentMinMax, xStart, yStart, xEnd, yEnd));
+        }
+
+        for (MinMax[] row : minMax) {
+            for (MinMax fragmentMinMax : row) {
+                minMaxMatrix.min = Math.min(fragmentMinMax.min, minMaxMatrix.min);
+                minMaxMatrix.max = Math.max(fragmentMinMax.max, minMaxMatrix.max);
+                minMaxMatrix.sum += fragmentMinMax.sum;
+                minMaxMatrix.culled += fragmentMinMax.culled;
+            }
+        }
+    }
+
+    /**
+     * Calculates the air pollution concentration matrix for the current emission per emitter
+     * into the zero-filled output matrix. The line source evaluates every cell once, so the kernel
+     * superposition is not used with it.
+     *
+     * @param cullingThreshold the concentration below which the blocks outside the plume envelope are skipped,
+     *                         or 0 to skip only the blocks receiving no pollution
+     */
+    void calculateMatrix(double cullingThreshold) {
+        if (lineSource && emittersX.length > 0) {
+            prepareLineSource(cullingThreshold);
+            calculateFragments(this::calculateEmitters);
+            finiteLineSource = null;
+        } else if (kernelSuperposition) {
+            envelope = createEnvelope(emittersX, emittersY, cullingThreshold);
+            int divMatrixSide = gaussianPlume.getDivMatrixSide();
+            try {
+                calculateKernel((matrixSize / divMatrixSide) * divMatrixSide);
+                calculateFragments(this::superposeKernel);
+            } finally {
+                releaseKernel();
+            }
+        } else {
+            envelope = createEnvelope(emittersX, emittersY, cullingThreshold);
+            calculateFragments(this::calculateEmitters);
+        }
+        envelope = null;
+    }
+
+    /**
+     * Creates the finite line source and its plume envelope for the current emission per emitter.
+     * Each emitter represents the piece of the road of {@link #EMITTERS_DISTANCE} centered at it, so the line
+     * runs from the road starting point to half of the distance past the last emitter and emits the same total.
+     *
+     * @param cullingThreshold the concentration below which the blocks outside the plume envelope are skipped,
+     *                         or 0 to skip only the blocks receiving no pollution
+     */
+    void prepareLineSource(double cullingThreshold) {
+        GaussianPlume.Wind wind = gaussianPlume.getWind();
+        int last = emittersX.length - 1;
+        // The first emitter lies half of the distance from the road starting point
+        double endX = emittersX[last] + emittersX[0];
+        double endY = emittersY[last] + emittersY[0];
+
+        finiteLineSource = new FiniteLineSource(windX, windY, wind.getSpeed(), wind.getStability(),
+                emissionPerEmitter / EMITTERS_DISTANCE, gaussianPlume.getEmittersHeight(), concentrationHeight,
+                0.0, 0.0, endX, endY);
+
+        double[][] envelopePoints = envelopePoints();
+        envelope = createEnvelope(envelopePoints[0], envelopePoints[1], cullingThreshold);
+    }
+
+    /**
+     * Returns the points from which the plume envelope is built: the emitters, extended with both ends of the line
+     * if the line source is prepared, so the blocks reached only by the ends of the line are not skipped.
+     *
+     * @return an array containing the x and the y coordinates of the points
+     */
+    double[][] envelopePoints() {
+        if (finiteLineSource == null) {
+            return new double[][]{emittersX, emittersY};
+        }
+
+        int last = emittersX.length - 1;
+        double[] envelopeX = Arrays.copyOf(emittersX, emittersX.length + 2);
+        double[] envelopeY = Arrays.copyOf(emittersY, emittersY.length + 2);
+        envelopeX[last + 2] = emittersX[last] + emittersX[0];
+        envelopeY[last + 2] = emittersY[last] + emittersY[0];
+        return new double[][]{envelopeX, envelopeY};
+    }
+
+    /**
+     * Creates the plume envelope of the given emitters for the current emission per emitter.
+     *
+     * @param envelopeEmittersX the x coordinates of the emitters
+     * @param envelopeEmittersY the y coordinates of the emitters
+     * @param threshold the concentration below which a block is skipped, or 0 to skip only the blocks receiving no pollution
+     * @return the plume envelope, or null if the culling is disabled or not applicable to the wind parameters
+     */
+    PlumeEnvelope createEnvelope(double[] envelopeEmittersX, double[] envelopeEmittersY, double threshold) {
+        GaussianPlume.Wind wind = gaussianPlume.getWind();
+        if (!culling || !PlumeEnvelope.isApplicable(wind.getSpeed(), wind.getStability())) {
+            return null;
+        }
+
+        return new PlumeEnvelope(windX, windY, wind.getSpeed(), wind.getStability(), emissionPerEmitter,
+                envelopeEmittersX, envelopeEmittersY, matrixSizeStart, gaussianPlume.getCellResolution(), threshold);
+    }
+
+    /**
+     * Returns the unit emission matrix from the cache, calculating it if it is not cached yet. The calculation
+     * may be shared with a concurrent calculation of the same matrix, so it is repeated if the other calculation
+     * has been cancelled while this one has not.
+     *
+     * @return the unit emission matrix, which must not be modified
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    ConcentrationGrid getUnitField() {
+        while (true) {
+            try {
+                return unitFieldCache.get(UnitFieldCache.FieldKey.of(gaussianPlume, kernelSuperposition), this::calculateUnitField);
+            } catch (CancellationException e) {
+                cancellation.throwIfCancelled();
+            }
+        }
+    }
+
+    /**
+     * Calculates the air pollution concentration matrix for the unit emission per emitter.
+     * The dense matrix is borrowed from the grid arena if available, and detached from it once calculated,
+     * as the matrix is then kept by the cache; it is returned to the arena if the calculation fails.
+     *
+     * @return the calculated matrix
+     */
+    ConcentrationGrid calculateUnitField() {
+        double emission = emissionPerEmitter;
+        emissionPerEmitter = 1.0;
+        boolean borrowed = !tiledGrid && gridArena != null;
+        boolean calculated = false;
+        try {
+            if (tiledGrid) {
+                c1 = new TiledGrid(matrixSize);
+            } else {
+                c1 = borrowed ? new DenseGrid(gridArena.borrowMatrix(matrixSize, matrixSize, cancellation), matrixSize) : new DenseGrid(matrixSize);
+            }
+            calculateMatrix(0.0);
+            calculated = true;
+            return c1;
+        } finally {
+            emissionPerEmitter = emission;
+            if (borrowed && c1 != null) {
+                if (calculated) {
+                    gridArena.detachMatrix(((DenseGrid) c1).getValues());
+                } else {
+                    gridArena.releaseMatrix(((DenseGrid) c1).getValues());
+                    c1 = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Divides the matrix into fragments and calculates them in parallel on the fork-join pool.
+     * The statistics of each fragment are stored in the minMax array.
+     *
+     * @param calculation the calculation performed for each fragment
+     */
+    void calculateFragments(FragmentCalculation calculation) {
+        int divMatrixSide = gaussianPlume.getDivMatrixSide();
+        int fragmentSize = matrixSize / divMatrixSide;
+
+        minMax = new MinMax[divMatrixSide][divMatrixSide];
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int ty = 0; ty < divMatrixSide; ty++) {
+            for (int tx = 0; tx < divMatrixSide; tx++) {
+                MinMax fragmentMinMax = new MinMax();
+                minMax[ty][tx] = fragmentMinMax;
+
+                int xStart = tx * fragmentSize;
+                int yStart = ty * fragmentSize;
+                tasks.add(() -> {
+                    calculation.calculate(fragmentMinMax, xStart, yStart, xStart + fragmentSize, yStart + fragmentSize);
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Fills a fragment of the matrix with the unit emission matrix multiplied by the emission per emitter.
+     *
+     * @param unitField the matrix calculated for the unit emission
+     * @param emission the emission per emitter
+     * @param fragmentMinMax the statistics of the calculated fragment
+     * @param xStart the first column of the fragment
+     * @param yStart the first row of the fragment
+     * @param xEnd the column following the last column of the fragment
+     * @param yEnd the row following the last row of the fragment
+     */
+    void scaleFragment(ConcentrationGrid unitField, double emission, MinMax fragmentMinMax, int xStart, int yStart, int xEnd, int yEnd) {
+        for (int blockY = yStart; blockY < yEnd; blockY = nextBlock(blockY, yEnd)) {
+            int blockYEnd = nextBlock(blockY, yEnd);
+
+            for (int blockX = xStart; blockX < xEnd; blockX = nextBlock(blockX, xEnd)) {
+                int blockXEnd = nextBlock(blockX, xEnd);
+                cancellation.throwIfCancelled();
+                if (unitField.isEmpty(blockY, blockX, blockYEnd, blockXEnd)) {
+                    continue;
+                }
+
+                for (int row = blockY; row < blockYEnd; row++) {
+                    for (int col = blockX; col < blockXEnd; col++) {
+                        double c = unitField.get(row, col) * emission;
+                        if (c != 0) {
+                            updateMinMax(fragmentMinMax, c1.set(row, col, c));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the start of the block following the block containing the given row or column.
+     * The blocks are aligned to the multiples of {@link #CULLING_BLOCK}, so they match the tiles of the tiled matrix.
+     *
+     * @param start the row or column of the current block
+     * @param end the row or column following the last row or column of the fragment
+     * @return the first row or column of the next block, not greater than the end
+     */
+    static int nextBlock(int start, int end) {
+        return Math.min((start / CULLING_BLOCK + 1) * CULLING_BLOCK, end);
+    }
+
+    /**
+     * Updates the statistics of the fragment with the non-zero value of a cell.
+     *
+     * @param fragmentMinMax the statistics of the fragment
+     * @param c the value of the cell
+     */
+    static void updateMinMax(MinMax fragmentMinMax, double c) {
+        if (c != 0) {
+            fragmentMinMax.min = Math.min(c, fragmentMinMax.min);
+            fragmentMinMax.max = Math.max(c, fragmentMinMax.max);
+            fragmentMinMax.sum += c;
+        }
+    }
+
+    /**
+     * Calculates the sum of the concentrations produced by all emitters, or the concentration produced
+     * by the line source, for a fragment of the matrix.
+     * The fragment is processed in blocks, and the blocks outside the plume envelope are left zero.
+     *
+     * @param fragmentMinMax the statistics of the calculated fragment
+     * @param xStart the first column of the fragment
+     * @param yStart the first row of the fragment
+     * @param xEnd the column following the last column of the fragment
+     * @param yEnd the row following the last row of the fragment
+     */
+    void calculateEmitters(MinMax fragmentMinMax, int xStart, int yStart, int xEnd, int yEnd) {
+        for (int blockY = yStart; blockY < yEnd; blockY = nextBlock(blockY, yEnd)) {
+            int blockYEnd = nextBlock(blockY, yEnd);
+
+            for (int blockX = xStart; blockX < xEnd; blockX = nextBlock(blockX, xEnd)) {
+                int blockXEnd = nextBlock(blockX, xEnd);
+                cancellation.throwIfCancelled();
+
+                if (envelope != null && envelope.isNegligible(blockX, blockY, blockXEnd, blockYEnd)) {
+                    fragmentMinMax.culled += (long) (blockXEnd - blockX) * (blockYEnd - blockY);
+                } else {
+                    calculateBlock(fragmentMinMax, blockX, blockY, blockXEnd, blockYEnd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the sum of the concentrations produced by all emitters, or the concentration produced
+     * by the line source, for a block of the matrix. With the emitter kernel the point emitters are evaluated
+     * for whole rows of the block.
+     *
+     * @param fragmentMinMax the statistics of the fragment containing the block
+     * @param xStart the first column of the block
+     * @param yStart the first row of the block
+     * @param xEnd the column following the last column of the block
+     * @param yEnd the row following the last row of the block
+     */
+    void calculateBlock(MinMax fragmentMinMax, int xStart, int yStart, int xEnd, int yEnd) {
+        double resolution = gaussianPlume.getCellResolution();
+
+        if (finiteLineSource == null && emitterKernel != null) {
+            double[] x = new double[xEnd - xStart];
+            double[] rowValues = new double[xEnd - xStart];
+            for (int col = xStart; col < xEnd; col++) {
+                x[col - xStart] = matrixSizeStart + col * resolution;
+            }
+
+            for (int row = yStart; row < yEnd; row++) {
+                double y = matrixSizeStart + row * resolution;
+                Arrays.fill(rowValues, 0.0);
+                emitterKernel.sumRow(y, x, x.length, emittersX, emittersY, emissionPerEmitter, rowValues);
+
+                for (int col = xStart; col < xEnd; col++) {
+                    double c = rowValues[col - xStart];
+                    if (c != 0) {
+                        updateMinMax(fragmentMinMax, c1.set(row, col, c));
+                    }
+                }
+            }
+            return;
+        }
+
+        for (int row = yStart; row < yEnd; row++) {
+            double y = matrixSizeStart + row * resolution;
+
+            for (int col = xStart; col < xEnd; col++) {
+                double x = matrixSizeStart + col * resolution;
+
+                double c = concentration(x, y);
+                if (c != 0) {
+                    updateMinMax(fragmentMinMax, c1.set(row, col, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the concentration produced by the line source, or the sum of the concentrations produced
+     * by all emitters, at the given matrix cell.
+     *
+     * @param x the x coordinate of the cell (in meters)
+     * @param y the y coordinate of the cell (in meters)
+     * @return the air pollution concentration
+     */
+    double concentration(double x, double y) {
+        return finiteLineSource != null ? finiteLineSource.concentration(x, y) : sumEmitters(x, y);
+    }
+
+    /**
+     * Calculates the sum of the concentrations produced by all emitters at the given matrix cell.
+     *
+     * @param x the x coordinate of the cell (in meters)
+     * @param y the y coordinate of the cell (in meters)
+     * @return the air pollution concentration
+     */
+    double sumEmitters(double x, double y) {
+        double c = 0.0;
+        for (int e = 0; e < emittersX.length; e++) {
+            c += gaussianFunction(x, y, emittersX[e], emittersY[e]);
+        }
+        return c;
+    }
+
+    /**
+     * Calculates the concentration kernel of the first emitter. All the emitters share the same emission,
+     * wind and stability, so the field of every other emitter is the kernel shifted along the road.
+     * The shifts are not whole cells, so the kernel is interpolated at the shifted positions by the cubic
+     * convolution of {@link #cubicWeights}. Rounding the shifts to whole cells instead would move each emitter
+     * by up to half of the cell diagonal, which changes the concentration at the edges of a narrow plume by more
+     * than ten percent. The interpolation error grows close to the emitters, where the plume is only a few
+     * cells wide, so the cells closer to the road than {@link #NEAR_FIELD_DISTANCE}, or than the distance
+     * at which the horizontal dispersion coefficient reaches {@link #NEAR_FIELD_SIGMA} cells, are later calculated directly.
+     * Dropping a small kernel value could move a summed up cell across a threshold, so only the kernel blocks
+     * receiving no pollution are skipped.
+     *
+     * @param coveredSize the number of matrix rows and columns covered by the fragments
+     */
+    void calculateKernel(int coveredSize) {
+        double resolution = gaussianPlume.getCellResolution();
+
+        nearFieldDistance = NEAR_FIELD_DISTANCE;
+        while (calculateSigmas(nearFieldDistance, gaussianPlume.getWind().getStability())[0] < NEAR_FIELD_SIGMA * resolution) {
+            nearFieldDistance += resolution;
+        }
+
+        emittersCol = new int[emittersX.length];
+        emittersRow = new int[emittersY.length];
+        emittersColWeights = new double[emittersX.length][];
+        emittersRowWeights = new double[emittersY.length][];
+        if (emittersX.length == 0) {
+            return;
+        }
+
+        int minCol = 0;
+        int maxCol = 0;
+        int minRow = 0;
+        int maxRow = 0;
+        for (int e = 0; e < emittersX.length; e++) {
+            // The emitter shifted by s cells is interpolated between the kernel cells floor(s) + 1 and floor(s)
+            double colShift = wholeCells((emittersX[e] - emittersX[0]) / resolution);
+            double rowShift = wholeCells((emittersY[e] - emittersY[0]) / resolution);
+            emittersCol[e] = (int) Math.floor(colShift) + 2;
+            emittersRow[e] = (int) Math.floor(rowShift) + 2;
+            emittersColWeights[e] = cubicWeights(emittersCol[e] - 1 - colShift);
+            emittersRowWeights[e] = cubicWeights(emittersRow[e] - 1 - rowShift);
+            minCol = Math.min(emittersCol[e], minCol);
+            maxCol = Math.max(emittersCol[e], maxCol);
+            minRow = Math.min(emittersRow[e], minRow);
+            maxRow = Math.max(emittersRow[e], maxRow);
+        }
+
+        kernelColStart = -maxCol;
+        kernelRowStart = -maxRow;
+        int kernelCols = coveredSize + maxCol - minCol + 3;
+        int kernelRows = coveredSize + maxRow - minRow + 3;
+        if (gridArena != null) {
+            kernel = gridArena.borrowAdditionalMatrix(kernelRows, kernelCols);
+            kernelBorrowed = true;
+        } else {
+            kernel = new double[kernelRows][];
+        }
+        PlumeEnvelope kernelEnvelope = createEnvelope(new double[]{emittersX[0]}, new double[]{emittersY[0]}, 0.0);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int bandStart = 0; bandStart < kernelRows; bandStart += CULLING_BLOCK) {
+            int rowStart = bandStart;
+            int rowEnd = Math.min(bandStart + CULLING_BLOCK, kernelRows);
+            tasks.add(() -> {
+                for (int kr = rowStart; kr < rowEnd && !kernelBorrowed; kr++) {
+                    kernel[kr] = new double[kernelCols];
+                }
+
+                for (int colStart = 0; colStart < kernelCols; colStart += CULLING_BLOCK) {
+                    cancellation.throwIfCancelled();
+                    int colEnd = Math.min(colStart + CULLING_BLOCK, kernelCols);
+                    if (kernelEnvelope != null && kernelEnvelope.isNegligible(colStart + kernelColStart, rowStart + kernelRowStart,
+                            colEnd + kernelColStart, rowEnd + kernelRowStart)) {
+                        continue;
+                    }
+
+                    for (int kr = rowStart; kr < rowEnd; kr++) {
+                        double y = matrixSizeStart + (kr + kernelRowStart) * resolution;
+                        double[] kernelRow = kernel[kr];
+                        if (emitterKernel != null) {
+                            calculateKernelRow(y, kernelRow, colStart, colEnd);
+                            continue;
+                        }
+                        for (int kc = colStart; kc < colEnd; kc++) {
+                            double x = matrixSizeStart + (kc + kernelColStart) * resolution;
+                            kernelRow[kc] = gaussianFunction(x, y, emittersX[0], emittersY[0]);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Calculates a block of a row of the single emitter kernel with the emitter kernel.
+     *
+     * @param y the y coordinate of the row (in meters)
+     * @param kernelRow the row of the single emitter kernel
+     * @param colStart the first column of the block
+     * @param colEnd the column following the last column of the block
+     */
+    void calculateKernelRow(double y, double[] kernelRow, int colStart, int colEnd) {
+        double resolution = gaussianPlume.getCellResolution();
+        double[] x = new double[colEnd - colStart];
+        double[] rowValues = new double[colEnd - colStart];
+        for (int kc = colStart; kc < colEnd; kc++) {
+            x[kc - colStart] = matrixSizeStart + (kc + kernelColStart) * resolution;
+        }
+
+        emitterKernel.sumRow(y, x, x.length, new double[]{emittersX[0]}, new double[]{emittersY[0]}, emissionPerEmitter, rowValues);
+        System.arraycopy(rowValues, 0, kernelRow, colStart, rowValues.length);
+    }
+
+    /**
+     * Rounds the shift to whole cells if it differs from them only by {@link #SHIFT_TOLERANCE}, as for a road
+     * running along the matrix axes, so the kernel of such an emitter is added without the interpolation.
+     *
+     * @param shift the shift in cells
+     * @return the shift, rounded if it is close to whole cells
+     */
+    static double wholeCells(double shift) {
+        double rounded = Math.rint(shift);
+        return Math.abs(shift - rounded) < SHIFT_TOLERANCE ? rounded : shift;
+    }
+
+    /**
+     * Calculates the weights of the cubic convolution (Keys, a = -0.5) interpolating between the second
+     * and the third of four equally spaced values. The interpolation reproduces quadratic functions exactly.
+     *
+     * @param fraction the position between the second and the third value [0-1]
+     * @return the weights of the four values
+     */
+    static double[] cubicWeights(double fraction) {
+        double f2 = fraction * fraction;
+        double f3 = f2 * fraction;
+        return new double[]{
+                (-f3 + 2 * f2 - fraction) / 2,
+                (3 * f3 - 5 * f2 + 2) / 2,
+                (-3 * f3 + 4 * f2 + fraction) / 2,
+                (f3 - f2) / 2
+        };
+    }
+
+    /**
+     * Calculates the sum of the concentrations produced by all emitters for a fragment of the matrix
+     * by adding the kernel interpolated at the position of each emitter, first between the kernel rows
+     * and then between the columns of the interpolated row. The cells close to the road
+     * are calculated directly, as in {@link #calculateEmitters}.
+     *
+     * @param fragmentMinMax the statistics of the calculated fragment
+     * @param xStart the first column of the fragment
+     * @param yStart the first row of the fragment
+     * @param xEnd the column following the last column of the fragment
+     * @param yEnd the row following the last row of the fragment
+     */
+    void superposeKernel(MinMax fragmentMinMax, int xStart, int yStart, int xEnd, int yEnd) {
+        if (emittersX.length == 0) {
+            return;
+        }
+
+        double resolution = gaussianPlume.getCellResolution();
+        double roadStartX = emittersX[0];
+        double roadStartY = emittersY[0];
+        double roadX = emittersX[emittersX.length - 1] - roadStartX;
+        double roadY = emittersY[emittersY.length - 1] - roadStartY;
+        double roadLength2 = roadX * roadX + roadY * roadY;
+        int nearColStart = Math.max(xStart, (int) Math.floor((Math.min(roadStartX, roadStartX + roadX) - nearFieldDistance - matrixSizeStart) / resolution));
+        int nearColEnd = Math.min(xEnd, (int) Math.ceil((Math.max(roadStartX, roadStartX + roadX) + nearFieldDistance - matrixSizeStart) / resolution) + 1);
+        int nearRowStart = Math.max(yStart, (int) Math.floor((Math.min(roadStartY, roadStartY + roadY) - nearFieldDistance - matrixSizeStart) / resolution));
+        int nearRowEnd = Math.min(yEnd, (int) Math.ceil((Math.max(roadStartY, roadStartY + roadY) + nearFieldDistance - matrixSizeStart) / resolution) + 1);
+
+        double[] rowValues = new double[xEnd - xStart];
+        double[] interpolatedRow = new double[xEnd - xStart + 3];
+        for (int row = yStart; row < yEnd; row++) {
+            double y = matrixSizeStart + row * resolution;
+            Arrays.fill(rowValues, 0.0);
+            if ((row - yStart) % CULLING_BLOCK == 0) {
+                cancellation.throwIfCancelled();
+            }
+
+            for (int e = 0; e < emittersCol.length; e++) {
+                double[] colWeights = emittersColWeights[e];
+                double[] rowWeights = emittersRowWeights[e];
+                int offset = xStart - emittersCol[e] - kernelColStart;
+                int kernelRow = row - emittersRow[e] - kernelRowStart;
+
+                // The interpolation is skipped in the direction in which the emitter is shifted by whole cells
+                double[] source = kernel[kernelRow + 2];
+                int sourceOffset = offset;
+                if (rowWeights[2] != 1.0) {
+                    double[] row0 = kernel[kernelRow];
+                    double[] row1 = kernel[kernelRow + 1];
+                    double[] row3 = kernel[kernelRow + 3];
+                    for (int kc = 0; kc < interpolatedRow.length; kc++) {
+                        interpolatedRow[kc] = rowWeights[0] * row0[kc + offset] + rowWeights[1] * row1[kc + offset]
+                                + rowWeights[2] * source[kc + offset] + rowWeights[3] * row3[kc + offset];
+                    }
+                    source = interpolatedRow;
+                    sourceOffset = 0;
+                }
+                if (colWeights[2] == 1.0) {
+                    for (int col = 0; col < rowValues.length; col++) {
+                        rowValues[col] += source[col + sourceOffset + 2];
+                    }
+                } else {
+                    for (int col = 0; col < rowValues.length; col++) {
+                        int kc = col + sourceOffset;
+                        rowValues[col] += colWeights[0] * source[kc] + colWeights[1] * source[kc + 1]
+                                + colWeights[2] * source[kc + 2] + colWeights[3] * source[kc + 3];
+                    }
+                }
+            }
+
+            if (row >= nearRowStart && row < nearRowEnd) {
+                for (int col = nearColStart; col < nearColEnd; col++) {
+                    double x = matrixSizeStart + col * resolution;
+                    double t = roadLength2 > 0 ? ((x - roadStartX) * roadX + (y - roadStartY) * roadY) / roadLength2 : 0;
+                    t = Math.max(0, Math.min(1, t));
+                    if (Math.pow(x - roadStartX - t * roadX, 2) + Math.pow(y - roadStartY - t * roadY, 2) <= nearFieldDistance * nearFieldDistance) {
+                        rowValues[col - xStart] = sumEmitters(x, y);
+                    }
+                }
+            }
+
+            for (int col = xStart; col < xEnd; col++) {
+                // The interpolation may undershoot slightly below zero next to the upwind edge of the plume
+                double c = Math.max(rowValues[col - xStart], 0.0);
+                if (c != 0) {
+                    updateMinMax(fragmentMinMax, c1.set(row, col, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the concentration produced by a single emitter at the given matrix cell.
+     *
+     * @param x the x coordinate of the cell (in meters)
+     * @param y the y coordinate of the cell (in meters)
+     * @param xs the x coordinate of the emitter (in meters)
+     * @param ys the y coordinate of the emitter (in meters)
+     * @return the air pollution concentration, or 0 if the cell is not downwind of the emitter
+     */
+    double gaussianFunction(double x, double y, double xs, double ys) {
+        GaussianPlume.Wind wind = gaussianPlume.getWind();
+
+        double x1 = x - xs;
+        double y1 = y - ys;
+
+        double subtended = Math.acos((windX * x1 + windY * y1) / Math.sqrt((Math.pow(x1, 2) + Math.pow(y1, 2)) * (Math.pow(windX, 2) + Math.pow(windY, 2))));
+
+        double hypotenuse = Math.sqrt(Math.pow(x1, 2) + Math.pow(y1, 2));
+        double downwind = Math.cos(subtended) * hypotenuse;
+
+        if (downwind > 0) {
+            double[] sigmas = calculateSigmas(downwind, wind.getStability());
+            double sigmaY = sigmas[0];
+            double sigmaZ = sigmas[1];
+            double h = gaussianPlume.getEmittersHeight();
+
+            return (emissionPerEmitter / (2 * Math.PI * wind.getSpeed() * sigmaY * sigmaZ)) *
+                    (Math.exp(((-1) * Math.pow(Math.sin(subtended) * hypotenuse, 2)) / (2 * Math.pow(sigmaY, 2)))) *
+                    (
+                            Math.exp((-1) * Math.pow((concentrationHeight - h), 2) / (2 * Math.pow(sigmaZ, 2))) +
+                            Math.exp((-1) * Math.pow((concentrationHeight + h), 2) / (2 * Math.pow(sigmaZ, 2)))
+                    );
+        }
+
+        return 0;
+    }
+
+    /**
+     * Calculates the horizontal and vertical dispersion coefficients for the given downwind distance.
+     *
+     * @param x the downwind distance (in meters)
+     * @param stability the atmospheric stability class [1-6]
+     * @return an array containing the sigma y and sigma z values
+     */
+    static double[] calculateSigmas(double x, int stability) {
+        double sigmaY = 0.0;
+        double sigmaZ = 0.0;
+
+        switch (stability) {
+            case 1, 2 -> {
+                sigmaZ = 0.24 * x * Math.pow(1 + 0.001 * x, -0.5);
+                sigmaY = 0.32 * x * Math.pow(1 + 0.0004 * x, -0.5);
+            }
+            case 3 -> {
+                sigmaZ = x * 0.20;
+                sigmaY = 0.22 * x * Math.pow(1 + 0.0004 * x, -0.5);
+            }
+            case 4 -> {
+                sigmaZ = 0.14 * x * Math.pow(1 + 0.0003 * x, -0.5);
+                sigmaY = 0.16 * x * Math.pow(1 + 0.0004 * x, -0.5);
+            }
+            case 5, 6 -> {
+                sigmaZ = 0.08 * x * Math.pow(1 + 0.0015 * x, -0.5);
+                sigmaY = 0.11 * x * Math.pow(1 + 0.0004 * x, -0.5);
+            }
+        }
+
+        return new double[]{sigmaY, sigmaZ};
+    }
+
+    /**
+     * Calculates the concentration matrix and extracts the contours for all the thresholds in parallel.
+     * With the adaptive grid the matrix is not calculated, and the contours are extracted from the leaves of the grid.
+     *
+     * @return the list of contours, one for each threshold
+     */
+    List<Contours.Contour> createContours() {
+        String color = contourColor(gaussianPlume.getPollutionType());
+
+        List<Contours.Contour> contourList = new ArrayList<>();
+        double[] thresholdArray = contourThresholds();
+        List<Double> thresholds = new ArrayList<>();
+        for (double threshold : thresholdArray) {
+            thresholds.add(threshold);
+            contourList.add(new Contours.Contour(contourLabel(threshold), color, new ArrayList<>()));
+        }
+
+        if (adaptiveGrid) {
+            findAdaptiveIsolines(thresholdArray, contourList);
+            return contourList;
+        }
+
+        gaussianPlumeModel();
+        if (marchingSquares) {
+            findAllIsolines(thresholdArray, contourList);
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < thresholds.size(); t++) {
+                double threshold = thresholds.get(t);
+                List<Contours.GpsPoint> points = contourList.get(t).getPoints();
+                tasks.add(() -> {
+                    findIsolines(threshold, points);
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+        }
+
+        return contourList;
+    }
+
+    /**
+     * Creates the concentration thresholds of the contours, from {@link Consts#THRESHOLD_MIN}
+     * in steps of {@link Consts#THRESHOLD_STEP} up to {@link Consts#THRESHOLD_MAX}.
+     *
+     * @return the thresholds in ascending order
+     */
+    static double[] contourThresholds() {
+        List<Double> thresholds = new ArrayList<>();
+        for (int t = 0; t < ((Consts.THRESHOLD_MAX - Consts.THRESHOLD_MIN) / Consts.THRESHOLD_STEP); t++) {
+            thresholds.add(Consts.THRESHOLD_MIN + t * Consts.THRESHOLD_STEP);
+        }
+        return thresholds.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Returns the color of the contours of the pollution type.
+     *
+     * @param pollutionType the pollution type (1-3)
+     * @return the color of the contours
+     */
+    static String contourColor(int pollutionType) {
+        return pollutionType >= 1 && pollutionType <= POLLUTION_COLORS.length
+                ? POLLUTION_COLORS[pollutionType - 1]
+                : DEFAULT_COLOR;
+    }
+
+    /**
+     * Formats the threshold of a contour in the units displayed to the user (µg/m³).
+     *
+     * @param threshold the concentration threshold
+     * @return the label of the contour threshold
+     */
+    static String contourLabel(double threshold) {
+        return String.format(Locale.ROOT, "%.4f", threshold * 1000);
+    }
+
+    /**
+     * Extracts the isolines of all the thresholds with the marching squares. The matrix is scanned once
+     * in parallel row strips, then the segments of each threshold are joined in parallel, and the longest
+     * isoline of each threshold is converted into GPS coordinates.
+     *
+     * @param thresholds the concentration thresholds in ascending order
+     * @param contourList the contours of the thresholds to which the GPS points are added
+     */
+    void findAllIsolines(double[] thresholds, List<Contours.Contour> contourList) {
+        MarchingSquares extractor = new MarchingSquares(c1, thresholds);
+        int squareRows = extractor.getSquareRows();
+        int stripSize = Math.max(1, squareRows / (forkJoinPool.getParallelism() * 4));
+
+        MarchingSquares.Strip[] stripArray = new MarchingSquares.Strip[(squareRows + stripSize - 1) / stripSize];
+        List<Callable<Void>> scanTasks = new ArrayList<>();
+        for (int s = 0; s < stripArray.length; s++) {
+            int index = s;
+            scanTasks.add(() -> {
+                stripArray[index] = extractor.scan(index * stripSize, Math.min((index + 1) * stripSize, squareRows));
+                return null;
+            });
+        }
+        invokeAll(scanTasks);
+        List<MarchingSquares.Strip> strips = Arrays.asList(stripArray);
+
+        GaussianPlume.GpsPoint roadStart = gaussianPlume.getRoadStart();
+        double resolution = gaussianPlume.getCellResolution();
+        List<Callable<Void>> traceTasks = new ArrayList<>();
+        for (int t = 0; t < thresholds.length; t++) {
+            int level = t;
+            List<Contours.GpsPoint> points = contourList.get(t).getPoints();
+            traceTasks.add(() -> {
+                double[] longest = new double[0];
+                for (double[] polyline : extractor.trace(level, strips)) {
+                    longest = polyline.length > longest.length ? polyline : longest;
+                }
+                for (int p = 0; p < longest.length; p += 2) {
+                    points.add(toGpsPoint(roadStart, longest[p] * resolution, longest[p + 1] * resolution, matrixSizeStart));
+                }
+                return null;
+            });
+        }
+        invokeAll(traceTasks);
+    }
+
+    /**
+     * Evaluates the concentration on the adaptive grid and extracts the isolines of all the thresholds from its leaves.
+     * The root rows of the grid are refined in parallel, then the segments of their leaves are found in parallel,
+     * and the longest isoline of each threshold is converted into GPS coordinates. The unit emission cache
+     * and the kernel superposition are not used, because only a small part of the cells is evaluated.
+     *
+     * @param thresholds the concentration thresholds in ascending order
+     * @param contourList the contours of the thresholds to which the GPS points are added
+     */
+    void findAdaptiveIsolines(double[] thresholds, List<Contours.Contour> contourList) {
+        prepareEmitters();
+
+        double roadEndX = 0.0;
+        double roadEndY = 0.0;
+        if (lineSource && emittersX.length > 0) {
+            prepareLineSource(thresholds[0] * CULLING_SAFETY);
+        } else {
+            envelope = createEnvelope(emittersX, emittersY, thresholds[0] * CULLING_SAFETY);
+        }
+        if (emittersX.length > 0) {
+            roadEndX = emittersX[emittersX.length - 1] + emittersX[0];
+            roadEndY = emittersY[emittersY.length - 1] + emittersY[0];
+        }
+
+        AdaptiveGrid grid = new AdaptiveGrid(matrixSize, matrixSizeStart, gaussianPlume.getCellResolution(), thresholds,
+                this::concentration, envelope, windX, windY, gaussianPlume.getWind().getStability(), roadEndX, roadEndY);
+        int rootRows = grid.getRootRows();
+
+        int[][] leaves = new int[rootRows][];
+        List<Callable<Void>> refineTasks = new ArrayList<>();
+        for (int r = 0; r < rootRows; r++) {
+            int rootRow = r;
+            refineTasks.add(() -> {
+                leaves[rootRow] = grid.refine(rootRow);
+                return null;
+            });
+        }
+        try {
+            invokeAll(refineTasks);
+        } finally {
+            envelope = null;
+            finiteLineSource = null;
+        }
+
+        AdaptiveGrid.Segments[] segmentsArray = new AdaptiveGrid.Segments[rootRows];
+        List<Callable<Void>> scanTasks = new ArrayList<>();
+        for (int r = 0; r < rootRows; r++) {
+            int rootRow = r;
+            scanTasks.add(() -> {
+                segmentsArray[rootRow] = grid.scan(leaves[rootRow]);
+                return null;
+            });
+        }
+        invokeAll(scanTasks);
+        List<AdaptiveGrid.Segments> segmentsList = Arrays.asList(segmentsArray);
+
+        for (double c : grid.getValues()) {
+            updateMinMax(minMaxMatrix, c);
+        }
+        minMaxMatrix.culled = Math.max(0, (long) matrixSize * matrixSize - grid.getEvaluatedCount());
+
+        GaussianPlume.GpsPoint roadStart = gaussianPlume.getRoadStart();
+        double resolution = gaussianPlume.getCellResolution();
+        List<Callable<Void>> traceTasks = new ArrayList<>();
+        for (int t = 0; t < thresholds.length; t++) {
+            int level = t;
+            List<Contours.GpsPoint> points = contourList.get(t).getPoints();
+            traceTasks.add(() -> {
+                double[] longest = new double[0];
+                for (double[] polyline : grid.trace(level, segmentsList)) {
+                    longest = polyline.length > longest.length ? polyline : longest;
+                }
+                for (int p = 0; p < longest.length; p += 2) {
+                    points.add(toGpsPoint(roadStart, longest[p] * resolution, longest[p + 1] * resolution, matrixSizeStart));
+                }
+                return null;
+            });
+        }
+        invokeAll(traceTasks);
+    }
+
+    /**
+     * Finds the largest external contour of the matrix area where the concentration reaches the threshold
+     * and converts its points into GPS coordinates.
+     *
+     * @param threshold the concentration threshold of the contour
+     * @param points the list to which the GPS points of the contour are added
+     */
+    void findIsolines(double threshold, List<Contours.GpsPoint> points) {
+        int paddedSize = matrixSize + 2;
+        byte[] binaryImage = gridArena != null
+                ? gridArena.borrowImage(paddedSize, paddedSize)
+                : ContourTracer.createPaddedImage(matrixSize);
+
+        List<int[]> contourPoints;
+        try {
+            for (int i = 0; i < matrixSize; i++) {
+                int offset = (i + 1) * paddedSize + 1;
+                for (int blockX = 0; blockX < matrixSize; blockX = nextBlock(blockX, matrixSize)) {
+                    int blockXEnd = nextBlock(blockX, matrixSize);
+                    if (c1.isEmpty(i, blockX, i + 1, blockXEnd)) {
+                        Arrays.fill(binaryImage, offset + blockX, offset + blockXEnd, (byte) 0);
+                        continue;
+                    }
+
+                    for (int j = blockX; j < blockXEnd; j++) {
+                        binaryImage[offset + j] = (byte) (c1.get(i, j) >= threshold ? 1 : 0);
+                    }
+                }
+            }
+
+            contourPoints = ContourTracer.findExternalContours(binaryImage, paddedSize, paddedSize);
+        } finally {
+            if (gridArena != null) {
+                gridArena.releaseImage(binaryImage);
+            }
+        }
+        if (contourPoints.isEmpty()) {
+            return;
+        }
+
+        int[] highest = contourPoints.get(0);
+        for (int[] contour : contourPoints) {
+            highest = contour.length > highest.length ? contour : highest;
+        }
+
+        GaussianPlume.GpsPoint roadStart = gaussianPlume.getRoadStart();
+        double resolution = gaussianPlume.getCellResolution();
+        for (int p = 0; p < highest.length; p += 2) {
+            points.add(toGpsPoint(roadStart, highest[p] * resolution, highest[p + 1] * resolution, matrixSizeStart));
+        }
+    }
+
+    /**
+     * Converts the matrix position into GPS coordinates relative to the road starting point.
+     * The position may lie between the cells, as the isolines of the marching squares do.
+     *
+     * @param roadStart the road starting point placed in the middle of the matrix
+     * @param col the distance (in meters) from the first matrix column, possibly fractional
+     * @param row the distance (in meters) from the first matrix row, possibly fractional
+     * @param matrixSizeStart the coordinate (in meters) of the first matrix cell
+     * @return the GPS point of the matrix cell
+     */
+    static Contours.GpsPoint toGpsPoint(GaussianPlume.GpsPoint roadStart, double col, double row, int matrixSizeStart) {
+        double latitude = roadStart.getLat() + ((row + matrixSizeStart) / 1000.0 / EARTH_RADIUS) * (180 / Math.PI);
+        double longitude = roadStart.getLon() + ((col + matrixSizeStart) / 1000.0 / EARTH_RADIUS) * (180 / Math.PI) / Math.cos(roadStart.getLat() * Math.PI / 180);
+
+        return new Contours.GpsPoint(latitude, longitude);
+    }
+
+    /**
+     * Converts the GPS coordinates into the position (in meters) relative to the road starting point,
+     * inverting the conversion of {@link #toGpsPoint}.
+     *
+     * @param roadStart the road starting point
+     * @param point the GPS point
+     * @return an array containing the x (east) and y (north) coordinates of the point
+     */
+    static double[] toLocalPosition(GaussianPlume.GpsPoint roadStart, Contours.GpsPoint point) {
+        double y = (point.getLat() - roadStart.getLat()) * (Math.PI / 180) * EARTH_RADIUS * 1000.0;
+        double x = (point.getLon() - roadStart.getLon()) * (Math.PI / 180) * Math.cos(roadStart.getLat() * Math.PI / 180) * EARTH_RADIUS * 1000.0;
+
+        return new double[]{x, y};
+    }
+
+    /**
+     * Executes the given tasks on the fork-join pool and waits for all of them to complete.
+     * The tasks not started before the cancellation token is cancelled are skipped.
+     *
+     * @param tasks the tasks to be executed
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     * @throws IllegalStateException if any of the tasks failed
+     */
+    void invokeAll(List<Callable<Void>> tasks) {
+        invokeAll(forkJoinPool, tasks, cancellation);
+    }
+
+    /**
+     * Executes the given tasks on the given fork-join pool and waits for all of them to complete.
+     *
+     * @param forkJoinPool the pool executing the tasks
+     * @param tasks the tasks to be executed
+     * @throws IllegalStateException if any of the tasks failed
+     */
+    static void invokeAll(ForkJoinPool forkJoinPool, List<Callable<Void>> tasks) {
+        invokeAll(forkJoinPool, tasks, CancellationToken.NONE);
+    }
+
+    /**
+     * Executes the given tasks on the given fork-join pool and waits for all of them to complete.
+     * The tasks not started before the cancellation token is cancelled are skipped.
+     *
+     * @param forkJoinPool the pool executing the tasks
+     * @param tasks the tasks to be executed
+     * @param cancellation the cancellation token checked before each task
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     * @throws IllegalStateException if any of the tasks failed
+     */
+    static void invokeAll(ForkJoinPool forkJoinPool, List<Callable<Void>> tasks, CancellationToken cancellation) {
+        cancellation.throwIfCancelled();
+
+        List<Callable<Void>> cancellableTasks = new ArrayList<>(tasks.size());
+        for (Callable<Void> task : tasks) {
+            cancellableTasks.add(() -> {
+                cancellation.throwIfCancelled();
+                return task.call();
+            });
+        }
+
+        try {
+            for (Future<Void> future : forkJoinPool.invokeAll(cancellableTasks)) {
+                future.get();
+            }
+        } catch (CancellationException e) {
+            // The pool may report a task stopped by the token as cancelled, without the reason
+            cancellation.throwIfCancelled();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException cancellationException) {
+                cancellation.throwIfCancelled();
+                throw cancellationException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Determines the distance between two points on a sphere using the Haversine formula.
+     *
+     * @param lat1 latitude of the first point
+     * @param lon1 longitude of the first point
+     * @param lat2 latitude of the second point
+     * @param lon2 longitude of the second point
+     * @return the distance between the two points in meters
+     */
+    static double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = toRadians(lat2 - lat1);
+        double dLon = toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(toRadians(lat1)) * Math.cos(toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS * c * 1000;
+    }
+
+    /**
+     * Determines the azimuth between two points.
+     *
+     * @param lat1 latitude of the first point
+     * @param lon1 longitude of the first point
+     * @param lat2 latitude of the second point
+     * @param lon2 longitude of the second point
+     * @return the azimuth between the two points in degrees [0-360)
+     */
+    static double azimuth(double lat1, double lon1, double lat2, double lon2) {
+        double dLon = toRadians(lon2 - lon1);
+
+        double y = Math.sin(dLon) * Math.cos(toRadians(lat2));
+        double x = Math.cos(toRadians(lat1)) * Math.sin(toRadians(lat2)) - Math.sin(toRadians(lat1)) * Math.cos(toRadians(lat2)) * Math.cos(dLon);
+
+        double azimuth = toDegrees(Math.atan2(y, x));
+        return (azimuth + 360) % 360;
+    }
+
+    /**
+     * Converts degrees to radians.
+     *
+     * @param degrees the value in degrees
+     * @return the value in radians
+     */
+    static double toRadians(double degrees) {
+        return degrees * (Math.PI / 180.0);
+    }
+
+    /**
+     * Converts radians to degrees.
+     *
+     * @param radians the value in radians
+     * @return the value in degrees
+     */
+    static double toDegrees(double radians) {
+        return radians * (180.0 / Math.PI);
+    }
+}
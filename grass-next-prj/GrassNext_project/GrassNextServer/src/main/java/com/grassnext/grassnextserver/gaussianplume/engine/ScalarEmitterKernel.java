@@ -0,0 +1,167 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+/**
+ * The ScalarEmitterKernel class evaluates the Gaussian function of the point emitters for a row of cells,
+ * one cell at a time. It is used when the Java Vector API is not available, and for the cells of a row
+ * not filling a whole group of vector lanes.
+ *
+ * The function is rearranged so that no trigonometric function is needed: for the unit wind vector
+ * the downwind distance is the dot product and the crosswind distance is the cross product of the wind
+ * and the cell position relative to the emitter. The dispersion coefficients have the form
+ * {@code a * d / sqrt(1 + b * d)}, so their squares and their product need a single square root,
+ * and the horizontal term is folded into both exponentials of the vertical term with the ground reflection.
+ *
+ */
+public class ScalarEmitterKernel implements EmitterKernel {
+    /**
+     * The coefficients {@code a} and {@code b} of the horizontal and the vertical dispersion coefficients
+     * {@code a * d / sqrt(1 + b * d)} of each stability class, in the order of {@link PlumeModel#calculateSigmas}.
+     *
+     */
+    static final double[][] SIGMA_COEFFICIENTS = {
+            {0.32, 0.0004, 0.24, 0.001},
+            {0.32, 0.0004, 0.24, 0.001},
+            {0.22, 0.0004, 0.20, 0.0},
+            {0.16, 0.0004, 0.14, 0.0003},
+            {0.11, 0.0004, 0.08, 0.0015},
+            {0.11, 0.0004, 0.08, 0.0015}
+    };
+
+    /**
+     * The x component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windX;
+    /**
+     * The y component of the unit vector pointing in the direction the wind blows to.
+     *
+     */
+    final double windY;
+    /**
+     * The growth rate {@code b} of the horizontal dispersion coefficient.
+     *
+     */
+    final double growthY;
+    /**
+     * The growth rate {@code b} of the vertical dispersion coefficient.
+     *
+     */
+    final double growthZ;
+    /**
+     * The factor of the horizontal term, {@code 1 / (2 * a^2)} of the horizontal dispersion coefficient.
+     *
+     */
+    final double horizontalFactor;
+    /**
+     * The factor of the vertical term, {@code 1 / (2 * a^2)} of the vertical dispersion coefficient.
+     *
+     */
+    final double verticalFactor;
+    /**
+     * The factor of the normalization {@code 1 / (2 * PI * u * sigmaY * sigmaZ)} left after dividing out the
+     * downwind distance.
+     *
+     */
+    final double normalization;
+    /**
+     * The square of the difference of the concentration height and the emitters height.
+     *
+     */
+    final double below;
+    /**
+     * The square of the sum of the concentration height and the emitters height, for the reflection from the ground.
+     *
+     */
+    final double above;
+
+    /**
+     * Constructs a new instance of the ScalarEmitterKernel class.
+     *
+     * @param windX the x component of the unit vector pointing in the direction the wind blows to
+     * @param windY the y component of the unit vector pointing in the direction the wind blows to
+     * @param windSpeed the wind speed
+     * @param stability the atmospheric stability class [1-6]
+     * @param emittersHeight the height of the emitters
+     * @param concentrationHeight the height at which the concentration is calculated
+     */
+    ScalarEmitterKernel(double windX, double windY, double windSpeed, int stability,
+                        double emittersHeight, double concentrationHeight) {
+        double[] coefficients = sigmaCoefficients(stability);
+
+        this.windX = windX;
+        this.windY = windY;
+        this.growthY = coefficients[1];
+        this.growthZ = coefficients[3];
+        this.horizontalFactor = 1.0 / (2 * coefficients[0] * coefficients[0]);
+        this.verticalFactor = 1.0 / (2 * coefficients[2] * coefficients[2]);
+        this.normalization = 1.0 / (2 * Math.PI * windSpeed * coefficients[0] * coefficients[2]);
+        this.below = (concentrationHeight - emittersHeight) * (concentrationHeight - emittersHeight);
+        this.above = (concentrationHeight + emittersHeight) * (concentrationHeight + emittersHeight);
+    }
+
+    /**
+     * Returns the coefficients of the dispersion coefficients of the stability class.
+     *
+     * @param stability the atmospheric stability class [1-6]
+     * @return an array containing {@code a} and {@code b} of the horizontal and the vertical dispersion coefficients,
+     *         or null if the stability class is not supported
+     */
+    static double[] sigmaCoefficients(int stability) {
+        return stability >= 1 && stability <= SIGMA_COEFFICIENTS.length ? SIGMA_COEFFICIENTS[stability - 1] : null;
+    }
+
+    @Override
+    public void sumRow(double y, double[] x, int length, double[] emittersX, double[] emittersY, double emission, double[] out) {
+        for (int e = 0; e < emittersX.length; e++) {
+            double y1 = y - emittersY[e];
+            sumCells(windY * y1, windX * y1, emittersX[e], x, 0, length, emission, out);
+        }
+    }
+
+    @Override
+    public int getLanes() {
+        return 1;
+    }
+
+    /**
+     * Adds the concentrations produced by a single emitter to a range of the cells of a row.
+     *
+     * @param downwindY the part of the downwind distance given by the row, {@code windY * (y - ys)}
+     * @param crosswindY the part of the crosswind distance given by the row, {@code windX * (y - ys)}
+     * @param xs the x coordinate of the emitter (in meters)
+     * @param x the x coordinates of the cells of the row (in meters)
+     * @param from the first cell of the range
+     * @param to the cell following the last cell of the range
+     * @param emission the emission per emitter
+     * @param out the concentrations of the cells of the row
+     */
+    void sumCells(double downwindY, double crosswindY, double xs, double[] x, int from, int to, double emission, double[] out) {
+        for (int i = from; i < to; i++) {
+            double x1 = x[i] - xs;
+            double downwind = windX * x1 + downwindY;
+            if (downwind > 0) {
+                double crosswind = crosswindY - windY * x1;
+                out[i] += emission * cell(downwind, crosswind);
+            }
+        }
+    }
+
+    /**
+     * Calculates the concentration produced by the unit emission of an emitter at a cell downwind of it.
+     *
+     * @param downwind the downwind distance of the cell (in meters), greater than 0
+     * @param crosswind the crosswind distance of the cell (in meters)
+     * @return the air pollution concentration for the unit emission
+     */
+    double cell(double downwind, double crosswind) {
+        double growthTermY = 1 + growthY * downwind;
+        double growthTermZ = 1 + growthZ * downwind;
+        double inverse = 1.0 / (downwind * downwind);
+
+        double horizontal = crosswind * crosswind * growthTermY * inverse * horizontalFactor;
+        double vertical = growthTermZ * inverse * verticalFactor;
+
+        return normalization * Math.sqrt(growthTermY * growthTermZ) * inverse
+                * (Math.exp(-horizontal - below * vertical) + Math.exp(-horizontal - above * vertical));
+    }
+}
@@ -0,0 +1,101 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The TiledGrid class stores the concentration grid as square tiles of single precision values.
+ *
+ * A tile is allocated when the first non-zero value is set in it, so the tiles upwind of the road and far
+ * from the plume, which contain only zeros, take no memory and are skipped by the contour extraction.
+ * The single precision keeps about 7 significant digits, which is far below the step between the thresholds,
+ * but the contours are not guaranteed to be identical to those of the {@link DenseGrid}: a cell within the rounding
+ * error of a threshold may fall on its other side, which moves the traced contour by up to the diagonal of a cell
+ * there and may move the vertices kept on its straight runs further along it. The isolines of the marching squares
+ * differ only by the rounding of their interpolated positions.
+ *
+ */
+public class TiledGrid implements ConcentrationGrid {
+    /**
+     * The size of one side of a tile. It is equal to the culling block, so the skipped blocks are not allocated.
+     *
+     */
+    static final int TILE_SIZE = PlumeModel.CULLING_BLOCK;
+
+    /**
+     * The size of one side of the grid.
+     *
+     */
+    final int size;
+    /**
+     * The number of tiles along one side of the grid.
+     *
+     */
+    final int tilesPerSide;
+    /**
+     * The tiles stored row by row, or null for the tiles containing only zeros.
+     *
+     */
+    final AtomicReferenceArray<float[]> tiles;
+
+    /**
+     * Constructs a zero-filled grid with no tiles allocated.
+     *
+     * @param size the size of one side of the grid
+     */
+    public TiledGrid(int size) {
+        this.size = size;
+        this.tilesPerSide = (size + TILE_SIZE - 1) / TILE_SIZE;
+        this.tiles = new AtomicReferenceArray<>(tilesPerSide * tilesPerSide);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        float[] tile = tiles.get((row / TILE_SIZE) * tilesPerSide + col / TILE_SIZE);
+        return tile == null ? 0.0 : tile[(row % TILE_SIZE) * TILE_SIZE + col % TILE_SIZE];
+    }
+
+    @Override
+    public double set(int row, int col, double value) {
+        int index = (row / TILE_SIZE) * tilesPerSide + col / TILE_SIZE;
+        float[] tile = tiles.get(index);
+        if (tile == null) {
+            if (value == 0) {
+                return 0.0;
+            }
+            tiles.compareAndSet(index, null, new float[TILE_SIZE * TILE_SIZE]);
+            tile = tiles.get(index);
+        }
+
+        float stored = (float) value;
+        tile[(row % TILE_SIZE) * TILE_SIZE + col % TILE_SIZE] = stored;
+        return stored;
+    }
+
+    @Override
+    public boolean isEmpty(int rowStart, int colStart, int rowEnd, int colEnd) {
+        for (int tileRow = rowStart / TILE_SIZE; tileRow <= (rowEnd - 1) / TILE_SIZE; tileRow++) {
+            for (int tileCol = colStart / TILE_SIZE; tileCol <= (colEnd - 1) / TILE_SIZE; tileCol++) {
+                if (tiles.get(tileRow * tilesPerSide + tileCol) != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getBytes() {
+        long allocated = 0;
+        for (int i = 0; i < tiles.length(); i++) {
+            if (tiles.get(i) != null) {
+                allocated++;
+            }
+        }
+        return allocated * TILE_SIZE * TILE_SIZE * Float.BYTES + (long) tiles.length() * Integer.BYTES;
+    }
+}
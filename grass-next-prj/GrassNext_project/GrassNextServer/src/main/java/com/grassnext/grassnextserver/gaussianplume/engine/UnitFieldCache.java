@@ -0,0 +1,182 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The UnitFieldCache class stores the concentration matrices calculated for the unit emission.
+ *
+ * The concentration is linear in the emission, and the emission is the only parameter depending on the chosen
+ * vehicle groups and pollution type. A cached matrix can therefore be rescaled for every vehicle group and
+ * pollution type of the same detector, date, hour, weather stability and area. The cache is bounded by the
+ * total size of the stored matrices and evicts the least recently used ones.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "gn.engine", havingValue = DispersionEngine.JVM)
+public class UnitFieldCache {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the UnitFieldCache class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnitFieldCache.class);
+
+    /**
+     * The key of the cached matrix, containing all the Gaussian Plume parameters the unit emission matrix depends on.
+     *
+     */
+    @Data
+    @AllArgsConstructor
+    static class FieldKey {
+        /**
+         * The starting point of the road.
+         *
+         */
+        GaussianPlume.GpsPoint roadStart;
+        /**
+         * The ending point of the road.
+         *
+         */
+        GaussianPlume.GpsPoint roadEnd;
+        /**
+         * The wind speed, direction and atmospheric stability.
+         *
+         */
+        GaussianPlume.Wind wind;
+        /**
+         * The height of the emitters.
+         *
+         */
+        double emittersHeight;
+        /**
+         * The height at which the concentration is calculated.
+         *
+         */
+        double concentrationHeight;
+        /**
+         * The size of one side of the matrix.
+         *
+         */
+        int matrixSize;
+        /**
+         * The size of a single matrix cell.
+         *
+         */
+        double cellResolution;
+        /**
+         * The number of fragments along one side of the matrix.
+         *
+         */
+        int divMatrixSide;
+        /**
+         * The calculation mode of the matrix.
+         *
+         */
+        boolean kernelSuperposition;
+        /**
+         * The model of the road emission, true for the finite line source.
+         *
+         */
+        boolean lineSource;
+
+        /**
+         * Creates the key of the unit emission matrix for the given Gaussian Plume parameters.
+         *
+         * @param gaussianPlume the Gaussian Plume parameters
+         * @param kernelSuperposition true if the matrix is calculated by the kernel superposition
+         * @return the key of the matrix
+         */
+        static FieldKey of(GaussianPlume gaussianPlume, boolean kernelSuperposition) {
+            return new FieldKey(
+                    new GaussianPlume.GpsPoint(gaussianPlume.getRoadStart().getLon(), gaussianPlume.getRoadStart().getLat()),
+                    new GaussianPlume.GpsPoint(gaussianPlume.getRoadEnd().getLon(), gaussianPlume.getRoadEnd().getLat()),
+                    new GaussianPlume.Wind(gaussianPlume.getWind().getSpeed(), gaussianPlume.getWind().getDirection(), gaussianPlume.getWind().getStability()),
+                    gaussianPlume.getEmittersHeight(),
+                    gaussianPlume.getConcentrationHeight(),
+                    gaussianPlume.getMatrixSize(),
+                    gaussianPlume.getCellResolution(),
+                    gaussianPlume.getDivMatrixSide(),
+                    kernelSuperposition,
+                    PlumeModel.isLineSource(gaussianPlume)
+            );
+        }
+    }
+
+    /**
+     * The cache of the unit emission matrices, weighted by the matrix size in kilobytes.
+     * It is null if the cache is disabled.
+     *
+     */
+    private final Cache<FieldKey, ConcentrationGrid> cache;
+
+    /**
+     * Constructs a UnitFieldCache using the size limit defined in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the cache size limit
+     */
+    @Autowired
+    public UnitFieldCache(GrassNextConfig grassNextConfig) {
+        long maxSizeMb = grassNextConfig.getJvmFieldCacheMb();
+        this.cache = maxSizeMb <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeMb * 1024)
+                .weigher((FieldKey key, ConcentrationGrid field) -> (int) Math.max(1, field.getBytes() / 1024))
+                .build();
+
+        LOGGER.info("[LOGGER] Unit emission field cache: " + (cache == null ? "disabled" : maxSizeMb + " MB"));
+    }
+
+    /**
+     * Determines whether the cache is enabled.
+     *
+     * @return true if the matrices are cached
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Returns the cached unit emission matrix, calculating it if it is not cached yet.
+     * Concurrent requests for the same key wait for a single calculation.
+     *
+     * @param key the key of the matrix
+     * @param loader the calculation of the unit emission matrix
+     * @return the unit emission matrix, which must not be modified
+     * @throws CancellationException if the calculation was cancelled
+     * @throws IllegalStateException if the calculation failed
+     */
+    ConcentrationGrid get(FieldKey key, Callable<ConcentrationGrid> loader) {
+        if (cache == null) {
+            try {
+                return loader.call();
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof CancellationException cancellationException) {
+                throw cancellationException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
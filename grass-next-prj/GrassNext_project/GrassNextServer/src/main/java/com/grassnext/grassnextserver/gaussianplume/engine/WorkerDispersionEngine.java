@@ -0,0 +1,464 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.worker.WorkerMain;
+import com.grassnext.grassnextserver.gaussianplume.engine.worker.WorkerProcess;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * Dispersion engine delegating the calculations to a pool of long-lived worker processes on the same host,
+ * connected through Unix domain sockets (see {@link WorkerMain}). A crash of the native library or its large
+ * allocations stay in one worker process instead of the server JVM, and the throughput scales with the number
+ * of workers.
+ *
+ * Each worker performs one calculation at a time. A crashed worker, a worker not answering the health check
+ * and a worker exceeding its resident memory limit are restarted in the background. On Linux the workers are
+ * started by {@code prlimit} under an address space limit, so an allocation above it fails in the worker at once,
+ * and the resident memory is checked after the calculations only where that limit is not available. A cancelled calculation
+ * is stopped by killing its worker, so unlike the native engine even a running native calculation can be stopped.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "gn.engine", havingValue = DispersionEngine.WORKER)
+public class WorkerDispersionEngine implements DispersionEngine {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the WorkerDispersionEngine class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerDispersionEngine.class);
+    /**
+     * The interval in milliseconds in which the cancellation tokens of the running calculations are checked,
+     * and in which a caller waiting for an idle worker checks its own token.
+     *
+     */
+    static final long CANCELLATION_CHECK_INTERVAL = 100;
+    /**
+     * The maximum time in milliseconds a worker may take to answer the health check.
+     *
+     */
+    static final long PING_TIMEOUT = 5000;
+    /**
+     * The launcher of the Spring Boot executable jar, able to start a main class other than the application.
+     *
+     */
+    static final String BOOT_LAUNCHER = "org.springframework.boot.loader.PropertiesLauncher";
+    /**
+     * The command of util-linux starting a process with the given resource limits.
+     *
+     */
+    static final String PRLIMIT = "prlimit";
+    /**
+     * The options of the Java runtime of a worker started under an address space limit, reducing the address space
+     * reserved up front for the class metadata and the compiled code, which is 1.3 GB by default.
+     *
+     */
+    static final List<String> ADDRESS_SPACE_OPTIONS = List.of("-XX:CompressedClassSpaceSize=64m", "-XX:ReservedCodeCacheSize=64m");
+
+    /**
+     * All the workers of the pool.
+     *
+     */
+    private final List<WorkerProcess> workers = new ArrayList<>();
+    /**
+     * The started workers not performing a calculation.
+     *
+     */
+    private final BlockingQueue<WorkerProcess> idle = new LinkedBlockingQueue<>();
+    /**
+     * The workers taken from the idle workers by a calculation or a health check, which must not be restarted.
+     *
+     */
+    private final Set<WorkerProcess> held = ConcurrentHashMap.newKeySet();
+    /**
+     * The executor checking the cancellation tokens of the running calculations.
+     *
+     */
+    private final ScheduledExecutorService watchdogExecutor = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * The executor performing the health checks and restarting the workers, one worker at a time.
+     *
+     */
+    private final ScheduledExecutorService healthExecutor = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * Determines whether the workers calculate with the pure Java implementation instead of the native library.
+     *
+     */
+    private final boolean jvm;
+    /**
+     * The maximum resident memory of a worker in bytes, or 0 if it is not limited or the address space is limited instead.
+     *
+     */
+    private final long maxRss;
+    /**
+     * The maximum address space of a worker in bytes, or 0 if it is not limited.
+     *
+     */
+    private final long maxAddressSpace;
+    /**
+     * The maximum time in milliseconds a worker may take to start.
+     *
+     */
+    private final long startTimeout;
+
+    /**
+     * Constructs a WorkerDispersionEngine and starts the worker processes using the settings defined
+     * in the application properties.
+     *
+     * @param grassNextConfig the configuration providing the number of workers and their limits
+     */
+    @Autowired
+    public WorkerDispersionEngine(GrassNextConfig grassNextConfig) {
+        this.jvm = DispersionEngine.JVM.equals(grassNextConfig.getWorkerEngine());
+        this.maxAddressSpace = grassNextConfig.getWorkerMaxAddressSpaceMb() > 0 && isAddressSpaceLimitAvailable()
+                ? grassNextConfig.getWorkerMaxAddressSpaceMb() * 1024L * 1024L
+                : 0;
+        this.maxRss = maxAddressSpace > 0 ? 0 : Math.max(0, grassNextConfig.getWorkerMaxRssMb()) * 1024L * 1024L;
+        this.startTimeout = TimeUnit.SECONDS.toMillis(Math.max(1, grassNextConfig.getWorkerStartTimeout()));
+
+        List<String> command = workerCommand(grassNextConfig.getWorkerHeapMb(), maxAddressSpace);
+        List<String> arguments = new ArrayList<>();
+        arguments.add(jvm ? DispersionEngine.JVM : DispersionEngine.NATIVE);
+        if (!jvm) {
+            arguments.add(new File(grassNextConfig.getGnLibFolder()).getAbsolutePath());
+            arguments.add(grassNextConfig.getGnLibFile());
+            arguments.add(grassNextConfig.getOpenCvLibFile());
+        }
+
+        String socketDir = grassNextConfig.getWorkerSocketDir() == null || grassNextConfig.getWorkerSocketDir().isBlank()
+                ? System.getProperty("java.io.tmpdir")
+                : grassNextConfig.getWorkerSocketDir();
+        long pid = ProcessHandle.current().pid();
+        int count = workerCount(grassNextConfig);
+        for (int index = 0; index < count; index++) {
+            Path socketPath = Path.of(socketDir, "grassnext-worker-" + pid + "-" + index + ".sock");
+            workers.add(new WorkerProcess(index, socketPath, command, arguments));
+        }
+        workers.parallelStream().forEach(this::restart);
+
+        watchdogExecutor.scheduleWithFixedDelay(() -> workers.forEach(WorkerProcess::checkCancellation),
+                CANCELLATION_CHECK_INTERVAL, CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        long healthInterval = Math.max(1, grassNextConfig.getWorkerHealthInterval());
+        healthExecutor.scheduleWithFixedDelay(this::checkHealth, healthInterval, healthInterval, TimeUnit.SECONDS);
+
+        LOGGER.info("[LOGGER] Calculation workers: " + idle.size() + " of " + count + " started, "
+                + (jvm ? DispersionEngine.JVM : DispersionEngine.NATIVE) + " engine, "
+                + (maxAddressSpace > 0 ? "address space " + maxAddressSpace / (1024 * 1024) + " MB"
+                        : maxRss > 0 ? "resident memory " + maxRss / (1024 * 1024) + " MB" : "memory not limited"));
+    }
+
+    /**
+     * Returns the number of worker processes, which also bounds the number of calculations performed at the same time.
+     *
+     * @param grassNextConfig the configuration providing the number of workers
+     * @return the configured number of workers, or the number of available processors if not configured
+     */
+    public static int workerCount(GrassNextConfig grassNextConfig) {
+        return grassNextConfig.getWorkerCount() > 0
+                ? grassNextConfig.getWorkerCount()
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Calculates the pollution contours in an idle worker process.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized
+     *               {@link com.grassnext.grassnextserver.gaussianplume.GaussianPlume} object
+     * @return a JSON-formatted string containing the serialized {@link com.grassnext.grassnextserver.common.Contours}
+     *         object, or null if the calculation could not be performed
+     */
+    @Override
+    public String calculate(String jsonIn) {
+        return calculate(jsonIn, CancellationToken.NONE);
+    }
+
+    /**
+     * Calculates the pollution contours in an idle worker process, waiting for a worker to become idle.
+     * The worker is killed and restarted if the token is cancelled during the calculation.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized
+     *               {@link com.grassnext.grassnextserver.gaussianplume.GaussianPlume} object
+     * @param cancellation the cancellation token of the calculation
+     * @return a JSON-formatted string containing the serialized {@link com.grassnext.grassnextserver.common.Contours}
+     *         object, or null if the calculation could not be performed, the worker crashed or no worker is running
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    @Override
+    public String calculate(String jsonIn, CancellationToken cancellation) {
+        WorkerProcess worker = acquire(cancellation);
+        if (worker == null) {
+            LOGGER.error("[LOGGER] No calculation worker running!");
+            return null;
+        }
+
+        try {
+            WorkerProcess.Result result = worker.calculate(jsonIn, cancellation);
+            if (result.getError() != null) {
+                LOGGER.error("[LOGGER] Calculation worker " + worker.getIndex() + " failed! " + result.getError());
+            }
+            return result.getJsonOut();
+        } catch (IOException e) {
+            LOGGER.error("[LOGGER] Calculation worker " + worker.getIndex() + " crashed! " + e.getMessage());
+            return null;
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Determines whether the workers are able to calculate the dispersion with the given model of the road emission.
+     * The workers using the native library support only the point emitters.
+     *
+     * @param sourceModel the model of the road emission
+     * @return true if the model is supported
+     */
+    @Override
+    public boolean supports(SourceModelEnum sourceModel) {
+        return jvm ? sourceModel != null : sourceModel == SourceModelEnum.POINT;
+    }
+
+    /**
+     * Returns true, as the worker performing a cancelled calculation is killed and restarted.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    /**
+     * Returns the number of workers currently running.
+     *
+     * @return the number of running workers
+     */
+    public int getAlive() {
+        return (int) workers.stream().filter(WorkerProcess::isAlive).count();
+    }
+
+    /**
+     * Takes an idle worker, waiting until one becomes idle or, if all the workers are being restarted,
+     * until one of them starts.
+     *
+     * @param cancellation the cancellation token of the calculation
+     * @return the idle worker, or null if no worker has been running for the start timeout
+     * @throws CancellationException if the token is cancelled or its deadline expires
+     */
+    WorkerProcess acquire(CancellationToken cancellation) {
+        long noWorkerSince = 0;
+        while (true) {
+            cancellation.throwIfCancelled();
+            try {
+                WorkerProcess worker = idle.poll(CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                if (worker != null) {
+                    if (worker.isAlive()) {
+                        held.add(worker);
+                        return worker;
+                    }
+                    scheduleRestart(worker);
+                } else if (getAlive() > 0) {
+                    noWorkerSince = 0;
+                } else if (noWorkerSince == 0) {
+                    noWorkerSince = System.nanoTime();
+                } else if (System.nanoTime() - noWorkerSince > TimeUnit.MILLISECONDS.toNanos(startTimeout)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Calculation interrupted");
+            }
+        }
+    }
+
+    /**
+     * Returns the worker to the idle workers, or schedules its restart if it has crashed, has been killed
+     * or exceeds its resident memory limit.
+     *
+     * @param worker the worker which has finished its calculation
+     */
+    void release(WorkerProcess worker) {
+        if (worker.isAlive() && !exceedsMemory(worker)) {
+            idle.add(worker);
+            held.remove(worker);
+        } else {
+            held.remove(worker);
+            scheduleRestart(worker);
+        }
+    }
+
+    /**
+     * Determines whether the worker exceeds its resident memory limit.
+     *
+     * @param worker the worker
+     * @return true if the limit is set and exceeded
+     */
+    boolean exceedsMemory(WorkerProcess worker) {
+        if (maxRss > 0 && worker.getRss() > maxRss) {
+            LOGGER.info("[LOGGER] Calculation worker " + worker.getIndex() + " uses " + worker.getRss() / (1024 * 1024)
+                    + " MB, restarting");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restarts the worker in the background.
+     *
+     * @param worker the worker to be restarted
+     */
+    void scheduleRestart(WorkerProcess worker) {
+        healthExecutor.execute(() -> restart(worker));
+    }
+
+    /**
+     * Starts the worker again and returns it to the idle workers, unless it is idle or held by a calculation
+     * or a health check. A worker failing to start is retried by the next health check.
+     * After the startup the restarts are performed by the health executor only, so a worker is never started twice at the same time.
+     *
+     * @param worker the worker to be restarted
+     */
+    void restart(WorkerProcess worker) {
+        if (held.contains(worker) || worker.isBusy() || idle.contains(worker)) {
+            return;
+        }
+        try {
+            worker.start(startTimeout);
+            idle.add(worker);
+            if (worker.getStarts() > 1) {
+                LOGGER.info("[LOGGER] Calculation worker " + worker.getIndex() + " restarted");
+            }
+        } catch (IOException e) {
+            LOGGER.error("[LOGGER] Calculation worker " + worker.getIndex() + " failed to start! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks every idle worker with a ping, restarting the workers which do not answer or exceed their
+     * resident memory limit, and restarts the workers which are not running.
+     *
+     */
+    void checkHealth() {
+        for (WorkerProcess worker : workers) {
+            if (idle.remove(worker)) {
+                held.add(worker);
+                try {
+                    worker.ping(PING_TIMEOUT);
+                } catch (IOException e) {
+                    LOGGER.error("[LOGGER] Calculation worker " + worker.getIndex() + " not responding! " + e.getMessage());
+                }
+                release(worker);
+            } else if (!worker.isAlive()) {
+                restart(worker);
+            }
+        }
+    }
+
+    /**
+     * Determines whether the address space of the workers can be limited: on Linux with {@code prlimit}
+     * found on the path.
+     *
+     * @return true if the workers can be started under an address space limit
+     */
+    static boolean isAddressSpaceLimitAvailable() {
+        String path = System.getenv("PATH");
+        if (!System.getProperty("os.name").toLowerCase().startsWith("linux") || path == null) {
+            return false;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            if (!directory.isEmpty() && Files.isExecutable(Path.of(directory, PRLIMIT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the command starting a worker process with the same Java runtime and classes as the server.
+     * When the server runs from the Spring Boot executable jar, the worker main class is started through its launcher.
+     * With an address space limit, the worker is started by {@code prlimit} with smaller up-front reservations of the runtime.
+     *
+     * @param heapMb the maximum size in megabytes of the Java heap of a worker
+     * @param maxAddressSpace the maximum address space of a worker in bytes, or 0 if it is not limited
+     * @return the command up to the worker main class
+     */
+    static List<String> workerCommand(int heapMb, long maxAddressSpace) {
+        List<String> command = new ArrayList<>();
+        if (maxAddressSpace > 0) {
+            command.add(PRLIMIT);
+            command.add("--as=" + maxAddressSpace);
+        }
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (heapMb > 0) {
+            command.add("-Xmx" + heapMb + "m");
+        }
+        if (maxAddressSpace > 0) {
+            command.addAll(ADDRESS_SPACE_OPTIONS);
+        }
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(argument -> argument.startsWith("--add-modules"))
+                .forEach(command::add);
+
+        String classPath = System.getProperty("java.class.path");
+        command.add("-cp");
+        command.add(classPath);
+        if (isBootJar(classPath)) {
+            command.add("-Dloader.main=" + WorkerMain.class.getName());
+            command.add(BOOT_LAUNCHER);
+        } else {
+            command.add(WorkerMain.class.getName());
+        }
+        return command;
+    }
+
+    /**
+     * Determines whether the class path is the Spring Boot executable jar.
+     *
+     * @param classPath the class path of the server
+     * @return true if the class path is a single jar with the application classes in {@code BOOT-INF}
+     */
+    static boolean isBootJar(String classPath) {
+        if (classPath.contains(File.pathSeparator) || !classPath.endsWith(".jar")) {
+            return false;
+        }
+        try (JarFile jarFile = new JarFile(classPath)) {
+            return jarFile.getEntry("BOOT-INF/classes/") != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops the health checks and kills the worker processes when the application context is closed.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        watchdogExecutor.shutdownNow();
+        healthExecutor.shutdownNow();
+        workers.forEach(WorkerProcess::kill);
+    }
+}
@@ -0,0 +1,166 @@
+package com.grassnext.grassnextserver.gaussianplume.engine.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.gaussianplume.engine.PlumeModel;
+import com.grassnext.grassnextserver.jni.GrassNextJni;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The WorkerMain class is the entry point of a worker process started by
+ * {@link com.grassnext.grassnextserver.gaussianplume.engine.WorkerDispersionEngine}.
+ *
+ * The worker listens on a Unix domain socket and performs the calculations requested by the server one at a time,
+ * either with the native C++ library or with the pure Java implementation. A crash of the native library therefore
+ * only ends the worker process, which the server restarts. The worker exits when the server process ends.
+ *
+ * Arguments: the socket path, the engine ({@code native} or {@code jvm}) and, for the native engine,
+ * the library folder, the library file and the OpenCV library file.
+ *
+ */
+public class WorkerMain {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the WorkerMain class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerMain.class);
+    /**
+     * An instance of the Jackson {@code ObjectMapper} used by the pure Java engine for reading the input parameters
+     * and writing the calculated contours.
+     *
+     */
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    /**
+     * The file with the memory status of the process on Linux.
+     *
+     */
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    /**
+     * Starts the worker and serves the connections of the server until the server process ends.
+     *
+     * @param args the socket path, the engine, and the library folder and files of the native engine
+     * @throws IOException if the socket cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        ProcessHandle.current().parent().ifPresent(parent -> parent.onExit().thenRun(() -> System.exit(0)));
+
+        Path socketPath = Path.of(args[0]);
+        boolean jvm = DispersionEngine.JVM.equals(args[1]);
+        if (!jvm) {
+            GrassNextConfig grassNextConfig = new GrassNextConfig();
+            grassNextConfig.setGnLibFolder(args[2]);
+            grassNextConfig.setGnLibFile(args[3]);
+            grassNextConfig.setOpenCvLibFile(args.length > 4 ? args[4] : "");
+            GrassNextJni.gnLoadLibrary(grassNextConfig);
+        }
+
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            LOGGER.info("[LOGGER] Calculation worker " + ProcessHandle.current().pid() + " listening on " + socketPath);
+
+            while (true) {
+                try (SocketChannel channel = server.accept()) {
+                    serve(channel, jvm);
+                } catch (EOFException e) {
+                    LOGGER.info("[LOGGER] Calculation worker disconnected");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    /**
+     * Answers the frames sent by the server until it closes the connection.
+     *
+     * @param channel the channel of the connection
+     * @param jvm true to calculate with the pure Java implementation, false with the native library
+     * @throws IOException if the connection fails or is closed
+     */
+    static void serve(SocketChannel channel, boolean jvm) throws IOException {
+        while (true) {
+            WorkerProtocol.Frame frame = WorkerProtocol.readFrame(channel);
+            if (frame.getType() == WorkerProtocol.PING) {
+                WorkerProtocol.writeFrame(channel, WorkerProtocol.PONG, rss(), new byte[0]);
+            } else if (frame.getType() == WorkerProtocol.CALCULATE) {
+                String jsonOut;
+                String error = null;
+                try {
+                    jsonOut = calculate(new String(frame.getPayload(), StandardCharsets.UTF_8), jvm);
+                } catch (Exception e) {
+                    jsonOut = null;
+                    error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                }
+
+                if (jsonOut != null) {
+                    WorkerProtocol.writeFrame(channel, WorkerProtocol.RESULT, rss(), jsonOut.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    String message = error != null ? error : "No result";
+                    WorkerProtocol.writeFrame(channel, WorkerProtocol.FAILURE, rss(), message.getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                throw new IOException("Unexpected frame type " + frame.getType());
+            }
+        }
+    }
+
+    /**
+     * Calculates the pollution contours for the Gaussian Plume parameters given in the JSON format.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized {@link GaussianPlume} object
+     * @param jvm true to calculate with the pure Java implementation, false with the native library
+     * @return a JSON-formatted string containing the serialized contours, or null if the calculation could not be performed
+     * @throws IOException if the parameters cannot be read or the contours cannot be written
+     */
+    static String calculate(String jsonIn, boolean jvm) throws IOException {
+        if (!jvm) {
+            return GrassNextJni.gnExecuteCount(jsonIn);
+        }
+        GaussianPlume gaussianPlume = jsonMapper.readValue(jsonIn, GaussianPlume.class);
+        return jsonMapper.writeValueAsString(new PlumeModel(gaussianPlume, ForkJoinPool.commonPool()).calculate());
+    }
+
+    /**
+     * Reads the resident memory of the process, including the memory allocated by the native library.
+     * Where {@code /proc} is not available, as on Windows, the memory committed by the process is returned instead.
+     *
+     * @return the resident memory in bytes, or -1 if it cannot be read on this platform
+     */
+    static long rss() {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                    ? os.getCommittedVirtualMemorySize()
+                    : -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(PROC_STATUS);
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,299 @@
+package com.grassnext.grassnextserver.gaussianplume.engine.worker;
+
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The WorkerProcess class manages a single worker process and the socket connected to it.
+ * A worker performs one calculation at a time; the caller holding the worker is responsible for not sharing it.
+ *
+ * A calculation whose cancellation token is cancelled is stopped by killing the worker process,
+ * which also interrupts the native library, so the worker has to be started again afterwards.
+ *
+ */
+public class WorkerProcess {
+    /**
+     * The interval in milliseconds in which the connection to a starting worker is attempted.
+     *
+     */
+    static final long CONNECT_INTERVAL = 50;
+
+    /**
+     * The index of the worker in the pool.
+     *
+     */
+    @Getter
+    private final int index;
+    /**
+     * The path of the Unix domain socket of the worker.
+     *
+     */
+    @Getter
+    private final Path socketPath;
+    /**
+     * The command starting the worker process, without the socket path and the engine arguments.
+     *
+     */
+    private final List<String> command;
+    /**
+     * The arguments passed to the worker after the socket path.
+     *
+     */
+    private final List<String> arguments;
+    /**
+     * The running worker process, or null if it has not been started.
+     *
+     */
+    private volatile Process process;
+    /**
+     * The socket connected to the worker, or null if it has not been started.
+     *
+     */
+    private volatile SocketChannel channel;
+    /**
+     * The cancellation token of the calculation in progress, or null if the worker is idle.
+     *
+     */
+    private volatile CancellationToken cancellation;
+    /**
+     * The resident memory of the worker in bytes reported by its last answer, or -1 if unknown.
+     *
+     */
+    @Getter
+    private volatile long rss = -1;
+    /**
+     * The number of times the worker has been started.
+     *
+     */
+    @Getter
+    private volatile int starts;
+
+    /**
+     * Inner class describing the answer of the worker to a calculation.
+     *
+     */
+    @Getter
+    public static class Result {
+        /**
+         * A JSON-formatted string containing the serialized contours, or null if the calculation failed.
+         *
+         */
+        private final String jsonOut;
+        /**
+         * The error message of the failed calculation, or null if the calculation succeeded.
+         *
+         */
+        private final String error;
+
+        /**
+         * Constructs a Result of a calculation.
+         *
+         * @param jsonOut the serialized contours, or null if the calculation failed
+         * @param error the error message of the failed calculation
+         */
+        Result(String jsonOut, String error) {
+            this.jsonOut = jsonOut;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Constructs a WorkerProcess, which is not started yet.
+     *
+     * @param index the index of the worker in the pool
+     * @param socketPath the path of the Unix domain socket of the worker
+     * @param command the command starting the worker process, up to its main class
+     * @param arguments the arguments passed to the worker after the socket path
+     */
+    public WorkerProcess(int index, Path socketPath, List<String> command, List<String> arguments) {
+        this.index = index;
+        this.socketPath = socketPath;
+        this.command = command;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Starts the worker process and connects to its socket, killing the previous process if it is still running.
+     *
+     * @param timeout the maximum time in milliseconds the worker may take to accept the connection
+     * @throws IOException if the worker exits or does not accept the connection in time
+     */
+    public synchronized void start(long timeout) throws IOException {
+        kill();
+        Files.deleteIfExists(socketPath);
+
+        List<String> fullCommand = new ArrayList<>(command);
+        fullCommand.add(socketPath.toString());
+        fullCommand.addAll(arguments);
+        Process started = new ProcessBuilder(fullCommand).inheritIO().start();
+        process = started;
+        starts++;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            if (!started.isAlive()) {
+                throw new IOException("Worker " + index + " exited with code " + started.exitValue());
+            }
+            if (Files.exists(socketPath)) {
+                try {
+                    SocketChannel connected = SocketChannel.open(StandardProtocolFamily.UNIX);
+                    try {
+                        connected.connect(UnixDomainSocketAddress.of(socketPath));
+                    } catch (IOException e) {
+                        connected.close();
+                        throw e;
+                    }
+                    channel = connected;
+                    rss = -1;
+                    return;
+                } catch (IOException e) {
+                    // The worker has created the socket but does not accept the connections yet
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                started.destroyForcibly();
+                throw new IOException("Worker " + index + " did not start within " + timeout + " ms");
+            }
+            try {
+                Thread.sleep(CONNECT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                started.destroyForcibly();
+                throw new IOException("Worker " + index + " start interrupted");
+            }
+        }
+    }
+
+    /**
+     * Sends the calculation to the worker and waits for its answer.
+     *
+     * @param jsonIn a JSON-formatted string containing the serialized Gaussian Plume parameters
+     * @param cancellation the cancellation token of the calculation, checked by {@link #checkCancellation()}
+     * @return the answer of the worker
+     * @throws CancellationException if the token is cancelled and the worker has been killed
+     * @throws IOException if the worker crashed or the connection failed
+     */
+    public Result calculate(String jsonIn, CancellationToken cancellation) throws IOException {
+        this.cancellation = cancellation;
+        try {
+            WorkerProtocol.Frame frame = exchange(WorkerProtocol.CALCULATE, jsonIn.getBytes(StandardCharsets.UTF_8));
+            String body = new String(WorkerProtocol.readBody(frame), StandardCharsets.UTF_8);
+            if (frame.getType() == WorkerProtocol.RESULT) {
+                return new Result(body, null);
+            }
+            if (frame.getType() == WorkerProtocol.FAILURE) {
+                return new Result(null, body);
+            }
+            throw new IOException("Unexpected frame type " + frame.getType());
+        } catch (IOException e) {
+            kill();
+            cancellation.throwIfCancelled();
+            throw e;
+        } finally {
+            this.cancellation = null;
+        }
+    }
+
+    /**
+     * Checks that the worker responds and updates its resident memory.
+     * A worker not responding in time is killed by {@link #checkCancellation()}.
+     *
+     * @param timeout the maximum time in milliseconds the worker may take to respond
+     * @throws IOException if the worker does not respond
+     */
+    public void ping(long timeout) throws IOException {
+        this.cancellation = CancellationToken.withTimeout(timeout, TimeUnit.MILLISECONDS);
+        try {
+            WorkerProtocol.Frame frame = exchange(WorkerProtocol.PING, new byte[0]);
+            if (frame.getType() != WorkerProtocol.PONG) {
+                throw new IOException("Unexpected frame type " + frame.getType());
+            }
+        } catch (IOException e) {
+            kill();
+            throw e;
+        } finally {
+            this.cancellation = null;
+        }
+    }
+
+    /**
+     * Kills the worker if the token of the calculation in progress has been cancelled or its deadline has expired.
+     *
+     */
+    public void checkCancellation() {
+        CancellationToken current = cancellation;
+        if (current != null && current.isCancelled()) {
+            kill();
+        }
+    }
+
+    /**
+     * Determines whether the worker process is running and connected.
+     *
+     * @return true if the worker can accept a calculation
+     */
+    public boolean isAlive() {
+        Process current = process;
+        SocketChannel currentChannel = channel;
+        return current != null && current.isAlive() && currentChannel != null && currentChannel.isOpen();
+    }
+
+    /**
+     * Determines whether the worker is performing a calculation.
+     *
+     * @return true if a calculation is in progress
+     */
+    public boolean isBusy() {
+        return cancellation != null;
+    }
+
+    /**
+     * Closes the connection and kills the worker process.
+     *
+     */
+    public void kill() {
+        SocketChannel currentChannel = channel;
+        if (currentChannel != null) {
+            try {
+                currentChannel.close();
+            } catch (IOException e) {
+                // The connection is abandoned anyway
+            }
+        }
+        Process current = process;
+        if (current != null) {
+            current.destroyForcibly();
+        }
+    }
+
+    /**
+     * Sends a frame to the worker and reads its answer.
+     *
+     * @param type the type of the frame
+     * @param payload the payload of the frame
+     * @return the answer of the worker
+     * @throws IOException if the worker is not connected, crashed or the connection failed
+     */
+    WorkerProtocol.Frame exchange(byte type, byte[] payload) throws IOException {
+        SocketChannel currentChannel = channel;
+        if (currentChannel == null || !currentChannel.isOpen()) {
+            throw new IOException("Worker " + index + " not connected");
+        }
+        WorkerProtocol.writeFrame(currentChannel, type, payload);
+        WorkerProtocol.Frame frame = WorkerProtocol.readFrame(currentChannel);
+        rss = WorkerProtocol.readRss(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,179 @@
+package com.grassnext.grassnextserver.gaussianplume.engine.worker;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The WorkerProtocol class defines the binary framing of the messages exchanged between the server
+ * and the worker processes over a Unix domain socket.
+ *
+ * Every frame starts with a 4-byte big-endian length of the rest of the frame, followed by a 1-byte frame type
+ * and the payload:
+ * - CALCULATE: the UTF-8 JSON of the Gaussian Plume parameters, sent by the server.
+ * - RESULT: the 8-byte resident memory of the worker followed by the UTF-8 JSON of the contours.
+ * - FAILURE: the 8-byte resident memory of the worker followed by the UTF-8 error message.
+ * - PING: no payload, sent by the server to check the worker.
+ * - PONG: the 8-byte resident memory of the worker.
+ *
+ */
+public final class WorkerProtocol {
+    /**
+     * The frame requesting a calculation.
+     *
+     */
+    public static final byte CALCULATE = 1;
+    /**
+     * The frame carrying the calculated contours.
+     *
+     */
+    public static final byte RESULT = 2;
+    /**
+     * The frame reporting a calculation which could not be performed.
+     *
+     */
+    public static final byte FAILURE = 3;
+    /**
+     * The frame checking that the worker responds.
+     *
+     */
+    public static final byte PING = 4;
+    /**
+     * The frame answering the health check.
+     *
+     */
+    public static final byte PONG = 5;
+    /**
+     * The size of the frame header: the length and the type.
+     *
+     */
+    static final int HEADER_SIZE = Integer.BYTES + 1;
+    /**
+     * The maximum size of a frame, protecting both sides from allocating a corrupted length.
+     *
+     */
+    static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * Inner class describing a received frame.
+     *
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Frame {
+        /**
+         * The type of the frame.
+         *
+         */
+        private final byte type;
+        /**
+         * The payload of the frame.
+         *
+         */
+        private final byte[] payload;
+    }
+
+    /**
+     * The class only provides static methods.
+     *
+     */
+    private WorkerProtocol() {
+    }
+
+    /**
+     * Writes a frame to the channel.
+     *
+     * @param channel the channel of the socket
+     * @param type the type of the frame
+     * @param payload the payload of the frame
+     * @throws IOException if the frame cannot be written
+     */
+    public static void writeFrame(WritableByteChannel channel, byte type, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(1 + payload.length).put(type).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes a frame whose payload starts with the resident memory of the worker.
+     *
+     * @param channel the channel of the socket
+     * @param type the type of the frame
+     * @param rss the resident memory of the worker in bytes, or -1 if unknown
+     * @param payload the rest of the payload
+     * @throws IOException if the frame cannot be written
+     */
+    public static void writeFrame(WritableByteChannel channel, byte type, long rss, byte[] payload) throws IOException {
+        writeFrame(channel, type, ByteBuffer.allocate(Long.BYTES + payload.length).putLong(rss).put(payload).array());
+    }
+
+    /**
+     * Reads a frame from the channel, blocking until it is complete.
+     *
+     * @param channel the channel of the socket
+     * @return the received frame
+     * @throws EOFException if the other side closed the socket
+     * @throws IOException if the frame cannot be read or its length is invalid
+     */
+    public static Frame readFrame(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, HEADER_SIZE);
+        int length = header.getInt();
+        if (length < 1 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte type = header.get();
+        return new Frame(type, readFully(channel, length - 1).array());
+    }
+
+    /**
+     * Reads the resident memory of the worker from the beginning of the payload.
+     *
+     * @param frame the received frame
+     * @return the resident memory of the worker in bytes, or -1 if unknown
+     */
+    public static long readRss(Frame frame) {
+        return frame.getPayload().length >= Long.BYTES ? ByteBuffer.wrap(frame.getPayload()).getLong() : -1;
+    }
+
+    /**
+     * Reads the bytes following the resident memory of the worker in the payload.
+     *
+     * @param frame the received frame
+     * @return the rest of the payload
+     */
+    public static byte[] readBody(Frame frame) {
+        byte[] payload = frame.getPayload();
+        if (payload.length < Long.BYTES) {
+            return new byte[0];
+        }
+        byte[] body = new byte[payload.length - Long.BYTES];
+        System.arraycopy(payload, Long.BYTES, body, 0, body.length);
+        return body;
+    }
+
+    /**
+     * Reads the given number of bytes from the channel.
+     *
+     * @param channel the channel of the socket
+     * @param size the number of bytes
+     * @return the buffer with the bytes, ready to be read
+     * @throws EOFException if the other side closed the socket
+     * @throws IOException if the bytes cannot be read
+     */
+    static ByteBuffer readFully(ReadableByteChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Socket closed");
+            }
+        }
+        return buffer.flip();
+    }
+}
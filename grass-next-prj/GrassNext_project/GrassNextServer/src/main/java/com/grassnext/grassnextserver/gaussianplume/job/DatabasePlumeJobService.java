@@ -0,0 +1,587 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlumeService;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Service class responsible for the asynchronous Gaussian Plume calculation jobs kept in a queue table
+ * of the database, shared by all the server instances behind the load balancer.
+ *
+ * A job may be submitted to any instance and is calculated by any instance with a free worker, so the capacity
+ * grows with the number of instances. Every {@code gn.jobs.poll_interval} milliseconds each instance claims
+ * as many of the oldest queued jobs as it has free workers with {@code SELECT ... FOR UPDATE SKIP LOCKED},
+ * so concurrent instances never claim the same job and do not wait for each other's locks.
+ *
+ * A claimed job is leased to the instance for {@code gn.jobs.lease_ttl} seconds, and the lease is renewed
+ * while the calculation runs. The job of an instance which stopped or lost the database is claimed again
+ * when its lease expires, up to {@code gn.jobs.max_attempts} times. The results are stored in the queue table,
+ * so the status of a job can be read from any instance.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "gn.jobs.queue", havingValue = PlumeJobService.DATABASE)
+public class DatabasePlumeJobService implements PlumeJobService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the DatabasePlumeJobService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabasePlumeJobService.class);
+    /**
+     * An instance of the Jackson {@code ObjectMapper} used for storing the measurement data and the contours
+     * in the queue table.
+     *
+     */
+    private static final ObjectMapper jsonMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    /**
+     * The weight of the latest job duration in the average job duration.
+     *
+     */
+    private static final double DURATION_WEIGHT = 0.2;
+    /**
+     * The interval in seconds in which the expired results are deleted from the queue table.
+     *
+     */
+    static final long CLEANUP_INTERVAL = 60;
+    /**
+     * The maximum time in seconds the shutdown waits for the running jobs to return to the queue.
+     *
+     */
+    static final long SHUTDOWN_TIMEOUT = 10;
+    /**
+     * The finished states of the jobs.
+     *
+     */
+    static final Set<JobStateEnum> FINISHED_STATES = Set.of(JobStateEnum.DONE, JobStateEnum.FAILED, JobStateEnum.CANCELLED);
+
+    /**
+     * Service calculating the pollution contours for the measurement data.
+     *
+     */
+    GaussianPlumeService gaussianPlumeService;
+    /**
+     * Executor creating the cancellation tokens of the jobs with the configured job deadline.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * Repository of the queue table.
+     *
+     */
+    QueuedPlumeJobRepository queuedPlumeJobRepository;
+    /**
+     * Template executing the claims and the state changes of the jobs in transactions.
+     *
+     */
+    TransactionTemplate transactionTemplate;
+
+    /**
+     * The identifier of this server instance, stored as the owner of the leases.
+     *
+     */
+    @Getter
+    private final String nodeId;
+    /**
+     * The number of workers of this server instance executing the jobs.
+     *
+     */
+    @Getter
+    private final int workers;
+    /**
+     * The maximum number of queued jobs of all the server instances.
+     *
+     */
+    private final int queueSize;
+    /**
+     * The time in minutes the results of the finished jobs are kept.
+     *
+     */
+    private final long resultTtl;
+    /**
+     * The time in seconds the lease of a running job lasts unless it is renewed.
+     *
+     */
+    private final long leaseTtl;
+    /**
+     * The maximum number of times a job is claimed before it fails.
+     *
+     */
+    private final int maxAttempts;
+    /**
+     * The number of seconds a job rejected by the calculation executor waits before it may be claimed again.
+     *
+     */
+    private final long retryAfter;
+    /**
+     * The pool of workers executing the claimed jobs.
+     *
+     */
+    private final ThreadPoolExecutor jobExecutor;
+    /**
+     * The executor polling the queue table, renewing the leases and deleting the expired results.
+     *
+     */
+    private final ScheduledExecutorService pollExecutor = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * The cancellation tokens of the jobs running in this server instance, keyed by their identifiers.
+     *
+     */
+    private final Map<String, CancellationToken> running = new ConcurrentHashMap<>();
+    /**
+     * The average duration of the jobs in seconds, used for estimating the waiting time.
+     *
+     */
+    private volatile double averageDuration = 0.0;
+    /**
+     * Determines whether the application context is closing, so the cancelled jobs return to the queue.
+     *
+     */
+    private volatile boolean stopping;
+    /**
+     * The time of the last lease renewal, accessed by the poll executor only.
+     *
+     */
+    private long lastRenewal = System.nanoTime();
+    /**
+     * The time of the last deletion of the expired results, accessed by the poll executor only.
+     *
+     */
+    private long lastCleanup = 0;
+
+    /**
+     * Constructs a DatabasePlumeJobService using the limits defined in the application properties
+     * and starts polling the queue table.
+     *
+     * @param gaussianPlumeService the service calculating the pollution contours for the measurement data
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param queuedPlumeJobRepository the repository of the queue table
+     * @param transactionManager the transaction manager of the database
+     * @param grassNextConfig the configuration providing the job limits
+     */
+    @Autowired
+    public DatabasePlumeJobService(
+            GaussianPlumeService gaussianPlumeService,
+            CalculationExecutor calculationExecutor,
+            QueuedPlumeJobRepository queuedPlumeJobRepository,
+            PlatformTransactionManager transactionManager,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianPlumeService = gaussianPlumeService;
+        this.calculationExecutor = calculationExecutor;
+        this.queuedPlumeJobRepository = queuedPlumeJobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.workers = grassNextConfig.getJobsWorkers() > 0 ? grassNextConfig.getJobsWorkers() : calculationExecutor.getMaxInFlight();
+        this.queueSize = Math.max(1, grassNextConfig.getJobsQueueSize());
+        this.resultTtl = grassNextConfig.getJobsResultTtl();
+        this.leaseTtl = Math.max(3, grassNextConfig.getJobsLeaseTtl());
+        this.maxAttempts = Math.max(1, grassNextConfig.getJobsMaxAttempts());
+        this.retryAfter = calculationExecutor.getRetryAfter();
+        this.jobExecutor = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()
+        );
+
+        long pollInterval = Math.max(10, grassNextConfig.getJobsPollInterval());
+        pollExecutor.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+
+        LOGGER.info("[LOGGER] Plume jobs: database queue, node " + nodeId + ", " + workers + " workers");
+    }
+
+    /**
+     * Submits a new calculation job to the queue table.
+     *
+     * @param measurementData the measurement data of the calculation
+     * @return the status of the submitted job
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    @Override
+    public PlumeJobStatus submit(MeasurementData measurementData) {
+        if (queuedPlumeJobRepository.countByState(JobStateEnum.QUEUED) >= queueSize) {
+            throw new RejectedExecutionException("Job queue full");
+        }
+
+        String json;
+        try {
+            json = jsonMapper.writeValueAsString(measurementData);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Measurement data cannot be stored", e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        QueuedPlumeJob job = new QueuedPlumeJob(UUID.randomUUID().toString(), json, JobStateEnum.QUEUED, 0, false,
+                null, null, now, now, null, null, null);
+        queuedPlumeJobRepository.save(job);
+        pollExecutor.execute(this::poll);
+
+        return getStatus(job);
+    }
+
+    /**
+     * Returns the status of the job stored in the queue table.
+     *
+     * @param id the identifier of the job
+     * @return the status of the job, or null if the job does not exist or its result has expired
+     */
+    @Override
+    public PlumeJobStatus getStatus(String id) {
+        return queuedPlumeJobRepository.findById(id).map(this::getStatus).orElse(null);
+    }
+
+    /**
+     * Cancels the job. A queued job is cancelled at once. A running job is stopped by the server instance
+     * running it as soon as it notices the request, at the latest after {@code gn.jobs.poll_interval}
+     * milliseconds. A finished job is not changed.
+     *
+     * @param id the identifier of the job
+     * @return the status of the job, or null if the job does not exist or its result has expired
+     */
+    @Override
+    public PlumeJobStatus cancel(String id) {
+        Optional<QueuedPlumeJob> cancelled = transactionTemplate.execute(status -> {
+            Optional<QueuedPlumeJob> locked = queuedPlumeJobRepository.lockById(id);
+            locked.ifPresent(job -> {
+                if (job.getState() == JobStateEnum.QUEUED) {
+                    job.setCancelRequested(true);
+                    finish(job, new Contours(true, "Calculation cancelled!", -1, null), JobStateEnum.CANCELLED);
+                } else if (job.getState() == JobStateEnum.RUNNING) {
+                    job.setCancelRequested(true);
+                }
+                queuedPlumeJobRepository.save(job);
+            });
+            return locked;
+        });
+        if (cancelled == null || cancelled.isEmpty()) {
+            return null;
+        }
+
+        CancellationToken cancellation = running.get(id);
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+        LOGGER.info("[LOGGER] Plume job " + id + " cancelled in state " + cancelled.get().getState());
+        return getStatus(cancelled.get());
+    }
+
+    /**
+     * Creates the status of the job, including the queue position and the waiting time estimate.
+     * The estimate assumes all the server instances have as many workers as this one.
+     *
+     * @param job the job stored in the queue table
+     * @return the status of the job, or null if its result has expired
+     */
+    PlumeJobStatus getStatus(QueuedPlumeJob job) {
+        JobStateEnum state = job.getState();
+        if (state.isFinished() && job.getFinishedAt().isBefore(LocalDateTime.now().minusMinutes(resultTtl))) {
+            return null;
+        }
+
+        long queuePosition = state != JobStateEnum.QUEUED ? 0
+                : queuedPlumeJobRepository.countByStateAndSubmittedAtBefore(JobStateEnum.QUEUED, job.getSubmittedAt());
+        double estimatedWait = switch (state) {
+            case QUEUED -> (queuePosition / workers + 1) * averageDuration;
+            case RUNNING -> averageDuration;
+            default -> 0.0;
+        };
+
+        return PlumeJobStatus.builder()
+                .id(job.getId())
+                .state(state)
+                .queuePosition(queuePosition)
+                .estimatedWait(estimatedWait)
+                .contours(state.isFinished() ? readContours(job) : null)
+                .build();
+    }
+
+    /**
+     * Renews the leases, stops the cancelled jobs, deletes the expired results and claims the jobs
+     * for the free workers. Called periodically and whenever a job is submitted or finished.
+     *
+     */
+    void poll() {
+        try {
+            if (!running.isEmpty()) {
+                checkRunningJobs();
+            }
+            if (System.nanoTime() - lastCleanup > TimeUnit.SECONDS.toNanos(CLEANUP_INTERVAL)) {
+                lastCleanup = System.nanoTime();
+                int deleted = queuedPlumeJobRepository.deleteFinishedBefore(FINISHED_STATES, LocalDateTime.now().minusMinutes(resultTtl));
+                if (deleted > 0) {
+                    LOGGER.info("[LOGGER] Plume jobs: " + deleted + " expired results deleted");
+                }
+            }
+            if (!stopping) {
+                claim();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("[LOGGER] Plume job queue poll failed! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Renews the leases of the jobs running in this server instance every third of the lease time,
+     * and cancels the running jobs whose cancellation has been requested or whose lease has been lost.
+     *
+     */
+    void checkRunningJobs() {
+        if (System.nanoTime() - lastRenewal > TimeUnit.SECONDS.toNanos(leaseTtl) / 3) {
+            lastRenewal = System.nanoTime();
+            queuedPlumeJobRepository.renewLeases(nodeId, LocalDateTime.now().plusSeconds(leaseTtl));
+        }
+
+        Map<String, QueuedPlumeJob> held = queuedPlumeJobRepository.findByLeaseOwnerAndState(nodeId, JobStateEnum.RUNNING)
+                .stream()
+                .collect(Collectors.toMap(QueuedPlumeJob::getId, job -> job));
+        running.forEach((id, cancellation) -> {
+            QueuedPlumeJob job = held.get(id);
+            if (job == null) {
+                LOGGER.info("[LOGGER] Plume job " + id + " lease lost, stopping");
+                cancellation.cancel();
+            } else if (job.isCancelRequested()) {
+                cancellation.cancel();
+            }
+        });
+    }
+
+    /**
+     * Claims the oldest claimable jobs for the free workers and starts them. A job whose lease expired
+     * after the last allowed attempt fails, and one whose cancellation was requested is cancelled, instead.
+     *
+     */
+    void claim() {
+        int free = workers - running.size();
+        if (free <= 0) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<QueuedPlumeJob> claimed = transactionTemplate.execute(status -> {
+            List<QueuedPlumeJob> jobs = new ArrayList<>();
+            for (QueuedPlumeJob job : queuedPlumeJobRepository.lockClaimable(now, free)) {
+                if (job.getState() == JobStateEnum.RUNNING) {
+                    LOGGER.info("[LOGGER] Plume job " + job.getId() + " lease of " + job.getLeaseOwner() + " expired");
+                    if (job.isCancelRequested()) {
+                        finish(job, new Contours(true, "Calculation cancelled!", -1, null), JobStateEnum.CANCELLED);
+                        queuedPlumeJobRepository.save(job);
+                        continue;
+                    }
+                    if (job.getAttempts() >= maxAttempts) {
+                        finish(job, new Contours(true, "Calculation failed after " + job.getAttempts() + " attempts!", -1, null),
+                                JobStateEnum.FAILED);
+                        queuedPlumeJobRepository.save(job);
+                        continue;
+                    }
+                }
+
+                job.setState(JobStateEnum.RUNNING);
+                job.setLeaseOwner(nodeId);
+                job.setLeaseExpiresAt(now.plusSeconds(leaseTtl));
+                job.setAttempts(job.getAttempts() + 1);
+                job.setStartedAt(now);
+                jobs.add(queuedPlumeJobRepository.save(job));
+            }
+            return jobs;
+        });
+
+        if (claimed != null) {
+            for (QueuedPlumeJob job : claimed) {
+                CancellationToken cancellation = calculationExecutor.createJobCancellation();
+                running.put(job.getId(), cancellation);
+                jobExecutor.execute(() -> run(job, cancellation));
+            }
+        }
+    }
+
+    /**
+     * Executes the claimed job in a worker thread and stores its result. A job rejected because the queue
+     * of the calculation executor is full, or stopped because the application context is closing, returns
+     * to the queue without counting the attempt. A job rejected because it is not expected to complete before
+     * the job deadline returns to the queue with the attempt counted, and fails after the last allowed attempt.
+     *
+     * @param job the claimed job
+     * @param cancellation the cancellation token of the job
+     */
+    void run(QueuedPlumeJob job, CancellationToken cancellation) {
+        long start = System.nanoTime();
+
+        Contours contours = null;
+        boolean countAttempt = false;
+        try {
+            MeasurementData measurementData = jsonMapper.readValue(job.getMeasurementData(), MeasurementData.class);
+            contours = gaussianPlumeService.calculateContours(measurementData, CalculationLaneEnum.BATCH, cancellation);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Plume job " + job.getId() + " measurement data cannot be read! " + e.getMessage());
+            contours = new Contours(true, "Measurement error!", -1, null);
+        } catch (CancellationException e) {
+            contours = stopping ? null : GaussianPlumeService.cancelledContours(cancellation);
+        } catch (CalculationExecutor.DeadlineRejectedException e) {
+            LOGGER.info("[LOGGER] Plume job " + job.getId() + " not expected to complete before the job deadline");
+            countAttempt = true;
+            contours = job.getAttempts() < maxAttempts ? null
+                    : new Contours(true, "Calculation failed after " + job.getAttempts() + " attempts!", -1, null);
+        } catch (RejectedExecutionException e) {
+            contours = null;
+        } catch (RuntimeException e) {
+            LOGGER.error("[LOGGER] Plume job " + job.getId() + " failed! " + e.getMessage());
+            contours = new Contours(true, "Measurement error!", -1, null);
+        }
+
+        try {
+            if (contours == null) {
+                release(job.getId(), countAttempt);
+            } else {
+                double duration = (System.nanoTime() - start) / 1.0E9;
+                averageDuration = averageDuration == 0.0 ? duration : averageDuration * (1 - DURATION_WEIGHT) + duration * DURATION_WEIGHT;
+                complete(job.getId(), contours);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("[LOGGER] Plume job " + job.getId() + " result cannot be stored! " + e.getMessage());
+        } finally {
+            running.remove(job.getId());
+            if (!stopping) {
+                pollExecutor.execute(this::poll);
+            }
+        }
+    }
+
+    /**
+     * Stores the result of the job, unless its lease has been taken over by another server instance.
+     *
+     * @param id the identifier of the job
+     * @param contours the calculated contours, or the contours with the error flag and message
+     */
+    void complete(String id, Contours contours) {
+        transactionTemplate.executeWithoutResult(status -> queuedPlumeJobRepository.lockById(id).ifPresent(job -> {
+            if (job.getState() != JobStateEnum.RUNNING || !nodeId.equals(job.getLeaseOwner())) {
+                LOGGER.info("[LOGGER] Plume job " + id + " lease lost, result discarded");
+                return;
+            }
+            JobStateEnum state = !contours.isError() ? JobStateEnum.DONE
+                    : job.isCancelRequested() ? JobStateEnum.CANCELLED : JobStateEnum.FAILED;
+            finish(job, contours, state);
+            queuedPlumeJobRepository.save(job);
+        }));
+    }
+
+    /**
+     * Returns the job to the queue, unless its lease has been taken over by another server instance.
+     * The job may be claimed again after the Retry-After time.
+     *
+     * @param id the identifier of the job
+     * @param countAttempt true if the claim counts as an attempt, false if the job was not calculated
+     *                     because the calculation queue was full or the application context is closing
+     */
+    void release(String id, boolean countAttempt) {
+        transactionTemplate.executeWithoutResult(status -> queuedPlumeJobRepository.lockById(id).ifPresent(job -> {
+            if (job.getState() != JobStateEnum.RUNNING || !nodeId.equals(job.getLeaseOwner())) {
+                return;
+            }
+            job.setState(JobStateEnum.QUEUED);
+            job.setLeaseOwner(null);
+            job.setLeaseExpiresAt(null);
+            if (!countAttempt) {
+                job.setAttempts(Math.max(0, job.getAttempts() - 1));
+            }
+            job.setAvailableAt(LocalDateTime.now().plusSeconds(stopping ? 0 : retryAfter));
+            queuedPlumeJobRepository.save(job);
+        }));
+    }
+
+    /**
+     * Sets the final state and the result of the job.
+     *
+     * @param job the job stored in the queue table
+     * @param contours the calculated contours, or the contours with the error flag and message
+     * @param state the finished state
+     */
+    void finish(QueuedPlumeJob job, Contours contours, JobStateEnum state) {
+        try {
+            job.setContours(jsonMapper.writeValueAsString(contours));
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Plume job " + job.getId() + " contours cannot be stored! " + e.getMessage());
+            job.setContours(null);
+            state = JobStateEnum.FAILED;
+        }
+        job.setState(state);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+    }
+
+    /**
+     * Reads the contours stored with the finished job.
+     *
+     * @param job the job stored in the queue table
+     * @return the stored contours, or contours with the error flag and message if they cannot be read
+     */
+    Contours readContours(QueuedPlumeJob job) {
+        try {
+            if (job.getContours() != null) {
+                return jsonMapper.readValue(job.getContours(), Contours.class);
+            }
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Plume job " + job.getId() + " contours cannot be read! " + e.getMessage());
+        }
+        return new Contours(true, "Measurement error!", -1, null);
+    }
+
+    /**
+     * Stops polling and returns the running jobs to the queue when the application context is closed.
+     * A calculation which cannot be interrupted in time is claimed by another server instance when its lease expires.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        pollExecutor.shutdownNow();
+        running.values().forEach(CancellationToken::cancel);
+        jobExecutor.shutdown();
+        try {
+            if (!jobExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                jobExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            jobExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlumeService;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class responsible for the asynchronous Gaussian Plume calculation jobs of a single server instance,
+ * kept in memory.
+ *
+ * The jobs are executed by a dedicated pool of workers with a bounded queue, so the HTTP worker threads
+ * and database sessions are not held for the duration of the calculation. The results of the finished jobs
+ * are kept for {@code gn.jobs.result_ttl} minutes. A running job is stopped when it is cancelled by the client
+ * or when the job deadline {@code gn.jobs.deadline} expires, counted from the start of the job. A job rejected
+ * because the queue of the calculation executor is full keeps its worker and tries again after the Retry-After time.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "gn.jobs.queue", havingValue = PlumeJobService.MEMORY, matchIfMissing = true)
+public class MemoryPlumeJobService implements PlumeJobService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the MemoryPlumeJobService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryPlumeJobService.class);
+    /**
+     * The weight of the latest job duration in the average job duration.
+     *
+     */
+    private static final double DURATION_WEIGHT = 0.2;
+    /**
+     * The interval in milliseconds in which a job waiting to try again checks its cancellation token.
+     *
+     */
+    static final long RETRY_CHECK_INTERVAL = 100;
+
+    /**
+     * Service calculating the pollution contours for the measurement data.
+     *
+     */
+    GaussianPlumeService gaussianPlumeService;
+    /**
+     * Executor creating the cancellation tokens of the jobs with the configured job deadline.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+
+    /**
+     * The number of workers executing the jobs.
+     *
+     */
+    @Getter
+    private final int workers;
+    /**
+     * The time in minutes the results of the finished jobs are kept.
+     *
+     */
+    private final long resultTtl;
+    /**
+     * The number of seconds a job rejected by the calculation executor waits before it tries again.
+     *
+     */
+    private final long retryAfter;
+    /**
+     * The pool of workers executing the jobs in the order of submission.
+     *
+     */
+    private final ThreadPoolExecutor jobExecutor;
+    /**
+     * The submitted jobs keyed by their identifiers.
+     *
+     */
+    private final Map<String, PlumeJob> jobs = new ConcurrentHashMap<>();
+    /**
+     * The sequence number of the last submitted job.
+     *
+     */
+    private final AtomicLong submittedSequence = new AtomicLong();
+    /**
+     * The average duration of the jobs in seconds, used for estimating the waiting time.
+     *
+     */
+    private volatile double averageDuration = 0.0;
+
+    /**
+     * Constructs a MemoryPlumeJobService using the limits defined in the application properties.
+     *
+     * @param gaussianPlumeService the service calculating the pollution contours for the measurement data
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param grassNextConfig the configuration providing the job limits
+     */
+    @Autowired
+    public MemoryPlumeJobService(
+            GaussianPlumeService gaussianPlumeService,
+            CalculationExecutor calculationExecutor,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianPlumeService = gaussianPlumeService;
+        this.calculationExecutor = calculationExecutor;
+        this.workers = grassNextConfig.getJobsWorkers() > 0 ? grassNextConfig.getJobsWorkers() : calculationExecutor.getMaxInFlight();
+        this.resultTtl = grassNextConfig.getJobsResultTtl();
+        this.retryAfter = calculationExecutor.getRetryAfter();
+        this.jobExecutor = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, grassNextConfig.getJobsQueueSize())),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        LOGGER.info("[LOGGER] Plume jobs: " + workers + " workers, " + grassNextConfig.getJobsQueueSize() + " queued");
+    }
+
+    /**
+     * Submits a new calculation job.
+     *
+     * @param measurementData the measurement data of the calculation
+     * @return the status of the submitted job
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    @Override
+    public PlumeJobStatus submit(MeasurementData measurementData) {
+        removeExpiredJobs();
+
+        PlumeJob job = new PlumeJob(UUID.randomUUID().toString(), measurementData, submittedSequence.incrementAndGet());
+        jobs.put(job.getId(), job);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+
+        return getStatus(job);
+    }
+
+    /**
+     * Returns the status of the job.
+     *
+     * @param id the identifier of the job
+     * @return the status of the job, or null if the job does not exist or its result has expired
+     */
+    @Override
+    public PlumeJobStatus getStatus(String id) {
+        removeExpiredJobs();
+
+        PlumeJob job = jobs.get(id);
+        return job == null ? null : getStatus(job);
+    }
+
+    /**
+     * Cancels the job. A queued job is cancelled at once, and a running job as soon as its calculation stops.
+     * A finished job is not changed.
+     *
+     * @param id the identifier of the job
+     * @return the status of the job, or null if the job does not exist or its result has expired
+     */
+    @Override
+    public PlumeJobStatus cancel(String id) {
+        removeExpiredJobs();
+
+        PlumeJob job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+
+        job.cancel();
+        LOGGER.info("[LOGGER] Plume job " + id + " cancelled in state " + job.getState());
+        return getStatus(job);
+    }
+
+    /**
+     * Creates the status of the job, including the queue position and the waiting time estimate.
+     *
+     * @param job the job
+     * @return the status of the job
+     */
+    PlumeJobStatus getStatus(PlumeJob job) {
+        JobStateEnum state = job.getState();
+        long queuePosition = state != JobStateEnum.QUEUED ? 0 : jobs.values().stream()
+                .filter(other -> other.getState() == JobStateEnum.QUEUED && other.getSequence() < job.getSequence())
+                .count();
+        double estimatedWait = switch (state) {
+            case QUEUED -> (queuePosition / workers + 1) * averageDuration;
+            case RUNNING -> averageDuration;
+            default -> 0.0;
+        };
+
+        return PlumeJobStatus.builder()
+                .id(job.getId())
+                .state(state)
+                .queuePosition(queuePosition)
+                .estimatedWait(estimatedWait)
+                .contours(state.isFinished() ? job.getContours() : null)
+                .build();
+    }
+
+    /**
+     * Executes the job in a worker thread. A calculation rejected because the queue of the calculation executor
+     * is full is tried again after the Retry-After time until it is admitted or the job is cancelled.
+     *
+     * @param job the job to be executed
+     */
+    void run(PlumeJob job) {
+        CancellationToken cancellation = calculationExecutor.createJobCancellation();
+        if (!job.start(cancellation)) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        Contours contours = null;
+        while (contours == null) {
+            try {
+                contours = gaussianPlumeService.calculateContours(job.getMeasurementData(), CalculationLaneEnum.BATCH, cancellation);
+            } catch (CancellationException e) {
+                contours = GaussianPlumeService.cancelledContours(cancellation);
+            } catch (CalculationExecutor.DeadlineRejectedException e) {
+                contours = new Contours(true, "Calculation not expected to complete before the job deadline!", -1, null);
+            } catch (RejectedExecutionException e) {
+                LOGGER.info("[LOGGER] Plume job " + job.getId() + " rejected, retrying in " + retryAfter + " s");
+                if (!awaitRetry(cancellation)) {
+                    contours = GaussianPlumeService.cancelledContours(cancellation);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("[LOGGER] Plume job " + job.getId() + " failed! " + e.getMessage());
+                contours = new Contours(true, "Measurement error!", -1, null);
+            }
+        }
+
+        double duration = (System.nanoTime() - start) / 1.0E9;
+        averageDuration = averageDuration == 0.0 ? duration : averageDuration * (1 - DURATION_WEIGHT) + duration * DURATION_WEIGHT;
+        job.finish(contours);
+    }
+
+    /**
+     * Waits for the Retry-After time before a rejected calculation is tried again.
+     *
+     * @param cancellation the cancellation token of the job
+     * @return true if the job may try again, false if it has been cancelled or the worker has been interrupted
+     */
+    boolean awaitRetry(CancellationToken cancellation) {
+        long retryAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter);
+        try {
+            while (!cancellation.isCancelled() && System.nanoTime() - retryAt < 0) {
+                Thread.sleep(RETRY_CHECK_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !cancellation.isCancelled();
+    }
+
+    /**
+     * Removes the finished jobs whose results have expired.
+     *
+     */
+    void removeExpiredJobs() {
+        LocalDateTime expiry = LocalDateTime.now().minusMinutes(resultTtl);
+        jobs.values().removeIf(job -> job.getState().isFinished() && job.getFinishedAt().isBefore(expiry));
+    }
+
+    /**
+     * Stops the workers when the application context is closed.
+     *
+     */
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+}
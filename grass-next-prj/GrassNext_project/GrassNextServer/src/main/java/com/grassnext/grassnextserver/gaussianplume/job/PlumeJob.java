@@ -0,0 +1,132 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents an asynchronous Gaussian Plume calculation job submitted through the REST API.
+ * The state of the job is modified by the worker thread and read by the polling requests.
+ * A queued job can be cancelled before a worker picks it up, and a running job through its cancellation token.
+ *
+ */
+@Getter
+public class PlumeJob {
+    /**
+     * The unique identifier of the job.
+     *
+     */
+    private final String id;
+    /**
+     * The measurement data of the calculation.
+     *
+     */
+    private final MeasurementData measurementData;
+    /**
+     * The sequence number of the job, assigned in the order of submission.
+     *
+     */
+    private final long sequence;
+    /**
+     * The date and time of the job submission.
+     *
+     */
+    private final LocalDateTime submittedAt;
+    /**
+     * The current state of the job.
+     *
+     */
+    private volatile JobStateEnum state = JobStateEnum.QUEUED;
+    /**
+     * The date and time the job started running, or null if it is still queued.
+     *
+     */
+    private volatile LocalDateTime startedAt;
+    /**
+     * The date and time the job finished, or null if it has not finished yet.
+     *
+     */
+    private volatile LocalDateTime finishedAt;
+    /**
+     * The calculated contours, or the contours describing the error of a failed job.
+     *
+     */
+    private volatile Contours contours;
+    /**
+     * The cancellation token of the running calculation, or null if the job is not running.
+     *
+     */
+    @Getter(AccessLevel.NONE)
+    private CancellationToken cancellation;
+    /**
+     * Determines whether the client has requested the cancellation of the job.
+     *
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean cancelRequested;
+
+    /**
+     * Constructs a new queued job.
+     *
+     * @param id the unique identifier of the job
+     * @param measurementData the measurement data of the calculation
+     * @param sequence the sequence number of the job
+     */
+    public PlumeJob(String id, MeasurementData measurementData, long sequence) {
+        this.id = id;
+        this.measurementData = measurementData;
+        this.sequence = sequence;
+        this.submittedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Marks the job as running, unless it has been cancelled while queued.
+     *
+     * @param jobCancellation the cancellation token of the calculation of the job
+     * @return true if the job is running, false if it has been cancelled
+     */
+    synchronized boolean start(CancellationToken jobCancellation) {
+        if (state != JobStateEnum.QUEUED) {
+            return false;
+        }
+
+        cancellation = jobCancellation;
+        startedAt = LocalDateTime.now();
+        state = JobStateEnum.RUNNING;
+        return true;
+    }
+
+    /**
+     * Marks the job as finished and stores its result.
+     *
+     * @param result the calculated contours, or the contours describing the error
+     */
+    synchronized void finish(Contours result) {
+        contours = result;
+        finishedAt = LocalDateTime.now();
+        state = !result.isError() ? JobStateEnum.DONE : cancelRequested ? JobStateEnum.CANCELLED : JobStateEnum.FAILED;
+        cancellation = null;
+    }
+
+    /**
+     * Cancels the job. A queued job is finished at once, while the calculation of a running job
+     * is stopped through its cancellation token and the job finishes as soon as the calculation stops.
+     *
+     */
+    synchronized void cancel() {
+        if (state == JobStateEnum.QUEUED) {
+            cancelRequested = true;
+            contours = new Contours(true, "Calculation cancelled!", -1, null);
+            finishedAt = LocalDateTime.now();
+            state = JobStateEnum.CANCELLED;
+        } else if (state == JobStateEnum.RUNNING) {
+            cancelRequested = true;
+            cancellation.cancel();
+        }
+    }
+}
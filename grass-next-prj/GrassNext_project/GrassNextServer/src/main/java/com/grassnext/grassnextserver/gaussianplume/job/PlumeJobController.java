@@ -0,0 +1,128 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.gaussianplume.ContourEncoder;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.enums.ContourEncodingEnum;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for handling the asynchronous Gaussian Plume calculation jobs.
+ *
+ */
+@RestController
+@RequestMapping("/api/gaussian-plume/jobs")
+@NoArgsConstructor
+public class PlumeJobController {
+    /**
+     * Service responsible for the asynchronous calculation jobs.
+     *
+     */
+    PlumeJobService plumeJobService;
+    /**
+     * Executor providing the Retry-After value returned when the job queue is full.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * Encoder simplifying the contours and converting them into the requested format.
+     *
+     */
+    ContourEncoder contourEncoder;
+
+    /**
+     * Constructs a PlumeJobController and initializes the PlumeJobService.
+     *
+     * @param plumeJobService the service responsible for the asynchronous calculation jobs
+     * @param calculationExecutor the executor providing the Retry-After value
+     * @param contourEncoder the encoder simplifying the contours and converting them into the requested format
+     */
+    @Autowired
+    PlumeJobController(PlumeJobService plumeJobService, CalculationExecutor calculationExecutor, ContourEncoder contourEncoder) {
+        this.plumeJobService = plumeJobService;
+        this.calculationExecutor = calculationExecutor;
+        this.contourEncoder = contourEncoder;
+    }
+
+    /**
+     * Submits a new calculation job for the provided measurement data.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @return an accepted response containing the job status with its identifier and queue position,
+     *         or a too many requests response with the Retry-After header if the job queue is full
+     */
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<PlumeJobStatus> submitJob(@RequestBody MeasurementData measurementData) {
+        try {
+            PlumeJobStatus status = plumeJobService.submit(measurementData);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/gaussian-plume/jobs/" + status.getId())
+                    .body(status);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(calculationExecutor.getRetryAfter()))
+                    .build();
+        }
+    }
+
+    /**
+     * Cancels the calculation job. A queued job is cancelled at once, while a running job stops its calculation
+     * and reaches the cancelled state as soon as the calculation stops.
+     *
+     * @param id the identifier of the job
+     * @return a response containing the job status, or a not found response if the job does not exist
+     *         or its result has expired
+     */
+    @DeleteMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<PlumeJobStatus> cancelJob(@PathVariable String id) {
+        PlumeJobStatus status = plumeJobService.cancel(id);
+
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Returns the status of the calculation job, including the contours once it has finished.
+     *
+     * @param id the identifier of the job
+     * @param tolerance the optional contour simplification tolerance in meters, overriding the configured one
+     * @param encoding the format of the contour points: {@code json} (default) or {@code polyline}
+     * @return a response containing the job status, a not found response if the job does not exist
+     *         or its result has expired, or a bad request response if the encoding is unknown
+     */
+    @GetMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<PlumeJobStatus> getJob(
+            @PathVariable String id,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(defaultValue = "json") String encoding
+    ) {
+        ContourEncodingEnum contourEncoding = ContourEncodingEnum.getByValue(encoding);
+        if (contourEncoding == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        PlumeJobStatus status = plumeJobService.getStatus(id);
+
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        if (status.getState() == JobStateEnum.DONE) {
+            status.setContours(contourEncoder.encode(status.getContours(), tolerance, contourEncoding));
+        }
+        return ResponseEntity.ok(status);
+    }
+}
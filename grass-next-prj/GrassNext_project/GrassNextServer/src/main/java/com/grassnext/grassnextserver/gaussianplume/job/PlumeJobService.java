@@ -0,0 +1,52 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.MeasurementData;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The PlumeJobService interface describes a service responsible for the asynchronous Gaussian Plume calculation jobs.
+ *
+ * The implementation used by the application is selected through the {@code gn.jobs.queue} property.
+ *
+ */
+public interface PlumeJobService {
+    /**
+     * Value of the {@code gn.jobs.queue} property selecting the jobs kept in the memory of each server instance
+     * ({@link MemoryPlumeJobService}).
+     *
+     */
+    String MEMORY = "memory";
+    /**
+     * Value of the {@code gn.jobs.queue} property selecting the job queue shared by all the server instances
+     * in the database ({@link DatabasePlumeJobService}).
+     *
+     */
+    String DATABASE = "database";
+
+    /**
+     * Submits a new calculation job.
+     *
+     * @param measurementData the measurement data of the calculation
+     * @return the status of the submitted job
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    PlumeJobStatus submit(MeasurementData measurementData);
+
+    /**
+     * Returns the status of the job.
+     *
+     * @param id the identifier of the job
+     * @return the status of the job, or null if the job does not exist or its result has expired
+     */
+    PlumeJobStatus getStatus(String id);
+
+    /**
+     * Cancels the job. A queued job is cancelled at once, and a running job as soon as its calculation stops.
+     * A finished job is not changed.
+     *
+     * @param id the identifier of the job
+     * @return the status of the job, or null if the job does not exist or its result has expired
+     */
+    PlumeJobStatus cancel(String id);
+}
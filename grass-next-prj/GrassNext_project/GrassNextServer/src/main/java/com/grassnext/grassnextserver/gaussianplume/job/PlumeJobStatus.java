@@ -0,0 +1,44 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Describes the state of an asynchronous Gaussian Plume calculation job returned by the REST API.
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlumeJobStatus {
+    /**
+     * The unique identifier of the job.
+     *
+     */
+    public String id;
+    /**
+     * The current state of the job.
+     *
+     */
+    public JobStateEnum state;
+    /**
+     * The number of queued jobs submitted before this job, or 0 if the job is no longer queued.
+     *
+     */
+    public long queuePosition;
+    /**
+     * The estimated number of seconds until the job finishes, or 0 if it has already finished.
+     *
+     */
+    public double estimatedWait;
+    /**
+     * The calculated contours of a finished job, or null if the job has not finished yet.
+     *
+     */
+    public Contours contours;
+}
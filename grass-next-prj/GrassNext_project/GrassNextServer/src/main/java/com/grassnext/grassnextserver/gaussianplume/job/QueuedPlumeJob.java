@@ -0,0 +1,96 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The QueuedPlumeJob class represents a calculation job in the job queue shared by all the server instances.
+ * It is a JPA entity used for persistence in the database.
+ *
+ * A server instance claims a queued job by taking its lease, which it renews while the calculation runs.
+ * A job whose lease has expired, because the server instance stopped or lost the connection to the database,
+ * is claimed again by another instance.
+ *
+ */
+@Entity
+@Table(name = "plume_job_queue")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueuedPlumeJob {
+    /**
+     * The identifier of the job.
+     *
+     */
+    @Id
+    @Column(nullable = false)
+    private String id;
+    /**
+     * The measurement data of the calculation in the JSON format.
+     *
+     */
+    @Column(nullable = false, columnDefinition = "text")
+    private String measurementData;
+    /**
+     * The state of the job.
+     *
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobStateEnum state;
+    /**
+     * The number of times the job has been claimed by a server instance.
+     *
+     */
+    @Column(nullable = false)
+    private int attempts;
+    /**
+     * Determines whether the client has requested the cancellation of the running job.
+     *
+     */
+    @Column(nullable = false)
+    private boolean cancelRequested;
+    /**
+     * The identifier of the server instance holding the lease of the running job.
+     *
+     */
+    private String leaseOwner;
+    /**
+     * The time at which the lease of the running job expires unless it is renewed.
+     *
+     */
+    private LocalDateTime leaseExpiresAt;
+    /**
+     * The time from which the queued job may be claimed.
+     *
+     */
+    @Column(nullable = false)
+    private LocalDateTime availableAt;
+    /**
+     * The time at which the job was submitted.
+     *
+     */
+    @Column(nullable = false)
+    private LocalDateTime submittedAt;
+    /**
+     * The time at which the job was last claimed.
+     *
+     */
+    private LocalDateTime startedAt;
+    /**
+     * The time at which the job finished.
+     *
+     */
+    private LocalDateTime finishedAt;
+    /**
+     * The calculated contours, or the contours with the error flag and message, in the JSON format.
+     *
+     */
+    @Column(columnDefinition = "text")
+    private String contours;
+}
@@ -0,0 +1,96 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for QueuedPlumeJob entities.
+ *
+ */
+public interface QueuedPlumeJobRepository extends JpaRepository<QueuedPlumeJob, String> {
+    /**
+     * Locks and retrieves the oldest jobs which may be claimed: the queued jobs available at the given time
+     * and the running jobs whose lease has expired. The rows locked by other server instances are skipped,
+     * so concurrent instances claim different jobs. Must be called within a transaction.
+     *
+     * @param now the current time
+     * @param limit the maximum number of jobs
+     * @return the locked jobs in the order of submission
+     */
+    @Query(value = "SELECT * FROM plume_job_queue"
+            + " WHERE (state = 'QUEUED' AND available_at <= ?1) OR (state = 'RUNNING' AND lease_expires_at < ?1)"
+            + " ORDER BY submitted_at LIMIT ?2 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<QueuedPlumeJob> lockClaimable(LocalDateTime now, int limit);
+
+    /**
+     * Locks and retrieves the job, waiting for the lock held by another transaction.
+     * Must be called within a transaction.
+     *
+     * @param id the identifier of the job
+     * @return the locked job, or empty if it does not exist
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM QueuedPlumeJob j WHERE j.id = ?1")
+    Optional<QueuedPlumeJob> lockById(String id);
+
+    /**
+     * Retrieves the jobs in the given state whose lease is held by the server instance.
+     *
+     * @param leaseOwner the identifier of the server instance
+     * @param state the state of the jobs
+     * @return the jobs held by the server instance
+     */
+    List<QueuedPlumeJob> findByLeaseOwnerAndState(String leaseOwner, JobStateEnum state);
+
+    /**
+     * Counts the jobs in the given state.
+     *
+     * @param state the state of the jobs
+     * @return the number of jobs
+     */
+    long countByState(JobStateEnum state);
+
+    /**
+     * Counts the jobs in the given state submitted before the given time.
+     *
+     * @param state the state of the jobs
+     * @param submittedAt the submission time
+     * @return the number of jobs
+     */
+    long countByStateAndSubmittedAtBefore(JobStateEnum state, LocalDateTime submittedAt);
+
+    /**
+     * Extends the leases of the running jobs held by the server instance.
+     *
+     * @param leaseOwner the identifier of the server instance
+     * @param leaseExpiresAt the new expiry time of the leases
+     * @return the number of renewed leases
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE QueuedPlumeJob j SET j.leaseExpiresAt = ?2 WHERE j.leaseOwner = ?1"
+            + " AND j.state = com.grassnext.grassnextserver.util.enums.JobStateEnum.RUNNING")
+    int renewLeases(String leaseOwner, LocalDateTime leaseExpiresAt);
+
+    /**
+     * Deletes the jobs in the given states finished before the given time.
+     *
+     * @param states the finished states
+     * @param finishedAt the expiry time of the results
+     * @return the number of deleted jobs
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM QueuedPlumeJob j WHERE j.state IN ?1 AND j.finishedAt < ?2")
+    int deleteFinishedBefore(Collection<JobStateEnum> states, LocalDateTime finishedAt);
+}
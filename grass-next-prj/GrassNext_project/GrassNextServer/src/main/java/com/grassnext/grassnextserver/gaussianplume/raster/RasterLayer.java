@@ -0,0 +1,63 @@
+package com.grassnext.grassnextserver.gaussianplume.raster;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the raster layer of a calculation returned to the client, which loads its tiles
+ * from the tile URL template as a standard XYZ tile layer.
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RasterLayer {
+    /**
+     * A boolean flag indicating whether an error occurred while preparing the layer.
+     *
+     */
+    public boolean error;
+    /**
+     * A string variable used to store descriptive messages.
+     *
+     */
+    public String msg;
+    /**
+     * The hash of the calculation parameters identifying the layer.
+     *
+     */
+    public String id;
+    /**
+     * The URL template of the tiles containing the {@code {z}}, {@code {x}} and {@code {y}} placeholders.
+     *
+     */
+    public String tiles;
+    /**
+     * The highest zoom level of the tiles.
+     *
+     */
+    public int maxZoom;
+    /**
+     * The southern bound of the layer.
+     *
+     */
+    public double south;
+    /**
+     * The western bound of the layer.
+     *
+     */
+    public double west;
+    /**
+     * The northern bound of the layer.
+     *
+     */
+    public double north;
+    /**
+     * The eastern bound of the layer.
+     *
+     */
+    public double east;
+}
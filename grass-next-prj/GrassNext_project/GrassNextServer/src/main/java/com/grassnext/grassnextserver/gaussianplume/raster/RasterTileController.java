@@ -0,0 +1,108 @@
+package com.grassnext.grassnextserver.gaussianplume.raster;
+
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller for handling the raster layers of the Gaussian Plume calculations, served as XYZ PNG tiles.
+ *
+ */
+@RestController
+@RequestMapping("/api/gaussian-plume/raster")
+@NoArgsConstructor
+public class RasterTileController {
+    /**
+     * Service responsible for the raster layers and their tiles.
+     *
+     */
+    RasterTileService rasterTileService;
+    /**
+     * The executor limiting the number of concurrent calculations, including the rendering of the tiles.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+
+    /**
+     * Constructs a RasterTileController and initializes the RasterTileService.
+     *
+     * @param rasterTileService the service responsible for the raster layers and their tiles
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     */
+    @Autowired
+    RasterTileController(RasterTileService rasterTileService, CalculationExecutor calculationExecutor) {
+        this.rasterTileService = rasterTileService;
+        this.calculationExecutor = calculationExecutor;
+    }
+
+    /**
+     * Prepares the raster layer of the calculation for the provided measurement data.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @return a response containing the layer identifier, the tile URL template and the bounds of the layer,
+     *         or a bad request response with an error message if the measurement data is invalid
+     */
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<RasterLayer> createLayer(@RequestBody MeasurementData measurementData) {
+        RasterLayer rasterLayer = rasterTileService.createLayer(measurementData);
+        if (rasterLayer.isError()) {
+            return ResponseEntity.badRequest().body(rasterLayer);
+        }
+
+        return ResponseEntity.ok(rasterLayer);
+    }
+
+    /**
+     * Returns a PNG tile of the raster layer. The content of a tile never changes for the layer identifier,
+     * so the response can be cached by the browser for the lifetime of the layer. A tile not rendered yet
+     * is rendered within the calculation deadline.
+     *
+     * @param id the identifier of the layer
+     * @param z the zoom level of the tile
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return a response containing the PNG image of the tile, a bad request response if the tile coordinates
+     *         are invalid, a not found response if the layer does not exist or has expired, a too many requests
+     *         response with the Retry-After header if the calculation queue is full or the rendering is not
+     *         expected to complete before the deadline, and a service unavailable response if the deadline expires
+     */
+    @GetMapping(value = "/{id}/{z}/{x}/{y}.png", produces = MediaType.IMAGE_PNG_VALUE)
+    @ResponseBody
+    public ResponseEntity<byte[]> getTile(@PathVariable String id, @PathVariable int z, @PathVariable int x, @PathVariable int y) {
+        if (!rasterTileService.isValidTile(z, x, y)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        CancellationToken cancellation = calculationExecutor.createCancellation(null);
+        byte[] tile;
+        try {
+            tile = rasterTileService.getTile(id, z, x, y, cancellation);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(calculationExecutor.getRetryAfter()))
+                    .build();
+        } catch (CancellationException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (tile == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(rasterTileService.getTtl(), TimeUnit.MINUTES))
+                .body(tile);
+    }
+}
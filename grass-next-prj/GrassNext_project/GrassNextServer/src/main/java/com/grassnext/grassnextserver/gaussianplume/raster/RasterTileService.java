@@ -0,0 +1,271 @@
+package com.grassnext.grassnextserver.gaussianplume.raster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.ContourCache;
+import com.grassnext.grassnextserver.gaussianplume.GaussianParametersService;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.ConcentrationField;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class responsible for the raster layers of the calculations. A layer is identified by the hash
+ * of the Gaussian Plume parameters of the calculation, so equal requests share the layer, and the new topo data
+ * changing the parameters produces a new layer. The tiles of a layer are rendered lazily when they are requested
+ * and kept in a tile cache bounded by their size, so the following pans and zooms only read the cache.
+ * The tiles are rendered in the interactive lane of the calculation executor, so they share its admission
+ * and deadlines with the other calculations requested by the clients.
+ *
+ */
+@Service
+public class RasterTileService {
+    /**
+     * A logger instance used for logging messages, warnings, and errors
+     * specific to the operations conducted within the RasterTileService class.
+     *
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RasterTileService.class);
+    /**
+     * A static instance of the Jackson {@code ObjectMapper} used for reading the Gaussian Plume parameters.
+     *
+     */
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    /**
+     * The number of pixels of one side of a tile.
+     *
+     */
+    static final int TILE_SIZE = 256;
+    /**
+     * The highest zoom level of the tiles.
+     *
+     */
+    static final int MAX_ZOOM = 22;
+    /**
+     * The number of hexadecimal characters of the hash identifying a layer.
+     *
+     */
+    static final int ID_LENGTH = 16;
+    /**
+     * The URL template of the tiles of a layer.
+     *
+     */
+    static final String TILE_URL = "/api/gaussian-plume/raster/%s/{z}/{x}/{y}.png";
+
+    /**
+     * Service instance for managing and providing Gaussian parameter data for plume dispersion calculations.
+     *
+     */
+    GaussianParametersService gaussianParametersService;
+    /**
+     * The executor limiting the number of concurrent calculations, including the rendering of the tiles.
+     *
+     */
+    CalculationExecutor calculationExecutor;
+    /**
+     * The concentration fields of the layers keyed by their identifiers.
+     *
+     */
+    private final Cache<String, ConcentrationField> layers;
+    /**
+     * The PNG images of the rendered tiles keyed by the layer identifier and the tile coordinates.
+     *
+     */
+    private final Cache<String, byte[]> tiles;
+    /**
+     * The PNG image of a fully transparent tile, shared by all the tiles not reaching the lowest threshold.
+     *
+     */
+    private final byte[] emptyTile;
+    /**
+     * The time (in minutes) after the last access for which the layers and tiles are kept.
+     *
+     */
+    @Getter
+    private final long ttl;
+
+    /**
+     * Constructs a RasterTileService using the limits defined in the application properties.
+     *
+     * @param gaussianParametersService the service responsible for managing and providing
+     *                                  Gaussian parameter data for plume dispersion calculations
+     * @param calculationExecutor the executor limiting the number of concurrent calculations
+     * @param grassNextConfig the configuration providing the limits of the layers and the tile cache
+     */
+    @Autowired
+    public RasterTileService(
+            GaussianParametersService gaussianParametersService,
+            CalculationExecutor calculationExecutor,
+            GrassNextConfig grassNextConfig
+    ) {
+        this.gaussianParametersService = gaussianParametersService;
+        this.calculationExecutor = calculationExecutor;
+        this.ttl = grassNextConfig.getRasterTtl();
+        this.layers = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(1, grassNextConfig.getRasterMaxLayers()))
+                .expireAfterAccess(ttl, TimeUnit.MINUTES)
+                .build();
+        this.tiles = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(1, grassNextConfig.getRasterTileCacheMb()) * 1024 * 1024)
+                .weigher((String key, byte[] tile) -> tile.length)
+                .expireAfterAccess(ttl, TimeUnit.MINUTES)
+                .build();
+        this.emptyTile = encodePng(new int[TILE_SIZE * TILE_SIZE]);
+
+        LOGGER.info("[LOGGER] Raster tiles: " + grassNextConfig.getRasterMaxLayers() + " layers, " + grassNextConfig.getRasterTileCacheMb() + " MB");
+    }
+
+    /**
+     * Prepares the raster layer of the calculation for the measurement data. The layer of the same
+     * Gaussian Plume parameters is reused, together with its already rendered tiles.
+     *
+     * @param measurementData the measurement data containing the necessary parameters for pollution calculation
+     * @return the layer with its identifier, tile URL template and bounds, or a layer with the error flag and message
+     *         if the measurement data is invalid
+     */
+    public RasterLayer createLayer(MeasurementData measurementData) {
+        try {
+            String jsonData = gaussianParametersService.getGaussianPlume(ContourCache.canonicalize(measurementData));
+            if (jsonData.contains(Consts.INCORRECT_DATA_HEADER)) {
+                return RasterLayer.builder().error(true).msg(jsonData.substring(Consts.INCORRECT_DATA_HEADER.length())).build();
+            }
+
+            String id = hash(jsonData);
+            ConcentrationField field = layers.getIfPresent(id);
+            if (field == null) {
+                field = new ConcentrationField(jsonMapper.readValue(jsonData, GaussianPlume.class));
+                layers.put(id, field);
+            }
+
+            double[] bounds = field.getBounds();
+            return RasterLayer.builder()
+                    .error(false)
+                    .msg("success")
+                    .id(id)
+                    .tiles(String.format(TILE_URL, id))
+                    .maxZoom(MAX_ZOOM)
+                    .south(bounds[0])
+                    .west(bounds[1])
+                    .north(bounds[2])
+                    .east(bounds[3])
+                    .build();
+        } catch (JsonProcessingException e) {
+            LOGGER.error("[LOGGER] Gaussian plume JSON processing error! " + e.getMessage());
+            return RasterLayer.builder().error(true).msg("Measurement error!").build();
+        }
+    }
+
+    /**
+     * Returns the PNG image of the tile of the layer, rendering it if it is not in the tile cache.
+     * The rendering waits for its execution slots in the interactive lane of the calculation executor
+     * and stops when the cancellation token is cancelled. Concurrent requests for the same tile wait
+     * for a single rendering, which is repeated if it has been cancelled while the waiting request has not.
+     *
+     * @param id the identifier of the layer
+     * @param zoom the zoom level of the tile
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @param cancellation the cancellation token of the request
+     * @return the PNG image of the tile, or null if the layer does not exist or has expired
+     * @throws RejectedExecutionException if the calculation queue is full or the rendering is not expected
+     *                                    to complete before the deadline
+     * @throws CancellationException if the cancellation token is cancelled or its deadline expires
+     */
+    public byte[] getTile(String id, int zoom, int tileX, int tileY, CancellationToken cancellation) {
+        ConcentrationField field = layers.getIfPresent(id);
+        if (field == null) {
+            return null;
+        }
+
+        String key = id + "/" + zoom + "/" + tileX + "/" + tileY;
+        while (true) {
+            try {
+                return tiles.get(key, () -> calculationExecutor.execute(() -> {
+                    int[] pixels = field.render(zoom, tileX, tileY, TILE_SIZE, cancellation);
+                    return pixels == null ? emptyTile : encodePng(pixels);
+                }, field.estimateTileCost(TILE_SIZE), CalculationLaneEnum.INTERACTIVE, cancellation));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    cancellation.throwIfCancelled();
+                    continue;
+                }
+                if (e.getCause() instanceof RejectedExecutionException rejectedExecutionException) {
+                    throw rejectedExecutionException;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Determines whether the tile coordinates are valid.
+     *
+     * @param zoom the zoom level of the tile
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return true if the tile lies within the tile pyramid up to the highest zoom level
+     */
+    public boolean isValidTile(int zoom, int tileX, int tileY) {
+        return ConcentrationField.isValidTile(zoom, tileX, tileY, MAX_ZOOM);
+    }
+
+    /**
+     * Encodes the pixels of a tile as a PNG image.
+     *
+     * @param pixels the ARGB pixels of the tile row by row
+     * @return the PNG image
+     */
+    static byte[] encodePng(int[] pixels) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, pixels, 0, TILE_SIZE);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Calculates the identifier of a layer from the Gaussian Plume parameters of the calculation.
+     *
+     * @param jsonData the JSON string of the Gaussian Plume parameters
+     * @return the leading hexadecimal characters of the SHA-256 hash of the parameters
+     */
+    static String hash(String jsonData) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(jsonData.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest).substring(0, ID_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -2,16 +2,11 @@ package com.grassnext.grassnextserver.jni;
 
 import com.grassnext.grassnextserver.common.Log;
 import com.grassnext.grassnextserver.configurations.GrassNextConfig;
-import org.nd4j.shade.guava.util.concurrent.ListenableFuture;
-import org.nd4j.shade.guava.util.concurrent.ListeningExecutorService;
-import org.nd4j.shade.guava.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 
 /**
  * The GrassNextJni class provides a bridge between Java and the native C++ library needed
@@ -19,13 +14,6 @@ import java.util.concurrent.Executors;
  *
  */
 public class GrassNextJni {
-    /**
-     * A static, thread-safe executor service for asynchronously executing tasks in the GrassNextJni class.
-     * This service wraps a cached thread pool with Guava's ListeningExecutorService to provide additional
-     * functionality, such as listening for task completion using ListenableFuture.
-     *
-     */
-    private static final ListeningExecutorService leService = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
     /**
      * A logger instance used for logging messages, warnings, and errors
      * specific to the operations conducted within the GrassNextJni class.
@@ -39,14 +27,15 @@ public class GrassNextJni {
      * @return a String result returned by the native C++ library.
      *
      */
-    private static synchronized native String Echo();
+    private static native String Echo();
     /**
      * Invokes the native Count method implemented in the underlying C++ library.
+     * The native calculation keeps all of its state in a local object, so the method may be called concurrently.
      *
      * @param jsonIn a JSON-formatted string containing the input data to be processed by the native library
      * @return a JSON-formatted string containing the result of the processing performed by the native library
      */
-    private static synchronized native String Count(String jsonIn);
+    private static native String Count(String jsonIn);
 
     /**
      * Dynamically loads the required native libraries for the GrassNext application.
@@ -75,43 +64,24 @@ public class GrassNextJni {
     }
 
     /**
-     * Executes the native Count method via a submitted task and retrieves the result asynchronously.
+     * Executes the native Count method in the calling thread. The number of concurrent calls
+     * is limited by the caller (see {@link com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor}).
      *
      * @param jsonIn a JSON-formatted string containing the input data to be processed by the native library
      * @return a JSON-formatted string containing the result of the processing performed by the native library
-     * @throws RuntimeException if an InterruptedException or ExecutionException occurs during future execution
      *
      */
     public static String gnExecuteCount(String jsonIn) {
-        String jsonOut;
-
-        try {
-            ListenableFuture<String> guavaFuture = (ListenableFuture<String>) leService.submit(() -> Count(jsonIn));
-            jsonOut = guavaFuture.get();
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-        }
-
-        return jsonOut;
+        return Count(jsonIn);
     }
 
     /**
-     * Executes the native Echo method via a submitted task and retrieves the result asynchronously.
+     * Executes the native Echo method in the calling thread.
      *
      * @return the String result obtained from the execution of the Echo native method.
-     * @throws RuntimeException if an InterruptedException or ExecutionException occurs during future execution.
      *
      */
     public static String gnExecuteEcho() {
-        String echoOut;
-
-        try {
-            ListenableFuture<String> guavaFuture = (ListenableFuture<String>) leService.submit(() -> Echo());
-            echoOut = guavaFuture.get();
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-        }
-
-        return echoOut;
+        return Echo();
     }
 }
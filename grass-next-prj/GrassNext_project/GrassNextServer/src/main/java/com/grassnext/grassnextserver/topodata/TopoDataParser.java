@@ -1,6 +1,8 @@
 package com.grassnext.grassnextserver.topodata;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.grassnext.grassnextserver.gaussianplume.ContourCache;
+import com.grassnext.grassnextserver.gaussianplume.PrecomputeService;
 import com.grassnext.grassnextserver.locationdata.LocationData;
 import com.grassnext.grassnextserver.locationdata.LocationDataService;
 import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedData;
@@ -80,6 +82,16 @@ public class TopoDataParser {
      *
      */
     LocationDataService locationDataService;
+    /**
+     * Cache of the calculated contours, invalidated for the detector and dates of the imported data.
+     *
+     */
+    ContourCache contourCache;
+    /**
+     * Service precomputing the contours of the imported data in the background.
+     *
+     */
+    PrecomputeService precomputeService;
 
     /**
      * Represents the header data from a topo file as a string.
@@ -135,6 +147,8 @@ public class TopoDataParser {
      * @param topoAggregatedDataRepository the repository for managing and processing topo aggregated data
      * @param openMeteoService the service for retrieving weather data retrieved from OpenMeteo API
      * @param locationDataService the service for managing and retrieving location data retrieved from Overpass API
+     * @param contourCache the cache of the calculated contours
+     * @param precomputeService the service precomputing the contours of the imported data
      *
      */
     @Autowired
@@ -143,13 +157,17 @@ public class TopoDataParser {
             TopoDetectorRepository topoDetectorRepository,
             TopoAggregatedDataRepository topoAggregatedDataRepository,
             OpenMeteoService openMeteoService,
-            LocationDataService locationDataService
+            LocationDataService locationDataService,
+            ContourCache contourCache,
+            PrecomputeService precomputeService
                           ) {
         this.weatherRepository = weatherRepository;
         this.topoDetectorRepository = topoDetectorRepository;
         this.topoAggregatedDataRepository = topoAggregatedDataRepository;
         this.openMeteoService = openMeteoService;
         this.locationDataService = locationDataService;
+        this.contourCache = contourCache;
+        this.precomputeService = precomputeService;
     }
 
     /**
@@ -340,6 +358,7 @@ public class TopoDataParser {
 
     /**
      * Imports and processes topo data from the specified file.
+     * The cached contours of the detector for the imported dates are invalidated.
      *
      * @param fullFilePath the full file path to the topology data file
      * @return true if the data import and processing are successful
@@ -355,6 +374,17 @@ public class TopoDataParser {
         parseTopoExtraData();
         parseOpenMeteoWeather();
 
+        contourCache.invalidate(
+                topoDetector.getId(),
+                topoHeader.getExportStartTime().toLocalDate(),
+                topoHeader.getExportEndTime().toLocalDate()
+        );
+        precomputeService.schedule(
+                topoDetector.getId(),
+                topoHeader.getExportStartTime().toLocalDate(),
+                topoHeader.getExportEndTime().toLocalDate()
+        );
+
         return true;
     }
 }
@@ -24,6 +24,31 @@ public interface TopoAggregatedDataRepository extends JpaRepository<TopoAggregat
     @Query("SELECT t FROM TopoAggregatedData t WHERE t.detectorId = ?1 AND t.measurementDate = ?2 AND t.measurementHour = ?3 AND t.vehicleGroup != 0 ORDER BY t.vehicleGroup")
     List<TopoAggregatedData> findTopoAggregatedDataList(TopoDetector detectorId, LocalDate measurementDate, int measurementHour);
 
+    /**
+     * Retrieves the TopoAggregatedData entities of all the hours of the specified detector and measurement date.
+     * The result is filtered to exclude records where the vehicle group equals 0 and is ordered by the measurement hour
+     * and the vehicle group, so the records of each hour follow the order of {@link #findTopoAggregatedDataList}.
+     *
+     * @param detectorId       the identifier of the topo detector device
+     * @param measurementDate  the date of the measurement
+     * @return a list of TopoAggregatedData entities of the whole day
+     */
+    @Query("SELECT t FROM TopoAggregatedData t WHERE t.detectorId = ?1 AND t.measurementDate = ?2 AND t.vehicleGroup != 0 ORDER BY t.measurementHour, t.vehicleGroup")
+    List<TopoAggregatedData> findTopoAggregatedDataDay(TopoDetector detectorId, LocalDate measurementDate);
+
+    /**
+     * Retrieves the TopoAggregatedData entities of the specified detectors, measurement date and measurement hour.
+     * The result is filtered to exclude records where the vehicle group equals 0 and is ordered by the detector
+     * and the vehicle group, so the records of each detector follow the order of {@link #findTopoAggregatedDataList}.
+     *
+     * @param detectorIds      the topo detector devices
+     * @param measurementDate  the date of the measurement
+     * @param measurementHour  the hour of the measurement
+     * @return a list of TopoAggregatedData entities of all the detectors
+     */
+    @Query("SELECT t FROM TopoAggregatedData t WHERE t.detectorId IN ?1 AND t.measurementDate = ?2 AND t.measurementHour = ?3 AND t.vehicleGroup != 0 ORDER BY t.detectorId.id, t.vehicleGroup")
+    List<TopoAggregatedData> findTopoAggregatedDataDetectors(List<TopoDetector> detectorIds, LocalDate measurementDate, int measurementHour);
+
     /**
      * Retrieves a distinct list of measurement dates for the specified topo detector.
      *
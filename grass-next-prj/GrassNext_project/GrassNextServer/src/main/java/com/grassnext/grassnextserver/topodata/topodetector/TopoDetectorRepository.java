@@ -37,4 +37,15 @@ public interface TopoDetectorRepository extends JpaRepository<TopoDetector, Long
      */
     @Query("SELECT t FROM TopoDetector t WHERE t.locationData.country = ?1 AND t.locationData.state = ?2 AND t.locationData.town = ?3")
     List<TopoDetector> findTopoDetectorsByLocation(String country, String state, String town);
+    /**
+     * Custom method to retrieve the TopoDetector entities located within the given bounding box.
+     *
+     * @param minLatitude the southern edge of the bounding box
+     * @param maxLatitude the northern edge of the bounding box
+     * @param minLongitude the western edge of the bounding box
+     * @param maxLongitude the eastern edge of the bounding box
+     * @return a list of TopoDetector entities located within the bounding box
+     */
+    @Query("SELECT t FROM TopoDetector t WHERE t.topoLocation.latitude BETWEEN ?1 AND ?2 AND t.topoLocation.longitude BETWEEN ?3 AND ?4")
+    List<TopoDetector> findTopoDetectorsInArea(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude);
 }
@@ -75,12 +75,12 @@ public class Consts {
      * Defines the maximum threshold value used in the Gaussian Plume calculation.
      *
      */
-    public static double THRESHOLD_MAX = 0.000001;
+    public static double THRESHOLD_MAX = 0.00003;
     /**
      * Defines the minimum threshold step used in the Gaussian Plume calculation.
      *
      */
-    public static double THRESHOLD_STEP = 0.00003;
+    public static double THRESHOLD_STEP = 0.000001;
 
     /**
      * Defines the default height (in meters) at which emitters are positioned
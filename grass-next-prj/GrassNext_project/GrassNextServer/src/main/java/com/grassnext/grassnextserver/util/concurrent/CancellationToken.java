@@ -0,0 +1,145 @@
+package com.grassnext.grassnextserver.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CancellationToken class carries the deadline of a calculation and the flag set when the calculation
+ * is no longer needed, for example because the client has disconnected or the job has been cancelled.
+ * The calculation checks the token cooperatively between its parts (the tiles of the matrix, the thresholds
+ * of the contours) and stops by throwing a {@link CancellationException}.
+ *
+ * A token shared by several callers, such as the callers coalesced into a single calculation, is cancelled
+ * only when the tokens of all of them are cancelled.
+ *
+ */
+public class CancellationToken {
+    /**
+     * The token which is never cancelled and has no deadline.
+     *
+     */
+    public static final CancellationToken NONE = new CancellationToken(Long.MAX_VALUE, null);
+
+    /**
+     * The {@link System#nanoTime()} at which the deadline expires, or {@link Long#MAX_VALUE} if there is no deadline.
+     *
+     */
+    private final long deadline;
+    /**
+     * The tokens of the callers sharing this token, or null if the token belongs to a single caller.
+     *
+     */
+    private final List<CancellationToken> callers;
+    /**
+     * Determines whether the token has been cancelled explicitly.
+     *
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a new instance of the CancellationToken class.
+     *
+     * @param deadline the {@link System#nanoTime()} at which the deadline expires, or {@link Long#MAX_VALUE} if there is none
+     * @param callers the tokens of the callers sharing the token, or null if the token belongs to a single caller
+     */
+    private CancellationToken(long deadline, List<CancellationToken> callers) {
+        this.deadline = deadline;
+        this.callers = callers;
+    }
+
+    /**
+     * Creates a token expiring after the given time.
+     *
+     * @param timeout the time after which the token expires, or 0 or less for no deadline
+     * @param unit the unit of the time
+     * @return the new token
+     */
+    public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+        return new CancellationToken(timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Creates a token shared by several callers, cancelled only when the tokens of all the callers are cancelled.
+     * Its deadline is the latest deadline of the callers still waiting for the calculation.
+     * The list may be extended by the callers joining later; an empty list is never cancelled.
+     *
+     * @param callers the thread-safe list of the tokens of the callers
+     * @return the new token
+     */
+    public static CancellationToken allOf(List<CancellationToken> callers) {
+        return new CancellationToken(Long.MAX_VALUE, callers);
+    }
+
+    /**
+     * Cancels the token.
+     *
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Determines whether the token has been cancelled or its deadline has expired.
+     *
+     * @return true if the calculation should stop
+     */
+    public boolean isCancelled() {
+        if (cancelled || isDeadlineExceeded()) {
+            return true;
+        }
+        if (callers == null || callers.isEmpty()) {
+            return false;
+        }
+        for (CancellationToken caller : callers) {
+            if (!caller.isCancelled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the deadline of the token has expired.
+     *
+     * @return true if the deadline has expired
+     */
+    public boolean isDeadlineExceeded() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Returns the time left until the deadline. The deadline of a token shared by several callers
+     * is the latest deadline among the callers which have not been cancelled, since the calculation
+     * is needed until the last of them gives up.
+     *
+     * @param unit the unit of the returned time
+     * @return the time left, 0 if the deadline has expired, or {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long getRemaining(TimeUnit unit) {
+        if (callers != null && !callers.isEmpty()) {
+            long remaining = 0;
+            for (CancellationToken caller : callers) {
+                if (!caller.isCancelled()) {
+                    remaining = Math.max(remaining, caller.getRemaining(unit));
+                }
+            }
+            return remaining;
+        }
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the calculation if the token has been cancelled or its deadline has expired.
+     *
+     * @throws CancellationException if the calculation should stop
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException(isDeadlineExceeded() ? "Calculation deadline exceeded" : "Calculation cancelled");
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.grassnext.grassnextserver.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The SingleFlight class coalesces concurrent calculations of the same key.
+ * The first caller performs the calculation, while the callers arriving before it completes
+ * wait for its result instead of repeating it. A failure of the calculation is rethrown to every caller.
+ *
+ * Each caller may pass its own cancellation token. The calculation receives a token shared by all the callers,
+ * cancelled only when every one of them has been cancelled, so a caller leaving early stops waiting
+ * without cancelling the calculation still needed by the others.
+ *
+ * @param <K> the type of the calculation key
+ * @param <V> the type of the calculation result
+ */
+public class SingleFlight<K, V> {
+    /**
+     * The interval in milliseconds in which the waiting callers check their cancellation tokens.
+     *
+     */
+    static final long CANCELLATION_CHECK_INTERVAL = 100;
+
+    /**
+     * Inner class describing a calculation in progress.
+     *
+     * @param <V> the type of the calculation result
+     */
+    static class Flight<V> {
+        /**
+         * The result of the calculation.
+         *
+         */
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        /**
+         * The cancellation tokens of the callers waiting for the result, including the caller performing the calculation.
+         *
+         */
+        final List<CancellationToken> callers = new CopyOnWriteArrayList<>();
+        /**
+         * The token passed to the calculation, cancelled when the tokens of all the callers are cancelled.
+         *
+         */
+        final CancellationToken cancellation = CancellationToken.allOf(callers);
+    }
+
+    /**
+     * The calculations currently in progress, keyed by the calculation key.
+     *
+     */
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    /**
+     * The number of callers that joined a calculation performed by another caller, each counted once.
+     *
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Performs the calculation, or waits for the result if the calculation of the same key is already in progress.
+     *
+     * @param key the calculation key
+     * @param calculation the calculation to be performed
+     * @return the result of the calculation
+     * @throws RuntimeException if the calculation failed, in the caller performing it and in all the waiting callers
+     */
+    public V execute(K key, Supplier<V> calculation) {
+        return execute(key, CancellationToken.NONE, cancellation -> calculation.get());
+    }
+
+    /**
+     * Performs the calculation, or waits for the result if the calculation of the same key is already in progress.
+     * The caller stops waiting as soon as its token is cancelled. A calculation which has been cancelled by all its
+     * callers is not joined; it is removed from the calculations in progress and the caller starts a new calculation.
+     *
+     * @param key the calculation key
+     * @param cancellation the cancellation token of the caller
+     * @param calculation the calculation to be performed, receiving the token shared by all the waiting callers
+     * @return the result of the calculation
+     * @throws CancellationException if the token of the caller is cancelled
+     * @throws RuntimeException if the calculation failed, in the caller performing it and in all the waiting callers
+     */
+    public V execute(K key, CancellationToken cancellation, Function<CancellationToken, V> calculation) {
+        boolean joined = false;
+        while (true) {
+            cancellation.throwIfCancelled();
+
+            Flight<V> flight = new Flight<>();
+            flight.callers.add(cancellation);
+            Flight<V> existing = inFlight.putIfAbsent(key, flight);
+
+            if (existing == null) {
+                try {
+                    V value = calculation.apply(flight.cancellation);
+                    flight.future.complete(value);
+                    return value;
+                } catch (RuntimeException | Error e) {
+                    flight.future.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(key, flight);
+                }
+            }
+
+            if (existing.cancellation.isCancelled()) {
+                // The calculation has been cancelled by all its callers and is only waiting to be removed
+                inFlight.remove(key, existing);
+                continue;
+            }
+
+            existing.callers.add(cancellation);
+            if (!joined) {
+                joined = true;
+                coalesced.incrementAndGet();
+            }
+            try {
+                return await(existing, cancellation);
+            } catch (CancellationException e) {
+                if (cancellation.isCancelled()) {
+                    throw e;
+                }
+                // The calculation was cancelled by its previous callers just before this caller joined it
+                inFlight.remove(key, existing);
+            } finally {
+                existing.callers.remove(cancellation);
+            }
+        }
+    }
+
+    /**
+     * Waits for the result of the calculation performed by another caller.
+     *
+     * @param flight the calculation in progress
+     * @param cancellation the cancellation token of the waiting caller
+     * @return the result of the calculation
+     * @throws CancellationException if the token of the caller or the calculation is cancelled
+     * @throws RuntimeException if the calculation failed
+     */
+    V await(Flight<V> flight, CancellationToken cancellation) {
+        while (true) {
+            try {
+                return flight.future.get(CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancellation.throwIfCancelled();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Calculation interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of callers that joined a calculation performed by another caller.
+     *
+     * @return the number of coalesced calls
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns the number of calculations currently in progress.
+     *
+     * @return the number of calculations in progress
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,17 @@
+package com.grassnext.grassnextserver.util.enums;
+
+/**
+ * CalculationLaneEnum is an enumeration of the priority lanes in which the Gaussian Plume calculations
+ * wait for execution.
+ *
+ */
+public enum CalculationLaneEnum {
+    /**
+     * - INTERACTIVE: A calculation awaited by a client request, served before every batch calculation.
+     */
+    INTERACTIVE,
+    /**
+     * - BATCH: A calculation of an asynchronous job or of a whole day, limited to a part of the execution slots.
+     */
+    BATCH
+}
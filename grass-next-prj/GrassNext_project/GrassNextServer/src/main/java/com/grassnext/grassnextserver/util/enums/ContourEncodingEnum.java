@@ -0,0 +1,57 @@
+package com.grassnext.grassnextserver.util.enums;
+
+/**
+ * ContourEncodingEnum is an enumeration of the formats in which the contour points are returned by the REST API.
+ * Each format is associated with the value of the {@code encoding} request parameter.
+ *
+ */
+public enum ContourEncodingEnum {
+    /**
+     * - JSON: The points are returned as a list of objects with the latitude and longitude.
+     */
+    JSON("json"),
+    /**
+     * - POLYLINE: The points are returned as a string in the encoded polyline format with the precision of 5 decimal places.
+     */
+    POLYLINE("polyline");
+
+    /**
+     * Represents the value of the request parameter selecting the format.
+     *
+     */
+    private final String value;
+
+    /**
+     * Constructs a ContourEncodingEnum with the specified request parameter value.
+     *
+     * @param value the value of the request parameter selecting the format
+     */
+    ContourEncodingEnum(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Retrieves the value of the request parameter selecting this format.
+     *
+     * @return the value of the request parameter
+     */
+    public String get() {
+        return value;
+    }
+
+    /**
+     * Retrieves the corresponding {@code ContourEncodingEnum} instance based on the provided request parameter value.
+     * The letter case of the value is ignored.
+     *
+     * @param value the value of the request parameter
+     * @return the corresponding {@code ContourEncodingEnum} instance, or null if no match is found
+     */
+    public static ContourEncodingEnum getByValue(String value) {
+        for (ContourEncodingEnum encoding : values()) {
+            if (encoding.value.equalsIgnoreCase(value)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package com.grassnext.grassnextserver.util.enums;
+
+/**
+ * JobStateEnum is an enumeration describing the states of an asynchronous Gaussian Plume calculation job.
+ *
+ */
+public enum JobStateEnum {
+    /**
+     * - QUEUED: The job is waiting for a free worker.
+     */
+    QUEUED,
+    /**
+     * - RUNNING: The job is being calculated.
+     */
+    RUNNING,
+    /**
+     * - DONE: The job finished and the contours are available.
+     */
+    DONE,
+    /**
+     * - FAILED: The job finished with an error described by the contours message.
+     */
+    FAILED,
+    /**
+     * - CANCELLED: The job was cancelled by the client before it finished.
+     */
+    CANCELLED;
+
+    /**
+     * Determines whether the job in this state has finished.
+     *
+     * @return true if the job is done, failed or cancelled
+     */
+    public boolean isFinished() {
+        return this == DONE || this == FAILED || this == CANCELLED;
+    }
+}
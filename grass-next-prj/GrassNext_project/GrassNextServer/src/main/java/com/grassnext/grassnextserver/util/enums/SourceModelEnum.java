@@ -0,0 +1,60 @@
+package com.grassnext.grassnextserver.util.enums;
+
+/**
+ * SourceModelEnum is an enumeration of the ways the road emission is represented in the Gaussian Plume calculation.
+ * Each model is associated with the value of the {@code sourceModel} field of the measurement data.
+ *
+ */
+public enum SourceModelEnum {
+    /**
+     * - POINT: The road is divided into point emitters placed every 10 meters, as the native library does.
+     */
+    POINT("point"),
+    /**
+     * - LINE: The road is treated as a continuous finite line source integrated analytically along its length.
+     */
+    LINE("line");
+
+    /**
+     * Represents the value of the measurement data field selecting the model.
+     *
+     */
+    private final String value;
+
+    /**
+     * Constructs a SourceModelEnum with the specified field value.
+     *
+     * @param value the value of the measurement data field selecting the model
+     */
+    SourceModelEnum(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Retrieves the value of the measurement data field selecting this model.
+     *
+     * @return the value of the measurement data field
+     */
+    public String get() {
+        return value;
+    }
+
+    /**
+     * Retrieves the corresponding {@code SourceModelEnum} instance based on the provided field value.
+     * The letter case of the value is ignored, and a missing value selects the point emitters.
+     *
+     * @param value the value of the measurement data field, or null
+     * @return the corresponding {@code SourceModelEnum} instance, or null if no match is found
+     */
+    public static SourceModelEnum getByValue(String value) {
+        if (value == null) {
+            return POINT;
+        }
+        for (SourceModelEnum sourceModel : values()) {
+            if (sourceModel.value.equalsIgnoreCase(value)) {
+                return sourceModel;
+            }
+        }
+        return null;
+    }
+}
@@ -3,6 +3,7 @@ package com.grassnext.grassnextserver.weather;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Repository interface for Weather entities.
@@ -10,4 +11,23 @@ import java.time.LocalDate;
  */
 public interface WeatherRepository extends JpaRepository<Weather, Long>  {
     Weather findWeatherByMeasurementDateAndMeasurementHourAndLongitudeAndLatitude(LocalDate measurementDate, int measurementHour, double longitude, double latitude);
+
+    /**
+     * Retrieves the weather of all the hours of the specified date at the specified location.
+     *
+     * @param measurementDate the date of the measurement
+     * @param longitude       the longitude of the weather location
+     * @param latitude        the latitude of the weather location
+     * @return a list of the Weather entities of the whole day
+     */
+    List<Weather> findWeatherByMeasurementDateAndLongitudeAndLatitude(LocalDate measurementDate, double longitude, double latitude);
+
+    /**
+     * Retrieves the weather of the specified date and hour at all the locations.
+     *
+     * @param measurementDate the date of the measurement
+     * @param measurementHour the hour of the measurement
+     * @return a list of the Weather entities of all the locations
+     */
+    List<Weather> findWeatherByMeasurementDateAndMeasurementHour(LocalDate measurementDate, int measurementHour);
 }
@@ -0,0 +1,321 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.CityMeasurementData;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.locationdata.LocationData;
+import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedData;
+import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedDataRepository;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetector;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetectorRepository;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.VehicleGroupEnum;
+import com.grassnext.grassnextserver.util.gpspoint.GpsPoint;
+import com.grassnext.grassnextserver.weather.Weather;
+import com.grassnext.grassnextserver.weather.WeatherRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the combined contours of the detectors of a town or a bounding box calculated by {@link CityPlumeService}
+ * from the data read by {@link GaussianParametersService} from the mocked repositories.
+ *
+ */
+@Timeout(30)
+class CityPlumeServiceTest {
+    /**
+     * The measurement date of the tests.
+     *
+     */
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 1);
+    /**
+     * The measurement hour of the tests.
+     *
+     */
+    private static final int HOUR = 12;
+    /**
+     * The town of the detectors.
+     *
+     */
+    private static final String TOWN = "Kędzierzyn-Koźle";
+
+    /**
+     * The mocked repository of the detectors, returning two detectors of neighbouring roads in the town.
+     *
+     */
+    private TopoDetectorRepository topoDetectorRepository;
+    /**
+     * The mocked repository of the weather, holding the weather of the hour at both detectors.
+     *
+     */
+    private WeatherRepository weatherRepository;
+    /**
+     * The mocked repository of the aggregated vehicle data, holding the data of the hour of both detectors.
+     *
+     */
+    private TopoAggregatedDataRepository topoAggregatedDataRepository;
+    /**
+     * The configuration of the tested service.
+     *
+     */
+    private GrassNextConfig grassNextConfig;
+    /**
+     * The executor of the calculations, spied on to check the lane of the calculation.
+     *
+     */
+    private CalculationExecutor calculationExecutor;
+    /**
+     * The tested service.
+     *
+     */
+    private CityPlumeService cityPlumeService;
+
+    /**
+     * Creates the service reading the parameters of two detectors from the mocked repositories.
+     *
+     */
+    @BeforeEach
+    void setUp() {
+        TopoDetector first = detector(1, new GpsPoint(18.2101124, 50.3436049), new GpsPoint(18.2120329, 50.3442988));
+        TopoDetector second = detector(2, new GpsPoint(18.2130000, 50.3445000), new GpsPoint(18.2150000, 50.3450000));
+        List<TopoDetector> topoDetectors = List.of(first, second);
+
+        List<Weather> weatherHour = new ArrayList<>();
+        List<TopoAggregatedData> topoDataHour = new ArrayList<>();
+        for (TopoDetector topoDetector : topoDetectors) {
+            weatherHour.add(new Weather(DATE, HOUR, topoDetector.getTopoLocation().getLongitude(), topoDetector.getTopoLocation().getLatitude(), 1.7, 200));
+            topoDataHour.addAll(vehicleData(topoDetector));
+        }
+
+        topoDetectorRepository = mock(TopoDetectorRepository.class);
+        when(topoDetectorRepository.findTopoDetectorsByLocation(any(), any(), eq(TOWN))).thenReturn(topoDetectors);
+        when(topoDetectorRepository.findTopoDetectorsInArea(anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(topoDetectors);
+        weatherRepository = mock(WeatherRepository.class);
+        when(weatherRepository.findWeatherByMeasurementDateAndMeasurementHour(DATE, HOUR)).thenReturn(weatherHour);
+        topoAggregatedDataRepository = mock(TopoAggregatedDataRepository.class);
+        when(topoAggregatedDataRepository.findTopoAggregatedDataDetectors(topoDetectors, DATE, HOUR)).thenReturn(topoDataHour);
+
+        grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(1);
+        grassNextConfig.setCalculationDeadline(60);
+        grassNextConfig.setCityCellResolution(5);
+        grassNextConfig.setCityMaxMatrixSize(4000);
+        calculationExecutor = spy(new CalculationExecutor(grassNextConfig));
+        cityPlumeService = createService();
+    }
+
+    /**
+     * Stops the pool of the calculations.
+     *
+     */
+    @AfterEach
+    void tearDown() {
+        cityPlumeService.shutdown();
+    }
+
+    /**
+     * The roads of both detectors are calculated on one matrix in the interactive lane, from the weather
+     * and the aggregated vehicle data of all the detectors read with a single query each.
+     *
+     */
+    @Test
+    void calculatesDetectorsOfTown() {
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+
+        Contours contours = cityPlumeService.calculateContours(town(), cancellation);
+
+        assertFalse(contours.isError(), contours.getMsg());
+        assertFalse(contours.getContours().isEmpty());
+        verify(weatherRepository, times(1)).findWeatherByMeasurementDateAndMeasurementHour(DATE, HOUR);
+        verify(topoAggregatedDataRepository, times(1)).findTopoAggregatedDataDetectors(anyList(), eq(DATE), eq(HOUR));
+        verify(calculationExecutor).execute(any(), anyLong(), eq(CalculationLaneEnum.INTERACTIVE), same(cancellation));
+        assertEquals(0, calculationExecutor.getAdmitted());
+    }
+
+    /**
+     * The detectors of a bounding box are found by their location when the town is not given.
+     *
+     */
+    @Test
+    void calculatesDetectorsOfBoundingBox() {
+        CityMeasurementData cityMeasurementData = new CityMeasurementData(measurement(), null, null, null, 50.34, 18.21, 50.35, 18.22);
+
+        Contours contours = cityPlumeService.calculateContours(cityMeasurementData, CancellationToken.NONE);
+
+        assertFalse(contours.isError(), contours.getMsg());
+        verify(topoDetectorRepository).findTopoDetectorsInArea(50.34, 50.35, 18.21, 18.22);
+        verify(topoDetectorRepository, never()).findTopoDetectorsByLocation(any(), any(), any());
+    }
+
+    /**
+     * A detector without the weather of the hour is skipped, and the other one is calculated.
+     *
+     */
+    @Test
+    void skipsDetectorWithoutWeather() {
+        List<Weather> weatherHour = new ArrayList<>(weatherRepository.findWeatherByMeasurementDateAndMeasurementHour(DATE, HOUR));
+        weatherHour.remove(1);
+        when(weatherRepository.findWeatherByMeasurementDateAndMeasurementHour(DATE, HOUR)).thenReturn(weatherHour);
+
+        Contours contours = cityPlumeService.calculateContours(town(), CancellationToken.NONE);
+
+        assertFalse(contours.isError(), contours.getMsg());
+    }
+
+    /**
+     * The invalid requests and the requests without the detectors or their data are refused without a calculation.
+     *
+     */
+    @Test
+    void refusesRequestsWithoutData() {
+        assertEquals("Measurement data missing!", cityPlumeService.calculateContours(new CityMeasurementData(), CancellationToken.NONE).getMsg());
+        assertEquals("Town or bounding box missing!", cityPlumeService.calculateContours(
+                new CityMeasurementData(measurement(), null, null, null, null, null, null, null), CancellationToken.NONE).getMsg());
+
+        MeasurementData unknownModel = measurement();
+        unknownModel.setSourceModel("area");
+        assertEquals("Unknown source model!", cityPlumeService.calculateContours(
+                new CityMeasurementData(unknownModel, null, null, TOWN, null, null, null, null), CancellationToken.NONE).getMsg());
+
+        when(topoDetectorRepository.findTopoDetectorsByLocation(any(), any(), anyString())).thenReturn(List.of());
+        assertEquals("Detector not found!", cityPlumeService.calculateContours(town(), CancellationToken.NONE).getMsg());
+
+        when(topoDetectorRepository.findTopoDetectorsByLocation(any(), any(), anyString())).thenReturn(List.of(detector(3,
+                new GpsPoint(18.0, 50.0), new GpsPoint(18.001, 50.001))));
+        assertEquals("No data found for chosen date!", cityPlumeService.calculateContours(town(), CancellationToken.NONE).getMsg());
+
+        verify(calculationExecutor, never()).execute(any(), anyLong(), any(), any());
+    }
+
+    /**
+     * An area needing a matrix larger than the limit is refused without a calculation.
+     *
+     */
+    @Test
+    void refusesTooLargeArea() {
+        grassNextConfig.setCityMaxMatrixSize(50);
+        cityPlumeService.shutdown();
+        cityPlumeService = createService();
+
+        Contours contours = cityPlumeService.calculateContours(town(), CancellationToken.NONE);
+
+        assertTrue(contours.isError());
+        assertEquals("Area too large! The limit is 250 m.", contours.getMsg());
+        verify(calculationExecutor, never()).execute(any(), anyLong(), any(), any());
+    }
+
+    /**
+     * A calculation rejected by the executor is reported to the caller.
+     *
+     */
+    @Test
+    void reportsRejectedCalculation() {
+        doThrow(new RejectedExecutionException("Calculation queue is full"))
+                .when(calculationExecutor).execute(any(), anyLong(), any(), any());
+
+        assertThrows(RejectedExecutionException.class, () -> cityPlumeService.calculateContours(town(), CancellationToken.NONE));
+    }
+
+    /**
+     * Creates the tested service with the current configuration.
+     *
+     * @return the tested service
+     */
+    private CityPlumeService createService() {
+        return new CityPlumeService(
+                new GaussianParametersService(topoDetectorRepository, weatherRepository, topoAggregatedDataRepository),
+                topoDetectorRepository,
+                calculationExecutor,
+                grassNextConfig
+        );
+    }
+
+    /**
+     * Creates a detector of a road, located at the start of the road.
+     *
+     * @param id the identifier of the detector
+     * @param start the start of the road
+     * @param end the end of the road
+     * @return the detector
+     */
+    private static TopoDetector detector(long id, GpsPoint start, GpsPoint end) {
+        LocationData locationData = new LocationData();
+        locationData.setTown(TOWN);
+        locationData.setStartNode(start);
+        locationData.setEndNode(end);
+        TopoDetector topoDetector = new TopoDetector("TOPO-" + id, locationData, new GpsPoint(start.getLongitude(), start.getLatitude()));
+        topoDetector.setId(id);
+        return topoDetector;
+    }
+
+    /**
+     * Creates the aggregated vehicle data of the hour of the detector, ordered by the vehicle group.
+     *
+     * @param topoDetector the detector
+     * @return the aggregated vehicle data of the five vehicle groups
+     */
+    private static List<TopoAggregatedData> vehicleData(TopoDetector topoDetector) {
+        int[] counts = {2, 251, 38, 9, 13};
+        double[] velocities = {38.5, 36.9, 32.4, 25.4, 30.2};
+        List<TopoAggregatedData> topoData = new ArrayList<>();
+        for (int v = 0; v < counts.length; v++) {
+            TopoAggregatedData topoVehicle = new TopoAggregatedData();
+            topoVehicle.setDetectorId(topoDetector);
+            topoVehicle.setMeasurementDate(DATE);
+            topoVehicle.setMeasurementHour(HOUR);
+            topoVehicle.setVehicleGroup(VehicleGroupEnum.values()[v + 1]);
+            topoVehicle.setVehicleCountHour(counts[v]);
+            topoVehicle.setVehicleAvgVelocityHour(velocities[v]);
+            topoData.add(topoVehicle);
+        }
+        return topoData;
+    }
+
+    /**
+     * Creates the measurement data of the requests.
+     *
+     * @return the measurement data of the passenger cars and vans in a 400 m area, with the default source model
+     */
+    private static MeasurementData measurement() {
+        return new MeasurementData(new ArrayList<>(List.of(2, 3)), 4, 1, 0, DATE, HOUR, 400, null);
+    }
+
+    /**
+     * Creates the request of the detectors of the town.
+     *
+     * @return the measurement data and the town
+     */
+    private static CityMeasurementData town() {
+        return new CityMeasurementData(measurement(), "Poland", "opolskie", TOWN, null, null, null, null);
+    }
+}
@@ -0,0 +1,181 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests of the keys, the generations and the invalidation of {@link ContourCache}.
+ *
+ */
+class ContourCacheTest {
+    /**
+     * The date of the cached measurements.
+     *
+     */
+    private static final LocalDate DATE = LocalDate.of(2025, 6, 27);
+
+    /**
+     * Requests differing only in the order and repetition of the vehicle groups and in the letter case
+     * of the source model share the cache key.
+     *
+     */
+    @Test
+    void canonicalizeUnifiesEqualRequests() {
+        MeasurementData first = new MeasurementData(new ArrayList<>(List.of(3, 1, 1, 2)), 4, 1, 7, DATE, 12, 2000, "LINE");
+        MeasurementData second = new MeasurementData(new ArrayList<>(List.of(1, 2, 3)), 4, 1, 7, DATE, 12, 2000, "line");
+        MeasurementData pointDefault = new MeasurementData(new ArrayList<>(List.of(1)), 4, 1, 7, DATE, 12, 2000, null);
+
+        assertEquals(ContourCache.canonicalize(first), ContourCache.canonicalize(second));
+        assertEquals(List.of(1, 2, 3), ContourCache.canonicalize(first).getVehicles());
+        assertEquals("point", ContourCache.canonicalize(pointDefault).getSourceModel());
+    }
+
+    /**
+     * A stored result is returned by the next lookup and counted as a hit.
+     *
+     */
+    @Test
+    void storesAndCountsHits() {
+        ContourCache contourCache = createCache(10);
+        MeasurementData key = key(7, DATE, 12);
+        Contours contours = contours();
+
+        assertNull(contourCache.get(key));
+        contourCache.put(key, contours, contourCache.getGeneration());
+
+        assertSame(contours, contourCache.get(key));
+        ContourCache.Statistics statistics = contourCache.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getSize());
+    }
+
+    /**
+     * A result calculated before an invalidation is not stored, since it may have read the replaced data.
+     *
+     */
+    @Test
+    void dropsResultOfStaleGeneration() {
+        ContourCache contourCache = createCache(10);
+        MeasurementData key = key(7, DATE, 12);
+        long startGeneration = contourCache.getGeneration();
+
+        contourCache.invalidate(8, DATE, DATE);
+        contourCache.put(key, contours(), startGeneration);
+
+        assertNull(contourCache.get(key));
+    }
+
+    /**
+     * The invalidation removes only the entries of the detector within the date range.
+     *
+     */
+    @Test
+    void invalidatesDetectorAndDateRange() {
+        ContourCache contourCache = createCache(10);
+        MeasurementData inRange = key(7, DATE, 12);
+        MeasurementData nextDay = key(7, DATE.plusDays(1), 12);
+        MeasurementData otherDetector = key(8, DATE, 12);
+        long generation = contourCache.getGeneration();
+        contourCache.put(inRange, contours(), generation);
+        contourCache.put(nextDay, contours(), generation);
+        contourCache.put(otherDetector, contours(), generation);
+
+        contourCache.invalidate(7, DATE.minusDays(1), DATE);
+
+        assertNull(contourCache.get(inRange));
+        assertNotNull(contourCache.get(nextDay));
+        assertNotNull(contourCache.get(otherDetector));
+        assertEquals(1, contourCache.getStatistics().getInvalidations());
+        assertEquals(generation + 1, contourCache.getGeneration());
+    }
+
+    /**
+     * Within a transaction the entries stored before its commit are removed again after the commit,
+     * since they may have been calculated from the data replaced by the transaction.
+     *
+     */
+    @Test
+    void invalidatesAgainAfterCommit() {
+        ContourCache contourCache = createCache(10);
+        MeasurementData key = key(7, DATE, 12);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            contourCache.invalidate(7, DATE, DATE);
+            contourCache.put(key, contours(), contourCache.getGeneration());
+            assertNotNull(contourCache.get(key));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertNull(contourCache.get(key));
+        assertEquals(2, contourCache.getGeneration());
+    }
+
+    /**
+     * A cache with the maximum size of 0 stores nothing.
+     *
+     */
+    @Test
+    void disabledCacheStoresNothing() {
+        ContourCache contourCache = createCache(0);
+        MeasurementData key = key(7, DATE, 12);
+
+        contourCache.put(key, contours(), contourCache.getGeneration());
+
+        assertFalse(contourCache.isEnabled());
+        assertNull(contourCache.get(key));
+        assertEquals(0, contourCache.getStatistics().getSize());
+    }
+
+    /**
+     * Creates a cache of the given size keeping the entries for a day.
+     *
+     * @param maxSize the maximum number of entries
+     * @return the cache
+     */
+    private static ContourCache createCache(long maxSize) {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setContourCacheMaxSize(maxSize);
+        grassNextConfig.setContourCacheTtl(1440);
+        return new ContourCache(grassNextConfig);
+    }
+
+    /**
+     * Creates the canonical key of a measurement.
+     *
+     * @param detectorId the identifier of the detector
+     * @param date the date of the measurement
+     * @param hour the hour of the measurement
+     * @return the cache key
+     */
+    private static MeasurementData key(int detectorId, LocalDate date, int hour) {
+        return ContourCache.canonicalize(new MeasurementData(new ArrayList<>(List.of(1, 2)), 4, 1, detectorId, date, hour, 2000, null));
+    }
+
+    /**
+     * Creates calculated contours without any contour.
+     *
+     * @return the contours
+     */
+    private static Contours contours() {
+        return new Contours(false, "", 0.1, new ArrayList<>());
+    }
+}
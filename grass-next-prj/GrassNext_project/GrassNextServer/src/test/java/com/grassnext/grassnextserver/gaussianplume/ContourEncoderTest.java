@@ -0,0 +1,206 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.util.enums.ContourEncodingEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the simplification and the encoded polyline format of {@link ContourEncoder}.
+ *
+ */
+class ContourEncoderTest {
+    /**
+     * The latitude of the tested contours, near the detectors of the project.
+     *
+     */
+    private static final double LAT = 50.3456;
+    /**
+     * The longitude of the tested contours.
+     *
+     */
+    private static final double LON = 18.2278;
+
+    /**
+     * The points of the reference example of the encoded polyline format are encoded to the reference string.
+     *
+     */
+    @Test
+    void encodesReferenceExample() {
+        List<Contours.GpsPoint> points = List.of(
+                new Contours.GpsPoint(38.5, -120.2),
+                new Contours.GpsPoint(40.7, -120.95),
+                new Contours.GpsPoint(43.252, -126.453)
+        );
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", ContourEncoder.encodePolyline(points));
+        assertEquals("", ContourEncoder.encodePolyline(null));
+    }
+
+    /**
+     * The decoded points of an encoded contour differ from the original points by at most the rounding
+     * to 5 decimal places, without accumulating the error along the contour.
+     *
+     */
+    @Test
+    void decodedPolylineMatchesPoints() {
+        Random random = new Random(7);
+        List<Contours.GpsPoint> points = new ArrayList<>();
+        double lat = LAT;
+        double lon = LON;
+        for (int i = 0; i < 1000; i++) {
+            lat += (random.nextDouble() - 0.5) * 1e-3;
+            lon += (random.nextDouble() - 0.5) * 1e-3;
+            points.add(new Contours.GpsPoint(lat, lon));
+        }
+
+        List<Contours.GpsPoint> decoded = decodePolyline(ContourEncoder.encodePolyline(points));
+
+        assertEquals(points.size(), decoded.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getLat(), decoded.get(i).getLat(), 0.5e-5 + 1e-12);
+            assertEquals(points.get(i).getLon(), decoded.get(i).getLon(), 0.5e-5 + 1e-12);
+        }
+    }
+
+    /**
+     * The simplified contour keeps its first and last points, and no removed point is farther from it than the tolerance.
+     *
+     */
+    @Test
+    void simplifiedContourStaysWithinTolerance() {
+        List<Contours.GpsPoint> points = circle(500, 720);
+        double tolerance = 2.0;
+
+        List<Contours.GpsPoint> simplified = ContourEncoder.simplify(points, tolerance);
+
+        assertTrue(simplified.size() < points.size() / 4, "simplified to " + simplified.size() + " points");
+        assertSame(points.get(0), simplified.get(0));
+        assertSame(points.get(points.size() - 1), simplified.get(simplified.size() - 1));
+        for (Contours.GpsPoint point : points) {
+            assertTrue(distanceToPolyline(point, simplified) <= tolerance + 1e-6);
+        }
+    }
+
+    /**
+     * The points lying on a straight line are reduced to the end points of the line.
+     *
+     */
+    @Test
+    void simplifiesStraightLineToEndPoints() {
+        List<Contours.GpsPoint> points = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            points.add(new Contours.GpsPoint(LAT + i * 1e-4, LON + i * 2e-4));
+        }
+
+        List<Contours.GpsPoint> simplified = ContourEncoder.simplify(points, 0.1);
+
+        assertEquals(List.of(points.get(0), points.get(10)), simplified);
+    }
+
+    /**
+     * The contours are returned unchanged without the simplification and the encoding, and otherwise
+     * a copy is returned while the cached contours stay unmodified.
+     *
+     */
+    @Test
+    void encodesCopyOfContours() {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setContourSimplifyTolerance(0);
+        ContourEncoder contourEncoder = new ContourEncoder(grassNextConfig);
+        List<Contours.GpsPoint> points = circle(500, 360);
+        Contours contours = new Contours(false, "", 0.5, new ArrayList<>(List.of(new Contours.Contour("0.0011", "#FF964F", points))));
+
+        assertSame(contours, contourEncoder.encode(contours, null, ContourEncodingEnum.JSON));
+
+        Contours simplified = contourEncoder.encode(contours, 2.0, ContourEncodingEnum.JSON);
+        assertTrue(simplified.getContours().get(0).getPoints().size() < points.size());
+        assertEquals(360, contours.getContours().get(0).getPoints().size());
+
+        Contours encoded = contourEncoder.encode(contours, 0.0, ContourEncodingEnum.POLYLINE);
+        Contours.Contour contour = encoded.getContours().get(0);
+        assertNull(contour.getPoints());
+        assertEquals("0.0011", contour.getThreshold());
+        assertEquals("#FF964F", contour.getColor());
+        assertEquals(points.size(), decodePolyline(contour.getEncodedPoints()).size());
+    }
+
+    /**
+     * Decodes the points of the encoded polyline format.
+     *
+     * @param encoded the encoded polyline
+     * @return the decoded points
+     */
+    private static List<Contours.GpsPoint> decodePolyline(String encoded) {
+        List<Contours.GpsPoint> points = new ArrayList<>();
+        long[] values = new long[2];
+        int index = 0;
+        while (index < encoded.length()) {
+            for (int v = 0; v < 2; v++) {
+                long result = 0;
+                int shift = 0;
+                int chunk;
+                do {
+                    chunk = encoded.charAt(index++) - 63;
+                    result |= (long) (chunk & 0x1f) << shift;
+                    shift += 5;
+                } while (chunk >= 0x20);
+                values[v] += (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+            }
+            points.add(new Contours.GpsPoint(values[0] / ContourEncoder.POLYLINE_PRECISION, values[1] / ContourEncoder.POLYLINE_PRECISION));
+        }
+        return points;
+    }
+
+    /**
+     * Creates a closed contour of points on a circle around the tested position.
+     *
+     * @param radius the radius of the circle in meters
+     * @param count the number of points
+     * @return the points of the circle, the first one repeated at the end
+     */
+    private static List<Contours.GpsPoint> circle(double radius, int count) {
+        double metersPerDegree = ContourEncoder.EARTH_RADIUS * Math.PI / 180;
+        List<Contours.GpsPoint> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / (count - 1);
+            points.add(new Contours.GpsPoint(
+                    LAT + radius * Math.sin(angle) / metersPerDegree,
+                    LON + radius * Math.cos(angle) / (metersPerDegree * Math.cos(Math.toRadians(LAT)))
+            ));
+        }
+        return points;
+    }
+
+    /**
+     * Returns the distance in meters of the point from the closest segment of the polyline.
+     *
+     * @param point the point
+     * @param polyline the points of the polyline
+     * @return the distance in meters
+     */
+    private static double distanceToPolyline(Contours.GpsPoint point, List<Contours.GpsPoint> polyline) {
+        double metersPerDegree = ContourEncoder.EARTH_RADIUS * Math.PI / 180;
+        double lonScale = metersPerDegree * Math.cos(Math.toRadians(polyline.get(0).getLat()));
+        double distance = Double.MAX_VALUE;
+        for (int i = 0; i + 1 < polyline.size(); i++) {
+            Contours.GpsPoint start = polyline.get(i);
+            Contours.GpsPoint end = polyline.get(i + 1);
+            distance = Math.min(distance, ContourEncoder.segmentDistance(
+                    (point.getLon() - LON) * lonScale, (point.getLat() - LAT) * metersPerDegree,
+                    (start.getLon() - LON) * lonScale, (start.getLat() - LAT) * metersPerDegree,
+                    (end.getLon() - LON) * lonScale, (end.getLat() - LAT) * metersPerDegree
+            ));
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,287 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.gaussianplume.engine.GridArena;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.ContourEncodingEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the events of {@link ContourStreamService}, the cancellation of the calculation of a disconnected client
+ * and the limit of the concurrent streams.
+ *
+ */
+@Timeout(30)
+class ContourStreamServiceTest {
+    /**
+     * The body of a measurement request.
+     *
+     */
+    private static final String MEASUREMENT = """
+            {"vehicles":[1,2],"weatherStability":4,"pollutionType":1,"detectorId":1,"date":"2025-06-27","time":12,"area":400}
+            """;
+    /**
+     * The Gaussian Plume parameters of a 400 m area with a 150 m road, calculated on 1 m cells.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":200,"stability":4},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"point"}
+            """;
+    /**
+     * The name of an event in the text written by the emitter.
+     *
+     */
+    private static final Pattern EVENT_NAME = Pattern.compile("event:(\\w+)");
+
+    /**
+     * The mocked service calculating the full contours.
+     *
+     */
+    private GaussianPlumeService gaussianPlumeService;
+    /**
+     * The mocked cache of the full contours.
+     *
+     */
+    private ContourCache contourCache;
+    /**
+     * The pool of the mocked dispersion engine.
+     *
+     */
+    private ForkJoinPool forkJoinPool;
+    /**
+     * The executor of the calculations, shared by the service and the controller.
+     *
+     */
+    private CalculationExecutor calculationExecutor;
+    /**
+     * The tested service, serving a single stream with the heartbeat every second.
+     *
+     */
+    private ContourStreamService contourStreamService;
+
+    /**
+     * Creates the service with the mocked services, a coarse grid of 10 m cells and a single stream.
+     *
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(2);
+        grassNextConfig.setCalculationRetryAfter(7);
+        grassNextConfig.setCalculationDeadline(60);
+        grassNextConfig.setStreamCoarseResolution(10);
+        grassNextConfig.setStreamHeartbeat(1);
+        grassNextConfig.setStreamMaxStreams(1);
+        grassNextConfig.setJvmCulling(true);
+
+        gaussianPlumeService = mock(GaussianPlumeService.class);
+        when(gaussianPlumeService.checkMeasuredRange(any(Contours.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        GaussianParametersService gaussianParametersService = mock(GaussianParametersService.class);
+        when(gaussianParametersService.getGaussianPlume(any(MeasurementData.class))).thenReturn(PLUME);
+        contourCache = mock(ContourCache.class);
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        DispersionEngine dispersionEngine = mock(DispersionEngine.class);
+        when(dispersionEngine.getForkJoinPool()).thenReturn(forkJoinPool);
+
+        calculationExecutor = new CalculationExecutor(grassNextConfig);
+        contourStreamService = new ContourStreamService(gaussianPlumeService, gaussianParametersService, calculationExecutor,
+                contourCache, new ContourEncoder(grassNextConfig), dispersionEngine, grassNextConfig);
+    }
+
+    /**
+     * Stops the stream threads and the pool of the engine.
+     *
+     */
+    @AfterEach
+    void tearDown() {
+        contourStreamService.shutdown();
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * The preview contours of the coarse grid are sent before the full contours are calculated and sent,
+     * and the stream is completed afterwards.
+     *
+     */
+    @Test
+    void sendsCoarseEventBeforeContours() throws Exception {
+        List<String> calculatedAfter = new ArrayList<>();
+        SseEmitter emitter = mock(SseEmitter.class);
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class))).thenAnswer(invocation -> {
+            calculatedAfter.addAll(sentEvents(emitter));
+            return new Contours(false, "success", 0.5, new ArrayList<>());
+        });
+
+        contourStreamService.run(emitter, measurement(), null, ContourEncodingEnum.JSON, CancellationToken.NONE);
+
+        assertEquals(List.of(ContourStreamService.COARSE_EVENT), calculatedAfter);
+        assertEquals(List.of(ContourStreamService.COARSE_EVENT, ContourStreamService.CONTOURS_EVENT), sentEvents(emitter));
+        assertTrue(forkJoinPool.getPoolSize() > 0, "preview not calculated on the pool of the engine");
+        verify(emitter).complete();
+    }
+
+    /**
+     * No preview is calculated when the full contours are already cached.
+     *
+     */
+    @Test
+    void skipsCoarseEventOfCachedContours() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        when(contourCache.get(any(MeasurementData.class))).thenReturn(new Contours(false, "success", 0.5, new ArrayList<>()));
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class)))
+                .thenReturn(new Contours(false, "success", 0.5, new ArrayList<>()));
+
+        contourStreamService.run(emitter, measurement(), null, ContourEncodingEnum.JSON, CancellationToken.NONE);
+
+        assertEquals(List.of(ContourStreamService.CONTOURS_EVENT), sentEvents(emitter));
+    }
+
+    /**
+     * A heartbeat failing because the client has disconnected cancels the token of the full calculation,
+     * which then stops.
+     *
+     */
+    @Test
+    void failedHeartbeatCancelsCalculation() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        when(contourCache.get(any(MeasurementData.class))).thenReturn(new Contours(false, "success", 0.5, new ArrayList<>()));
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class))).thenAnswer(invocation -> {
+            CancellationToken cancellation = invocation.getArgument(1);
+            while (!cancellation.isCancelled()) {
+                Thread.sleep(10);
+            }
+            throw new CancellationException("Calculation cancelled");
+        });
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        contourStreamService.run(emitter, measurement(), null, ContourEncodingEnum.JSON, cancellation);
+
+        assertTrue(cancellation.isCancelled());
+        assertFalse(cancellation.isDeadlineExceeded());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10), "calculation not stopped by the heartbeat");
+        verify(emitter, atLeastOnce()).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    /**
+     * A stream requested while the maximum number of streams is being served is answered with the HTTP 429 status
+     * and the Retry-After header.
+     *
+     */
+    @Test
+    void excessStreamReturnsTooManyRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(contourCache.get(any(MeasurementData.class))).thenReturn(new Contours(false, "success", 0.5, new ArrayList<>()));
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(20, TimeUnit.SECONDS);
+            return new Contours(false, "success", 0.5, new ArrayList<>());
+        });
+
+        GaussianPlumeController controller = new GaussianPlumeController(
+                gaussianPlumeService,
+                calculationExecutor,
+                contourCache,
+                mock(ContourEncoder.class),
+                mock(GridArena.class),
+                mock(ReceptorService.class),
+                mock(CityPlumeService.class),
+                contourStreamService
+        );
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        try {
+            mockMvc.perform(post("/api/gaussian-plume/measurement/stream").contentType(MediaType.APPLICATION_JSON).content(MEASUREMENT))
+                    .andExpect(request().asyncStarted());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            mockMvc.perform(post("/api/gaussian-plume/measurement/stream").contentType(MediaType.APPLICATION_JSON).content(MEASUREMENT))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Returns the names of the events sent by the mocked emitter so far, skipping the comments.
+     *
+     * @param emitter the mocked emitter
+     * @return the names of the events in the order they were sent
+     */
+    private static List<String> sentEvents(SseEmitter emitter) throws IOException {
+        ArgumentCaptor<SseEmitter.SseEventBuilder> events = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, atLeastOnce()).send(events.capture());
+
+        List<String> names = new ArrayList<>();
+        for (SseEmitter.SseEventBuilder event : events.getAllValues()) {
+            for (ResponseBodyEmitter.DataWithMediaType data : event.build()) {
+                Matcher matcher = EVENT_NAME.matcher(String.valueOf(data.getData()));
+                if (matcher.find()) {
+                    names.add(matcher.group(1));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Creates the measurement data of a request.
+     *
+     * @return the measurement data
+     */
+    private static MeasurementData measurement() {
+        MeasurementData measurementData = new MeasurementData();
+        measurementData.setVehicles(List.of(1, 2));
+        measurementData.setDetectorId(1);
+        measurementData.setPollutionType(1);
+        measurementData.setArea(400);
+        measurementData.setSourceModel("point");
+        return measurementData;
+    }
+}
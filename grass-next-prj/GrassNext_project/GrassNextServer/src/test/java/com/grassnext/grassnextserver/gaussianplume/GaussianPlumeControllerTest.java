@@ -0,0 +1,119 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.GridArena;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the responses of {@link GaussianPlumeController} to the calculations rejected or stopped by the executor.
+ *
+ */
+class GaussianPlumeControllerTest {
+    /**
+     * The body of a measurement request.
+     *
+     */
+    private static final String MEASUREMENT = """
+            {"vehicles":[1,2],"weatherStability":4,"pollutionType":1,"detectorId":1,"date":"2025-06-27","time":12,"area":2000}
+            """;
+
+    /**
+     * The mocked service calculating the contours.
+     *
+     */
+    private GaussianPlumeService gaussianPlumeService;
+    /**
+     * The client of the controller.
+     *
+     */
+    private MockMvc mockMvc;
+
+    /**
+     * Creates the controller with an executor returning a Retry-After time of 7 seconds.
+     *
+     */
+    @BeforeEach
+    void setUp() {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(1);
+        grassNextConfig.setCalculationRetryAfter(7);
+        grassNextConfig.setCalculationDeadline(60);
+
+        gaussianPlumeService = mock(GaussianPlumeService.class);
+        GaussianPlumeController controller = new GaussianPlumeController(
+                gaussianPlumeService,
+                new CalculationExecutor(grassNextConfig),
+                mock(ContourCache.class),
+                new ContourEncoder(grassNextConfig),
+                mock(GridArena.class),
+                mock(ReceptorService.class),
+                mock(CityPlumeService.class),
+                mock(ContourStreamService.class)
+        );
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    /**
+     * A calculation rejected by the executor is answered with the HTTP 429 status and the Retry-After header.
+     *
+     */
+    @Test
+    void rejectedCalculationReturnsTooManyRequests() throws Exception {
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class)))
+                .thenThrow(new RejectedExecutionException("Calculation queue is full"));
+
+        mockMvc.perform(post("/api/gaussian-plume/measurement").contentType(MediaType.APPLICATION_JSON).content(MEASUREMENT))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"))
+                .andExpect(jsonPath("$.error").value(true));
+    }
+
+    /**
+     * A calculation stopped by its deadline is answered with the HTTP 503 status.
+     *
+     */
+    @Test
+    void cancelledCalculationReturnsServiceUnavailable() throws Exception {
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class)))
+                .thenThrow(new CancellationException("Calculation deadline exceeded"));
+
+        mockMvc.perform(post("/api/gaussian-plume/measurement").contentType(MediaType.APPLICATION_JSON).content(MEASUREMENT))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value(true));
+    }
+
+    /**
+     * A calculated result is answered with the HTTP 200 status.
+     *
+     */
+    @Test
+    void calculatedContoursReturnOk() throws Exception {
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), any(CancellationToken.class)))
+                .thenReturn(new Contours(false, "", 0.5, new ArrayList<>()));
+
+        mockMvc.perform(post("/api/gaussian-plume/measurement").contentType(MediaType.APPLICATION_JSON).content(MEASUREMENT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.error").value(false));
+    }
+}
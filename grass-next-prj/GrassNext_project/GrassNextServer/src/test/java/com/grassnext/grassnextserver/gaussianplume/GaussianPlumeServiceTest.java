@@ -0,0 +1,269 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.DayContours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.locationdata.LocationData;
+import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedData;
+import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedDataRepository;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetector;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetectorRepository;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.VehicleGroupEnum;
+import com.grassnext.grassnextserver.util.gpspoint.GpsPoint;
+import com.grassnext.grassnextserver.weather.Weather;
+import com.grassnext.grassnextserver.weather.WeatherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the contours of several hours of a day calculated by {@link GaussianPlumeService#calculateDayContours}
+ * from the data read by {@link GaussianParametersService} from the mocked repositories.
+ *
+ */
+@Timeout(30)
+class GaussianPlumeServiceTest {
+    /**
+     * The measurement date of the tests.
+     *
+     */
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 1);
+    /**
+     * The identifier of the detector of the tests.
+     *
+     */
+    private static final int DETECTOR_ID = 7;
+    /**
+     * The number of the vehicle groups of the aggregated data of an hour.
+     *
+     */
+    private static final int VEHICLE_GROUPS = 5;
+
+    /**
+     * The mocked repository of the weather, holding the weather of every hour of the day.
+     *
+     */
+    private WeatherRepository weatherRepository;
+    /**
+     * The mocked repository of the aggregated vehicle data, holding the data of every hour of the day.
+     *
+     */
+    private TopoAggregatedDataRepository topoAggregatedDataRepository;
+    /**
+     * The mocked repository of the detectors.
+     *
+     */
+    private TopoDetectorRepository topoDetectorRepository;
+    /**
+     * The mocked engine returning empty contours.
+     *
+     */
+    private DispersionEngine dispersionEngine;
+    /**
+     * The mocked cache of the contours, empty unless a test stubs it.
+     *
+     */
+    private ContourCache contourCache;
+    /**
+     * The tested service.
+     *
+     */
+    private GaussianPlumeService gaussianPlumeService;
+
+    /**
+     * Creates the service reading the parameters from the mocked repositories. The wind direction
+     * of each hour is ten times the hour, so the parameters of the hours can be told apart. The batch queue
+     * of the executor holds all the hours of the day, so no hour is rejected.
+     *
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        LocationData locationData = new LocationData();
+        locationData.setStartNode(new GpsPoint(18.2101124, 50.3436049));
+        locationData.setEndNode(new GpsPoint(18.2120329, 50.3442988));
+        TopoDetector topoDetector = new TopoDetector("TOPO-7", locationData, new GpsPoint(18.211, 50.344));
+        topoDetector.setId((long) DETECTOR_ID);
+
+        List<Weather> weatherDay = new ArrayList<>();
+        List<TopoAggregatedData> topoDataDay = new ArrayList<>();
+        for (int hour = 1; hour <= Consts.TOPO_HOURS; hour++) {
+            weatherDay.add(new Weather(DATE, hour, 18.211, 50.344, 1.7, hour * 10));
+            for (int group = 1; group <= VEHICLE_GROUPS; group++) {
+                TopoAggregatedData topoVehicle = new TopoAggregatedData();
+                topoVehicle.setDetectorId(topoDetector);
+                topoVehicle.setMeasurementDate(DATE);
+                topoVehicle.setMeasurementHour(hour);
+                topoVehicle.setVehicleGroup(VehicleGroupEnum.values()[group]);
+                topoVehicle.setVehicleCountHour(10 * group);
+                topoVehicle.setVehicleAvgVelocityHour(30.0);
+                topoDataDay.add(topoVehicle);
+            }
+        }
+
+        topoDetectorRepository = mock(TopoDetectorRepository.class);
+        when(topoDetectorRepository.findTopoDetectorById(DETECTOR_ID)).thenReturn(topoDetector);
+        weatherRepository = mock(WeatherRepository.class);
+        when(weatherRepository.findWeatherByMeasurementDateAndLongitudeAndLatitude(eq(DATE), anyDouble(), anyDouble())).thenReturn(weatherDay);
+        topoAggregatedDataRepository = mock(TopoAggregatedDataRepository.class);
+        when(topoAggregatedDataRepository.findTopoAggregatedDataDay(topoDetector, DATE)).thenReturn(topoDataDay);
+
+        dispersionEngine = mock(DispersionEngine.class);
+        when(dispersionEngine.supports(any())).thenReturn(true);
+        String jsonContours = new ObjectMapper().writeValueAsString(new Contours(false, "success", 0.5, new ArrayList<>()));
+        when(dispersionEngine.calculate(anyString(), any(CancellationToken.class))).thenReturn(jsonContours);
+
+        contourCache = mock(ContourCache.class);
+
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(4);
+        grassNextConfig.setCalculationBatchQueueSize(Consts.TOPO_HOURS);
+        grassNextConfig.setCalculationDeadline(60);
+        gaussianPlumeService = new GaussianPlumeService(
+                new GaussianParametersService(topoDetectorRepository, weatherRepository, topoAggregatedDataRepository),
+                dispersionEngine,
+                new CalculationExecutor(grassNextConfig),
+                contourCache
+        );
+    }
+
+    /**
+     * All the hours of the day are calculated from the weather and the aggregated vehicle data read
+     * with a single query each, every hour with its own weather.
+     *
+     */
+    @Test
+    void readsWholeDayWithSingleQueries() throws Exception {
+        DayContours dayContours = gaussianPlumeService.calculateDayContours(measurement(), null, CancellationToken.NONE);
+
+        assertFalse(dayContours.isError());
+        assertEquals(Consts.TOPO_HOURS, dayContours.getHours().size());
+        for (int h = 0; h < Consts.TOPO_HOURS; h++) {
+            assertEquals(h + 1, dayContours.getHours().get(h).getHour());
+            assertFalse(dayContours.getHours().get(h).getContours().isError(), dayContours.getHours().get(h).getContours().getMsg());
+        }
+
+        verify(topoDetectorRepository, times(1)).findTopoDetectorById(DETECTOR_ID);
+        verify(weatherRepository, times(1)).findWeatherByMeasurementDateAndLongitudeAndLatitude(eq(DATE), anyDouble(), anyDouble());
+        verify(topoAggregatedDataRepository, times(1)).findTopoAggregatedDataDay(any(TopoDetector.class), eq(DATE));
+        verify(weatherRepository, never()).findWeatherByMeasurementDateAndMeasurementHourAndLongitudeAndLatitude(any(), anyInt(), anyDouble(), anyDouble());
+        verify(topoAggregatedDataRepository, never()).findTopoAggregatedDataList(any(), any(), anyInt());
+
+        ArgumentCaptor<String> jsonData = ArgumentCaptor.forClass(String.class);
+        verify(dispersionEngine, times(Consts.TOPO_HOURS)).calculate(jsonData.capture(), any(CancellationToken.class));
+        ObjectMapper jsonMapper = new ObjectMapper();
+        List<Integer> directions = new ArrayList<>();
+        for (String json : jsonData.getAllValues()) {
+            directions.add(jsonMapper.readValue(json, GaussianPlume.class).getWind().getDirection());
+        }
+        for (int hour = 1; hour <= Consts.TOPO_HOURS; hour++) {
+            assertTrue(directions.contains(hour * 10), "hour " + hour);
+        }
+    }
+
+    /**
+     * The hours are returned in the order of the request without duplicates, and the cached hours
+     * are not calculated again.
+     *
+     */
+    @Test
+    void returnsCachedHoursWithoutCalculation() {
+        Contours cached = new Contours(false, "cached", 0.1, new ArrayList<>());
+        when(contourCache.get(any(MeasurementData.class))).thenAnswer(invocation ->
+                ((MeasurementData) invocation.getArgument(0)).getTime() == 3 ? cached : null);
+
+        DayContours dayContours = gaussianPlumeService.calculateDayContours(measurement(), List.of(5, 3, 5), CancellationToken.NONE);
+
+        assertEquals(2, dayContours.getHours().size());
+        assertEquals(5, dayContours.getHours().get(0).getHour());
+        assertEquals("success", dayContours.getHours().get(0).getContours().getMsg());
+        assertEquals(3, dayContours.getHours().get(1).getHour());
+        assertEquals("cached", dayContours.getHours().get(1).getContours().getMsg());
+        verify(dispersionEngine, times(1)).calculate(anyString(), any(CancellationToken.class));
+        verify(weatherRepository, times(1)).findWeatherByMeasurementDateAndLongitudeAndLatitude(eq(DATE), anyDouble(), anyDouble());
+    }
+
+    /**
+     * An hour without the weather data is reported with its error, and the other hours are calculated.
+     *
+     */
+    @Test
+    void reportsHourWithoutWeather() {
+        List<Weather> weatherDay = new ArrayList<>(weatherRepository.findWeatherByMeasurementDateAndLongitudeAndLatitude(DATE, 0, 0));
+        weatherDay.removeIf(weather -> weather.getMeasurementHour() == 7);
+        when(weatherRepository.findWeatherByMeasurementDateAndLongitudeAndLatitude(eq(DATE), anyDouble(), anyDouble())).thenReturn(weatherDay);
+
+        DayContours dayContours = gaussianPlumeService.calculateDayContours(measurement(), List.of(6, 7, 8), CancellationToken.NONE);
+
+        assertFalse(dayContours.getHours().get(0).getContours().isError());
+        assertTrue(dayContours.getHours().get(1).getContours().isError());
+        assertEquals("No weather data found for chosen date!", dayContours.getHours().get(1).getContours().getMsg());
+        assertFalse(dayContours.getHours().get(2).getContours().isError());
+        verify(dispersionEngine, times(2)).calculate(anyString(), any(CancellationToken.class));
+    }
+
+    /**
+     * A request with an hour outside the day is refused without reading the data.
+     *
+     */
+    @Test
+    void refusesInvalidHours() {
+        DayContours dayContours = gaussianPlumeService.calculateDayContours(measurement(), List.of(1, 25), CancellationToken.NONE);
+
+        assertTrue(dayContours.isError());
+        assertEquals("Incorrect hour!", dayContours.getMsg());
+        verify(topoDetectorRepository, never()).findTopoDetectorById(anyInt());
+    }
+
+    /**
+     * The hours of a cancelled request are reported as cancelled without running the engine.
+     *
+     */
+    @Test
+    void reportsCancelledHours() {
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+        cancellation.cancel();
+
+        DayContours dayContours = gaussianPlumeService.calculateDayContours(measurement(), List.of(1, 2), cancellation);
+
+        assertFalse(dayContours.isError());
+        for (DayContours.HourContours hourContours : dayContours.getHours()) {
+            assertEquals("Calculation cancelled!", hourContours.getContours().getMsg());
+        }
+        verify(dispersionEngine, never()).calculate(anyString(), any(CancellationToken.class));
+    }
+
+    /**
+     * Creates the measurement data of the day requests.
+     *
+     * @return the measurement data of the first four vehicle groups of the detector
+     */
+    private static MeasurementData measurement() {
+        return new MeasurementData(new ArrayList<>(List.of(1, 2, 3, 4)), 4, 1, DETECTOR_ID, DATE, 1, 400, "point");
+    }
+}
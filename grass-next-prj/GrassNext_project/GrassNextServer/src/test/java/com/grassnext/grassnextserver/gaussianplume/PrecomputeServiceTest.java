@@ -0,0 +1,211 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.common.pollutiontype.PollutionType;
+import com.grassnext.grassnextserver.common.pollutiontype.PollutionTypeService;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.gaussianplume.engine.DispersionEngine;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the default enablement of {@link PrecomputeService} and of the pre-emption of its background calculations
+ * by the interactive calculations of the calculation executor.
+ *
+ */
+@Timeout(30)
+class PrecomputeServiceTest {
+    /**
+     * The maximum time in seconds a test waits for the background calculations.
+     *
+     */
+    private static final long TIMEOUT = 10;
+    /**
+     * The imported date of the precomputed contours.
+     *
+     */
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 1);
+
+    /**
+     * The mocked service calculating the contours.
+     *
+     */
+    private GaussianPlumeService gaussianPlumeService;
+    /**
+     * The mocked cache of the contours, enabled and empty.
+     *
+     */
+    private ContourCache contourCache;
+    /**
+     * The mocked service providing a single pollution type.
+     *
+     */
+    private PollutionTypeService pollutionTypeService;
+    /**
+     * The configuration of the tested service.
+     *
+     */
+    private GrassNextConfig grassNextConfig;
+    /**
+     * The executor of the calculations, whose interactive calculations pre-empt the background ones.
+     *
+     */
+    private CalculationExecutor calculationExecutor;
+    /**
+     * The thread running the precomputation.
+     *
+     */
+    private final ExecutorService caller = Executors.newSingleThreadExecutor();
+
+    /**
+     * Creates the mocked services and an executor with two execution slots.
+     *
+     */
+    @BeforeEach
+    void setUp() {
+        grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(2);
+        grassNextConfig.setCalculationDeadline(60);
+        grassNextConfig.setPrecomputeWeatherStability(4);
+        grassNextConfig.setPrecomputeArea(2000);
+        grassNextConfig.setPrecomputeVehicles(new int[]{1, 2, 3, 4, 5});
+        grassNextConfig.setPrecomputeMaxCpu(1.0);
+        grassNextConfig.setPrecomputeIdleCheck(10);
+
+        gaussianPlumeService = mock(GaussianPlumeService.class);
+        contourCache = mock(ContourCache.class);
+        when(contourCache.isEnabled()).thenReturn(true);
+        pollutionTypeService = mock(PollutionTypeService.class);
+        when(pollutionTypeService.getAllPollutionTypes()).thenReturn(List.of(new PollutionType(1L, "CO2", null)));
+        calculationExecutor = new CalculationExecutor(grassNextConfig);
+    }
+
+    /**
+     * Stops the precomputation left by a failed test.
+     *
+     */
+    @AfterEach
+    void tearDown() {
+        caller.shutdownNow();
+    }
+
+    /**
+     * Without the property the precomputation is enabled only with an engine able to cancel a running calculation,
+     * and the property overrides it either way.
+     *
+     * @param cancellable whether the engine is able to cancel a running calculation
+     * @param property the value of the {@code gn.precompute.enabled} property, or empty if it is not set
+     * @param expected whether the precomputation is expected to be enabled
+     */
+    @ParameterizedTest(name = "cancellable {0}, property {1}")
+    @CsvSource({"true, , true", "false, , false", "false, true, true", "true, false, false"})
+    void enabledByDefaultOnlyWithCancellableEngine(boolean cancellable, Boolean property, boolean expected) {
+        grassNextConfig.setPrecomputeEnabled(property);
+
+        assertEquals(expected, createService(cancellable).isEnabled());
+    }
+
+    /**
+     * An interactive calculation admitted by the executor cancels the running background calculation,
+     * which is repeated once the interactive calculation has finished, and every execution slot is released.
+     *
+     */
+    @Test
+    void interactiveCalculationPreemptsBackgroundCalculation() throws Exception {
+        List<MeasurementData> calculated = new CopyOnWriteArrayList<>();
+        List<CancellationToken> tokens = new CopyOnWriteArrayList<>();
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), eq(CalculationLaneEnum.BATCH), any(CancellationToken.class)))
+                .thenAnswer(invocation -> {
+                    MeasurementData measurementData = invocation.getArgument(0);
+                    CancellationToken cancellation = invocation.getArgument(2);
+                    boolean first = calculated.isEmpty();
+                    calculated.add(measurementData);
+                    tokens.add(cancellation);
+                    return calculationExecutor.execute(() -> {
+                        while (first) {
+                            cancellation.throwIfCancelled();
+                            sleep(5);
+                        }
+                        return new Contours(false, "success", 0.5, new ArrayList<>());
+                    }, 1, CalculationLaneEnum.BATCH, cancellation);
+                });
+        PrecomputeService precomputeService = createService(true);
+
+        Future<?> precompute = caller.submit(() -> precomputeService.precompute(1, DATE, DATE));
+        waitUntil(() -> calculationExecutor.getAdmitted(CalculationLaneEnum.BATCH) == 1);
+        assertFalse(tokens.get(0).isCancelled());
+
+        assertEquals(1, calculationExecutor.execute(() -> 1, 1, CalculationLaneEnum.INTERACTIVE, CancellationToken.NONE));
+        assertTrue(tokens.get(0).isCancelled());
+
+        precompute.get(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(PrecomputeService.HOURS + 1, calculated.size());
+        assertEquals(calculated.get(0), calculated.get(1));
+        assertFalse(tokens.get(1).isCancelled());
+        assertEquals(0, calculationExecutor.getAdmitted());
+    }
+
+    /**
+     * Creates the tested service.
+     *
+     * @param cancellable whether the engine is able to cancel a running calculation
+     * @return the tested service
+     */
+    private PrecomputeService createService(boolean cancellable) {
+        DispersionEngine dispersionEngine = mock(DispersionEngine.class);
+        when(dispersionEngine.isCancellable()).thenReturn(cancellable);
+        return new PrecomputeService(gaussianPlumeService, contourCache, calculationExecutor, pollutionTypeService, dispersionEngine, grassNextConfig);
+    }
+
+    /**
+     * Waits until the condition is met, failing the test after the timeout.
+     *
+     * @param condition the awaited condition
+     */
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            sleep(5);
+        }
+    }
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis the time in milliseconds
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
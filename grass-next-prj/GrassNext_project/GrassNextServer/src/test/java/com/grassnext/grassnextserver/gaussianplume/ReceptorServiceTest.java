@@ -0,0 +1,141 @@
+package com.grassnext.grassnextserver.gaussianplume;
+
+import com.grassnext.grassnextserver.common.Concentrations;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.common.ReceptorData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the admission of the receptor calculations of {@link ReceptorService} by the calculation executor.
+ *
+ */
+class ReceptorServiceTest {
+    /**
+     * The Gaussian Plume parameters of a 400 m area with a 150 m road under the wind from the north.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":0,"stability":4},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"point"}
+            """;
+
+    /**
+     * The executor of the calculations, spied on to check the lane and the cancellation token of the calculation.
+     *
+     */
+    private CalculationExecutor calculationExecutor;
+    /**
+     * The tested service.
+     *
+     */
+    private ReceptorService receptorService;
+
+    /**
+     * Creates the service with at most three receptor points.
+     *
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(1);
+        grassNextConfig.setCalculationDeadline(60);
+        grassNextConfig.setReceptorsMaxPoints(3);
+
+        GaussianParametersService gaussianParametersService = mock(GaussianParametersService.class);
+        when(gaussianParametersService.getGaussianPlume(any(MeasurementData.class))).thenReturn(PLUME);
+        calculationExecutor = spy(new CalculationExecutor(grassNextConfig));
+        receptorService = new ReceptorService(gaussianParametersService, calculationExecutor, grassNextConfig);
+    }
+
+    /**
+     * The receptor points are calculated in the interactive lane with the cancellation token of the request,
+     * downwind of the road only, and the execution slots are released afterwards.
+     *
+     */
+    @Test
+    void calculatesInInteractiveLane() {
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+
+        Concentrations concentrations = receptorService.calculateConcentrations(receptorData(3), cancellation);
+
+        assertFalse(concentrations.isError());
+        assertEquals(3, concentrations.getReceptors().size());
+        assertTrue(concentrations.getReceptors().get(0).getConcentration() > 0);
+        assertEquals(0.0, concentrations.getReceptors().get(1).getConcentration());
+        assertEquals(0.0, concentrations.getReceptors().get(2).getConcentration());
+        verify(calculationExecutor).execute(any(), anyLong(), eq(CalculationLaneEnum.INTERACTIVE), same(cancellation));
+        assertEquals(0, calculationExecutor.getAdmitted());
+    }
+
+    /**
+     * A calculation rejected by the executor is reported to the caller.
+     *
+     */
+    @Test
+    void reportsRejectedCalculation() {
+        doThrow(new RejectedExecutionException("Calculation queue is full"))
+                .when(calculationExecutor).execute(any(), anyLong(), any(), any());
+
+        assertThrows(RejectedExecutionException.class,
+                () -> receptorService.calculateConcentrations(receptorData(1), CancellationToken.NONE));
+    }
+
+    /**
+     * A request with more receptor points than the limit is refused without a calculation.
+     *
+     */
+    @Test
+    void refusesTooManyPoints() {
+        Concentrations concentrations = receptorService.calculateConcentrations(receptorData(4), CancellationToken.NONE);
+
+        assertTrue(concentrations.isError());
+        verify(calculationExecutor, never()).execute(any(), anyLong(), any(), any());
+    }
+
+    /**
+     * Creates the request of a receptor point placed 20 m south of the road start, downwind of the road,
+     * followed by the points placed 150 m north of it, upwind of the whole road.
+     *
+     * @param points the number of the receptor points
+     * @return the measurement data and the receptor points
+     */
+    private static ReceptorData receptorData(int points) {
+        double degreesPerMeter = 180 / Math.PI / 6_378_000.0;
+        List<Contours.GpsPoint> receptors = new ArrayList<>();
+        for (int r = 0; r < points; r++) {
+            double north = r == 0 ? -20 : 150;
+            receptors.add(new Contours.GpsPoint(50.3436049 + north * degreesPerMeter, 18.2101124));
+        }
+        return new ReceptorData(new MeasurementData(), receptors);
+    }
+}
@@ -0,0 +1,275 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the isolines extracted by {@link AdaptiveGrid} from the leaves of the quadtree, against the isolines
+ * of the {@link MarchingSquares} class on the dense matrix and on a synthetic concentration.
+ *
+ * The linear interpolation within a leaf larger than a cell moves the isoline by a part of a cell, always
+ * to the same side of a convex profile, so the isolines are compared by the area of their symmetric difference
+ * relative to the area they enclose.
+ *
+ */
+class AdaptiveGridTest {
+    /**
+     * The largest allowed area of the symmetric difference between an isoline of the adaptive grid and the isoline
+     * of the dense marching squares, relative to the area enclosed by the dense isoline.
+     *
+     */
+    private static final double XOR_TOLERANCE = 0.006;
+    /**
+     * The height (in meters) of the horizontal strips in which the areas of the isolines are compared.
+     *
+     */
+    private static final double STRIP = 0.1;
+    /**
+     * The Gaussian Plume parameters of a 1000 m area with a 150 m road, with the wind direction
+     * and the stability class to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":%d,"stability":%d},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":1000,"cellResolution":1.0,"divMatrixSide":8}
+            """;
+
+    /**
+     * The pool executing the calculations.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates the pool of the calculations.
+     *
+     */
+    @BeforeAll
+    static void createPool() {
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the pool of the calculations.
+     *
+     */
+    @AfterAll
+    static void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * The isolines of the adaptive grid enclose the same area as the isolines of the dense marching squares
+     * within the stated tolerance, for every threshold.
+     *
+     * @param direction the wind direction in degrees
+     * @param stability the atmospheric stability class [1-6]
+     */
+    @ParameterizedTest(name = "wind {0}, stability {1}")
+    @CsvSource({"90, 1", "160, 2", "333, 4", "200, 6"})
+    void matchesDenseMarchingSquares(int direction, int stability) throws Exception {
+        GaussianPlume gaussianPlume = new ObjectMapper().readValue(PLUME.formatted(direction, stability), GaussianPlume.class);
+
+        Contours dense = new PlumeModel(gaussianPlume, forkJoinPool, PlumeModel.Options.builder().culling(true).marchingSquares(true).build()).calculate();
+        Contours adaptive = new PlumeModel(gaussianPlume, forkJoinPool, PlumeModel.Options.builder().adaptiveGrid(true).build()).calculate();
+
+        assertEquals(dense.getContours().size(), adaptive.getContours().size());
+        for (int t = 0; t < dense.getContours().size(); t++) {
+            List<Contours.GpsPoint> expected = dense.getContours().get(t).getPoints();
+            List<Contours.GpsPoint> actual = adaptive.getContours().get(t).getPoints();
+            assertEquals(expected.isEmpty(), actual.isEmpty(), "empty contour of threshold " + t);
+            if (expected.isEmpty()) {
+                continue;
+            }
+
+            double[] area = compare(expected, actual);
+            assertTrue(area[1] <= XOR_TOLERANCE * area[0],
+                    "contour of threshold " + t + " differs by " + area[1] + " m2 of " + area[0] + " m2");
+        }
+    }
+
+    /**
+     * Every edge crossed by an isoline is crossed by the segments of exactly two leaves, also where the leaves
+     * have different sizes, so the isolines of a bump lying inside the area are single closed polylines.
+     *
+     */
+    @Test
+    void closesIsolinesAcrossLeavesOfDifferentSizes() {
+        double[] levels = {0.1, 0.3, 0.5, 0.7, 0.9};
+        AdaptiveGrid grid = new AdaptiveGrid(256, -128.0, 1.0, levels,
+                (x, y) -> Math.exp(-((x - 40) * (x - 40) + y * y) / (2 * 30.0 * 30.0)),
+                null, 1.0, 0.0, 4, 0.0, 10.0);
+
+        List<int[]> leaves = new ArrayList<>();
+        for (int r = 0; r < grid.getRootRows(); r++) {
+            int[] rowLeaves = grid.refine(r);
+            for (int l = 0; l < rowLeaves.length; l += 3) {
+                leaves.add(Arrays.copyOfRange(rowLeaves, l, l + 3));
+            }
+        }
+        Set<Integer> leafSizes = new HashSet<>();
+        List<AdaptiveGrid.Segments> segmentsList = new ArrayList<>();
+        for (int[] leaf : leaves) {
+            leafSizes.add(leaf[2]);
+            segmentsList.add(grid.scan(leaf));
+        }
+        assertTrue(leafSizes.size() > 2, "leaf sizes " + leafSizes);
+
+        int mixedEdges = 0;
+        for (int level = 0; level < levels.length; level++) {
+            Map<Long, List<Integer>> crossings = new HashMap<>();
+            for (int l = 0; l < leaves.size(); l++) {
+                AdaptiveGrid.Segments segments = segmentsList.get(l);
+                for (int k = 0; k < segments.counts[level]; k++) {
+                    crossings.computeIfAbsent(segments.keys[level][k], key -> new ArrayList<>()).add(leaves.get(l)[2]);
+                }
+            }
+
+            for (Map.Entry<Long, List<Integer>> crossing : crossings.entrySet()) {
+                List<Integer> sizes = crossing.getValue();
+                assertEquals(2, sizes.size(), "leaves crossing edge " + crossing.getKey() + " of level " + level);
+                mixedEdges += sizes.get(0).equals(sizes.get(1)) ? 0 : 1;
+            }
+
+            List<double[]> polylines = grid.trace(level, segmentsList);
+            assertEquals(1, polylines.size(), "isolines of level " + level);
+            assertEquals(2 * crossings.size(), polylines.get(0).length);
+        }
+        assertTrue(mixedEdges > 0, "no crossed edge between leaves of different sizes");
+    }
+
+    /**
+     * Compares two closed polygons in the horizontal strips of {@link #STRIP} meters.
+     *
+     * @param first the points of the first polygon
+     * @param second the points of the second polygon
+     * @return the area (in square meters) enclosed by the first polygon and the area of the symmetric difference
+     * of both polygons
+     */
+    private static double[] compare(List<Contours.GpsPoint> first, List<Contours.GpsPoint> second) {
+        double metersPerLat = Math.PI / 180 * PlumeModel.EARTH_RADIUS * 1000;
+        double metersPerLon = metersPerLat * Math.cos(Math.toRadians(first.get(0).getLat()));
+        double[] a = toMeters(first, metersPerLon, metersPerLat);
+        double[] b = toMeters(second, metersPerLon, metersPerLat);
+
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (double[] polygon : List.of(a, b)) {
+            for (int i = 1; i < polygon.length; i += 2) {
+                minY = Math.min(minY, polygon[i]);
+                maxY = Math.max(maxY, polygon[i]);
+            }
+        }
+
+        double area = 0.0;
+        double xor = 0.0;
+        for (double y = Math.floor(minY / STRIP) * STRIP + STRIP / 2; y < maxY; y += STRIP) {
+            double[] crossingsA = crossings(a, y);
+            double[] crossingsB = crossings(b, y);
+            for (int i = 0; i + 1 < crossingsA.length; i += 2) {
+                area += (crossingsA[i + 1] - crossingsA[i]) * STRIP;
+            }
+            xor += symmetricDifference(crossingsA, crossingsB) * STRIP;
+        }
+        return new double[]{area, xor};
+    }
+
+    /**
+     * Converts the GPS points of a polygon into meters.
+     *
+     * @param points the GPS points
+     * @param metersPerLon the length of a degree of longitude in meters
+     * @param metersPerLat the length of a degree of latitude in meters
+     * @return the consecutive x and y coordinates of the points
+     */
+    private static double[] toMeters(List<Contours.GpsPoint> points, double metersPerLon, double metersPerLat) {
+        double[] polygon = new double[2 * points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            polygon[2 * i] = points.get(i).getLon() * metersPerLon;
+            polygon[2 * i + 1] = points.get(i).getLat() * metersPerLat;
+        }
+        return polygon;
+    }
+
+    /**
+     * Finds the x coordinates at which the edges of the polygon cross the horizontal line.
+     *
+     * @param polygon the consecutive x and y coordinates of the points of the polygon
+     * @param y the y coordinate of the line
+     * @return the x coordinates of the crossings in ascending order
+     */
+    private static double[] crossings(double[] polygon, double y) {
+        int n = polygon.length / 2;
+        double[] xs = new double[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            double y1 = polygon[2 * i + 1];
+            double y2 = polygon[2 * j + 1];
+            if ((y1 <= y) != (y2 <= y)) {
+                double x1 = polygon[2 * i];
+                double x2 = polygon[2 * j];
+                xs[count++] = x1 + (y - y1) / (y2 - y1) * (x2 - x1);
+            }
+        }
+        double[] result = Arrays.copyOf(xs, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Calculates the length of the parts of the line lying inside exactly one of the polygons.
+     *
+     * @param first the x coordinates of the crossings of the first polygon in ascending order
+     * @param second the x coordinates of the crossings of the second polygon in ascending order
+     * @return the length of the symmetric difference
+     */
+    private static double symmetricDifference(double[] first, double[] second) {
+        double length = 0.0;
+        int i = 0;
+        int j = 0;
+        boolean insideFirst = false;
+        boolean insideSecond = false;
+        double previous = 0.0;
+        while (i < first.length || j < second.length) {
+            double x;
+            if (j >= second.length || (i < first.length && first[i] <= second[j])) {
+                x = first[i++];
+                if (insideFirst != insideSecond) {
+                    length += x - previous;
+                }
+                insideFirst = !insideFirst;
+            } else {
+                x = second[j++];
+                if (insideFirst != insideSecond) {
+                    length += x - previous;
+                }
+                insideSecond = !insideSecond;
+            }
+            previous = x;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,363 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.concurrent.SingleFlight;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the admission, the lanes and the execution slots of {@link CalculationExecutor}.
+ *
+ */
+@Timeout(30)
+class CalculationExecutorTest {
+    /**
+     * The maximum time in seconds a test waits for the other calculations.
+     *
+     */
+    private static final long TIMEOUT = 10;
+    /**
+     * The cost of a calculation taking a single slot with the default slot cost.
+     *
+     */
+    private static final long SMALL_COST = CalculationExecutor.COST_UNIT;
+
+    /**
+     * The threads of the concurrent calculations.
+     *
+     */
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    /**
+     * The latches releasing the blocked calculations, released after every test.
+     *
+     */
+    private final List<CountDownLatch> blockers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Releases the blocked calculations and stops the threads of the calculations left by a failed test.
+     *
+     */
+    @AfterEach
+    void shutdown() {
+        blockers.forEach(CountDownLatch::countDown);
+        callers.shutdownNow();
+    }
+
+    /**
+     * A calculation needs a slot per started unit of the slot cost, and never more than the bulk slots.
+     *
+     */
+    @Test
+    void slotsFollowCost() {
+        CalculationExecutor executor = createExecutor(4, 2, 16);
+
+        assertEquals(1, executor.slotsFor(1));
+        assertEquals(1, executor.slotsFor(20 * CalculationExecutor.COST_UNIT));
+        assertEquals(2, executor.slotsFor(20 * CalculationExecutor.COST_UNIT + 1));
+        assertEquals(2, executor.slotsFor(1000 * CalculationExecutor.COST_UNIT));
+    }
+
+    /**
+     * A waiting interactive calculation starts before a batch calculation which has been waiting longer.
+     *
+     */
+    @Test
+    void interactiveLaneServedBeforeBatchLane() throws Exception {
+        CalculationExecutor executor = createExecutor(1, 1, 16);
+        CountDownLatch blocker = block(executor, CalculationLaneEnum.INTERACTIVE);
+        List<CalculationLaneEnum> order = new CopyOnWriteArrayList<>();
+
+        Future<?> batch = submit(executor, CalculationLaneEnum.BATCH, () -> order.add(CalculationLaneEnum.BATCH));
+        waitUntil(() -> executor.getQueued(CalculationLaneEnum.BATCH) == 1);
+        Future<?> interactive = submit(executor, CalculationLaneEnum.INTERACTIVE, () -> order.add(CalculationLaneEnum.INTERACTIVE));
+        waitUntil(() -> executor.getQueued(CalculationLaneEnum.INTERACTIVE) == 1);
+        assertEquals(1, executor.getAdmitted(CalculationLaneEnum.BATCH));
+        assertEquals(2, executor.getAdmitted(CalculationLaneEnum.INTERACTIVE));
+
+        blocker.countDown();
+        interactive.get(TIMEOUT, TimeUnit.SECONDS);
+        batch.get(TIMEOUT, TimeUnit.SECONDS);
+
+        assertEquals(List.of(CalculationLaneEnum.INTERACTIVE, CalculationLaneEnum.BATCH), order);
+        assertEquals(0, executor.getAdmitted());
+    }
+
+    /**
+     * The bulk calculations hold at most the bulk slots, so a batch calculation waits while a slot is free
+     * and a small interactive calculation starts at once in that slot.
+     *
+     */
+    @Test
+    void bulkCalculationsLimitedToBulkSlots() throws Exception {
+        CalculationExecutor executor = createExecutor(2, 1, 16);
+        CountDownLatch blocker = block(executor, CalculationLaneEnum.BATCH);
+
+        Future<?> batch = submit(executor, CalculationLaneEnum.BATCH, () -> { });
+        waitUntil(() -> executor.getQueued(CalculationLaneEnum.BATCH) == 1);
+
+        assertEquals(1, executor.execute(() -> 1, SMALL_COST, CalculationLaneEnum.INTERACTIVE, CancellationToken.NONE));
+        assertFalse(batch.isDone());
+
+        blocker.countDown();
+        batch.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A calculation which cannot start at once is rejected when the queue of its lane is full.
+     *
+     */
+    @Test
+    void rejectsWhenQueueFull() throws Exception {
+        CalculationExecutor executor = createExecutor(1, 1, 1);
+        CountDownLatch blocker = block(executor, CalculationLaneEnum.INTERACTIVE);
+        Future<?> queued = submit(executor, CalculationLaneEnum.INTERACTIVE, () -> { });
+        waitUntil(() -> executor.getQueued(CalculationLaneEnum.INTERACTIVE) == 1);
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class,
+                () -> executor.execute(() -> 1, SMALL_COST, CalculationLaneEnum.INTERACTIVE, CancellationToken.NONE));
+        assertEquals("Calculation queue is full", e.getMessage());
+        assertFalse(e instanceof CalculationExecutor.DeadlineRejectedException);
+        assertEquals(1, executor.getQueued(CalculationLaneEnum.INTERACTIVE));
+        assertEquals(7, executor.getRetryAfter());
+
+        blocker.countDown();
+        queued.get(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(0, executor.getAdmitted());
+    }
+
+    /**
+     * A waiting calculation whose token is cancelled leaves the queue without being executed.
+     *
+     */
+    @Test
+    void cancelledCalculationLeavesQueue() throws Exception {
+        CalculationExecutor executor = createExecutor(1, 1, 16);
+        CountDownLatch blocker = block(executor, CalculationLaneEnum.INTERACTIVE);
+        CancellationToken cancellation = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+        AtomicInteger executed = new AtomicInteger();
+
+        Future<Integer> waiting = callers.submit(() -> executor.execute(executed::incrementAndGet, SMALL_COST, CalculationLaneEnum.INTERACTIVE, cancellation));
+        waitUntil(() -> executor.getQueued(CalculationLaneEnum.INTERACTIVE) == 1);
+        cancellation.cancel();
+
+        assertInstanceOf(CancellationException.class, assertThrows(ExecutionException.class, () -> waiting.get(TIMEOUT, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, executor.getQueued(CalculationLaneEnum.INTERACTIVE));
+        assertEquals(1, executor.getAdmitted());
+
+        blocker.countDown();
+        waitUntil(() -> executor.getAdmitted() == 0);
+        assertEquals(0, executed.get());
+    }
+
+    /**
+     * A calculation whose deadline is shorter than its estimated completion time is rejected at once,
+     * while the same calculation with a longer deadline waits for its slot.
+     *
+     */
+    @Test
+    void rejectsCalculationNotCompletingBeforeDeadline() throws Exception {
+        CalculationExecutor executor = createMeasuredExecutor();
+        CountDownLatch blocker = block(executor, CalculationLaneEnum.INTERACTIVE);
+
+        RejectedExecutionException e = assertThrows(CalculationExecutor.DeadlineRejectedException.class, () -> executor.execute(
+                () -> 1, 10 * SMALL_COST, CalculationLaneEnum.INTERACTIVE, CancellationToken.withTimeout(20, TimeUnit.MILLISECONDS)));
+        assertEquals("Calculation not expected to complete before its deadline", e.getMessage());
+        assertEquals(0, executor.getQueued(CalculationLaneEnum.INTERACTIVE));
+
+        Future<Integer> admitted = callers.submit(() -> executor.execute(
+                () -> 1, 10 * SMALL_COST, CalculationLaneEnum.INTERACTIVE, CancellationToken.withTimeout(TIMEOUT, TimeUnit.SECONDS)));
+        waitUntil(() -> executor.getQueued(CalculationLaneEnum.INTERACTIVE) == 1);
+        blocker.countDown();
+        assertEquals(1, admitted.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * The deadline of the caller also rejects the calculation coalesced by {@link SingleFlight},
+     * which is executed with the token shared by its callers.
+     *
+     */
+    @Test
+    void rejectsCoalescedCalculationNotCompletingBeforeDeadline() throws Exception {
+        CalculationExecutor executor = createMeasuredExecutor();
+        CountDownLatch blocker = block(executor, CalculationLaneEnum.INTERACTIVE);
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class, () -> singleFlight.execute(
+                "key",
+                CancellationToken.withTimeout(20, TimeUnit.MILLISECONDS),
+                shared -> executor.execute(() -> 1, 10 * SMALL_COST, CalculationLaneEnum.INTERACTIVE, shared)
+        ));
+        assertEquals("Calculation not expected to complete before its deadline", e.getMessage());
+
+        blocker.countDown();
+    }
+
+    /**
+     * The interactive listeners are called before an interactive calculation is admitted, and not for batch calculations.
+     *
+     */
+    @Test
+    void notifiesInteractiveListeners() {
+        CalculationExecutor executor = createExecutor(2, 1, 16);
+        AtomicInteger notifications = new AtomicInteger();
+        executor.addInteractiveListener(notifications::incrementAndGet);
+
+        executor.execute(() -> 1, SMALL_COST, CalculationLaneEnum.BATCH, CancellationToken.NONE);
+        assertEquals(0, notifications.get());
+        executor.execute(() -> 1, SMALL_COST, CalculationLaneEnum.INTERACTIVE, CancellationToken.NONE);
+        assertEquals(1, notifications.get());
+    }
+
+    /**
+     * The deadline of a batch grows with the rounds of calculations on the bulk slots, and a shorter timeout
+     * of the client still applies to the whole batch.
+     *
+     */
+    @Test
+    void batchDeadlineScalesWithRounds() {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(6);
+        grassNextConfig.setCalculationBulkSlots(4);
+        grassNextConfig.setCalculationDeadline(60);
+        CalculationExecutor executor = new CalculationExecutor(grassNextConfig);
+
+        assertRemaining(60, executor.createCancellation(null));
+        assertRemaining(60, executor.createCancellation(null, 4));
+        assertRemaining(120, executor.createCancellation(null, 5));
+        assertRemaining(360, executor.createCancellation(null, 24));
+        assertRemaining(90, executor.createCancellation(90L, 24));
+    }
+
+    /**
+     * Creates an executor with the default slot cost.
+     *
+     * @param maxInFlight the number of execution slots
+     * @param bulkSlots the number of slots available to the bulk calculations
+     * @param queueSize the size of the queue of each lane
+     * @return the executor
+     */
+    private static CalculationExecutor createExecutor(int maxInFlight, int bulkSlots, int queueSize) {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(maxInFlight);
+        grassNextConfig.setCalculationBulkSlots(bulkSlots);
+        grassNextConfig.setCalculationQueueSize(queueSize);
+        grassNextConfig.setCalculationBatchQueueSize(queueSize);
+        grassNextConfig.setCalculationSlotCost(20);
+        grassNextConfig.setCalculationRetryAfter(7);
+        grassNextConfig.setCalculationDeadline(0);
+        return new CalculationExecutor(grassNextConfig);
+    }
+
+    /**
+     * Creates an executor with a single slot which has measured a calculation of 10 units of cost taking 100 ms.
+     *
+     * @return the executor
+     */
+    private static CalculationExecutor createMeasuredExecutor() {
+        CalculationExecutor executor = createExecutor(1, 1, 16);
+        executor.execute(() -> {
+            sleep(100);
+            return 1;
+        }, 10 * SMALL_COST, CalculationLaneEnum.INTERACTIVE, CancellationToken.NONE);
+        return executor;
+    }
+
+    /**
+     * Starts a small calculation holding its slot until the returned latch is released.
+     *
+     * @param executor the executor of the calculation
+     * @param lane the lane of the calculation
+     * @return the latch releasing the calculation
+     */
+    private CountDownLatch block(CalculationExecutor executor, CalculationLaneEnum lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockers.add(release);
+        callers.submit(() -> executor.execute(() -> {
+            started.countDown();
+            try {
+                return release.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }, SMALL_COST, lane, CancellationToken.NONE));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        return release;
+    }
+
+    /**
+     * Submits a small calculation in another thread.
+     *
+     * @param executor the executor of the calculation
+     * @param lane the lane of the calculation
+     * @param calculation the calculation
+     * @return the future of the calculation
+     */
+    private Future<?> submit(CalculationExecutor executor, CalculationLaneEnum lane, Runnable calculation) {
+        return callers.submit(() -> executor.execute(() -> {
+            calculation.run();
+            return null;
+        }, SMALL_COST, lane, CancellationToken.NONE));
+    }
+
+    /**
+     * Waits until the condition holds, failing the test if it does not hold in time.
+     *
+     * @param condition the awaited condition
+     */
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            sleep(5);
+        }
+    }
+
+    /**
+     * Checks that the deadline of the token expires in the given time, allowing a second for the test itself.
+     *
+     * @param seconds the expected time to the deadline in seconds
+     * @param cancellation the cancellation token
+     */
+    private static void assertRemaining(long seconds, CancellationToken cancellation) {
+        long remaining = cancellation.getRemaining(TimeUnit.MILLISECONDS);
+        assertTrue(remaining > (seconds - 1) * 1000 && remaining <= seconds * 1000, "remaining " + remaining + " ms");
+    }
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis the time in milliseconds
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the Suzuki-Abe port of {@link ContourTracer} against {@code cv::findContours} of OpenCV 4.7
+ * called with {@code RETR_EXTERNAL} and {@code CHAIN_APPROX_SIMPLE}. The images and the OpenCV contours
+ * are read from the {@code contour-tracer-cases.json} resource, in which {@code #} marks the set pixels.
+ *
+ */
+class ContourTracerTest {
+    /**
+     * The resource holding the test images and the contours found in them by OpenCV.
+     *
+     */
+    private static final String CASES = "/gaussianplume/engine/contour-tracer-cases.json";
+
+    /**
+     * Reads the test images and their OpenCV contours.
+     *
+     * @return the name, the rows and the expected contours of every test image
+     * @throws IOException if the resource cannot be read
+     */
+    static Stream<Arguments> openCvCases() throws IOException {
+        try (InputStream input = ContourTracerTest.class.getResourceAsStream(CASES)) {
+            List<Arguments> cases = new ArrayList<>();
+            for (JsonNode node : new ObjectMapper().readTree(input)) {
+                List<String> rows = new ArrayList<>();
+                node.get("image").forEach(row -> rows.add(row.asText()));
+                List<int[]> contours = new ArrayList<>();
+                for (JsonNode contour : node.get("contours")) {
+                    int[] points = new int[contour.size()];
+                    for (int i = 0; i < points.length; i++) {
+                        points[i] = contour.get(i).asInt();
+                    }
+                    contours.add(points);
+                }
+                cases.add(Arguments.of(node.get("name").asText(), rows, contours));
+            }
+            return cases.stream();
+        }
+    }
+
+    /**
+     * The contours, their order and their points match the OpenCV output, including the objects touching
+     * the image border, the objects with holes, the nested rings, the single pixels and the pixels
+     * connected only by their corners.
+     *
+     * @param name the description of the image
+     * @param rows the rows of the image
+     * @param expected the contours found by OpenCV, each one as consecutive x and y coordinates
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("openCvCases")
+    void matchesOpenCv(String name, List<String> rows, List<int[]> expected) {
+        List<int[]> actual = findContours(rows);
+
+        assertEquals(expected.size(), actual.size(), "number of contours");
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "contour " + i);
+        }
+    }
+
+    /**
+     * Only the external border of an object is returned, without the border of its hole
+     * and without the objects lying inside the hole.
+     *
+     */
+    @Test
+    void skipsHolesAndObjectsInside() {
+        List<int[]> contours = findContours(List.of(
+                "#####",
+                "#...#",
+                "#.#.#",
+                "#...#",
+                "#####"
+        ));
+
+        assertEquals(1, contours.size());
+        assertArrayEquals(new int[]{0, 0, 0, 4, 4, 4, 4, 0}, contours.get(0));
+    }
+
+    /**
+     * Finds the contours of an image given by its rows, padding it with the frame of zeros.
+     *
+     * @param rows the rows of the image, with {@code #} marking the set pixels
+     * @return the contours of the image
+     */
+    private static List<int[]> findContours(List<String> rows) {
+        int width = rows.get(0).length() + 2;
+        int height = rows.size() + 2;
+        byte[] image = new byte[width * height];
+        for (int y = 0; y < rows.size(); y++) {
+            for (int x = 0; x < rows.get(y).length(); x++) {
+                image[(y + 1) * width + x + 1] = (byte) (rows.get(y).charAt(x) == '#' ? 1 : 0);
+            }
+        }
+
+        return ContourTracer.findExternalContours(image, width, height);
+    }
+}
@@ -0,0 +1,71 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the kernel created by {@link EmitterKernel#create} against {@link ScalarEmitterKernel}. In the default build
+ * the created kernel is the scalar one; with the {@code vector} profile it is the vectorized kernel, whose rows
+ * must match the scalar kernel up to the rounding errors.
+ *
+ */
+class EmitterKernelTest {
+    /**
+     * The largest allowed relative difference between the created and the scalar kernel.
+     *
+     */
+    private static final double TOLERANCE = 1e-12;
+
+    /**
+     * The created kernel sums the same concentrations as the scalar kernel for every stability class,
+     * including the cells not filling a whole group of vector lanes and the cells upwind of the emitters.
+     *
+     */
+    @Test
+    void createdKernelMatchesScalarKernel() {
+        Random random = new Random(11);
+        double[] emittersX = new double[15];
+        double[] emittersY = new double[15];
+        for (int e = 0; e < emittersX.length; e++) {
+            emittersX[e] = e * 10.0 - 70.0;
+            emittersY[e] = e * 3.5 - 25.0;
+        }
+        int length = 203;
+        double[] x = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = i * 2.0 - 200.0;
+        }
+
+        for (int stability = 1; stability <= 6; stability++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            EmitterKernel created = EmitterKernel.create(Math.sin(angle), Math.cos(angle), 2.5, stability, 0.3, 2.0);
+            ScalarEmitterKernel scalar = new ScalarEmitterKernel(Math.sin(angle), Math.cos(angle), 2.5, stability, 0.3, 2.0);
+            assertNotNull(created);
+            assertEquals(Math.max(EmitterKernel.vectorLanes(), 1), created.getLanes());
+
+            for (double y = -150.0; y <= 150.0; y += 37.5) {
+                double[] expected = new double[length];
+                double[] actual = new double[length];
+                scalar.sumRow(y, x, length, emittersX, emittersY, 0.01, expected);
+                created.sumRow(y, x, length, emittersX, emittersY, 0.01, actual);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(expected[i], actual[i], expected[i] * TOLERANCE, "stability " + stability + " at " + x[i] + ", " + y);
+                }
+            }
+        }
+    }
+
+    /**
+     * No kernel is created for an unsupported stability class.
+     *
+     */
+    @Test
+    void rejectsUnsupportedStability() {
+        assertNull(EmitterKernel.create(0.0, 1.0, 2.5, 7, 0.3, 2.0));
+    }
+}
@@ -0,0 +1,198 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the analytic {@link FiniteLineSource} against the road split into densely spaced point emitters
+ * of {@link PlumeModel}, for several wind directions relative to the road and stability classes.
+ *
+ * The emitters are spaced {@link #DENSE_SPACING} apart, so their sum approximates the integral along the road
+ * much closer than the tolerance. The concentrations are compared at the receptors where the dense emitters
+ * give at least {@link #RELEVANT_FRACTION} of the highest concentration; the relative difference there
+ * must not exceed {@link #TOLERANCE}. Farther than {@link PlumeModel#NEAR_FIELD_DISTANCE} from the road
+ * the receptors down to {@link #FAR_RELEVANT_FRACTION} of the highest concentration are compared
+ * with the tighter {@link #FAR_TOLERANCE}.
+ *
+ */
+class FiniteLineSourceTest {
+    /**
+     * The distance in meters between the dense point emitters.
+     *
+     */
+    private static final double DENSE_SPACING = 0.1;
+    /**
+     * The lowest concentration, relative to the highest one, at which the receptors are compared.
+     *
+     */
+    private static final double RELEVANT_FRACTION = 0.01;
+    /**
+     * The largest allowed relative difference between the line source and the dense point emitters.
+     *
+     */
+    private static final double TOLERANCE = 0.06;
+    /**
+     * The lowest concentration, relative to the highest one, at which the receptors farther from the road
+     * than {@link PlumeModel#NEAR_FIELD_DISTANCE} are compared.
+     *
+     */
+    private static final double FAR_RELEVANT_FRACTION = 0.001;
+    /**
+     * The largest allowed relative difference at the receptors farther from the road
+     * than {@link PlumeModel#NEAR_FIELD_DISTANCE}.
+     *
+     */
+    private static final double FAR_TOLERANCE = 0.025;
+    /**
+     * The distance in meters between the receptors of the compared grid.
+     *
+     */
+    private static final double RECEPTOR_SPACING = 7.0;
+    /**
+     * The number of the receptors along each side of the compared grid.
+     *
+     */
+    private static final int GRID_SIZE = 60;
+    /**
+     * The coordinate of the first receptor along each axis, relative to the road start.
+     *
+     */
+    private static final double GRID_START = -200.0;
+    /**
+     * The Gaussian Plume parameters of the line source, with the wind direction and the stability class
+     * to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":true,"count":251,"avgVelocity":36.9},{"chosen":true,"count":38,"avgVelocity":32.4}],
+             "wind":{"speed":2.5,"direction":%d,"stability":%d},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"line"}
+            """;
+
+    /**
+     * The fork-join pool passed to the models.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates the fork-join pool.
+     *
+     */
+    @BeforeAll
+    static void createPool() {
+        forkJoinPool = new ForkJoinPool(1);
+    }
+
+    /**
+     * Stops the fork-join pool.
+     *
+     */
+    @AfterAll
+    static void shutdownPool() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * The line source matches the dense point emitters within the tolerance. The road runs about 70 degrees
+     * from the north, so the wind directions cover the wind across the road, at an angle to it and nearly along it.
+     *
+     * @param direction the wind direction in degrees
+     * @param stability the atmospheric stability class [1-6]
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "160, 1", "160, 4", "160, 6",
+            "115, 2", "115, 4", "115, 5",
+            "200, 3", "200, 4", "200, 6",
+            "245, 4", "250, 4",
+            "80, 4", "30, 4"
+    })
+    void matchesDensePointEmitters(int direction, int stability) throws Exception {
+        GaussianPlume gaussianPlume = new ObjectMapper().readValue(PLUME.formatted(direction, stability), GaussianPlume.class);
+        PlumeModel model = new PlumeModel(gaussianPlume, forkJoinPool, PlumeModel.Options.builder().build(), CancellationToken.NONE);
+        model.prepareEmitters();
+        model.prepareLineSource(0.0);
+        FiniteLineSource lineSource = model.finiteLineSource;
+
+        densifyEmitters(model, lineSource);
+
+        double[][] line = new double[GRID_SIZE][GRID_SIZE];
+        double[][] dense = new double[GRID_SIZE][GRID_SIZE];
+        double max = 0;
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                double x = GRID_START + j * RECEPTOR_SPACING;
+                double y = GRID_START + i * RECEPTOR_SPACING;
+                line[i][j] = lineSource.concentration(x, y);
+                dense[i][j] = model.sumEmitters(x, y);
+                max = Math.max(max, dense[i][j]);
+            }
+        }
+
+        assertTrue(max > 0, "no concentration");
+        double endX = model.emittersX[model.emittersX.length - 1];
+        double endY = model.emittersY[model.emittersY.length - 1];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                double x = GRID_START + j * RECEPTOR_SPACING;
+                double y = GRID_START + i * RECEPTOR_SPACING;
+                double difference = Math.abs(line[i][j] - dense[i][j]) / dense[i][j];
+                if (dense[i][j] >= RELEVANT_FRACTION * max) {
+                    assertTrue(difference <= TOLERANCE, "relative difference " + difference + " at " + x + ", " + y);
+                }
+                if (dense[i][j] >= FAR_RELEVANT_FRACTION * max && distanceToRoad(x, y, endX, endY) > PlumeModel.NEAR_FIELD_DISTANCE) {
+                    assertTrue(difference <= FAR_TOLERANCE, "relative difference " + difference + " at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the distance of the receptor from the road starting at the origin.
+     *
+     * @param x the x coordinate of the receptor
+     * @param y the y coordinate of the receptor
+     * @param endX the x coordinate of the road end
+     * @param endY the y coordinate of the road end
+     * @return the distance in meters
+     */
+    private static double distanceToRoad(double x, double y, double endX, double endY) {
+        double t = Math.max(0, Math.min(1, (x * endX + y * endY) / (endX * endX + endY * endY)));
+        return Math.hypot(x - t * endX, y - t * endY);
+    }
+
+    /**
+     * Replaces the emitters of the model with emitters spaced {@link #DENSE_SPACING} apart along the whole line
+     * source, each one emitting the emission of its piece of the road.
+     *
+     * @param model the model with the prepared line source
+     * @param lineSource the line source
+     */
+    private static void densifyEmitters(PlumeModel model, FiniteLineSource lineSource) {
+        int last = model.emittersX.length - 1;
+        double endX = model.emittersX[last] + model.emittersX[0];
+        double endY = model.emittersY[last] + model.emittersY[0];
+        int count = (int) Math.round(lineSource.length / DENSE_SPACING);
+
+        model.emittersX = new double[count];
+        model.emittersY = new double[count];
+        for (int e = 0; e < count; e++) {
+            double t = (e + 0.5) / count;
+            model.emittersX[e] = t * endX;
+            model.emittersY[e] = t * endY;
+        }
+        model.emissionPerEmitter = lineSource.emissionPerMeter * lineSource.length / count;
+    }
+}
@@ -0,0 +1,290 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the size classes, the memory limit and the cancellable waiting of {@link GridArena}.
+ *
+ */
+@Timeout(30)
+class GridArenaTest {
+    /**
+     * The maximum time in seconds a test waits for the other calculations.
+     *
+     */
+    private static final long TIMEOUT = 10;
+    /**
+     * The size of a matrix filling most of the 1 MB memory limit, so a second one has to wait.
+     *
+     */
+    private static final int LARGE_SIZE = 300;
+    /**
+     * The Gaussian Plume parameters of a small calculation with a road crossing the wind.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":135,"stability":4},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8}
+            """;
+
+    /**
+     * The threads of the concurrent calculations.
+     *
+     */
+    private final ExecutorService calculations = Executors.newCachedThreadPool();
+
+    /**
+     * Stops the threads of the calculations left by a failed test.
+     *
+     */
+    @AfterEach
+    void shutdown() {
+        calculations.shutdownNow();
+    }
+
+    /**
+     * Matrices of similar sizes share a size class, so a returned matrix is reused by a slightly different size,
+     * with its requested part zero-filled again.
+     *
+     */
+    @Test
+    void reusesMatrixOfSameSizeClass() {
+        GridArena gridArena = createArena(16);
+        double[][] first = gridArena.borrowMatrix(1000, 1000, CancellationToken.NONE);
+        assertEquals(1024, first.length);
+        assertEquals(1024, first[0].length);
+        for (double[] row : first) {
+            Arrays.fill(row, 1.0);
+        }
+        gridArena.releaseMatrix(first);
+
+        double[][] second = gridArena.borrowMatrix(970, 1010, CancellationToken.NONE);
+
+        assertSame(first, second);
+        for (int row = 0; row < 970; row++) {
+            for (int col = 0; col < 1010; col++) {
+                assertEquals(0.0, second[row][col]);
+            }
+        }
+        assertEquals(1024L * 1024 * Double.BYTES, gridArena.getStatistics().getBytesInUse());
+    }
+
+    /**
+     * A matrix of a different size class is allocated anew.
+     *
+     */
+    @Test
+    void allocatesMatrixOfOtherSizeClass() {
+        GridArena gridArena = createArena(16);
+        double[][] first = gridArena.borrowMatrix(500, 500, CancellationToken.NONE);
+        gridArena.releaseMatrix(first);
+
+        double[][] second = gridArena.borrowMatrix(700, 500, CancellationToken.NONE);
+
+        assertNotSame(first, second);
+        assertEquals(704, second.length);
+        assertEquals(512, second[0].length);
+    }
+
+    /**
+     * A reused binary image of a different width has its new frame zero-filled.
+     *
+     */
+    @Test
+    void clearsFrameOfReusedImage() {
+        GridArena gridArena = createArena(16);
+        byte[] first = gridArena.borrowImage(102, 102);
+        Arrays.fill(first, (byte) 1);
+        gridArena.releaseImage(first);
+
+        byte[] second = gridArena.borrowImage(100, 100);
+
+        assertSame(first, second);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, second[i]);
+            assertEquals(0, second[99 * 100 + i]);
+            assertEquals(0, second[i * 100]);
+            assertEquals(0, second[i * 100 + 99]);
+        }
+    }
+
+    /**
+     * A calculation waiting for the memory limit borrows its matrix as soon as another one returns a matrix.
+     *
+     */
+    @Test
+    void waitsUntilMatrixReleased() throws Exception {
+        GridArena gridArena = createArena(1);
+        double[][] held = gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE);
+
+        Future<double[][]> waiting = calculations.submit(() -> gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE));
+        waitUntil(() -> gridArena.getStatistics().getWaits() == 1);
+        assertFalse(waiting.isDone());
+
+        gridArena.releaseMatrix(held);
+
+        assertSame(held, waiting.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A calculation waiting for the memory limit stops when the deadline of its token expires.
+     *
+     */
+    @Test
+    void deadlineStopsWaiting() throws Exception {
+        GridArena gridArena = createArena(1);
+        gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE);
+        CancellationToken token = CancellationToken.withTimeout(200, TimeUnit.MILLISECONDS);
+
+        Future<double[][]> waiting = calculations.submit(() -> gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, token));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> waiting.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, exception.getCause());
+        assertEquals("Calculation deadline exceeded", exception.getCause().getMessage());
+        assertEquals(1, gridArena.getStatistics().getBuffersInUse());
+    }
+
+    /**
+     * A calculation waiting for the memory limit stops when its token is cancelled, without any matrix being returned.
+     *
+     */
+    @Test
+    void cancellationStopsWaiting() throws Exception {
+        GridArena gridArena = createArena(1);
+        gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE);
+        CancellationToken token = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+
+        Future<double[][]> waiting = calculations.submit(() -> gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, token));
+        waitUntil(() -> gridArena.getStatistics().getWaits() == 1);
+        token.cancel();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> waiting.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, exception.getCause());
+        assertEquals("Calculation cancelled", exception.getCause().getMessage());
+    }
+
+    /**
+     * The kernel matrix of a calculation holding its output matrix is borrowed without waiting, even above the limit.
+     *
+     */
+    @Test
+    void additionalMatrixDoesNotWait() {
+        GridArena gridArena = createArena(1);
+        gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE);
+
+        double[][] kernel = gridArena.borrowAdditionalMatrix(LARGE_SIZE, 2 * LARGE_SIZE);
+
+        assertEquals(320, kernel.length);
+        assertEquals(640, kernel[0].length);
+        assertEquals(2, gridArena.getStatistics().getBuffersInUse());
+        assertEquals(0, gridArena.getStatistics().getWaits());
+    }
+
+    /**
+     * A detached matrix no longer counts against the memory limit and is not reused, so a waiting calculation
+     * receives a new matrix.
+     *
+     */
+    @Test
+    void detachedMatrixLeavesPool() throws Exception {
+        GridArena gridArena = createArena(1);
+        double[][] cached = gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE);
+
+        Future<double[][]> waiting = calculations.submit(() -> gridArena.borrowMatrix(LARGE_SIZE, LARGE_SIZE, CancellationToken.NONE));
+        waitUntil(() -> gridArena.getStatistics().getWaits() == 1);
+        gridArena.detachMatrix(cached);
+
+        assertNotSame(cached, waiting.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, gridArena.getStatistics().getBuffersInUse());
+    }
+
+    /**
+     * The calculations borrowing the output matrix, the kernel, the unit emission field and the binary images
+     * from the pool give the same contours as without the pool, and return every buffer except the cached field.
+     *
+     */
+    @Test
+    void calculationReturnsBorrowedBuffers() throws Exception {
+        GaussianPlume gaussianPlume = new ObjectMapper().readValue(PLUME, GaussianPlume.class);
+        GridArena gridArena = createArena(64);
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setJvmFieldCacheMb(64);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+        try {
+            Contours expected = new PlumeModel(gaussianPlume, forkJoinPool,
+                    PlumeModel.Options.builder().kernelSuperposition(true).culling(true).build(), CancellationToken.NONE).calculate();
+            assertFalse(expected.getContours().get(0).getPoints().isEmpty());
+            PlumeModel.Options pooled = PlumeModel.Options.builder().kernelSuperposition(true).culling(true).gridArena(gridArena).build();
+            for (int i = 0; i < 2; i++) {
+                Contours actual = new PlumeModel(gaussianPlume, forkJoinPool, pooled, CancellationToken.NONE).calculate();
+                assertEquals(expected.getContours(), actual.getContours());
+            }
+            assertEquals(0, gridArena.getStatistics().getBuffersInUse());
+
+            PlumeModel.Options cached = PlumeModel.Options.builder().kernelSuperposition(true).culling(true).gridArena(gridArena)
+                    .unitFieldCache(new UnitFieldCache(grassNextConfig)).build();
+            for (int i = 0; i < 2; i++) {
+                Contours actual = new PlumeModel(gaussianPlume, forkJoinPool, cached, CancellationToken.NONE).calculate();
+                assertEquals(expected.getContours().size(), actual.getContours().size());
+            }
+            assertEquals(0, gridArena.getStatistics().getBuffersInUse());
+            assertEquals(0, gridArena.getStatistics().getBytesInUse());
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a pool with the given memory limit.
+     *
+     * @param maxMb the memory limit in megabytes
+     * @return the pool
+     */
+    private static GridArena createArena(long maxMb) {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setGridArenaMaxMb(maxMb);
+        return new GridArena(grassNextConfig);
+    }
+
+    /**
+     * Waits until the condition holds, failing the test if it does not hold in time.
+     *
+     * @param condition the awaited condition
+     */
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the kernel superposition of {@link PlumeModel} against the direct sum of the point emitters.
+ *
+ * The superposition interpolates the kernel of the first emitter at the position of every other emitter,
+ * which is not accurate on the narrow plume close to the road, so the cells within
+ * {@link PlumeModel#NEAR_FIELD_DISTANCE} of the road, or farther for the stable classes, are calculated directly.
+ * The cells farther than {@link PlumeModel#NEAR_FIELD_DISTANCE} must not differ from the direct sum by more than
+ * {@link #TOLERANCE} wherever the direct sum reaches the lowest contour threshold. The road of the test is not
+ * aligned with the matrix axes, so the emitters are shifted by fractions of a cell.
+ *
+ */
+class KernelSuperpositionTest {
+    /**
+     * The largest allowed relative difference between the superposed kernel and the direct sum.
+     *
+     */
+    private static final double TOLERANCE = 0.006;
+    /**
+     * The Gaussian Plume parameters of a 600 m area with a 150 m road, with the wind direction
+     * and the stability class to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":%d,"stability":%d},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":600,"cellResolution":1.0,"divMatrixSide":8}
+            """;
+
+    /**
+     * The pool executing the calculations.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates the pool of the calculations.
+     *
+     */
+    @BeforeAll
+    static void createPool() {
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the pool of the calculations.
+     *
+     */
+    @AfterAll
+    static void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * Outside the near field the superposed kernel matches the direct sum within the tolerance in every cell
+     * reaching the lowest threshold. The road runs about 70 degrees from the north, so the wind directions
+     * cover the wind across the road, at an angle to it and nearly along it.
+     *
+     * @param direction the wind direction in degrees
+     * @param stability the atmospheric stability class [1-6]
+     */
+    @ParameterizedTest(name = "wind {0}, stability {1}")
+    @CsvSource({"160, 1", "30, 1", "115, 2", "0, 4", "150, 4", "250, 4", "333, 5", "150, 6", "180, 6"})
+    void matchesDirectSumOutsideNearField(int direction, int stability) throws Exception {
+        GaussianPlume gaussianPlume = new ObjectMapper().readValue(PLUME.formatted(direction, stability), GaussianPlume.class);
+        PlumeModel direct = calculate(gaussianPlume, false);
+        PlumeModel superposed = calculate(gaussianPlume, true);
+
+        double resolution = gaussianPlume.getCellResolution();
+        double roadStartX = direct.emittersX[0];
+        double roadStartY = direct.emittersY[0];
+        double roadEndX = direct.emittersX[direct.emittersX.length - 1];
+        double roadEndY = direct.emittersY[direct.emittersY.length - 1];
+
+        int compared = 0;
+        for (int row = 0; row < direct.matrixSize; row++) {
+            for (int col = 0; col < direct.matrixSize; col++) {
+                double expected = direct.c1.get(row, col);
+                double x = direct.matrixSizeStart + col * resolution;
+                double y = direct.matrixSizeStart + row * resolution;
+                if (expected < Consts.THRESHOLD_MIN
+                        || distanceToRoad(x - roadStartX, y - roadStartY, roadEndX - roadStartX, roadEndY - roadStartY) <= PlumeModel.NEAR_FIELD_DISTANCE) {
+                    continue;
+                }
+
+                double difference = Math.abs(superposed.c1.get(row, col) - expected) / expected;
+                assertTrue(difference <= TOLERANCE, "relative difference " + difference + " at " + x + ", " + y);
+                compared++;
+            }
+        }
+        assertTrue(compared > 1000, "compared cells " + compared);
+    }
+
+    /**
+     * Calculates the concentration matrix of the point emitters, without the unit field cache.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters
+     * @param kernelSuperposition true to superpose the kernel of the first emitter, false to sum the emitters directly
+     * @return the model holding the calculated matrix
+     */
+    private static PlumeModel calculate(GaussianPlume gaussianPlume, boolean kernelSuperposition) {
+        PlumeModel model = new PlumeModel(gaussianPlume, forkJoinPool,
+                PlumeModel.Options.builder().culling(true).kernelSuperposition(kernelSuperposition).build(), CancellationToken.NONE);
+        model.prepareEmitters();
+        model.allocateMatrix();
+        model.calculateMatrix(0.0);
+        return model;
+    }
+
+    /**
+     * Returns the distance of the cell from the road starting at the origin.
+     *
+     * @param x the x coordinate of the cell
+     * @param y the y coordinate of the cell
+     * @param endX the x coordinate of the road end
+     * @param endY the y coordinate of the road end
+     * @return the distance in meters
+     */
+    private static double distanceToRoad(double x, double y, double endX, double endY) {
+        double t = Math.max(0, Math.min(1, (x * endX + y * endY) / (endX * endX + endY * endY)));
+        return Math.hypot(x - t * endX, y - t * endY);
+    }
+}
@@ -0,0 +1,260 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the isolines of {@link MarchingSquares} against the external contours traced by {@link ContourTracer}
+ * in the binary images of the same levels.
+ *
+ * The isoline points lie on the edges between a cell at or above the level and a cell below it, while the traced
+ * contours pass through the centers of the border cells at or above the level, so both are expected
+ * to be at most one cell apart.
+ *
+ */
+class MarchingSquaresTest {
+    /**
+     * The size of one side of the tested matrices.
+     *
+     */
+    private static final int SIZE = 64;
+    /**
+     * The levels of the isolines relative to the peak value of 1.
+     *
+     */
+    private static final double[] LEVELS = {0.05, 0.1, 0.25, 0.5, 0.75, 0.9};
+    /**
+     * The maximum distance in cells between an isoline and the traced contour of the same level.
+     *
+     */
+    private static final double TOLERANCE = 1.0;
+
+    /**
+     * A single elongated and rotated blob gives one isoline per level, matching the traced contour.
+     *
+     */
+    @Test
+    void singleBlobMatchesTracedContours() {
+        double[][] values = new double[SIZE][SIZE];
+        addBlob(values, 30, 28, 14, 5, 0.6);
+
+        assertMatchesTracedContours(values, 1);
+    }
+
+    /**
+     * Two separated blobs give two isolines per level, each one matching one of the traced contours.
+     *
+     */
+    @Test
+    void separatedBlobsMatchTracedContours() {
+        double[][] values = new double[SIZE][SIZE];
+        addBlob(values, 16, 18, 5, 4, 0.0);
+        addBlob(values, 46, 44, 6, 3, 1.2);
+
+        assertMatchesTracedContours(values, 2);
+    }
+
+    /**
+     * A blob cut by the border of the matrix gives closed isolines following the frame of zeros,
+     * as the contours traced in the padded image.
+     *
+     */
+    @Test
+    void blobAtBorderMatchesTracedContours() {
+        double[][] values = new double[SIZE][SIZE];
+        addBlob(values, 2, 20, 10, 6, 0.3);
+
+        assertMatchesTracedContours(values, 1);
+    }
+
+    /**
+     * The isolines do not depend on the division of the square rows into strips.
+     *
+     */
+    @Test
+    void stripsDoNotChangeIsolines() {
+        double[][] values = new double[SIZE][SIZE];
+        addBlob(values, 16, 18, 5, 4, 0.0);
+        addBlob(values, 46, 44, 6, 3, 1.2);
+        MarchingSquares marchingSquares = new MarchingSquares(new DenseGrid(values), LEVELS);
+
+        List<MarchingSquares.Strip> whole = List.of(marchingSquares.scan(0, marchingSquares.getSquareRows()));
+        List<MarchingSquares.Strip> strips = new ArrayList<>();
+        for (int row = 0; row < marchingSquares.getSquareRows(); row += 7) {
+            strips.add(marchingSquares.scan(row, Math.min(row + 7, marchingSquares.getSquareRows())));
+        }
+
+        for (int level = 0; level < LEVELS.length; level++) {
+            List<double[]> expected = marchingSquares.trace(level, whole);
+            List<double[]> actual = marchingSquares.trace(level, strips);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(sorted(expected.get(i)), sorted(actual.get(i)), 1e-12);
+            }
+        }
+    }
+
+    /**
+     * Checks that for every level the isolines and the traced contours have the expected count,
+     * and that every isoline lies within the tolerance of one traced contour and the other way round.
+     *
+     * @param values the matrix indexed by row and column
+     * @param expectedCount the expected number of the isolines of every level
+     */
+    private static void assertMatchesTracedContours(double[][] values, int expectedCount) {
+        MarchingSquares marchingSquares = new MarchingSquares(new DenseGrid(values), LEVELS);
+        List<MarchingSquares.Strip> strips = List.of(marchingSquares.scan(0, marchingSquares.getSquareRows()));
+
+        for (int level = 0; level < LEVELS.length; level++) {
+            List<double[]> isolines = marchingSquares.trace(level, strips);
+            List<int[]> contours = traceContours(values, LEVELS[level]);
+            assertEquals(expectedCount, isolines.size(), "isolines of level " + LEVELS[level]);
+            assertEquals(expectedCount, contours.size(), "contours of level " + LEVELS[level]);
+
+            for (double[] isoline : isolines) {
+                assertTrue(isoline.length >= 6, "isoline of level " + LEVELS[level] + " is not a polygon");
+                int[] contour = nearestContour(isoline, contours);
+                for (int p = 0; p < isoline.length; p += 2) {
+                    double distance = distanceToPolygon(isoline[p], isoline[p + 1], toDoubles(contour));
+                    assertTrue(distance <= TOLERANCE, "isoline point of level " + LEVELS[level] + " is " + distance + " cells away");
+                }
+                for (int p = 0; p < contour.length; p += 2) {
+                    double distance = distanceToPolygon(contour[p], contour[p + 1], isoline);
+                    assertTrue(distance <= TOLERANCE, "contour point of level " + LEVELS[level] + " is " + distance + " cells away");
+                }
+            }
+        }
+    }
+
+    /**
+     * Traces the external contours of the binary image of the cells at or above the level, as done by the model.
+     *
+     * @param values the matrix indexed by row and column
+     * @param level the level of the contours
+     * @return the traced contours as arrays of consecutive column and row coordinates
+     */
+    private static List<int[]> traceContours(double[][] values, double level) {
+        int paddedSize = SIZE + 2;
+        byte[] image = ContourTracer.createPaddedImage(SIZE);
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                image[(row + 1) * paddedSize + col + 1] = (byte) (values[row][col] >= level ? 1 : 0);
+            }
+        }
+        return ContourTracer.findExternalContours(image, paddedSize, paddedSize);
+    }
+
+    /**
+     * Adds a rotated elliptic Gaussian blob with the peak value of 1 to the matrix.
+     *
+     * @param values the matrix indexed by row and column
+     * @param centerRow the row of the peak
+     * @param centerCol the column of the peak
+     * @param sigmaAlong the standard deviation along the rotated axis in cells
+     * @param sigmaAcross the standard deviation across the rotated axis in cells
+     * @param angle the rotation of the axis in radians
+     */
+    private static void addBlob(double[][] values, double centerRow, double centerCol, double sigmaAlong, double sigmaAcross, double angle) {
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                double along = (col - centerCol) * Math.cos(angle) + (row - centerRow) * Math.sin(angle);
+                double across = -(col - centerCol) * Math.sin(angle) + (row - centerRow) * Math.cos(angle);
+                values[row][col] += Math.exp(-0.5 * (along * along / (sigmaAlong * sigmaAlong) + across * across / (sigmaAcross * sigmaAcross)));
+            }
+        }
+    }
+
+    /**
+     * Returns the traced contour closest to the first point of the isoline.
+     *
+     * @param isoline the isoline as an array of consecutive column and row coordinates
+     * @param contours the traced contours
+     * @return the closest contour
+     */
+    private static int[] nearestContour(double[] isoline, List<int[]> contours) {
+        int[] nearest = contours.get(0);
+        for (int[] contour : contours) {
+            if (distanceToPolygon(isoline[0], isoline[1], toDoubles(contour)) < distanceToPolygon(isoline[0], isoline[1], toDoubles(nearest))) {
+                nearest = contour;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the distance of the point from the closest edge of the closed polygon.
+     *
+     * @param x the column of the point
+     * @param y the row of the point
+     * @param polygon the polygon as an array of consecutive column and row coordinates
+     * @return the distance in cells
+     */
+    private static double distanceToPolygon(double x, double y, double[] polygon) {
+        double distance = Double.MAX_VALUE;
+        for (int p = 0; p < polygon.length; p += 2) {
+            int next = (p + 2) % polygon.length;
+            distance = Math.min(distance, distanceToSegment(x, y, polygon[p], polygon[p + 1], polygon[next], polygon[next + 1]));
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the distance of the point from the segment.
+     *
+     * @param x the column of the point
+     * @param y the row of the point
+     * @param startX the column of the segment start
+     * @param startY the row of the segment start
+     * @param endX the column of the segment end
+     * @param endY the row of the segment end
+     * @return the distance in cells
+     */
+    private static double distanceToSegment(double x, double y, double startX, double startY, double endX, double endY) {
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - startX) * dx + (y - startY) * dy) / lengthSquared));
+        return Math.hypot(x - startX - t * dx, y - startY - t * dy);
+    }
+
+    /**
+     * Converts the integer coordinates to doubles.
+     *
+     * @param coordinates the integer coordinates
+     * @return the double coordinates
+     */
+    private static double[] toDoubles(int[] coordinates) {
+        double[] result = new double[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            result[i] = coordinates[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the points of the polyline sorted by column and row, independent of the point the polyline starts at.
+     *
+     * @param polyline the polyline as an array of consecutive column and row coordinates
+     * @return the sorted coordinates
+     */
+    private static double[] sorted(double[] polyline) {
+        List<double[]> points = new ArrayList<>();
+        for (int p = 0; p < polyline.length; p += 2) {
+            points.add(new double[]{polyline[p], polyline[p + 1]});
+        }
+        points.sort((first, second) -> first[0] != second[0] ? Double.compare(first[0], second[0]) : Double.compare(first[1], second[1]));
+
+        double[] result = new double[polyline.length];
+        for (int p = 0; p < points.size(); p++) {
+            result[2 * p] = points.get(p)[0];
+            result[2 * p + 1] = points.get(p)[1];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,247 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.ContourCache;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.gaussianplume.PrecomputeService;
+import com.grassnext.grassnextserver.locationdata.LocationDataService;
+import com.grassnext.grassnextserver.topodata.TopoDataParser;
+import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedData;
+import com.grassnext.grassnextserver.topodata.topoaggregateddata.TopoAggregatedDataRepository;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetector;
+import com.grassnext.grassnextserver.topodata.topodetector.TopoDetectorRepository;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import com.grassnext.grassnextserver.util.enums.VehicleGroupEnum;
+import com.grassnext.grassnextserver.weather.OpenMeteoService;
+import com.grassnext.grassnextserver.weather.WeatherRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Golden test of {@link PlumeModel} against the native C++ library. The traffic of the 10th hour of the
+ * {@code topo-test.txt} detector file, with the heavy goods vehicles chosen, is modelled for a road of 160 m
+ * under an east wind of 1.7 m/s and the stability class 4.
+ *
+ * The {@code topo-test-contours.json} resource holds the largest contour of every threshold found by
+ * {@code cv::findContours} of OpenCV 4.7 in the concentration matrix calculated by {@code GaussianPlume.cpp}
+ * for the same parameters, as pixel coordinates converted to GPS points by the formula of the native library.
+ * The contours are compared with and without the plume envelope culling, which the {@code jvm} engine enables
+ * by default.
+ *
+ */
+class PlumeModelTest {
+    /**
+     * The detector file of the test, copied from the topo archive of the application.
+     *
+     */
+    private static final String TOPO_FILE = "/topodata/topo-test.txt";
+    /**
+     * The resource holding the contours of the native library.
+     *
+     */
+    private static final String CONTOURS = "/gaussianplume/engine/topo-test-contours.json";
+    /**
+     * The modelled hour of the day (1-24).
+     *
+     */
+    private static final int HOUR = 10;
+    /**
+     * The largest allowed difference (in degrees) between the GPS points of the native library and the Java port,
+     * about a hundredth of a millimetre.
+     *
+     */
+    private static final double TOLERANCE = 1e-10;
+
+    /**
+     * The Gaussian Plume parameters of the modelled hour.
+     *
+     */
+    private static GaussianPlume gaussianPlume;
+    /**
+     * The pool executing the calculation.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+    /**
+     * The contours calculated by the Java port without and with the plume envelope culling.
+     *
+     */
+    private static Map<Boolean, Contours> contours;
+    /**
+     * The fraction of the matrix cells skipped by the culling.
+     *
+     */
+    private static double culledFraction;
+    /**
+     * The contours of the native library, one entry per threshold.
+     *
+     */
+    private static JsonNode expected;
+
+    /**
+     * Imports the detector file with the mocked repositories and services, builds the Gaussian Plume parameters
+     * of the modelled hour as {@code GaussianParametersService} does and calculates its contours
+     * without and with the culling.
+     *
+     */
+    @BeforeAll
+    static void calculate() throws Exception {
+        TopoDetector topoDetector = new TopoDetector();
+        topoDetector.setId(1L);
+        TopoDetectorRepository topoDetectorRepository = mock(TopoDetectorRepository.class);
+        when(topoDetectorRepository.findExistingTopoDetector(anyDouble(), anyDouble(), anyString())).thenReturn(topoDetector);
+        TopoAggregatedDataRepository topoAggregatedDataRepository = mock(TopoAggregatedDataRepository.class);
+
+        TopoDataParser topoDataParser = new TopoDataParser(
+                mock(WeatherRepository.class),
+                topoDetectorRepository,
+                topoAggregatedDataRepository,
+                mock(OpenMeteoService.class),
+                mock(LocationDataService.class),
+                mock(ContourCache.class),
+                mock(PrecomputeService.class)
+        );
+        topoDataParser.importTopoData(Path.of(PlumeModelTest.class.getResource(TOPO_FILE).toURI()).toString());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TopoAggregatedData>> aggregated = ArgumentCaptor.forClass(List.class);
+        verify(topoAggregatedDataRepository).saveAll(aggregated.capture());
+
+        List<GaussianPlume.Vehicle> vehicles = new ArrayList<>();
+        aggregated.getValue().stream()
+                .filter(data -> data.getMeasurementHour() == HOUR && data.getVehicleGroup() != VehicleGroupEnum.NOT_CLASSIFIED)
+                .sorted(Comparator.comparing(TopoAggregatedData::getVehicleGroup))
+                .forEach(data -> vehicles.add(new GaussianPlume.Vehicle(
+                        data.getVehicleGroup() == VehicleGroupEnum.HEAVY_GOODS_VEHICLE_GROUP,
+                        data.getVehicleCountHour(),
+                        data.getVehicleAvgVelocityHour())));
+
+        gaussianPlume = GaussianPlume.GaussianPlumeBuilder()
+                .vehicles(vehicles)
+                .wind(new GaussianPlume.Wind(1.7, 90, 4))
+                .roadStart(new GaussianPlume.GpsPoint(18.2101124, 50.3436049))
+                .roadEnd(new GaussianPlume.GpsPoint(18.2120329, 50.3442988))
+                .thresholds(Consts.MAX_THRESHOLDS)
+                .pollutionType(3)
+                .emittersHeight(Consts.EMITTERS_HEIGHT)
+                .concentrationHeight(Consts.CONCENTRATION_HEIGHT)
+                .matrixSize(1000)
+                .cellResolution(Consts.CELL_RESOLUTION)
+                .divMatrixSide(Consts.DIVISOR_MATRIX_SIDE)
+                .sourceModel(SourceModelEnum.POINT.get())
+                .build();
+
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        PlumeModel culled = new PlumeModel(gaussianPlume, forkJoinPool, PlumeModel.Options.builder().culling(true).build());
+        contours = Map.of(
+                false, new PlumeModel(gaussianPlume, forkJoinPool, PlumeModel.Options.builder().culling(false).build()).calculate(),
+                true, culled.calculate()
+        );
+        culledFraction = culled.getCulledFraction();
+
+        try (InputStream input = PlumeModelTest.class.getResourceAsStream(CONTOURS)) {
+            expected = new ObjectMapper().readTree(input);
+        }
+    }
+
+    /**
+     * Stops the pool of the calculation.
+     *
+     */
+    @AfterAll
+    static void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * The thresholds run from 1e-7 in steps of 1e-6 below 3e-5, as in the native library, whose maximum
+     * and step were swapped in {@link Consts}; the contours are labelled and coloured by the native rules.
+     *
+     */
+    @Test
+    void createsThresholdsOfNativeLibrary() {
+        assertEquals(0.0000001, Consts.THRESHOLD_MIN);
+        assertEquals(0.00003, Consts.THRESHOLD_MAX);
+        assertEquals(0.000001, Consts.THRESHOLD_STEP);
+
+        assertEquals(30, expected.size());
+        assertEquals(expected.size(), contours.get(false).getContours().size());
+        for (int t = 0; t < expected.size(); t++) {
+            Contours.Contour contour = contours.get(false).getContours().get(t);
+            assertEquals(expected.get(t).get("threshold").asText(), contour.getThreshold());
+            assertEquals("#B32134", contour.getColor());
+        }
+    }
+
+    /**
+     * The vehicles of the modelled hour are read from the detector file and ordered by the vehicle group.
+     *
+     */
+    @Test
+    void readsVehiclesOfDetectorFile() {
+        List<GaussianPlume.Vehicle> vehicles = gaussianPlume.getVehicles();
+
+        assertEquals(5, vehicles.size());
+        assertEquals(List.of(1, 179, 13, 37, 3), vehicles.stream().map(GaussianPlume.Vehicle::getCount).toList());
+        assertEquals(List.of(false, false, false, true, false), vehicles.stream().map(GaussianPlume.Vehicle::isChosen).toList());
+    }
+
+    /**
+     * The largest contour of every threshold consists of the same points as the contour of the native library,
+     * also when the cells outside the plume envelope are skipped.
+     *
+     * @param culling true to skip the cells outside the plume envelope
+     */
+    @ParameterizedTest(name = "culling {0}")
+    @ValueSource(booleans = {false, true})
+    void matchesContoursOfNativeLibrary(boolean culling) {
+        if (culling) {
+            assertTrue(culledFraction > 0.1, "culled fraction " + culledFraction);
+        }
+        double roadStartLat = gaussianPlume.getRoadStart().getLat();
+        double roadStartLon = gaussianPlume.getRoadStart().getLon();
+        int matrixSizeStart = -gaussianPlume.getMatrixSize() / 2;
+
+        for (int t = 0; t < expected.size(); t++) {
+            JsonNode points = expected.get(t).get("points");
+            List<Contours.GpsPoint> actual = contours.get(culling).getContours().get(t).getPoints();
+            String threshold = expected.get(t).get("threshold").asText();
+
+            assertEquals(points.size() / 2, actual.size(), "number of points of threshold " + threshold);
+            for (int i = 0; i < actual.size(); i++) {
+                int x = points.get(2 * i).asInt();
+                int y = points.get(2 * i + 1).asInt();
+                double lat = roadStartLat + ((y + matrixSizeStart) / 1000.0 / PlumeModel.EARTH_RADIUS) * (180 / Math.PI);
+                double lon = roadStartLon + ((x + matrixSizeStart) / 1000.0 / PlumeModel.EARTH_RADIUS) * (180 / Math.PI)
+                        / Math.cos(roadStartLat * Math.PI / 180);
+
+                assertEquals(lat, actual.get(i).getLat(), TOLERANCE, "latitude of point " + i + " of threshold " + threshold);
+                assertEquals(lon, actual.get(i).getLon(), TOLERANCE, "longitude of point " + i + " of threshold " + threshold);
+            }
+        }
+    }
+}
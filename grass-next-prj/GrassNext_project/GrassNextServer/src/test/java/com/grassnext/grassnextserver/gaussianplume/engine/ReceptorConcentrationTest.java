@@ -0,0 +1,144 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the concentrations calculated by {@link PlumeModel#calculateReceptors} at single points against
+ * the cells of the concentration matrix.
+ *
+ * The receptor points are placed on the centres of the cells. The conversion to the GPS coordinates and back
+ * moves a point by about a nanometre, which changes the concentration next to the road by more than the tolerance
+ * and may move a piece boundary of the line source, so the positions are rounded to a micrometre and both
+ * calculations evaluate the emitters at the same position.
+ *
+ */
+class ReceptorConcentrationTest {
+    /**
+     * The largest allowed relative difference between the concentration at a receptor point and the matrix cell.
+     *
+     */
+    private static final double TOLERANCE = 2e-10;
+    /**
+     * The step (in cells) between the rows and columns of the cells holding the receptor points.
+     *
+     */
+    private static final int STEP = 7;
+    /**
+     * The Gaussian Plume parameters of a 400 m area with a 150 m road, with the wind direction,
+     * the stability class and the source model to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":%d,"stability":%d},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"%s"}
+            """;
+
+    /**
+     * The pool executing the calculations of the matrix.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates the pool of the calculations.
+     *
+     */
+    @BeforeAll
+    static void createPool() {
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the pool of the calculations.
+     *
+     */
+    @AfterAll
+    static void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * The concentration at a receptor point placed on the centre of a cell equals the value of the cell
+     * within the tolerance, for every cell reaching the lowest threshold on a regular subset of the matrix.
+     *
+     * @param direction the wind direction in degrees
+     * @param stability the atmospheric stability class [1-6]
+     * @param sourceModel the model of the road emission
+     */
+    @ParameterizedTest(name = "wind {0}, stability {1}, {2}")
+    @CsvSource({"200, 4, point", "333, 1, point", "90, 6, point", "200, 4, line", "45, 2, line"})
+    void matchesMatrixCells(int direction, int stability, String sourceModel) throws Exception {
+        GaussianPlume gaussianPlume = plume(direction, stability, sourceModel);
+        PlumeModel matrix = new PlumeModel(gaussianPlume, forkJoinPool, PlumeModel.Options.builder().culling(false).build());
+        matrix.prepareEmitters();
+        matrix.allocateMatrix();
+        matrix.calculateMatrix(0.0);
+
+        List<int[]> cells = new ArrayList<>();
+        List<Contours.GpsPoint> receptors = new ArrayList<>();
+        for (int row = 0; row < matrix.matrixSize; row += STEP) {
+            for (int col = 0; col < matrix.matrixSize; col += STEP) {
+                if (matrix.c1.get(row, col) >= Consts.THRESHOLD_MIN) {
+                    cells.add(new int[]{row, col});
+                    receptors.add(PlumeModel.toGpsPoint(gaussianPlume.getRoadStart(), col, row, matrix.matrixSizeStart));
+                }
+            }
+        }
+        assertTrue(cells.size() > 50, "receptor points " + cells.size());
+
+        double[] values = new PlumeModel(gaussianPlume, null, new PlumeModel.Options(), CancellationToken.NONE).calculateReceptors(receptors);
+        for (int r = 0; r < cells.size(); r++) {
+            double expected = matrix.c1.get(cells.get(r)[0], cells.get(r)[1]);
+            assertEquals(expected, values[r], TOLERANCE * expected, "cell " + cells.get(r)[0] + ", " + cells.get(r)[1]);
+        }
+    }
+
+    /**
+     * The calculation stops before the next receptor point once the cancellation token is cancelled.
+     *
+     */
+    @Test
+    void stopsWhenCancelled() throws Exception {
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+        cancellation.cancel();
+        List<Contours.GpsPoint> receptors = List.of(new Contours.GpsPoint(50.3436049, 18.2101124));
+
+        PlumeModel model = new PlumeModel(plume(200, 4, "point"), null, new PlumeModel.Options(), cancellation);
+        assertThrows(CancellationException.class, () -> model.calculateReceptors(receptors));
+    }
+
+    /**
+     * Creates the Gaussian Plume parameters of the test.
+     *
+     * @param direction the wind direction in degrees
+     * @param stability the atmospheric stability class [1-6]
+     * @param sourceModel the model of the road emission
+     * @return the Gaussian Plume parameters
+     */
+    private static GaussianPlume plume(int direction, int stability, String sourceModel) throws Exception {
+        return new ObjectMapper().readValue(PLUME.formatted(direction, stability, sourceModel), GaussianPlume.class);
+    }
+}
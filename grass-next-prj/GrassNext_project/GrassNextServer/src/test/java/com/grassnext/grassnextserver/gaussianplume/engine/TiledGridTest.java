@@ -0,0 +1,167 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link TiledGrid} and of the contours of {@link PlumeModel} calculated on it against the double
+ * precision {@link DenseGrid}.
+ *
+ * The single precision changes the concentration by a relative error of about 6e-8, so a cell lying that close
+ * to a threshold may fall on the other side of it. A traced contour then differs by that cell, which moves it
+ * by at most the diagonal of a cell, although the vertices kept by the simplification of its straight runs
+ * may move further along the contour. The isolines of the marching squares differ only by the rounding
+ * of their interpolated positions.
+ *
+ */
+class TiledGridTest {
+    /**
+     * The largest allowed distance in meters between a traced contour on the tiled grid and the one on the dense grid,
+     * a little more than the diagonal of a 1 m cell.
+     *
+     */
+    private static final double TRACED_TOLERANCE = 1.5;
+    /**
+     * The largest allowed distance in meters between an isoline of the marching squares on the tiled grid
+     * and the one on the dense grid.
+     *
+     */
+    private static final double ISOLINE_TOLERANCE = 0.001;
+    /**
+     * The Gaussian Plume parameters of a 600 m area with a road crossing the wind, with the wind direction
+     * and the stability class to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":%d,"stability":%d},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":600,"cellResolution":1.0,"divMatrixSide":8}
+            """;
+
+    /**
+     * The pool executing the calculations.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates the pool of the calculations.
+     *
+     */
+    @BeforeAll
+    static void createPool() {
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the pool of the calculations.
+     *
+     */
+    @AfterAll
+    static void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * A tile is allocated by the first non-zero value only, and the values are stored with the single precision.
+     *
+     */
+    @Test
+    void allocatesTileForNonZeroValue() {
+        int size = TiledGrid.TILE_SIZE;
+        TiledGrid grid = new TiledGrid(3 * size);
+
+        assertEquals(0.0, grid.set(size, size, 0.0));
+        assertNull(grid.tiles.get(4));
+        double stored = grid.set(size + 1, size + 2, 0.1);
+
+        assertEquals((float) 0.1, stored);
+        assertEquals(stored, grid.get(size + 1, size + 2));
+        assertTrue(grid.isEmpty(0, 0, size, 3 * size));
+        assertFalse(grid.isEmpty(size, size, 2 * size, 2 * size));
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i == 4, grid.tiles.get(i) != null, "tile " + i);
+        }
+    }
+
+    /**
+     * The contours calculated on the tiled grid lie within the stated tolerance of the contours calculated
+     * on the dense grid, for every threshold, with the traced contours and with the marching squares.
+     *
+     * @param direction the wind direction in degrees
+     * @param stability the atmospheric stability class [1-6]
+     * @param marchingSquares true to extract the isolines with the marching squares
+     */
+    @ParameterizedTest(name = "wind {0}, stability {1}, marching squares {2}")
+    @CsvSource({"333, 4, false", "333, 4, true", "90, 2, false", "200, 6, false", "45, 1, true", "270, 5, true"})
+    void matchesContoursOfDenseGrid(int direction, int stability, boolean marchingSquares) throws Exception {
+        GaussianPlume gaussianPlume = new ObjectMapper().readValue(PLUME.formatted(direction, stability), GaussianPlume.class);
+        PlumeModel.Options.OptionsBuilder options = PlumeModel.Options.builder().culling(true).marchingSquares(marchingSquares);
+
+        Contours dense = new PlumeModel(gaussianPlume, forkJoinPool, options.tiledGrid(false).build()).calculate();
+        Contours tiled = new PlumeModel(gaussianPlume, forkJoinPool, options.tiledGrid(true).build()).calculate();
+
+        double tolerance = marchingSquares ? ISOLINE_TOLERANCE : TRACED_TOLERANCE;
+        assertEquals(dense.getContours().size(), tiled.getContours().size());
+        for (int t = 0; t < dense.getContours().size(); t++) {
+            List<Contours.GpsPoint> expected = dense.getContours().get(t).getPoints();
+            List<Contours.GpsPoint> actual = tiled.getContours().get(t).getPoints();
+            assertEquals(expected.isEmpty(), actual.isEmpty(), "empty contour of threshold " + t);
+
+            double distance = Math.max(distance(expected, actual), distance(actual, expected));
+            assertTrue(distance <= tolerance, "contour of threshold " + t + " moved by " + distance + " m");
+        }
+    }
+
+    /**
+     * Returns the largest distance in meters from a point of a contour to the nearest segment of the other contour.
+     *
+     * @param from the points of the first contour
+     * @param to the points of the closed second contour
+     * @return the largest distance in meters
+     */
+    private static double distance(List<Contours.GpsPoint> from, List<Contours.GpsPoint> to) {
+        if (from.isEmpty() || to.isEmpty()) {
+            return 0.0;
+        }
+        double metersPerLat = Math.PI / 180 * PlumeModel.EARTH_RADIUS * 1000;
+        double metersPerLon = metersPerLat * Math.cos(Math.toRadians(to.get(0).getLat()));
+
+        double max = 0.0;
+        for (Contours.GpsPoint point : from) {
+            double x = point.getLon() * metersPerLon;
+            double y = point.getLat() * metersPerLat;
+            double min = Double.MAX_VALUE;
+            for (int i = 0; i < to.size(); i++) {
+                Contours.GpsPoint start = to.get(i);
+                Contours.GpsPoint end = to.get((i + 1) % to.size());
+                double startX = start.getLon() * metersPerLon;
+                double startY = start.getLat() * metersPerLat;
+                double dx = end.getLon() * metersPerLon - startX;
+                double dy = end.getLat() * metersPerLat - startY;
+                double length = dx * dx + dy * dy;
+                double u = length == 0 ? 0 : Math.max(0, Math.min(1, ((x - startX) * dx + (y - startY) * dy) / length));
+                min = Math.min(min, Math.hypot(x - startX - u * dx, y - startY - u * dy));
+            }
+            max = Math.max(max, min);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,186 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlume;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.SourceModelEnum;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link UnitFieldCache} and of the matrices of {@link PlumeModel} rescaled from the cached unit emission matrix.
+ *
+ */
+class UnitFieldCacheTest {
+    /**
+     * The largest allowed relative difference between a rescaled and a directly calculated cell,
+     * covering the rounding of the multiplication by the emission. The subnormal values at the edge of the plume
+     * lose their relative precision, so the difference is also allowed to reach the smallest normal value.
+     *
+     */
+    private static final double TOLERANCE = 1e-12;
+    /**
+     * The Gaussian Plume parameters of a 400 m area with a 150 m road, with the source model to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":200,"stability":4},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"%s"}
+            """;
+
+    /**
+     * The pool executing the calculations.
+     *
+     */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates the pool of the calculations.
+     *
+     */
+    @BeforeAll
+    static void createPool() {
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stops the pool of the calculations.
+     *
+     */
+    @AfterAll
+    static void tearDown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * The matrix rescaled from the cached unit emission matrix equals the matrix calculated directly for the emission
+     * in every cell, for another vehicle selection and pollution type sharing the cached matrix too.
+     *
+     * @param sourceModel the model of the road emission
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"point", "line"})
+    void scaledFieldMatchesDirectCalculation(String sourceModel) throws Exception {
+        GaussianPlume gaussianPlume = plume(sourceModel);
+        GaussianPlume otherEmission = plume(sourceModel);
+        otherEmission.getVehicles().forEach(vehicle -> vehicle.setChosen(!vehicle.isChosen()));
+        otherEmission.setPollutionType(2);
+        assertEquals(UnitFieldCache.FieldKey.of(gaussianPlume, false), UnitFieldCache.FieldKey.of(otherEmission, false));
+
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setJvmFieldCacheMb(64);
+        UnitFieldCache unitFieldCache = new UnitFieldCache(grassNextConfig);
+
+        for (GaussianPlume plume : List.of(gaussianPlume, otherEmission)) {
+            PlumeModel direct = calculate(plume, PlumeModel.Options.builder().culling(false).build());
+            PlumeModel scaled = calculate(plume, PlumeModel.Options.builder().culling(true).unitFieldCache(unitFieldCache).build());
+
+            int nonZero = 0;
+            for (int row = 0; row < direct.matrixSize; row++) {
+                for (int col = 0; col < direct.matrixSize; col++) {
+                    double expected = direct.c1.get(row, col);
+                    double actual = scaled.c1.get(row, col);
+                    assertEquals(expected, actual, TOLERANCE * expected + Double.MIN_NORMAL, "cell " + row + ", " + col);
+                    nonZero += expected > 0 ? 1 : 0;
+                }
+            }
+            assertTrue(nonZero > 1000, "non-zero cells " + nonZero);
+        }
+    }
+
+    /**
+     * The matrix is calculated once for the same key and taken from the cache afterwards.
+     *
+     */
+    @Test
+    void calculatesFieldOncePerKey() throws Exception {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setJvmFieldCacheMb(64);
+        UnitFieldCache unitFieldCache = new UnitFieldCache(grassNextConfig);
+        UnitFieldCache.FieldKey key = UnitFieldCache.FieldKey.of(plume("point"), false);
+        AtomicInteger calculations = new AtomicInteger();
+
+        ConcentrationGrid first = unitFieldCache.get(key, () -> {
+            calculations.incrementAndGet();
+            return new DenseGrid(8);
+        });
+        ConcentrationGrid second = unitFieldCache.get(UnitFieldCache.FieldKey.of(plume("point"), false), () -> {
+            calculations.incrementAndGet();
+            return new DenseGrid(8);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, calculations.get());
+    }
+
+    /**
+     * Every parameter the unit emission matrix depends on is a part of the key, so changing the wind, the road,
+     * the resolution, the source model or the calculation mode gives a different key.
+     *
+     */
+    @Test
+    void differentParametersGiveDifferentKeys() throws Exception {
+        UnitFieldCache.FieldKey key = UnitFieldCache.FieldKey.of(plume("point"), false);
+
+        List<Consumer<GaussianPlume>> changes = List.of(
+                plume -> plume.getWind().setDirection(201),
+                plume -> plume.getWind().setSpeed(1.8),
+                plume -> plume.getWind().setStability(5),
+                plume -> plume.getRoadStart().setLon(18.2101125),
+                plume -> plume.getRoadEnd().setLat(50.3442989),
+                plume -> plume.setCellResolution(2.0),
+                plume -> plume.setMatrixSize(800),
+                plume -> plume.setDivMatrixSide(4),
+                plume -> plume.setEmittersHeight(0.5),
+                plume -> plume.setConcentrationHeight(1.5),
+                plume -> plume.setSourceModel(SourceModelEnum.LINE.get())
+        );
+        for (int i = 0; i < changes.size(); i++) {
+            GaussianPlume changed = plume("point");
+            changes.get(i).accept(changed);
+            assertNotEquals(key, UnitFieldCache.FieldKey.of(changed, false), "change " + i);
+        }
+        assertNotEquals(key, UnitFieldCache.FieldKey.of(plume("point"), true));
+    }
+
+    /**
+     * Calculates the concentration matrix of the Gaussian Plume parameters.
+     *
+     * @param gaussianPlume the Gaussian Plume parameters
+     * @param options the options of the calculation
+     * @return the model holding the calculated matrix
+     */
+    private static PlumeModel calculate(GaussianPlume gaussianPlume, PlumeModel.Options options) {
+        PlumeModel model = new PlumeModel(gaussianPlume, forkJoinPool, options, CancellationToken.NONE);
+        model.gaussianPlumeModel();
+        return model;
+    }
+
+    /**
+     * Creates the Gaussian Plume parameters of the test.
+     *
+     * @param sourceModel the model of the road emission
+     * @return the Gaussian Plume parameters
+     */
+    private static GaussianPlume plume(String sourceModel) throws Exception {
+        return new ObjectMapper().readValue(PLUME.formatted(sourceModel), GaussianPlume.class);
+    }
+}
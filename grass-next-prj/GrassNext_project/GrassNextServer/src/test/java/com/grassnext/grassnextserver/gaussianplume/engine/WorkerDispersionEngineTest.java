@@ -0,0 +1,153 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.worker.WorkerMain;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests of the worker processes of {@link WorkerDispersionEngine} started under an address space limit
+ * and of a calculation performed by a worker.
+ *
+ */
+@Timeout(120)
+class WorkerDispersionEngineTest {
+    /**
+     * The tested address space limit of the workers in megabytes.
+     *
+     */
+    private static final int MAX_ADDRESS_SPACE_MB = 1024;
+    /**
+     * The Gaussian Plume parameters of a 400 m area with a 150 m road under the wind from the north.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":0,"stability":4},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"point"}
+            """;
+
+    /**
+     * The directory of the sockets of the workers.
+     *
+     */
+    @TempDir
+    Path socketDir;
+
+    /**
+     * With an address space limit the worker is started by {@code prlimit} with smaller reservations of the runtime,
+     * without it the worker is started directly by the Java runtime.
+     *
+     */
+    @Test
+    void startsWorkerUnderAddressSpaceLimit() {
+        long maxAddressSpace = MAX_ADDRESS_SPACE_MB * 1024L * 1024L;
+
+        List<String> limited = WorkerDispersionEngine.workerCommand(512, maxAddressSpace);
+        assertEquals(List.of(WorkerDispersionEngine.PRLIMIT, "--as=" + maxAddressSpace), limited.subList(0, 2));
+        assertTrue(limited.containsAll(WorkerDispersionEngine.ADDRESS_SPACE_OPTIONS));
+        assertEquals(WorkerMain.class.getName(), limited.get(limited.size() - 1));
+
+        List<String> unlimited = WorkerDispersionEngine.workerCommand(512, 0);
+        assertEquals(Path.of(System.getProperty("java.home"), "bin", "java").toString(), unlimited.get(0));
+        assertFalse(unlimited.contains(WorkerDispersionEngine.PRLIMIT));
+        assertFalse(unlimited.containsAll(WorkerDispersionEngine.ADDRESS_SPACE_OPTIONS));
+    }
+
+    /**
+     * A worker using the pure Java implementation calculates the contours within the address space limit,
+     * which is applied to its process, the only child process of the test.
+     *
+     */
+    @Test
+    void calculatesWithJvmWorkerUnderAddressSpaceLimit() throws Exception {
+        assumeTrue(WorkerDispersionEngine.isAddressSpaceLimitAvailable(), "prlimit is not available");
+        GrassNextConfig grassNextConfig = createConfig(DispersionEngine.JVM);
+
+        WorkerDispersionEngine engine = new WorkerDispersionEngine(grassNextConfig);
+        try {
+            assertEquals(1, engine.getAlive());
+            assertCalculated(engine.calculate(PLUME, CancellationToken.NONE));
+
+            List<ProcessHandle> workers = ProcessHandle.current().children().toList();
+            assertEquals(1, workers.size());
+            String limits = Files.readString(Path.of("/proc", String.valueOf(workers.get(0).pid()), "limits"));
+            assertTrue(limits.lines().anyMatch(line -> line.startsWith("Max address space")
+                    && line.contains(String.valueOf(MAX_ADDRESS_SPACE_MB * 1024L * 1024L))), limits);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * A worker using the native library calculates the contours of the point emitters within the address space limit.
+     * The test runs only where the native library of the platform is present in the {@code lib} folder.
+     *
+     */
+    @Test
+    void calculatesWithNativeWorker() throws Exception {
+        String libFile = System.mapLibraryName("grassnext");
+        assumeTrue(Files.exists(Path.of("lib", libFile)), "Native library lib/" + libFile + " is not available");
+        GrassNextConfig grassNextConfig = createConfig(DispersionEngine.NATIVE);
+        grassNextConfig.setGnLibFolder("lib");
+        grassNextConfig.setGnLibFile(libFile);
+        String openCvLibFile = System.mapLibraryName("opencv_world");
+        grassNextConfig.setOpenCvLibFile(Files.exists(Path.of("lib", openCvLibFile)) ? openCvLibFile : "");
+
+        WorkerDispersionEngine engine = new WorkerDispersionEngine(grassNextConfig);
+        try {
+            assertEquals(1, engine.getAlive());
+            assertCalculated(engine.calculate(PLUME, CancellationToken.NONE));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Creates the configuration of a single worker with the tested address space limit.
+     *
+     * @param workerEngine the engine used by the worker
+     * @return the configuration of the tested engine
+     */
+    private GrassNextConfig createConfig(String workerEngine) {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setWorkerEngine(workerEngine);
+        grassNextConfig.setWorkerCount(1);
+        grassNextConfig.setWorkerHeapMb(512);
+        grassNextConfig.setWorkerMaxRssMb(2048);
+        grassNextConfig.setWorkerMaxAddressSpaceMb(MAX_ADDRESS_SPACE_MB);
+        grassNextConfig.setWorkerHealthInterval(5);
+        grassNextConfig.setWorkerStartTimeout(60);
+        grassNextConfig.setWorkerSocketDir(socketDir.toString());
+        return grassNextConfig;
+    }
+
+    /**
+     * Asserts that the worker calculated the contours without an error.
+     *
+     * @param jsonOut the JSON-formatted contours returned by the worker
+     */
+    private static void assertCalculated(String jsonOut) throws Exception {
+        assertNotNull(jsonOut);
+        Contours contours = new ObjectMapper().readValue(jsonOut, Contours.class);
+        assertFalse(contours.isError(), contours.getMsg());
+        assertFalse(contours.getContours().isEmpty());
+    }
+}
@@ -0,0 +1,209 @@
+package com.grassnext.grassnextserver.gaussianplume.engine.worker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the binary framing of {@link WorkerProtocol}.
+ *
+ */
+@Timeout(30)
+class WorkerProtocolTest {
+    /**
+     * The JSON payload of the tested frames.
+     *
+     */
+    private static final byte[] JSON = "{\"wind\":{\"speed\":1.7,\"direction\":135,\"stability\":4}}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * A frame is written as the big-endian length of the type and the payload, followed by the type and the payload.
+     *
+     */
+    @Test
+    void writesLengthTypeAndPayload() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.CALCULATE, JSON);
+
+        ByteBuffer frame = ByteBuffer.wrap(output.toByteArray());
+        assertEquals(WorkerProtocol.HEADER_SIZE + JSON.length, frame.remaining());
+        assertEquals(1 + JSON.length, frame.getInt());
+        assertEquals(WorkerProtocol.CALCULATE, frame.get());
+        assertArrayEquals(JSON, Arrays.copyOfRange(frame.array(), frame.position(), frame.limit()));
+    }
+
+    /**
+     * The consecutive frames written to a stream are read back in order, including a frame without any payload.
+     *
+     */
+    @Test
+    void readsConsecutiveFrames() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.CALCULATE, JSON);
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.PING, new byte[0]);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(output.toByteArray()));
+
+        WorkerProtocol.Frame calculate = WorkerProtocol.readFrame(channel);
+        WorkerProtocol.Frame ping = WorkerProtocol.readFrame(channel);
+
+        assertEquals(WorkerProtocol.CALCULATE, calculate.getType());
+        assertArrayEquals(JSON, calculate.getPayload());
+        assertEquals(WorkerProtocol.PING, ping.getType());
+        assertEquals(0, ping.getPayload().length);
+        assertThrows(EOFException.class, () -> WorkerProtocol.readFrame(channel));
+    }
+
+    /**
+     * The resident memory written before the body is read back separately from the body, and a payload
+     * too short to hold it gives the unknown memory and an empty body.
+     *
+     */
+    @Test
+    void separatesRssFromBody() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.RESULT, 123_456_789L, JSON);
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.PONG, -1L, new byte[0]);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(output.toByteArray()));
+
+        WorkerProtocol.Frame result = WorkerProtocol.readFrame(channel);
+        WorkerProtocol.Frame pong = WorkerProtocol.readFrame(channel);
+        WorkerProtocol.Frame shortFrame = new WorkerProtocol.Frame(WorkerProtocol.FAILURE, new byte[]{1, 2, 3});
+
+        assertEquals(WorkerProtocol.RESULT, result.getType());
+        assertEquals(123_456_789L, WorkerProtocol.readRss(result));
+        assertArrayEquals(JSON, WorkerProtocol.readBody(result));
+        assertEquals(-1L, WorkerProtocol.readRss(pong));
+        assertEquals(0, WorkerProtocol.readBody(pong).length);
+        assertEquals(-1L, WorkerProtocol.readRss(shortFrame));
+        assertEquals(0, WorkerProtocol.readBody(shortFrame).length);
+    }
+
+    /**
+     * A frame arriving one byte per read is assembled completely.
+     *
+     */
+    @Test
+    void assemblesFragmentedFrame() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.FAILURE, 42L, JSON);
+        ByteBuffer source = ByteBuffer.wrap(output.toByteArray());
+        ReadableByteChannel channel = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer destination) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                destination.put(source.get());
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        WorkerProtocol.Frame frame = WorkerProtocol.readFrame(channel);
+
+        assertEquals(WorkerProtocol.FAILURE, frame.getType());
+        assertEquals(42L, WorkerProtocol.readRss(frame));
+        assertArrayEquals(JSON, WorkerProtocol.readBody(frame));
+    }
+
+    /**
+     * A length not covering the type or exceeding the maximum frame size is rejected before allocating the payload.
+     *
+     */
+    @Test
+    void rejectsInvalidLength() {
+        for (int length : new int[]{0, -1, WorkerProtocol.MAX_FRAME_SIZE + 1}) {
+            byte[] header = ByteBuffer.allocate(WorkerProtocol.HEADER_SIZE).putInt(length).put(WorkerProtocol.RESULT).array();
+            ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(header));
+
+            IOException exception = assertThrows(IOException.class, () -> WorkerProtocol.readFrame(channel));
+            assertEquals("Invalid frame length " + length, exception.getMessage());
+        }
+    }
+
+    /**
+     * A socket closed in the middle of the header or the payload ends the reading with the end of stream.
+     *
+     */
+    @Test
+    void truncatedFrameThrowsEof() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WorkerProtocol.writeFrame(Channels.newChannel(output), WorkerProtocol.CALCULATE, JSON);
+        byte[] frame = output.toByteArray();
+
+        for (int size : new int[]{0, 3, WorkerProtocol.HEADER_SIZE, frame.length - 1}) {
+            ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(frame, size)));
+
+            EOFException exception = assertThrows(EOFException.class, () -> WorkerProtocol.readFrame(channel));
+            assertEquals("Socket closed", exception.getMessage());
+        }
+    }
+
+    /**
+     * The frames are exchanged both ways over a Unix domain socket, as between the server and a worker,
+     * including a payload larger than the socket buffers.
+     *
+     * @param directory the directory of the socket file
+     */
+    @Test
+    void exchangesFramesOverUnixSocket(@TempDir Path directory) throws Exception {
+        byte[] large = new byte[4 * 1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(directory.resolve("worker.sock"));
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            Thread worker = new Thread(() -> {
+                try (SocketChannel socket = server.accept()) {
+                    WorkerProtocol.Frame request = WorkerProtocol.readFrame(socket);
+                    WorkerProtocol.writeFrame(socket, WorkerProtocol.RESULT, request.getPayload().length, request.getPayload());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+
+            try (SocketChannel socket = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                socket.connect(address);
+                WorkerProtocol.writeFrame(socket, WorkerProtocol.CALCULATE, large);
+
+                WorkerProtocol.Frame response = WorkerProtocol.readFrame(socket);
+
+                assertEquals(WorkerProtocol.RESULT, response.getType());
+                assertEquals(large.length, WorkerProtocol.readRss(response));
+                assertArrayEquals(large, WorkerProtocol.readBody(response));
+            }
+            worker.join();
+        }
+    }
+}
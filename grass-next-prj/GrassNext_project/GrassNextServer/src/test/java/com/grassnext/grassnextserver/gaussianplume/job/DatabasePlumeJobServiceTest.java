@@ -0,0 +1,616 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlumeService;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration tests of two instances of {@link DatabasePlumeJobService} sharing the queue table of an embedded
+ * PostgreSQL database, each one with its own application context, connection and transactions, as two servers
+ * behind the load balancer.
+ *
+ * The instances poll the queue only when the tests call them, so the claims, the lease renewals and the takeovers
+ * happen in a known order. The calculations are mocked and run until the test finishes them or their token is
+ * cancelled. PostgreSQL refuses to run as root, so the tests are skipped for the root user, and the build
+ * covering them has to run as another user.
+ *
+ */
+@Timeout(60)
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "PostgreSQL cannot be run as root")
+class DatabasePlumeJobServiceTest {
+    /**
+     * The maximum time in seconds a test waits for the other instance or the calculations.
+     *
+     */
+    private static final long TIMEOUT = 10;
+    /**
+     * The lease time in seconds, the shortest one accepted by the service.
+     *
+     */
+    private static final long LEASE_TTL = 3;
+    /**
+     * The maximum number of times a job is claimed before it fails.
+     *
+     */
+    private static final int MAX_ATTEMPTS = 2;
+    /**
+     * The number of workers of each instance.
+     *
+     */
+    private static final int WORKERS = 3;
+
+    /**
+     * The embedded database shared by the instances.
+     *
+     */
+    private static EmbeddedPostgres postgres;
+
+    /**
+     * The application contexts of the two instances.
+     *
+     */
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+    /**
+     * The two instances of the service.
+     *
+     */
+    private final List<DatabasePlumeJobService> instances = new ArrayList<>();
+    /**
+     * The threads claiming the jobs concurrently.
+     *
+     */
+    private final ExecutorService claims = Executors.newCachedThreadPool();
+    /**
+     * The number of the started calculations of both instances.
+     *
+     */
+    private final AtomicInteger started = new AtomicInteger();
+    /**
+     * The number of the calculations of both instances which returned or were stopped.
+     *
+     */
+    private final AtomicInteger ended = new AtomicInteger();
+    /**
+     * Released to let the running calculations return their contours.
+     *
+     */
+    private final CountDownLatch finish = new CountDownLatch(1);
+    /**
+     * The rejection thrown by the calculations instead of calculating, or null to calculate.
+     *
+     */
+    private volatile RuntimeException rejection;
+    /**
+     * The repository used by the tests for preparing and checking the queue table.
+     *
+     */
+    private QueuedPlumeJobRepository repository;
+
+    /**
+     * Starts the embedded database.
+     *
+     */
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    /**
+     * Stops the embedded database.
+     *
+     */
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    /**
+     * Creates the two instances with their own application contexts and empties the queue table.
+     *
+     */
+    @BeforeEach
+    void createInstances() {
+        for (int i = 0; i < 2; i++) {
+            AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(QueueConfiguration.class);
+            contexts.add(context);
+            instances.add(new DatabasePlumeJobService(
+                    mockCalculation(),
+                    mockExecutor(),
+                    context.getBean(QueuedPlumeJobRepository.class),
+                    context.getBean(PlatformTransactionManager.class),
+                    createConfig()
+            ));
+        }
+        repository = contexts.get(0).getBean(QueuedPlumeJobRepository.class);
+        repository.deleteAll();
+    }
+
+    /**
+     * Stops the instances, which returns their running jobs to the queue, and closes their application contexts.
+     *
+     */
+    @AfterEach
+    void shutdown() {
+        instances.forEach(DatabasePlumeJobService::shutdown);
+        finish.countDown();
+        claims.shutdownNow();
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    /**
+     * The rows locked by a claim of one instance are skipped by the claim of the other one instead of waiting
+     * for the lock, and become claimable again when the first transaction ends without claiming them.
+     *
+     */
+    @Test
+    void skipsRowsLockedByOtherInstance() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            enqueue(LocalDateTime.now().minusSeconds(10 - i));
+        }
+        TransactionTemplate first = new TransactionTemplate(contexts.get(0).getBean(PlatformTransactionManager.class));
+        TransactionTemplate second = new TransactionTemplate(contexts.get(1).getBean(PlatformTransactionManager.class));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<List<String>> holder = claims.submit(() -> first.execute(status -> {
+            List<String> ids = ids(contexts.get(0).getBean(QueuedPlumeJobRepository.class).lockClaimable(LocalDateTime.now(), 2));
+            locked.countDown();
+            await(release);
+            return ids;
+        }));
+        assertTrue(locked.await(TIMEOUT, TimeUnit.SECONDS));
+
+        List<String> skipping = second.execute(status ->
+                ids(contexts.get(1).getBean(QueuedPlumeJobRepository.class).lockClaimable(LocalDateTime.now(), 10)));
+        release.countDown();
+        List<String> held = holder.get(TIMEOUT, TimeUnit.SECONDS);
+
+        assertEquals(2, held.size());
+        assertEquals(2, skipping.size());
+        assertTrue(held.stream().noneMatch(skipping::contains));
+        List<String> afterRelease = second.execute(status ->
+                ids(contexts.get(1).getBean(QueuedPlumeJobRepository.class).lockClaimable(LocalDateTime.now(), 10)));
+        assertEquals(4, afterRelease.size());
+    }
+
+    /**
+     * The instances claiming concurrently take different jobs, as many as their free workers, in the order
+     * of submission, and leave the rest queued.
+     *
+     */
+    @Test
+    void concurrentClaimsTakeDistinctJobs() throws Exception {
+        List<String> submitted = new ArrayList<>();
+        for (int i = 0; i < 2 * WORKERS + 2; i++) {
+            submitted.add(enqueue(LocalDateTime.now().minusSeconds(100 - i)));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> claiming = new ArrayList<>();
+        for (DatabasePlumeJobService instance : instances) {
+            claiming.add(claims.submit(() -> {
+                await(start);
+                instance.claim();
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : claiming) {
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+        }
+        waitUntil(() -> started.get() == 2 * WORKERS);
+
+        Set<String> claimed = new HashSet<>();
+        for (DatabasePlumeJobService instance : instances) {
+            List<QueuedPlumeJob> held = repository.findByLeaseOwnerAndState(instance.getNodeId(), JobStateEnum.RUNNING);
+            assertEquals(WORKERS, held.size());
+            for (QueuedPlumeJob job : held) {
+                assertEquals(1, job.getAttempts());
+                assertTrue(claimed.add(job.getId()), "job " + job.getId() + " claimed twice");
+            }
+        }
+        assertEquals(new HashSet<>(submitted.subList(0, 2 * WORKERS)), claimed);
+        assertEquals(2, repository.countByState(JobStateEnum.QUEUED));
+    }
+
+    /**
+     * The lease renewed by the running instance keeps the job from the other one past the original expiry.
+     * When the renewals stop, the other instance takes the job over after the lease expires, and the result
+     * of the first instance is discarded.
+     *
+     */
+    @Test
+    void renewedLeaseKeepsJobAndExpiredLeaseIsTakenOver() throws Exception {
+        DatabasePlumeJobService first = instances.get(0);
+        DatabasePlumeJobService second = instances.get(1);
+        String id = enqueue(LocalDateTime.now());
+        first.claim();
+        waitUntil(() -> started.get() == 1);
+        LocalDateTime originalExpiry = repository.findById(id).orElseThrow().getLeaseExpiresAt();
+
+        long renewUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(LEASE_TTL + 1);
+        while (System.nanoTime() < renewUntil) {
+            first.poll();
+            Thread.sleep(200);
+        }
+        second.claim();
+
+        QueuedPlumeJob renewed = repository.findById(id).orElseThrow();
+        assertEquals(first.getNodeId(), renewed.getLeaseOwner());
+        assertTrue(renewed.getLeaseExpiresAt().isAfter(originalExpiry));
+        assertEquals(1, started.get());
+
+        waitUntil(() -> repository.findById(id).orElseThrow().getLeaseExpiresAt().isBefore(LocalDateTime.now()));
+        second.claim();
+        waitUntil(() -> started.get() == 2);
+        QueuedPlumeJob takenOver = repository.findById(id).orElseThrow();
+        assertEquals(second.getNodeId(), takenOver.getLeaseOwner());
+        assertEquals(JobStateEnum.RUNNING, takenOver.getState());
+        assertEquals(2, takenOver.getAttempts());
+
+        first.poll();
+        waitUntil(() -> ended.get() == 1);
+        QueuedPlumeJob discarded = repository.findById(id).orElseThrow();
+        assertEquals(JobStateEnum.RUNNING, discarded.getState());
+        assertEquals(second.getNodeId(), discarded.getLeaseOwner());
+
+        finish.countDown();
+        waitUntil(() -> repository.findById(id).orElseThrow().getState() == JobStateEnum.DONE);
+        PlumeJobStatus status = first.getStatus(id);
+        assertEquals(JobStateEnum.DONE, status.getState());
+        assertFalse(status.getContours().isError());
+        assertEquals(2, ended.get());
+    }
+
+    /**
+     * A job whose lease expires after the last allowed attempt fails instead of being claimed again.
+     *
+     */
+    @Test
+    void failsJobAfterMaxAttempts() throws Exception {
+        String id = enqueue(LocalDateTime.now());
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            instances.get(attempt % 2).claim();
+            int expectedStarts = attempt;
+            waitUntil(() -> started.get() == expectedStarts);
+            assertEquals(attempt, repository.findById(id).orElseThrow().getAttempts());
+            expireLease(id);
+        }
+
+        instances.get(0).claim();
+
+        QueuedPlumeJob failed = repository.findById(id).orElseThrow();
+        assertEquals(JobStateEnum.FAILED, failed.getState());
+        assertNull(failed.getLeaseOwner());
+        assertEquals(MAX_ATTEMPTS, started.get());
+        PlumeJobStatus status = instances.get(1).getStatus(id);
+        assertTrue(status.getContours().isError());
+        assertEquals("Calculation failed after " + MAX_ATTEMPTS + " attempts!", status.getContours().getMsg());
+    }
+
+    /**
+     * A queued job cancelled through one instance is never claimed, and a running job cancelled through
+     * the other instance is stopped by the instance running it and stored as cancelled.
+     *
+     */
+    @Test
+    void cancelsQueuedAndRunningJobs() throws Exception {
+        DatabasePlumeJobService first = instances.get(0);
+        DatabasePlumeJobService second = instances.get(1);
+        String queued = enqueue(LocalDateTime.now().plusHours(1));
+        String running = enqueue(LocalDateTime.now());
+
+        assertEquals(JobStateEnum.CANCELLED, second.cancel(queued).getState());
+        first.claim();
+        waitUntil(() -> started.get() == 1);
+        assertEquals(first.getNodeId(), repository.findById(running).orElseThrow().getLeaseOwner());
+
+        assertEquals(JobStateEnum.RUNNING, second.cancel(running).getState());
+        assertTrue(repository.findById(running).orElseThrow().isCancelRequested());
+        first.poll();
+
+        waitUntil(() -> repository.findById(running).orElseThrow().getState() == JobStateEnum.CANCELLED);
+        assertEquals("Calculation cancelled!", second.getStatus(running).getContours().getMsg());
+        assertEquals(JobStateEnum.CANCELLED, repository.findById(queued).orElseThrow().getState());
+        assertEquals(1, started.get());
+    }
+
+    /**
+     * A running job whose cancellation was requested after its instance stopped is cancelled by the other instance
+     * when the lease expires, instead of being calculated again.
+     *
+     */
+    @Test
+    void cancelsRunningJobOfStoppedInstance() throws Exception {
+        String id = enqueue(LocalDateTime.now());
+        instances.get(0).claim();
+        waitUntil(() -> started.get() == 1);
+
+        instances.get(1).cancel(id);
+        expireLease(id);
+        instances.get(1).claim();
+
+        assertEquals(JobStateEnum.CANCELLED, repository.findById(id).orElseThrow().getState());
+        assertEquals(1, started.get());
+    }
+
+    /**
+     * A job rejected because it is not expected to complete before the job deadline returns to the queue
+     * with the attempt counted, and fails after the last allowed attempt instead of being requeued forever.
+     *
+     */
+    @Test
+    void countsAttemptOfJobRejectedByDeadline() throws Exception {
+        rejection = new CalculationExecutor.DeadlineRejectedException();
+        String id = enqueue(LocalDateTime.now());
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            instances.get(attempt % 2).claim();
+            int expectedAttempts = attempt;
+            waitUntil(() -> {
+                QueuedPlumeJob job = repository.findById(id).orElseThrow();
+                return job.getState() == JobStateEnum.QUEUED && job.getAttempts() == expectedAttempts;
+            });
+            makeAvailable(id);
+        }
+
+        instances.get(MAX_ATTEMPTS % 2).claim();
+
+        waitUntil(() -> repository.findById(id).orElseThrow().getState() == JobStateEnum.FAILED);
+        assertEquals(MAX_ATTEMPTS, repository.findById(id).orElseThrow().getAttempts());
+        assertEquals(MAX_ATTEMPTS, started.get());
+        assertEquals("Calculation failed after " + MAX_ATTEMPTS + " attempts!", instances.get(0).getStatus(id).getContours().getMsg());
+    }
+
+    /**
+     * A job rejected because the calculation queue is full returns to the queue after the Retry-After time
+     * without counting the attempt.
+     *
+     */
+    @Test
+    void doesNotCountAttemptOfJobRejectedByFullQueue() throws Exception {
+        rejection = new RejectedExecutionException("Calculation queue is full");
+        String id = enqueue(LocalDateTime.now());
+        for (int claim = 1; claim <= MAX_ATTEMPTS + 1; claim++) {
+            instances.get(claim % 2).claim();
+            int expectedStarts = claim;
+            waitUntil(() -> started.get() == expectedStarts
+                    && repository.findById(id).orElseThrow().getState() == JobStateEnum.QUEUED);
+            QueuedPlumeJob job = repository.findById(id).orElseThrow();
+            assertEquals(0, job.getAttempts());
+            assertTrue(job.getAvailableAt().isAfter(LocalDateTime.now()));
+            makeAvailable(id);
+        }
+    }
+
+    /**
+     * Inserts a queued job into the queue table.
+     *
+     * @param submittedAt the submission time, which also makes the job available
+     * @return the identifier of the job
+     */
+    private String enqueue(LocalDateTime submittedAt) {
+        String id = UUID.randomUUID().toString();
+        String measurementData = "{\"vehicles\":[1,2],\"weatherStability\":4,\"pollutionType\":1,\"detectorId\":1,"
+                + "\"date\":\"2025-06-27\",\"time\":12,\"area\":2000}";
+        repository.save(new QueuedPlumeJob(id, measurementData, JobStateEnum.QUEUED, 0, false,
+                null, null, submittedAt, submittedAt, null, null, null));
+        return id;
+    }
+
+    /**
+     * Moves the lease expiry of the running job into the past, as if its instance had stopped renewing it.
+     *
+     * @param id the identifier of the job
+     */
+    private void expireLease(String id) {
+        QueuedPlumeJob job = repository.findById(id).orElseThrow();
+        job.setLeaseExpiresAt(LocalDateTime.now().minusSeconds(1));
+        repository.save(job);
+    }
+
+    /**
+     * Moves the time at which the queued job may be claimed again into the past, as if the Retry-After time had passed.
+     *
+     * @param id the identifier of the job
+     */
+    private void makeAvailable(String id) {
+        QueuedPlumeJob job = repository.findById(id).orElseThrow();
+        job.setAvailableAt(LocalDateTime.now().minusSeconds(1));
+        repository.save(job);
+    }
+
+    /**
+     * Creates the mocked calculation service whose calculations throw the rejection of the test, if any,
+     * or run until the test finishes them or their token is cancelled.
+     *
+     * @return the mocked service
+     */
+    private GaussianPlumeService mockCalculation() {
+        GaussianPlumeService gaussianPlumeService = mock(GaussianPlumeService.class);
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), eq(CalculationLaneEnum.BATCH), any(CancellationToken.class)))
+                .thenAnswer(invocation -> {
+                    CancellationToken cancellation = invocation.getArgument(2);
+                    started.incrementAndGet();
+                    if (rejection != null) {
+                        ended.incrementAndGet();
+                        throw rejection;
+                    }
+                    try {
+                        while (!finish.await(5, TimeUnit.MILLISECONDS)) {
+                            cancellation.throwIfCancelled();
+                        }
+                        return new Contours(false, "", 0.5, new ArrayList<>());
+                    } finally {
+                        ended.incrementAndGet();
+                    }
+                });
+        return gaussianPlumeService;
+    }
+
+    /**
+     * Creates the mocked calculation executor providing the jobs with cancellable tokens without a deadline.
+     *
+     * @return the mocked executor
+     */
+    private static CalculationExecutor mockExecutor() {
+        CalculationExecutor calculationExecutor = mock(CalculationExecutor.class);
+        when(calculationExecutor.createJobCancellation()).thenAnswer(invocation -> CancellationToken.withTimeout(0, TimeUnit.SECONDS));
+        when(calculationExecutor.getRetryAfter()).thenReturn(1L);
+        return calculationExecutor;
+    }
+
+    /**
+     * Creates the configuration of an instance polling the queue only when called by the tests.
+     *
+     * @return the configuration
+     */
+    private static GrassNextConfig createConfig() {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setJobsWorkers(WORKERS);
+        grassNextConfig.setJobsQueueSize(64);
+        grassNextConfig.setJobsResultTtl(10);
+        grassNextConfig.setJobsLeaseTtl(LEASE_TTL);
+        grassNextConfig.setJobsMaxAttempts(MAX_ATTEMPTS);
+        grassNextConfig.setJobsPollInterval(TimeUnit.HOURS.toMillis(1));
+        return grassNextConfig;
+    }
+
+    /**
+     * Returns the identifiers of the jobs.
+     *
+     * @param jobs the jobs
+     * @return the identifiers in the order of the jobs
+     */
+    private static List<String> ids(List<QueuedPlumeJob> jobs) {
+        return jobs.stream().map(QueuedPlumeJob::getId).toList();
+    }
+
+    /**
+     * Waits for the latch, failing if it is not released in time.
+     *
+     * @param latch the awaited latch
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS), "Latch not released in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits until the condition holds, failing the test if it does not hold in time.
+     *
+     * @param condition the awaited condition
+     */
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * The persistence configuration of one server instance: its own connection to the embedded database,
+     * entity manager factory, transaction manager and queue repository.
+     *
+     */
+    @Configuration
+    @EnableTransactionManagement
+    @EnableJpaRepositories(basePackageClasses = QueuedPlumeJobRepository.class)
+    static class QueueConfiguration {
+        /**
+         * Creates the connection to the embedded database.
+         *
+         * @return the data source
+         */
+        @Bean
+        DataSource dataSource() {
+            return postgres.getPostgresDatabase();
+        }
+
+        /**
+         * Creates the entity manager factory of the queue table, named as by Spring Boot.
+         *
+         * @param dataSource the data source
+         * @return the entity manager factory
+         */
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setPackagesToScan(QueuedPlumeJob.class.getPackageName());
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of(
+                    "hibernate.hbm2ddl.auto", "update",
+                    "hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy",
+                    "hibernate.implicit_naming_strategy", "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy"
+            ));
+            return factory;
+        }
+
+        /**
+         * Creates the transaction manager.
+         *
+         * @param entityManagerFactory the entity manager factory
+         * @return the transaction manager
+         */
+        @Bean
+        PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+    }
+}
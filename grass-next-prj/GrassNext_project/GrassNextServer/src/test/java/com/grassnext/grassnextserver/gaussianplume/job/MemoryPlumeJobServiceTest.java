@@ -0,0 +1,392 @@
+package com.grassnext.grassnextserver.gaussianplume.job;
+
+import com.grassnext.grassnextserver.common.Contours;
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianPlumeService;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import com.grassnext.grassnextserver.util.enums.JobStateEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of {@link MemoryPlumeJobService} with the mocked calculations and the real {@link CalculationExecutor},
+ * whose calculation deadline of one second is shorter than the jobs.
+ *
+ */
+@Timeout(60)
+class MemoryPlumeJobServiceTest {
+    /**
+     * The maximum time in seconds a test waits for the jobs.
+     *
+     */
+    private static final long TIMEOUT = 10;
+    /**
+     * The deadline in seconds of the calculations requested by the clients.
+     *
+     */
+    private static final long CALCULATION_DEADLINE = 1;
+
+    /**
+     * The mocked calculation service.
+     *
+     */
+    private final GaussianPlumeService gaussianPlumeService = mock(GaussianPlumeService.class);
+    /**
+     * The cancellation tokens passed to the calculations, in the order of the calls.
+     *
+     */
+    private final List<CancellationToken> tokens = new CopyOnWriteArrayList<>();
+    /**
+     * The service under test, created by the test.
+     *
+     */
+    private MemoryPlumeJobService service;
+
+    /**
+     * Stops the workers of the service.
+     *
+     */
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * A job runs without a deadline by default, however short the deadline of the client calculations is,
+     * and outlives that deadline.
+     *
+     */
+    @Test
+    void jobOutlivesCalculationDeadline() throws Exception {
+        answer(cancellation -> {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(CALCULATION_DEADLINE) + TimeUnit.MILLISECONDS.toNanos(500);
+            while (System.nanoTime() < end) {
+                cancellation.throwIfCancelled();
+                Thread.sleep(10);
+            }
+            return contours();
+        });
+        service = createService(0);
+
+        String id = service.submit(measurementData()).getId();
+
+        waitUntil(() -> service.getStatus(id).getState().isFinished());
+        assertEquals(JobStateEnum.DONE, service.getStatus(id).getState());
+        assertEquals(Long.MAX_VALUE, tokens.get(0).getRemaining(TimeUnit.SECONDS));
+    }
+
+    /**
+     * The configured job deadline applies to the job instead of the deadline of the client calculations.
+     *
+     */
+    @Test
+    void appliesJobDeadline() throws Exception {
+        answer(cancellation -> contours());
+        service = createService(30);
+
+        String id = service.submit(measurementData()).getId();
+
+        waitUntil(() -> service.getStatus(id).getState().isFinished());
+        long remaining = tokens.get(0).getRemaining(TimeUnit.SECONDS);
+        assertTrue(remaining > CALCULATION_DEADLINE && remaining <= 30, "remaining " + remaining + " s");
+    }
+
+    /**
+     * A job rejected because the calculation queue is full is tried again after the Retry-After time
+     * instead of storing the rejection as its result.
+     *
+     */
+    @Test
+    void retriesCalculationRejectedByFullQueue() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        answer(cancellation -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new RejectedExecutionException("Calculation queue is full");
+            }
+            return contours();
+        });
+        service = createService(0);
+
+        String id = service.submit(measurementData()).getId();
+
+        waitUntil(() -> service.getStatus(id).getState().isFinished());
+        PlumeJobStatus status = service.getStatus(id);
+        assertEquals(JobStateEnum.DONE, status.getState());
+        assertFalse(status.getContours().isError());
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * A job rejected because its calculation would not complete before the job deadline fails at once.
+     *
+     */
+    @Test
+    void failsCalculationRejectedByDeadline() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        answer(cancellation -> {
+            calls.incrementAndGet();
+            throw new CalculationExecutor.DeadlineRejectedException();
+        });
+        service = createService(30);
+
+        String id = service.submit(measurementData()).getId();
+
+        waitUntil(() -> service.getStatus(id).getState().isFinished());
+        PlumeJobStatus status = service.getStatus(id);
+        assertEquals(JobStateEnum.FAILED, status.getState());
+        assertEquals("Calculation not expected to complete before the job deadline!", status.getContours().getMsg());
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * A job waiting to try again after a rejection is cancelled at once.
+     *
+     */
+    @Test
+    void cancelsJobWaitingForRetry() throws Exception {
+        answer(cancellation -> {
+            throw new RejectedExecutionException("Calculation queue is full");
+        });
+        service = createService(0);
+
+        String id = service.submit(measurementData()).getId();
+        waitUntil(() -> tokens.size() == 1);
+        service.cancel(id);
+
+        waitUntil(() -> service.getStatus(id).getState().isFinished());
+        PlumeJobStatus status = service.getStatus(id);
+        assertEquals(JobStateEnum.CANCELLED, status.getState());
+        assertEquals("Calculation cancelled!", status.getContours().getMsg());
+        assertEquals(1, tokens.size());
+    }
+
+    /**
+     * The queued jobs report their position among the queued jobs submitted before them, which moves up
+     * when an earlier job is cancelled.
+     *
+     */
+    @Test
+    void reportsQueuePosition() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        answer(cancellation -> {
+            release.await(TIMEOUT, TimeUnit.SECONDS);
+            return contours();
+        });
+        service = createService(0, 4, 10);
+
+        PlumeJobStatus third;
+        try {
+            String running = service.submit(measurementData()).getId();
+            waitUntil(() -> tokens.size() == 1);
+            String second = service.submit(measurementData()).getId();
+            third = service.submit(measurementData());
+
+            assertEquals(JobStateEnum.RUNNING, service.getStatus(running).getState());
+            assertEquals(0, service.getStatus(running).getQueuePosition());
+            assertEquals(JobStateEnum.QUEUED, service.getStatus(second).getState());
+            assertEquals(0, service.getStatus(second).getQueuePosition());
+            assertEquals(JobStateEnum.QUEUED, third.getState());
+            assertEquals(1, third.getQueuePosition());
+            assertNull(third.getContours());
+
+            service.cancel(second);
+            assertEquals(JobStateEnum.CANCELLED, service.getStatus(second).getState());
+            assertEquals(0, service.getStatus(third.getId()).getQueuePosition());
+        } finally {
+            release.countDown();
+        }
+
+        waitUntil(() -> service.getStatus(third.getId()).getState().isFinished());
+        assertEquals(JobStateEnum.DONE, service.getStatus(third.getId()).getState());
+    }
+
+    /**
+     * A job submitted while the worker is busy and the job queue is full is rejected, and the jobs are accepted
+     * again once the queue has room.
+     *
+     */
+    @Test
+    void rejectsJobWhenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        answer(cancellation -> {
+            release.await(TIMEOUT, TimeUnit.SECONDS);
+            return contours();
+        });
+        service = createService(0, 1, 10);
+
+        String queued;
+        try {
+            service.submit(measurementData());
+            waitUntil(() -> tokens.size() == 1);
+            queued = service.submit(measurementData()).getId();
+
+            assertThrows(RejectedExecutionException.class, () -> service.submit(measurementData()));
+        } finally {
+            release.countDown();
+        }
+
+        waitUntil(() -> service.getStatus(queued).getState().isFinished());
+        String accepted = service.submit(measurementData()).getId();
+        waitUntil(() -> service.getStatus(accepted).getState().isFinished());
+        assertEquals(3, tokens.size());
+    }
+
+    /**
+     * The result of a finished job is kept for the result lifetime and removed afterwards, while the queued
+     * and running jobs are never removed.
+     *
+     */
+    @Test
+    void removesExpiredResults() throws Exception {
+        answer(cancellation -> contours());
+        service = createService(0, 4, 10);
+        String kept = service.submit(measurementData()).getId();
+        waitUntil(() -> service.getStatus(kept).getState().isFinished());
+        assertEquals(JobStateEnum.DONE, service.getStatus(kept).getState());
+
+        CountDownLatch release = new CountDownLatch(1);
+        answer(cancellation -> {
+            release.await(TIMEOUT, TimeUnit.SECONDS);
+            return contours();
+        });
+        service.shutdown();
+        service = createService(0, 4, 0);
+        try {
+            String running = service.submit(measurementData()).getId();
+            waitUntil(() -> service.getStatus(running).getState() == JobStateEnum.RUNNING);
+            String finished = service.submit(measurementData()).getId();
+            service.cancel(finished);
+
+            Thread.sleep(5);
+            assertNull(service.getStatus(finished));
+            assertEquals(JobStateEnum.RUNNING, service.getStatus(running).getState());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Creates the service with a single worker and the real calculation executor.
+     *
+     * @param jobDeadline the job deadline in seconds, or 0 for none
+     * @return the service
+     */
+    private MemoryPlumeJobService createService(long jobDeadline) {
+        return createService(jobDeadline, 4, 10);
+    }
+
+    /**
+     * Creates the service with a single worker and the real calculation executor.
+     *
+     * @param jobDeadline the job deadline in seconds, or 0 for none
+     * @param queueSize the number of the jobs waiting for the worker
+     * @param resultTtl the time in minutes the results of the finished jobs are kept
+     * @return the service
+     */
+    private MemoryPlumeJobService createService(long jobDeadline, int queueSize, long resultTtl) {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(1);
+        grassNextConfig.setCalculationRetryAfter(1);
+        grassNextConfig.setCalculationDeadline(CALCULATION_DEADLINE);
+        grassNextConfig.setJobsDeadline(jobDeadline);
+        grassNextConfig.setJobsWorkers(1);
+        grassNextConfig.setJobsQueueSize(queueSize);
+        grassNextConfig.setJobsResultTtl(resultTtl);
+        return new MemoryPlumeJobService(gaussianPlumeService, new CalculationExecutor(grassNextConfig), grassNextConfig);
+    }
+
+    /**
+     * Sets the answer of the mocked calculation, recording its cancellation token.
+     *
+     * @param calculation the calculation receiving the cancellation token
+     */
+    private void answer(Calculation calculation) {
+        when(gaussianPlumeService.calculateContours(any(MeasurementData.class), eq(CalculationLaneEnum.BATCH), any(CancellationToken.class)))
+                .thenAnswer(invocation -> {
+                    CancellationToken cancellation = invocation.getArgument(2);
+                    tokens.add(cancellation);
+                    return calculation.calculate(cancellation);
+                });
+    }
+
+    /**
+     * Creates the measurement data of a job.
+     *
+     * @return the measurement data
+     */
+    private static MeasurementData measurementData() {
+        MeasurementData measurementData = new MeasurementData();
+        measurementData.setVehicles(List.of(1, 2));
+        measurementData.setWeatherStability(4);
+        measurementData.setPollutionType(1);
+        measurementData.setDetectorId(1);
+        measurementData.setDate(LocalDate.of(2025, 6, 27));
+        measurementData.setTime(12);
+        measurementData.setArea(2000);
+        return measurementData;
+    }
+
+    /**
+     * Creates the contours of a successful calculation.
+     *
+     * @return the contours
+     */
+    private static Contours contours() {
+        return new Contours(false, "", 0.5, new ArrayList<>());
+    }
+
+    /**
+     * Waits until the condition holds, failing the test if it does not hold in time.
+     *
+     * @param condition the awaited condition
+     */
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * The mocked calculation of the contours.
+     *
+     */
+    @FunctionalInterface
+    interface Calculation {
+        /**
+         * Calculates the contours.
+         *
+         * @param cancellation the cancellation token of the job
+         * @return the contours
+         * @throws Exception if the calculation fails
+         */
+        Contours calculate(CancellationToken cancellation) throws Exception;
+    }
+}
@@ -0,0 +1,130 @@
+package com.grassnext.grassnextserver.gaussianplume.raster;
+
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the responses of {@link RasterTileController} to the invalid, unknown, rejected and stopped tiles.
+ *
+ */
+class RasterTileControllerTest {
+    /**
+     * The URL of a tile of a layer.
+     *
+     */
+    private static final String TILE = "/api/gaussian-plume/raster/0123456789abcdef/%d/%d/%d.png";
+
+    /**
+     * The mocked service rendering the tiles.
+     *
+     */
+    private RasterTileService rasterTileService;
+    /**
+     * The client of the controller.
+     *
+     */
+    private MockMvc mockMvc;
+
+    /**
+     * Creates the controller with an executor returning a Retry-After time of 7 seconds.
+     *
+     */
+    @BeforeEach
+    void setUp() {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(1);
+        grassNextConfig.setCalculationRetryAfter(7);
+        grassNextConfig.setCalculationDeadline(60);
+
+        rasterTileService = mock(RasterTileService.class);
+        when(rasterTileService.isValidTile(anyInt(), anyInt(), anyInt())).thenCallRealMethod();
+        when(rasterTileService.getTtl()).thenReturn(60L);
+        RasterTileController controller = new RasterTileController(rasterTileService, new CalculationExecutor(grassNextConfig));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    /**
+     * A tile outside the tile pyramid is answered with the HTTP 400 status without rendering it.
+     *
+     */
+    @Test
+    void invalidTileReturnsBadRequest() throws Exception {
+        mockMvc.perform(get(TILE.formatted(2, 4, 0))).andExpect(status().isBadRequest());
+        mockMvc.perform(get(TILE.formatted(23, 0, 0))).andExpect(status().isBadRequest());
+
+        verify(rasterTileService, never()).getTile(anyString(), anyInt(), anyInt(), anyInt(), any(CancellationToken.class));
+    }
+
+    /**
+     * A tile of an unknown or expired layer is answered with the HTTP 404 status.
+     *
+     */
+    @Test
+    void unknownLayerReturnsNotFound() throws Exception {
+        when(rasterTileService.getTile(anyString(), anyInt(), anyInt(), anyInt(), any(CancellationToken.class))).thenReturn(null);
+
+        mockMvc.perform(get(TILE.formatted(2, 1, 1))).andExpect(status().isNotFound());
+    }
+
+    /**
+     * A rendered tile is answered with the HTTP 200 status, cached by the browser for the lifetime of the layer.
+     *
+     */
+    @Test
+    void renderedTileReturnsOk() throws Exception {
+        byte[] tile = {1, 2, 3};
+        when(rasterTileService.getTile(anyString(), anyInt(), anyInt(), anyInt(), any(CancellationToken.class))).thenReturn(tile);
+
+        mockMvc.perform(get(TILE.formatted(2, 1, 1)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600"))
+                .andExpect(content().bytes(tile));
+    }
+
+    /**
+     * A rendering rejected by the executor is answered with the HTTP 429 status and the Retry-After header.
+     *
+     */
+    @Test
+    void rejectedRenderingReturnsTooManyRequests() throws Exception {
+        when(rasterTileService.getTile(anyString(), anyInt(), anyInt(), anyInt(), any(CancellationToken.class)))
+                .thenThrow(new RejectedExecutionException("Calculation queue is full"));
+
+        mockMvc.perform(get(TILE.formatted(2, 1, 1)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"));
+    }
+
+    /**
+     * A rendering stopped by its deadline is answered with the HTTP 503 status.
+     *
+     */
+    @Test
+    void cancelledRenderingReturnsServiceUnavailable() throws Exception {
+        when(rasterTileService.getTile(anyString(), anyInt(), anyInt(), anyInt(), any(CancellationToken.class)))
+                .thenThrow(new CancellationException("Calculation deadline exceeded"));
+
+        mockMvc.perform(get(TILE.formatted(2, 1, 1))).andExpect(status().isServiceUnavailable());
+    }
+}
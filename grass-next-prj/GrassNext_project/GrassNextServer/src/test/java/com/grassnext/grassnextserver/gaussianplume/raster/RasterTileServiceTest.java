@@ -0,0 +1,260 @@
+package com.grassnext.grassnextserver.gaussianplume.raster;
+
+import com.grassnext.grassnextserver.common.MeasurementData;
+import com.grassnext.grassnextserver.configurations.GrassNextConfig;
+import com.grassnext.grassnextserver.gaussianplume.GaussianParametersService;
+import com.grassnext.grassnextserver.gaussianplume.engine.CalculationExecutor;
+import com.grassnext.grassnextserver.util.Consts;
+import com.grassnext.grassnextserver.util.concurrent.CancellationToken;
+import com.grassnext.grassnextserver.util.enums.CalculationLaneEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the layers of {@link RasterTileService}, the validation of the tile coordinates, the sharing
+ * of the empty tile and the rendering of the tiles by the calculation executor.
+ *
+ */
+class RasterTileServiceTest {
+    /**
+     * The zoom level at which the tile of the road starting point is rendered.
+     *
+     */
+    private static final int ZOOM = 16;
+    /**
+     * The Gaussian Plume parameters of a 400 m area with a 150 m road, with the wind direction to be filled in.
+     *
+     */
+    private static final String PLUME = """
+            {"vehicles":[{"chosen":false,"count":2,"avgVelocity":38.5},{"chosen":true,"count":251,"avgVelocity":36.9},
+             {"chosen":true,"count":38,"avgVelocity":32.4},{"chosen":false,"count":9,"avgVelocity":25.4},{"chosen":false,"count":13,"avgVelocity":30.2}],
+             "wind":{"speed":1.7,"direction":%d,"stability":4},
+             "roadStart":{"lon":18.2101124,"lat":50.3436049},"roadEnd":{"lon":18.2120329,"lat":50.3442988},
+             "thresholds":5,"pollutionType":1,"emittersHeight":0.3,"concentrationHeight":2.0,
+             "matrixSize":400,"cellResolution":1.0,"divMatrixSide":8,"sourceModel":"point"}
+            """;
+
+    /**
+     * The mocked service providing the Gaussian Plume parameters.
+     *
+     */
+    private GaussianParametersService gaussianParametersService;
+    /**
+     * The executor rendering the tiles, spied on to check the lane and the cancellation token of the rendering.
+     *
+     */
+    private CalculationExecutor calculationExecutor;
+    /**
+     * The tested service.
+     *
+     */
+    private RasterTileService rasterTileService;
+
+    /**
+     * Creates the service with an executor admitting a single calculation and the parameters
+     * of the wind from the north.
+     *
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        GrassNextConfig grassNextConfig = new GrassNextConfig();
+        grassNextConfig.setCalculationMaxInFlight(1);
+        grassNextConfig.setCalculationDeadline(60);
+        grassNextConfig.setRasterMaxLayers(10);
+        grassNextConfig.setRasterTileCacheMb(8);
+        grassNextConfig.setRasterTtl(60);
+
+        gaussianParametersService = mock(GaussianParametersService.class);
+        when(gaussianParametersService.getGaussianPlume(any(MeasurementData.class))).thenReturn(PLUME.formatted(0));
+        calculationExecutor = spy(new CalculationExecutor(grassNextConfig));
+        rasterTileService = new RasterTileService(gaussianParametersService, calculationExecutor, grassNextConfig);
+    }
+
+    /**
+     * Only the tiles lying within the tile pyramid up to the highest zoom level are valid.
+     *
+     * @param zoom the zoom level of the tile
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @param valid true if the tile is valid
+     */
+    @ParameterizedTest(name = "tile {0}/{1}/{2} valid {3}")
+    @CsvSource({"0, 0, 0, true", "0, 1, 0, false", "0, 0, 1, false", "-1, 0, 0, false", "3, 7, 7, true", "3, 8, 0, false",
+            "3, 0, -1, false", "22, 4194303, 4194303, true", "22, 4194304, 0, false", "23, 0, 0, false"})
+    void validatesTileCoordinates(int zoom, int tileX, int tileY, boolean valid) {
+        assertEquals(valid, rasterTileService.isValidTile(zoom, tileX, tileY));
+    }
+
+    /**
+     * Equal measurement data share the layer, other Gaussian Plume parameters give another layer, invalid
+     * measurement data give an error, and no tile is returned for an unknown layer.
+     *
+     */
+    @Test
+    void looksUpLayerByParameters() throws Exception {
+        RasterLayer first = rasterTileService.createLayer(measurement());
+        RasterLayer second = rasterTileService.createLayer(measurement());
+
+        assertFalse(first.isError());
+        assertEquals(RasterTileService.ID_LENGTH, first.getId().length());
+        assertEquals(first.getId(), second.getId());
+        assertEquals(String.format(RasterTileService.TILE_URL, first.getId()), first.getTiles());
+        assertTrue(first.getSouth() < 50.3436049 && first.getNorth() > 50.3436049);
+        assertTrue(first.getWest() < 18.2101124 && first.getEast() > 18.2101124);
+
+        when(gaussianParametersService.getGaussianPlume(any(MeasurementData.class))).thenReturn(PLUME.formatted(90));
+        assertNotEquals(first.getId(), rasterTileService.createLayer(measurement()).getId());
+
+        when(gaussianParametersService.getGaussianPlume(any(MeasurementData.class)))
+                .thenReturn(Consts.INCORRECT_DATA_HEADER + "Detector not found!");
+        RasterLayer invalid = rasterTileService.createLayer(measurement());
+        assertTrue(invalid.isError());
+        assertEquals("Detector not found!", invalid.getMsg());
+
+        assertNull(rasterTileService.getTile("0123456789abcdef", ZOOM, 0, 0, CancellationToken.NONE));
+    }
+
+    /**
+     * The tiles outside the field or not reaching the lowest threshold return the same empty PNG image,
+     * while the tile of the road starting point is rendered with the plume.
+     *
+     */
+    @Test
+    void sharesEmptyTile() throws Exception {
+        String id = rasterTileService.createLayer(measurement()).getId();
+        int roadX = tileX(18.2101124);
+        int roadY = tileY(50.3436049);
+
+        byte[] outside = rasterTileService.getTile(id, ZOOM, 0, 0, CancellationToken.NONE);
+        byte[] farAway = rasterTileService.getTile(id, ZOOM, roadX + 100, roadY + 100, CancellationToken.NONE);
+        byte[] world = rasterTileService.getTile(id, 0, 0, 0, CancellationToken.NONE);
+        byte[] road = rasterTileService.getTile(id, ZOOM, roadX, roadY, CancellationToken.NONE);
+
+        assertSame(outside, farAway);
+        assertSame(outside, world);
+        assertNotSame(outside, road);
+        assertTrue(road.length > outside.length, "tile of " + road.length + " bytes");
+    }
+
+    /**
+     * A tile is rendered once in the interactive lane with the cancellation token of the request,
+     * and taken from the tile cache afterwards.
+     *
+     */
+    @Test
+    void rendersTileInInteractiveLane() throws Exception {
+        String id = rasterTileService.createLayer(measurement()).getId();
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+
+        byte[] first = rasterTileService.getTile(id, ZOOM, tileX(18.2101124), tileY(50.3436049), cancellation);
+        byte[] second = rasterTileService.getTile(id, ZOOM, tileX(18.2101124), tileY(50.3436049), CancellationToken.NONE);
+
+        assertSame(first, second);
+        verify(calculationExecutor, times(1)).execute(any(), anyLong(), eq(CalculationLaneEnum.INTERACTIVE), same(cancellation));
+        assertEquals(0, calculationExecutor.getAdmitted());
+    }
+
+    /**
+     * A rendering rejected by the executor or stopped by its cancellation token is reported to the caller
+     * and not cached, so the tile is rendered by the next request.
+     *
+     */
+    @Test
+    void doesNotCacheRejectedOrCancelledRendering() throws Exception {
+        String id = rasterTileService.createLayer(measurement()).getId();
+        int roadX = tileX(18.2101124);
+        int roadY = tileY(50.3436049);
+
+        doThrow(new RejectedExecutionException("Calculation queue is full")).doCallRealMethod()
+                .when(calculationExecutor).execute(any(), anyLong(), any(), any());
+        assertThrows(RejectedExecutionException.class, () -> rasterTileService.getTile(id, ZOOM, roadX, roadY, CancellationToken.NONE));
+
+        CancellationToken cancelled = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+        cancelled.cancel();
+        assertThrows(CancellationException.class, () -> rasterTileService.getTile(id, ZOOM, roadX, roadY, cancelled));
+
+        byte[] tile = rasterTileService.getTile(id, ZOOM, roadX, roadY, CancellationToken.NONE);
+        assertTrue(tile.length > 0);
+    }
+
+    /**
+     * The cancellation token is checked while the tile is rendered.
+     *
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void stopsRenderingWhenCancelled() throws Exception {
+        String id = rasterTileService.createLayer(measurement()).getId();
+        CancellationToken cancellation = CancellationToken.withTimeout(60, TimeUnit.SECONDS);
+        doAnswer(invocation -> {
+            cancellation.cancel();
+            return ((Supplier<byte[]>) invocation.getArgument(0)).get();
+        }).when(calculationExecutor).execute(any(), anyLong(), any(), any());
+
+        assertThrows(CancellationException.class,
+                () -> rasterTileService.getTile(id, ZOOM, tileX(18.2101124), tileY(50.3436049), cancellation));
+    }
+
+    /**
+     * Creates the measurement data of a request.
+     *
+     * @return the measurement data
+     */
+    private static MeasurementData measurement() {
+        MeasurementData measurementData = new MeasurementData();
+        measurementData.setVehicles(List.of(1, 2));
+        measurementData.setDetectorId(1);
+        measurementData.setPollutionType(1);
+        measurementData.setArea(400);
+        return measurementData;
+    }
+
+    /**
+     * Returns the column of the tile of the zoom level {@link #ZOOM} containing the longitude.
+     *
+     * @param longitude the longitude in degrees
+     * @return the column of the tile
+     */
+    private static int tileX(double longitude) {
+        return (int) Math.floor((longitude + 180.0) / 360.0 * (1 << ZOOM));
+    }
+
+    /**
+     * Returns the row of the tile of the zoom level {@link #ZOOM} containing the latitude.
+     *
+     * @param latitude the latitude in degrees
+     * @return the row of the tile
+     */
+    private static int tileY(double latitude) {
+        double radians = Math.toRadians(latitude);
+        return (int) Math.floor((1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2 * (1 << ZOOM));
+    }
+}
@@ -0,0 +1,121 @@
+package com.grassnext.grassnextserver.util.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the deadlines and the cancellation of {@link CancellationToken}.
+ *
+ */
+class CancellationTokenTest {
+
+    /**
+     * The shared token without a deadline is never cancelled.
+     *
+     */
+    @Test
+    void noneIsNeverCancelled() {
+        assertFalse(CancellationToken.NONE.isCancelled());
+        assertFalse(CancellationToken.NONE.isDeadlineExceeded());
+        assertEquals(Long.MAX_VALUE, CancellationToken.NONE.getRemaining(TimeUnit.MILLISECONDS));
+        assertDoesNotThrow(CancellationToken.NONE::throwIfCancelled);
+    }
+
+    /**
+     * A token created without a timeout has no deadline and stops only when cancelled explicitly.
+     *
+     */
+    @Test
+    void cancelStopsTokenWithoutDeadline() {
+        CancellationToken token = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+        assertEquals(Long.MAX_VALUE, token.getRemaining(TimeUnit.SECONDS));
+        assertFalse(token.isCancelled());
+
+        token.cancel();
+
+        assertTrue(token.isCancelled());
+        assertFalse(token.isDeadlineExceeded());
+        assertEquals("Calculation cancelled", assertThrows(CancellationException.class, token::throwIfCancelled).getMessage());
+    }
+
+    /**
+     * A token with a timeout is cancelled when its deadline expires.
+     *
+     */
+    @Test
+    void deadlineExpires() throws InterruptedException {
+        CancellationToken token = CancellationToken.withTimeout(50, TimeUnit.MILLISECONDS);
+        long remaining = token.getRemaining(TimeUnit.MILLISECONDS);
+        assertTrue(remaining > 0 && remaining <= 50, "remaining " + remaining);
+        assertFalse(token.isCancelled());
+
+        Thread.sleep(80);
+
+        assertTrue(token.isDeadlineExceeded());
+        assertTrue(token.isCancelled());
+        assertEquals(0, token.getRemaining(TimeUnit.MILLISECONDS));
+        assertEquals("Calculation deadline exceeded", assertThrows(CancellationException.class, token::throwIfCancelled).getMessage());
+    }
+
+    /**
+     * A token shared by several callers is cancelled only when the tokens of all of them are cancelled,
+     * including the callers joining after it was created.
+     *
+     */
+    @Test
+    void sharedTokenCancelledWhenAllCallersCancelled() {
+        List<CancellationToken> callers = new CopyOnWriteArrayList<>();
+        CancellationToken shared = CancellationToken.allOf(callers);
+        assertFalse(shared.isCancelled());
+
+        CancellationToken first = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+        CancellationToken second = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+        callers.add(first);
+        callers.add(second);
+
+        first.cancel();
+        assertFalse(shared.isCancelled());
+
+        second.cancel();
+        assertTrue(shared.isCancelled());
+
+        callers.add(CancellationToken.withTimeout(0, TimeUnit.SECONDS));
+        assertFalse(shared.isCancelled());
+    }
+
+    /**
+     * The deadline of a token shared by several callers is the latest deadline among the callers
+     * which have not been cancelled.
+     *
+     */
+    @Test
+    void sharedTokenDeadlineIsLatestOfLiveCallers() {
+        List<CancellationToken> callers = new CopyOnWriteArrayList<>();
+        CancellationToken shared = CancellationToken.allOf(callers);
+        assertEquals(Long.MAX_VALUE, shared.getRemaining(TimeUnit.SECONDS));
+
+        CancellationToken shorter = CancellationToken.withTimeout(10, TimeUnit.SECONDS);
+        CancellationToken longer = CancellationToken.withTimeout(100, TimeUnit.SECONDS);
+        callers.add(shorter);
+        assertTrue(shared.getRemaining(TimeUnit.SECONDS) <= 10);
+
+        callers.add(longer);
+        assertTrue(shared.getRemaining(TimeUnit.SECONDS) > 10);
+
+        longer.cancel();
+        assertTrue(shared.getRemaining(TimeUnit.SECONDS) <= 10);
+
+        callers.add(CancellationToken.withTimeout(0, TimeUnit.SECONDS));
+        assertEquals(Long.MAX_VALUE, shared.getRemaining(TimeUnit.SECONDS));
+    }
+}
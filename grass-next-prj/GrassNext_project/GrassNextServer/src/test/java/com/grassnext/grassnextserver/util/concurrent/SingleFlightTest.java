@@ -0,0 +1,214 @@
+package com.grassnext.grassnextserver.util.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the coalescing of the calculations by {@link SingleFlight}.
+ *
+ */
+@Timeout(30)
+class SingleFlightTest {
+    /**
+     * The maximum time in seconds a test waits for the other callers.
+     *
+     */
+    private static final long TIMEOUT = 10;
+
+    /**
+     * The threads of the concurrent callers.
+     *
+     */
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    /**
+     * Stops the threads of the callers left by a failed test.
+     *
+     */
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+    }
+
+    /**
+     * A caller arriving while the calculation of the same key is in progress receives its result
+     * and the calculation is performed only once.
+     *
+     */
+    @Test
+    void coalescesConcurrentCalls() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger calculations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Integer> leader = callers.submit(() -> singleFlight.execute("key", () -> {
+            calculations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return 42;
+        }));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        Future<Integer> follower = callers.submit(() -> singleFlight.execute("key", () -> {
+            calculations.incrementAndGet();
+            return -1;
+        }));
+        waitUntil(() -> singleFlight.getCoalesced() == 1);
+        release.countDown();
+
+        assertEquals(42, leader.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(42, follower.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, calculations.get());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    /**
+     * A failure of the calculation is rethrown to the caller performing it and to the waiting callers.
+     *
+     */
+    @Test
+    void rethrowsFailureToAllCallers() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Integer> leader = callers.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("failed");
+        }));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        Future<Integer> follower = callers.submit(() -> singleFlight.execute("key", () -> -1));
+        waitUntil(() -> singleFlight.getCoalesced() == 1);
+        release.countDown();
+
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class, () -> leader.get(TIMEOUT, TimeUnit.SECONDS)).getCause());
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class, () -> follower.get(TIMEOUT, TimeUnit.SECONDS)).getCause());
+    }
+
+    /**
+     * A waiting caller whose token is cancelled stops waiting, while the calculation goes on for the other callers.
+     *
+     */
+    @Test
+    void cancelledFollowerDoesNotCancelCalculation() throws Exception {
+        SingleFlight<String, Boolean> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CancellationToken followerToken = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+
+        Future<Boolean> leader = callers.submit(() -> singleFlight.execute("key", CancellationToken.NONE, shared -> {
+            started.countDown();
+            await(release);
+            return shared.isCancelled();
+        }));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        Future<Boolean> follower = callers.submit(() -> singleFlight.execute("key", followerToken, shared -> true));
+        waitUntil(() -> singleFlight.getCoalesced() == 1);
+
+        followerToken.cancel();
+        assertInstanceOf(CancellationException.class, assertThrows(ExecutionException.class, () -> follower.get(TIMEOUT, TimeUnit.SECONDS)).getCause());
+        release.countDown();
+        assertFalse(leader.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * The token passed to the calculation is cancelled when the tokens of all the callers are cancelled.
+     *
+     */
+    @Test
+    void calculationCancelledWhenAllCallersCancelled() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CancellationToken leaderToken = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+        CountDownLatch started = new CountDownLatch(1);
+
+        Future<Integer> leader = callers.submit(() -> singleFlight.execute("key", leaderToken, shared -> {
+            started.countDown();
+            while (true) {
+                shared.throwIfCancelled();
+                Thread.onSpinWait();
+            }
+        }));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        leaderToken.cancel();
+
+        assertInstanceOf(CancellationException.class, assertThrows(ExecutionException.class, () -> leader.get(TIMEOUT, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    /**
+     * A caller arriving after all the callers of a calculation have been cancelled, but before the calculation
+     * noticed it, does not join the cancelled calculation nor count as coalesced, and starts a new calculation.
+     *
+     */
+    @Test
+    void doesNotJoinCancelledFlight() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CancellationToken leaderToken = CancellationToken.withTimeout(0, TimeUnit.SECONDS);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Integer> leader = callers.submit(() -> singleFlight.execute("key", leaderToken, shared -> {
+            started.countDown();
+            await(release);
+            shared.throwIfCancelled();
+            return 1;
+        }));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        leaderToken.cancel();
+
+        assertEquals(2, singleFlight.execute("key", CancellationToken.NONE, shared -> 2));
+        assertEquals(0, singleFlight.getCoalesced());
+
+        release.countDown();
+        assertInstanceOf(CancellationException.class, assertThrows(ExecutionException.class, () -> leader.get(TIMEOUT, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    /**
+     * Waits for the latch, failing the calculation if it is not released in time.
+     *
+     * @param latch the latch released by the test
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(TIMEOUT, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Latch not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits until the condition holds, failing the test if it does not hold in time.
+     *
+     * @param condition the awaited condition
+     */
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+}
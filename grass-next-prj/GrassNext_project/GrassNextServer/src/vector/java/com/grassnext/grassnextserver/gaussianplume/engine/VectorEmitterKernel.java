@@ -0,0 +1,101 @@
+package com.grassnext.grassnextserver.gaussianplume.engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorEmitterKernel class evaluates the Gaussian function of the point emitters for a row of cells
+ * with the Java Vector API. The consecutive cells of the row fill the lanes of the preferred vector species
+ * of the platform, and the concentrations of all the emitters are summed up in a vector register before being
+ * stored, so each group of cells is loaded and stored once. The emitters for which no cell of the group lies
+ * downwind are skipped. The cells not filling a whole group are evaluated by the scalar kernel.
+ *
+ * The class uses the {@code jdk.incubator.vector} module, so it is compiled only with the {@code vector} Maven profile
+ * and loaded by reflection only when the module is available, as detected by {@link EmitterKernel#vectorLanes()}.
+ *
+ */
+public class VectorEmitterKernel extends ScalarEmitterKernel {
+    /**
+     * The preferred vector species of the double precision values of the platform.
+     *
+     */
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Constructs a new instance of the VectorEmitterKernel class.
+     *
+     * @param windX the x component of the unit vector pointing in the direction the wind blows to
+     * @param windY the y component of the unit vector pointing in the direction the wind blows to
+     * @param windSpeed the wind speed
+     * @param stability the atmospheric stability class [1-6]
+     * @param emittersHeight the height of the emitters
+     * @param concentrationHeight the height at which the concentration is calculated
+     */
+    VectorEmitterKernel(double windX, double windY, double windSpeed, int stability,
+                        double emittersHeight, double concentrationHeight) {
+        super(windX, windY, windSpeed, stability, emittersHeight, concentrationHeight);
+    }
+
+    /**
+     * Returns the number of the double precision lanes of the preferred vector species of the platform.
+     *
+     * @return the number of the lanes
+     */
+    static int preferredLanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void sumRow(double y, double[] x, int length, double[] emittersX, double[] emittersY, double emission, double[] out) {
+        int upperBound = SPECIES.loopBound(length);
+
+        for (int i = 0; i < upperBound; i += SPECIES.length()) {
+            DoubleVector cellsX = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+
+            for (int e = 0; e < emittersX.length; e++) {
+                double y1 = y - emittersY[e];
+                DoubleVector x1 = cellsX.sub(emittersX[e]);
+                DoubleVector downwind = x1.mul(windX).add(windY * y1);
+                VectorMask<Double> downwindMask = downwind.compare(VectorOperators.GT, 0.0);
+                if (!downwindMask.anyTrue()) {
+                    continue;
+                }
+
+                // The cells upwind of the emitter are evaluated at a unit distance and masked out of the sum
+                downwind = downwind.blend(1.0, downwindMask.not());
+                DoubleVector crosswind = x1.mul(-windY).add(windX * y1);
+
+                DoubleVector growthTermY = downwind.mul(growthY).add(1.0);
+                DoubleVector growthTermZ = downwind.mul(growthZ).add(1.0);
+                DoubleVector inverse = DoubleVector.broadcast(SPECIES, 1.0).div(downwind.mul(downwind));
+
+                DoubleVector horizontal = crosswind.mul(crosswind).mul(growthTermY).mul(inverse).mul(horizontalFactor);
+                DoubleVector vertical = growthTermZ.mul(inverse).mul(verticalFactor);
+
+                DoubleVector direct = horizontal.add(vertical.mul(below)).neg().lanewise(VectorOperators.EXP);
+                DoubleVector reflected = horizontal.add(vertical.mul(above)).neg().lanewise(VectorOperators.EXP);
+                DoubleVector concentration = growthTermY.mul(growthTermZ).sqrt().mul(inverse).mul(normalization)
+                        .mul(direct.add(reflected));
+
+                sum = sum.add(concentration, downwindMask);
+            }
+
+            DoubleVector.fromArray(SPECIES, out, i).add(sum.mul(emission)).intoArray(out, i);
+        }
+
+        if (upperBound < length) {
+            for (int e = 0; e < emittersX.length; e++) {
+                double y1 = y - emittersY[e];
+                sumCells(windY * y1, windX * y1, emittersX[e], x, upperBound, length, emission, out);
+            }
+        }
+    }
+
+    @Override
+    public int getLanes() {
+        return SPECIES.length();
+    }
+}